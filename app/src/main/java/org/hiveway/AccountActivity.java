@@ -51,6 +51,7 @@ import android.widget.TextView;
 import org.hiveway.db.AccountEntity;
 import org.hiveway.interfaces.ActionButtonActivity;
 import org.hiveway.interfaces.LinkListener;
+import org.hiveway.network.CachePolicyInterceptor;
 import org.hiveway.pager.AccountPagerAdapter;
 import org.hiveway.receiver.TimelineReceiver;
 import org.hiveway.util.Assert;
@@ -195,7 +196,7 @@ public final class AccountActivity extends BaseActivity implements ActionButtonA
         followsYouView.setVisibility(View.GONE);
 
         // Obtain information to fill out the profile.
-        obtainAccount();
+        obtainAccount(false);
 
         AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
 
@@ -263,8 +264,14 @@ public final class AccountActivity extends BaseActivity implements ActionButtonA
         super.onSaveInstanceState(outState);
     }
 
-    private void obtainAccount() {
-        hivewayApi.account(accountId).enqueue(new Callback<Account>() {
+    /**
+     * @param refresh whether the account may have changed since it was cached, like after
+     * following it
+     */
+    private void obtainAccount(boolean refresh) {
+        Call<Account> call = hivewayApi.account(accountId,
+                refresh ? CachePolicyInterceptor.NO_CACHE : null);
+        call.enqueue(new Callback<Account>() {
             @Override
             public void onResponse(@NonNull Call<Account> call,
                                    @NonNull Response<Account> response) {
@@ -347,7 +354,7 @@ public final class AccountActivity extends BaseActivity implements ActionButtonA
 
     private void onObtainAccountFailure() {
         Snackbar.make(tabLayout, R.string.error_generic, Snackbar.LENGTH_LONG)
-                .setAction(R.string.action_retry, v -> obtainAccount())
+                .setAction(R.string.action_retry, v -> obtainAccount(false))
                 .show();
     }
 
@@ -515,6 +522,8 @@ public final class AccountActivity extends BaseActivity implements ActionButtonA
                         broadcast(TimelineReceiver.Types.UNFOLLOW_ACCOUNT, id);
                     }
                     updateButtons();
+                    // the follower count changed
+                    obtainAccount(true);
                 } else {
                     onFollowFailure(id);
                 }
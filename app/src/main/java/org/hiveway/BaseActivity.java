@@ -28,31 +28,20 @@ import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
-import android.text.Spanned;
 import android.util.TypedValue;
 import android.view.Menu;
 
 import com.evernote.android.job.JobManager;
 import com.evernote.android.job.JobRequest;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import org.hiveway.adapter.StatusViewPool;
 import org.hiveway.db.AccountEntity;
-import org.hiveway.json.SpannedTypeAdapter;
-import org.hiveway.network.AuthInterceptor;
 import org.hiveway.network.HivewayApi;
-import org.hiveway.util.OkHttpUtils;
+import org.hiveway.network.NetworkProvider;
 import org.hiveway.util.ThemeUtils;
 
-import okhttp3.Dispatcher;
-import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
-
 public abstract class BaseActivity extends AppCompatActivity {
 
     public HivewayApi hivewayApi;
-    protected Dispatcher hivewayApiDispatcher;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -91,9 +80,8 @@ public abstract class BaseActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
-        if (hivewayApiDispatcher != null) {
-            hivewayApiDispatcher.cancelAll();
-        }
+        NetworkProvider.cancelAll(this);
+        StatusViewPool.release(this);
         super.onDestroy();
     }
 
@@ -131,30 +119,7 @@ public abstract class BaseActivity extends AppCompatActivity {
     }
 
     protected void createHivewayApi() {
-        hivewayApiDispatcher = new Dispatcher();
-
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(Spanned.class, new SpannedTypeAdapter())
-                .create();
-
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
-
-        OkHttpClient.Builder okBuilder =
-                OkHttpUtils.getCompatibleClientBuilder(preferences)
-                        .addInterceptor(new AuthInterceptor())
-                        .dispatcher(hivewayApiDispatcher);
-
-        if (BuildConfig.DEBUG) {
-            okBuilder.addInterceptor(
-                    new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BASIC));
-        }
-
-        Retrofit retrofit = new Retrofit.Builder().baseUrl(getBaseUrl())
-                .client(okBuilder.build())
-                .addConverterFactory(GsonConverterFactory.create(gson))
-                .build();
-
-        hivewayApi = retrofit.create(HivewayApi.class);
+        hivewayApi = NetworkProvider.createApi(getBaseUrl(), this);
     }
 
     protected boolean redirectIfNotLoggedIn() {
@@ -82,7 +82,6 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.hiveway.adapter.MentionAutoCompleteAdapter;
 import org.hiveway.db.AccountEntity;
-import org.hiveway.db.PostDao;
 import org.hiveway.db.PostEntity;
 import org.hiveway.entity.Account;
 import org.hiveway.entity.Attachment;
@@ -145,7 +144,6 @@ public final class ComposeActivity extends BaseActivity
     private static final String REPLYING_STATUS_AUTHOR_USERNAME_EXTRA = "replying_author_nickname_extra";
     private static final String REPLYING_STATUS_CONTENT_EXTRA = "replying_status_content";
 
-    private static PostDao postDao = HivewayApplication.getDB().postDao();
 
     private TextView replyTextView;
     private TextView replyContentTextView;
@@ -218,7 +216,7 @@ public final class ComposeActivity extends BaseActivity
                 composeAvatar.setImageResource(R.drawable.avatar_default);
             } else {
                 Picasso.with(this).load(activeAccount.getProfilePictureUrl())
-                        .transform(new RoundedTransformation(7, 0))
+                        .transform(RoundedTransformation.AVATAR)
                         .error(R.drawable.avatar_default)
                         .placeholder(R.drawable.avatar_default)
                         .into(composeAvatar);
@@ -721,13 +719,7 @@ public final class ComposeActivity extends BaseActivity
                 getIntent().getStringExtra(REPLYING_STATUS_CONTENT_EXTRA),
                 getIntent().getStringExtra(REPLYING_STATUS_AUTHOR_USERNAME_EXTRA), statusVisibility);
 
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... params) {
-                postDao.insertOrReplace(post);
-                return null;
-            }
-        }.execute();
+        HivewayApplication.getPostRepository().save(post);
         return true;
     }
 
@@ -927,7 +919,7 @@ public final class ComposeActivity extends BaseActivity
     private void onSendSuccess() {
         // If the status was loaded from a draft, delete the draft and associated media files.
         if (savedPostUid != 0) {
-            postDao.delete(savedPostUid);
+            HivewayApplication.getPostRepository().delete(savedPostUid);
             for (QueuedMedia item : mediaQueued) {
                 try {
                     if (getContentResolver().delete(item.uri, null, null) == 0) {
@@ -1353,43 +1345,21 @@ public final class ComposeActivity extends BaseActivity
                 StringUtils.randomAlphanumericString(10),
                 fileExtension);
 
-        byte[] content = item.content;
-
-        if (content == null) {
-            InputStream stream;
-
-            try {
-                stream = getContentResolver().openInputStream(item.uri);
-            } catch (FileNotFoundException e) {
-                Log.d(TAG, Log.getStackTraceString(e));
-                return;
-            }
-
-            content = MediaUtils.inputStreamGetBytes(stream);
-            IOUtils.closeQuietly(stream);
-
-            if (content == null) {
-                return;
-            }
-        }
-
         if (mimeType == null) mimeType = "multipart/form-data";
 
         item.preview.setProgress(0);
 
-        ProgressRequestBody fileBody = new ProgressRequestBody(content, MediaType.parse(mimeType),
-                false, // If request body logging is enabled, pass true
-                new ProgressRequestBody.UploadCallback() { // may reference activity longer than I would like to
-                    int lastProgress = -1;
-
-                    @Override
-                    public void onProgressUpdate(final int percentage) {
-                        if (percentage != lastProgress) {
-                            runOnUiThread(() -> item.preview.setProgress(percentage));
-                        }
-                        lastProgress = percentage;
-                    }
-                });
+        // the body only reports a percentage when it changed
+        ProgressRequestBody.UploadCallback callback = percentage ->
+                runOnUiThread(() -> item.preview.setProgress(percentage));
+        ProgressRequestBody fileBody;
+        if (item.content != null) {
+            fileBody = new ProgressRequestBody(item.content, MediaType.parse(mimeType), callback);
+        } else {
+            // streamed from the content provider, the file is never loaded into memory as a whole
+            fileBody = new ProgressRequestBody(getContentResolver(), item.uri,
+                    MediaType.parse(mimeType), callback);
+        }
 
         MultipartBody.Part body = MultipartBody.Part.createFormData("file", filename, fileBody);
 
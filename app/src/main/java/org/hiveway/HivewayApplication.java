@@ -21,29 +21,35 @@ package org.hiveway;
 import android.app.Application;
 import android.app.UiModeManager;
 import android.arch.persistence.room.Room;
+import android.arch.persistence.room.RoomDatabase;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatDelegate;
 
 import com.evernote.android.job.JobManager;
 import com.jakewharton.picasso.OkHttp3Downloader;
-import org.hiveway.db.AccountManager;
-import org.hiveway.db.AppDatabase;
-import org.hiveway.util.OkHttpUtils;
-import org.hiveway.util.ThemeUtils;
 import com.squareup.picasso.Picasso;
 
 import org.hiveway.db.AccountManager;
 import org.hiveway.db.AppDatabase;
-import org.hiveway.util.OkHttpUtils;
+import org.hiveway.db.PostRepository;
+import org.hiveway.db.TimelineCache;
+import org.hiveway.network.ActionOutbox;
+import org.hiveway.network.NetworkProvider;
+import org.hiveway.util.StartupTrace;
 import org.hiveway.util.ThemeUtils;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 public class HivewayApplication extends Application {
     public static final String APP_THEME_DEFAULT = ThemeUtils.THEME_DAY;
 
     private static AppDatabase db;
-    private static AccountManager accountManager;
+    private static volatile AccountManager accountManager;
+    private static FutureTask<AccountManager> accountManagerLoader;
+    private static ActionOutbox actionOutbox;
+    private static TimelineCache timelineCache;
+    private static PostRepository postRepository;
 
     public static AppDatabase getDB() {
         return db;
@@ -56,10 +62,16 @@ public class HivewayApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        StartupTrace.start();
+
+        long stage = StartupTrace.begin("network");
+        NetworkProvider.init(this);
+        StartupTrace.end("network", stage);
+
         // Initialize Picasso configuration
+        stage = StartupTrace.begin("images");
         Picasso.Builder builder = new Picasso.Builder(this);
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
-        builder.downloader(new OkHttp3Downloader(OkHttpUtils.getCompatibleClient(preferences)));
+        builder.downloader(new OkHttp3Downloader(NetworkProvider.getClient()));
         if (BuildConfig.DEBUG) {
             builder.listener((picasso, uri, exception) -> exception.printStackTrace());
         }
@@ -69,24 +81,83 @@ public class HivewayApplication extends Application {
         } catch (IllegalStateException e) {
             throw new RuntimeException(e);
         }
-
-        db = Room.databaseBuilder(getApplicationContext(), AppDatabase.class, "hivewayDB")
-                .allowMainThreadQueries()
-                .addMigrations(AppDatabase.MIGRATION_2_3, AppDatabase.MIGRATION_3_4, AppDatabase.MIGRATION_4_5)
-                .build();
-
+        StartupTrace.end("images", stage);
+
+        stage = StartupTrace.begin("database");
+        RoomDatabase.Builder<AppDatabase> dbBuilder = Room.databaseBuilder(getApplicationContext(),
+                AppDatabase.class, "hivewayDB")
+                .addMigrations(AppDatabase.MIGRATION_2_3, AppDatabase.MIGRATION_3_4, AppDatabase.MIGRATION_4_5,
+                        AppDatabase.MIGRATION_5_6, AppDatabase.MIGRATION_6_7);
+        if (!BuildConfig.DEBUG) {
+            // debug builds crash on queries on the main thread, so new ones are noticed right away
+            dbBuilder.allowMainThreadQueries();
+        }
+        db = dbBuilder.build();
+        postRepository = new PostRepository(db.postDao());
+        StartupTrace.end("database", stage);
+
+        /* The first activity needs the accounts. Opening the database and reading them happens in
+         * the background while the rest is set up, getAccountManager() waits for it if needed. */
+        accountManagerLoader = new FutureTask<>(() -> {
+            long loading = StartupTrace.begin("accounts");
+            AccountManager manager = new AccountManager();
+            StartupTrace.end("accounts", loading);
+            return manager;
+        });
+        Thread accountThread = new Thread(accountManagerLoader, "AccountManager");
+        accountThread.setDaemon(true);
+        accountThread.start();
+
+        /* Jobs may be what started the process, so their creator has to be there before this
+         * method returns. */
+        stage = StartupTrace.begin("jobs");
         JobManager.create(this).addJobCreator(new NotificationPullJobCreator(this));
+        StartupTrace.end("jobs", stage);
 
         uiModeManager = (UiModeManager)getSystemService(Context.UI_MODE_SERVICE);
 
         //necessary for Android < APi 21
         AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
 
-        accountManager = new AccountManager();
+        actionOutbox = new ActionOutbox(db.actionDao());
+        // actions are queued from now on, but only sent once the first screen is up
+        StartupTrace.afterFirstFrame(actionOutbox::start);
+
+        timelineCache = new TimelineCache(db, NetworkProvider.getGson());
     }
 
     public static AccountManager getAccountManager() {
-        return accountManager;
+        AccountManager manager = accountManager;
+        if (manager == null) {
+            boolean waiting = !accountManagerLoader.isDone();
+            long stage = waiting ? StartupTrace.begin("waiting for accounts") : 0;
+            try {
+                manager = accountManagerLoader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading the accounts", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                if (waiting) {
+                    StartupTrace.end("waiting for accounts", stage);
+                }
+            }
+            accountManager = manager;
+        }
+        return manager;
+    }
+
+    public static ActionOutbox getActionOutbox() {
+        return actionOutbox;
+    }
+
+    public static TimelineCache getTimelineCache() {
+        return timelineCache;
+    }
+
+    public static PostRepository getPostRepository() {
+        return postRepository;
     }
 
  }
\ No newline at end of file
@@ -33,12 +33,12 @@ import android.widget.TextView
 import org.hiveway.entity.AccessToken
 import org.hiveway.entity.AppCredentials
 import org.hiveway.network.HivewayApi
+import org.hiveway.network.NetworkProvider
 import kotlinx.android.synthetic.main.activity_login.*
 import retrofit2.Call
 import retrofit2.Callback
 import retrofit2.Response
 import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
 
 
 class LoginActivity : AppCompatActivity() {
@@ -103,8 +103,8 @@ class LoginActivity : AppCompatActivity() {
     private fun getApiFor(domain: String): HivewayApi {
         val retrofit = Retrofit.Builder()
                 .baseUrl("https://" + domain)
-                .client(org.hiveway.util.OkHttpUtils.getCompatibleClient(preferences))
-                .addConverterFactory(GsonConverterFactory.create())
+                .client(NetworkProvider.getClient())
+                .addConverterFactory(NetworkProvider.getConverterFactory())
                 .build()
 
         return retrofit.create(HivewayApi::class.java)
@@ -21,6 +21,7 @@ package org.hiveway;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
@@ -39,6 +40,7 @@ import android.view.KeyEvent;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 
+import org.hiveway.adapter.StatusViewPool;
 import org.hiveway.db.AccountEntity;
 import org.hiveway.db.AccountManager;
 import org.hiveway.entity.Account;
@@ -46,6 +48,7 @@ import org.hiveway.interfaces.ActionButtonActivity;
 import org.hiveway.pager.TimelinePagerAdapter;
 import org.hiveway.receiver.TimelineReceiver;
 import org.hiveway.util.NotificationHelper;
+import org.hiveway.util.StartupTrace;
 import org.hiveway.util.ThemeUtils;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 import com.mikepenz.materialdrawer.AccountHeader;
@@ -92,6 +95,7 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long stage = StartupTrace.begin("main activity");
 
         // account switching has to be done before HivewayApi is created in super.onCreate
         Intent intent = getIntent();
@@ -125,17 +129,26 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
             startActivityForResult(composeIntent, COMPOSE_RESULT);
         });
 
-        setupDrawer();
+        // The drawer isn't visible at first, it is set up after the first frame or when needed.
+        StartupTrace.afterFirstFrame(() -> {
+            if (!isDestroyed()) {
+                setupDrawerIfNeeded();
+            }
+        });
 
         // Setup the navigation drawer toggle button.
         ThemeUtils.setDrawableTint(this, drawerToggle.getDrawable(), R.attr.toolbar_icon_tint);
-        drawerToggle.setOnClickListener(v -> drawer.openDrawer());
+        drawerToggle.setOnClickListener(v -> {
+            setupDrawerIfNeeded();
+            drawer.openDrawer();
+        });
 
-        /* Fetch user info while we're doing other things. This has to be done after setting up the
-         * drawer, though, because its callback touches the header in the drawer. */
+        /* Fetch user info while we're doing other things. Its callback sets up the drawer if
+         * that didn't happen yet, because it touches the header in the drawer. */
         fetchUserInfo();
 
         // Setup the tabs and timeline pager.
+        long tabsStage = StartupTrace.begin("tabs");
         TimelinePagerAdapter adapter = new TimelinePagerAdapter(getSupportFragmentManager());
 
         int pageMargin = getResources().getDimensionPixelSize(R.dimen.tab_page_margin);
@@ -198,6 +211,7 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
         for (int i = 0; i < 4; i++) {
             tintTab(tabLayout.getTabAt(i), i == tabPosition);
         }
+        StartupTrace.end("tabs", tabsStage);
 
         // Setup push notifications
         if (NotificationHelper.areNotificationsEnabled(this)) {
@@ -207,6 +221,12 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
         }
 
         composeButton = floatingBtn;
+
+        // the tabs share their rows, have some ready before the user starts scrolling
+        StatusViewPool.prefill(this);
+
+        StartupTrace.watchFirstFrame(this);
+        StartupTrace.end("main activity", stage);
     }
 
     @Override
@@ -252,6 +272,7 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
     public boolean onKeyDown(int keyCode, KeyEvent event) {
         switch (keyCode) {
             case KeyEvent.KEYCODE_MENU: {
+                setupDrawerIfNeeded();
                 if (drawer.isDrawerOpen()) {
                     drawer.closeDrawer();
                 } else {
@@ -278,7 +299,11 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
         ThemeUtils.setDrawableTint(this, tab.getIcon(), color);
     }
 
-    private void setupDrawer() {
+    private void setupDrawerIfNeeded() {
+        if (drawer != null) {
+            return;
+        }
+        long stage = StartupTrace.begin("drawer");
         headerResult = new HivewayAccountHeaderBuilder()
                 .withActivity(this)
                 .withDividerBelowHeader(false)
@@ -297,7 +322,12 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
         DrawerImageLoader.init(new AbstractDrawerImageLoader() {
             @Override
             public void set(ImageView imageView, Uri uri, Drawable placeholder, String tag) {
-                Picasso.with(imageView.getContext()).load(uri).placeholder(placeholder).into(imageView);
+                Picasso.with(imageView.getContext())
+                        .load(uri)
+                        .placeholder(placeholder)
+                        .fit()
+                        .centerCrop()
+                        .into(imageView);
             }
 
             @Override
@@ -390,6 +420,7 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
         }
 
         updateProfiles();
+        StartupTrace.end("drawer", stage);
     }
 
     private boolean handleProfileClick(IProfile profile, boolean current) {
@@ -478,18 +509,28 @@ public class MainActivity extends BaseActivity implements ActionButtonActivity {
 
     private void onFetchUserInfoSuccess(Account me) {
         // Add the header image and avatar from the account, into the navigation drawer header.
+        setupDrawerIfNeeded();
 
         ImageView background = headerResult.getHeaderBackgroundView();
 
         Picasso.with(MainActivity.this)
                 .load(me.getHeader())
                 .placeholder(R.drawable.account_header_default)
+                .fit()
+                .centerCrop()
+                .config(Bitmap.Config.RGB_565)
                 .into(background);
 
         AccountManager am = HivewayApplication.getAccountManager();
 
-        am.updateActiveAccount(me);
+        am.updateActiveAccount(me, () -> onActiveAccountSaved(me));
+    }
 
+    private void onActiveAccountSaved(Account me) {
+        if (isDestroyed()) {
+            return;
+        }
+        AccountManager am = HivewayApplication.getAccountManager();
         NotificationHelper.createNotificationChannelsForAccount(am.getActiveAccount(), this);
 
         // Show follow requests in the menu, if this is a locked account.
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.ActionBar;
+import android.support.v7.widget.Toolbar;
+import android.text.format.Formatter;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+
+import org.hiveway.network.NetworkMetrics;
+import org.hiveway.network.NetworkProvider;
+import org.hiveway.util.StartupTrace;
+import org.hiveway.util.TimelineMemory;
+
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Cache;
+
+/**
+ * Shows the per endpoint statistics collected by {@link NetworkMetrics}, together with the hit
+ * rate and bitmap sizes of Picasso's memory cache, the stages of the last cold start and the
+ * estimated size of the open timelines, and lets the user share them as JSON.
+ */
+public class NetworkDiagnosticsActivity extends BaseActivity {
+
+    private TextView diagnosticsText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_network_diagnostics);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+            actionBar.setDisplayShowHomeEnabled(true);
+        }
+
+        setTitle(R.string.pref_title_network_diagnostics);
+
+        diagnosticsText = findViewById(R.id.diagnostics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.network_diagnostics_toolbar, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home: {
+                onBackPressed();
+                return true;
+            }
+            case R.id.action_export_json: {
+                exportJson();
+                return true;
+            }
+            case R.id.action_reset: {
+                NetworkProvider.getMetrics().reset();
+                showMetrics();
+                return true;
+            }
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showMetrics() {
+        StringBuilder sb = new StringBuilder();
+
+        Cache cache = NetworkProvider.getCache();
+        if (cache != null) {
+            sb.append(getString(R.string.network_diagnostics_cache, cache.requestCount(),
+                    cache.hitCount(), cache.networkCount()));
+            sb.append("\n\n");
+        }
+
+        StatsSnapshot images = Picasso.with(this).getSnapshot();
+        sb.append(getString(R.string.network_diagnostics_images,
+                images.cacheHits,
+                images.cacheMisses,
+                Formatter.formatShortFileSize(this, images.size),
+                Formatter.formatShortFileSize(this, images.maxSize),
+                images.originalBitmapCount,
+                Formatter.formatShortFileSize(this, images.averageOriginalBitmapSize),
+                images.transformedBitmapCount,
+                Formatter.formatShortFileSize(this, images.averageTransformedBitmapSize)));
+        sb.append("\n\n");
+
+        sb.append(getString(R.string.network_diagnostics_startup,
+                formatMillis(StartupTrace.getFirstFrame())));
+        for (StartupTrace.Stage stage : StartupTrace.getStages()) {
+            sb.append("\n");
+            sb.append(getString(R.string.network_diagnostics_startup_stage, stage.getName(),
+                    stage.getDuration(), stage.getStart()));
+        }
+        sb.append("\n\n");
+
+        List<TimelineMemory.Source> timelines = TimelineMemory.getSources();
+        for (TimelineMemory.Source timeline : timelines) {
+            sb.append(getString(R.string.network_diagnostics_timeline,
+                    timeline.getTimelineName(),
+                    timeline.getStatusCount(),
+                    Formatter.formatShortFileSize(this, timeline.getEstimatedBytes())));
+            sb.append("\n");
+        }
+        if (!timelines.isEmpty()) {
+            sb.append("\n");
+        }
+
+        List<NetworkMetrics.Endpoint> endpoints = NetworkProvider.getMetrics().getEndpoints();
+        if (endpoints.isEmpty()) {
+            sb.append(getString(R.string.network_diagnostics_empty));
+        }
+        for (NetworkMetrics.Endpoint endpoint : endpoints) {
+            sb.append(getString(R.string.network_diagnostics_endpoint,
+                    endpoint.getName(),
+                    endpoint.getRequests(),
+                    endpoint.getFailures(),
+                    endpoint.getCacheHits(),
+                    endpoint.getLatencyPercentile(0.5),
+                    endpoint.getLatencyPercentile(0.95),
+                    endpoint.getLatencyMax(),
+                    formatMillis(endpoint.getAverageDns()),
+                    formatMillis(endpoint.getAverageConnect()),
+                    formatMillis(endpoint.getAverageTls()),
+                    formatMillis(endpoint.getAverageTimeToFirstByte()),
+                    formatMillis(endpoint.getAverageBody()),
+                    Formatter.formatShortFileSize(this, endpoint.getBytesSent()),
+                    Formatter.formatShortFileSize(this, endpoint.getBytesReceived()),
+                    formatStatusCodes(endpoint.getStatusCodes())));
+            sb.append("\n\n");
+        }
+        diagnosticsText.setText(sb);
+    }
+
+    private String formatMillis(long millis) {
+        if (millis < 0) {
+            return getString(R.string.network_diagnostics_not_available);
+        }
+        return getString(R.string.network_diagnostics_millis, millis);
+    }
+
+    private static String formatStatusCodes(Map<Integer, Integer> statusCodes) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, Integer> entry : statusCodes.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('×').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private void exportJson() {
+        JsonObject json = NetworkProvider.getMetrics().toJson();
+        json.addProperty("version", BuildConfig.VERSION_NAME);
+        Cache cache = NetworkProvider.getCache();
+        if (cache != null) {
+            JsonObject cacheJson = new JsonObject();
+            cacheJson.addProperty("requests", cache.requestCount());
+            cacheJson.addProperty("hits", cache.hitCount());
+            cacheJson.addProperty("network", cache.networkCount());
+            json.add("cache", cacheJson);
+        }
+        StatsSnapshot images = Picasso.with(this).getSnapshot();
+        JsonObject imagesJson = new JsonObject();
+        imagesJson.addProperty("cacheHits", images.cacheHits);
+        imagesJson.addProperty("cacheMisses", images.cacheMisses);
+        imagesJson.addProperty("cacheSize", images.size);
+        imagesJson.addProperty("cacheMaxSize", images.maxSize);
+        imagesJson.addProperty("originalBitmapCount", images.originalBitmapCount);
+        imagesJson.addProperty("totalOriginalBitmapSize", images.totalOriginalBitmapSize);
+        imagesJson.addProperty("transformedBitmapCount", images.transformedBitmapCount);
+        imagesJson.addProperty("totalTransformedBitmapSize", images.totalTransformedBitmapSize);
+        json.add("images", imagesJson);
+        JsonArray timelinesJson = new JsonArray();
+        for (TimelineMemory.Source timeline : TimelineMemory.getSources()) {
+            JsonObject timelineJson = new JsonObject();
+            timelineJson.addProperty("name", timeline.getTimelineName());
+            timelineJson.addProperty("statuses", timeline.getStatusCount());
+            timelineJson.addProperty("estimatedBytes", timeline.getEstimatedBytes());
+            timelinesJson.add(timelineJson);
+        }
+        json.add("timelines", timelinesJson);
+        JsonObject startupJson = new JsonObject();
+        startupJson.addProperty("firstFrame", StartupTrace.getFirstFrame());
+        JsonArray stagesJson = new JsonArray();
+        for (StartupTrace.Stage stage : StartupTrace.getStages()) {
+            JsonObject stageJson = new JsonObject();
+            stageJson.addProperty("name", stage.getName());
+            stageJson.addProperty("start", stage.getStart());
+            stageJson.addProperty("duration", stage.getDuration());
+            stagesJson.add(stageJson);
+        }
+        startupJson.add("stages", stagesJson);
+        json.add("startup", startupJson);
+        String text = new GsonBuilder().setPrettyPrinting().create().toJson(json);
+
+        Intent sendIntent = new Intent();
+        sendIntent.setAction(Intent.ACTION_SEND);
+        sendIntent.putExtra(Intent.EXTRA_TEXT, text);
+        sendIntent.setType("text/plain");
+        startActivity(Intent.createChooser(sendIntent,
+                getResources().getText(R.string.send_network_diagnostics_to)));
+    }
+}
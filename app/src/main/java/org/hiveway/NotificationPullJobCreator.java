@@ -19,33 +19,35 @@
 package org.hiveway;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.Spanned;
 import android.util.Log;
 
 import com.evernote.android.job.Job;
 import com.evernote.android.job.JobCreator;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.hiveway.db.AccountEntity;
 import org.hiveway.entity.Notification;
-import org.hiveway.json.SpannedTypeAdapter;
 import org.hiveway.network.HivewayApi;
+import org.hiveway.network.NetworkProvider;
 import org.hiveway.util.NotificationHelper;
-import org.hiveway.util.OkHttpUtils;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-
-import okhttp3.OkHttpClient;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Created by charlag on 31/10/17.
@@ -57,6 +59,10 @@ public final class NotificationPullJobCreator implements JobCreator {
 
     static final String NOTIFICATIONS_JOB_TAG = "notifications_job_tag";
 
+    private static final int MAX_PARALLEL_POLLS = 4;
+    /* Requests time out by themselves, this is only the upper bound for the whole job. */
+    private static final long JOB_DEADLINE_MS = 60 * 1000;
+
     private Context context;
 
     NotificationPullJobCreator(Context context) {
@@ -72,26 +78,6 @@ public final class NotificationPullJobCreator implements JobCreator {
         return null;
     }
 
-    private static HivewayApi createHivewayApi(String domain, Context context) {
-        SharedPreferences preferences = context.getSharedPreferences(
-                context.getString(R.string.preferences_file_key), Context.MODE_PRIVATE);
-
-        OkHttpClient okHttpClient = OkHttpUtils.getCompatibleClientBuilder(preferences)
-                .build();
-
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(Spanned.class, new SpannedTypeAdapter())
-                .create();
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl("https://" + domain)
-                .client(okHttpClient)
-                .addConverterFactory(GsonConverterFactory.create(gson))
-                .build();
-
-        return retrofit.create(HivewayApi.class);
-    }
-
     private final static class NotificationPullJob extends Job {
 
         private Context context;
@@ -104,28 +90,64 @@ public final class NotificationPullJobCreator implements JobCreator {
         @Override
         protected Result onRunJob(@NonNull Params params) {
 
-            List<AccountEntity> accountList = new ArrayList<>(HivewayApplication.getAccountManager().getAllAccountsOrderedByActive());
-
-            for(AccountEntity account: accountList) {
+            List<Poll> polls = new ArrayList<>();
+            for (AccountEntity account : HivewayApplication.getAccountManager().getAllAccountsOrderedByActive()) {
+                if (account.getNotificationsEnabled()) {
+                    polls.add(new Poll(account));
+                }
+            }
+            if (polls.isEmpty()) {
+                return Result.SUCCESS;
+            }
 
-                if(account.getNotificationsEnabled()) {
-                    HivewayApi api = createHivewayApi(account.getDomain(), context);
+            /* All accounts are polled at the same time, so a slow instance only delays itself.
+             * The results are handled one after another on this thread as they come in. */
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(MAX_PARALLEL_POLLS, polls.size()));
+            CompletionService<Poll> completionService = new ExecutorCompletionService<>(executor);
+            for (Poll poll : polls) {
+                Log.d(TAG, "getting Notifications for " + poll.account.getFullName());
+                completionService.submit(poll);
+            }
+            executor.shutdown();
+
+            long deadline = SystemClock.elapsedRealtime() + JOB_DEADLINE_MS;
+            try {
+                for (int i = 0; i < polls.size(); i++) {
+                    long remaining = deadline - SystemClock.elapsedRealtime();
+                    Future<Poll> done = completionService.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        Log.w(TAG, "giving up on the remaining accounts");
+                        break;
+                    }
+                    Poll poll;
                     try {
-                        Log.d(TAG, "getting Notifications for "+account.getFullName());
-                        Response<List<Notification>> notifications =
-                                api.notificationsWithAuth(String.format("Bearer %s", account.getAccessToken())).execute();
-                        if (notifications.isSuccessful()) {
-                            onNotificationsReceived(account, notifications.body());
-                        } else {
-                            Log.w(TAG, "error receiving notificationsEnabled");
-                        }
-                    } catch (IOException e) {
-                        Log.w(TAG, "error receiving notificationsEnabled", e);
+                        poll = done.get();
+                    } catch (ExecutionException e) {
+                        Log.e(TAG, "polling failed", e);
+                        continue;
+                    }
+                    if (poll.response != null && poll.response.isSuccessful()) {
+                        onNotificationsReceived(poll.account, poll.response.body());
+                    } else {
+                        Log.w(TAG, "error receiving notifications for "
+                                + poll.account.getFullName(), poll.error);
                     }
                 }
-
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // only the ones still running are affected
+                for (Poll poll : polls) {
+                    poll.call.cancel();
+                }
+                executor.shutdownNow();
             }
 
+            // the process may be gone soon after the job, so the new notification ids are
+            // written before it ends
+            HivewayApplication.getAccountManager().flush();
+
             return Result.SUCCESS;
 
 
@@ -162,4 +184,30 @@ public final class NotificationPullJobCreator implements JobCreator {
             return lastShownNotificationId.compareTo(newId) == - 1;
         }
     }
+
+    private static final class Poll implements Callable<Poll> {
+        final AccountEntity account;
+        final Call<List<Notification>> call;
+        @Nullable
+        Response<List<Notification>> response;
+        @Nullable
+        IOException error;
+
+        Poll(AccountEntity account) {
+            this.account = account;
+            HivewayApi api = NetworkProvider.getUnauthenticatedApi(account.getDomain());
+            this.call = api.notificationsWithAuth(
+                    String.format("Bearer %s", account.getAccessToken()));
+        }
+
+        @Override
+        public Poll call() {
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                error = e;
+            }
+            return this;
+        }
+    }
 }
@@ -21,9 +21,7 @@ package org.hiveway;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
-import android.support.annotation.Nullable;
 import android.support.v7.app.ActionBar;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
@@ -37,26 +35,20 @@ import android.widget.TextView;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.hiveway.adapter.SavedPostAdapter;
-import org.hiveway.db.PostDao;
 import org.hiveway.db.PostEntity;
 import org.hiveway.util.ThemeUtils;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PostActivity extends BaseActivity implements SavedPostAdapter.PostAction {
     private static final String TAG = "PostActivity"; // logging tag
 
-    // dao
-    private static PostDao postDao = HivewayApplication.getDB().postDao();
-
     // ui
     private SavedPostAdapter adapter;
     private TextView noContent;
 
     private List<PostEntity> posts = new ArrayList<>();
-    @Nullable private AsyncTask<?, ?, ?> asyncTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -93,12 +85,6 @@ public class PostActivity extends BaseActivity implements SavedPostAdapter.PostA
         fetchPosts();
     }
 
-    @Override
-    protected void onPause() {
-        super.onPause();
-        if (asyncTask != null) asyncTask.cancel(true);
-    }
-
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
@@ -111,8 +97,17 @@ public class PostActivity extends BaseActivity implements SavedPostAdapter.PostA
     }
 
     private void fetchPosts() {
-        asyncTask = new FetchPojosTask(this)
-                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        HivewayApplication.getPostRepository().loadAll(pojos -> {
+            if (isDestroyed()) {
+                return;
+            }
+            posts = new ArrayList<>(pojos);
+
+            // set ui
+            setNoContent(pojos.size());
+            adapter.setItems(new ArrayList<>(pojos));
+            adapter.notifyDataSetChanged();
+        });
     }
 
     private void setNoContent(int size) {
@@ -137,7 +132,7 @@ public class PostActivity extends BaseActivity implements SavedPostAdapter.PostA
             }
         }
         // update DB
-        postDao.delete(item.getUid());
+        HivewayApplication.getPostRepository().delete(item.getUid());
         posts.remove(position);
         // update adapter
         if (adapter != null) {
@@ -160,34 +155,4 @@ public class PostActivity extends BaseActivity implements SavedPostAdapter.PostA
                 .build(this);
         startActivity(intent);
     }
-
-    static final class FetchPojosTask extends AsyncTask<Void, Void, List<PostEntity>> {
-
-        private final WeakReference<PostActivity> activityRef;
-
-        FetchPojosTask(PostActivity activity) {
-            this.activityRef = new WeakReference<>(activity);
-        }
-
-        @Override
-        protected List<PostEntity> doInBackground(Void... voids) {
-            return postDao.loadAll();
-        }
-
-        @Override
-        protected void onPostExecute(List<PostEntity> pojos) {
-            super.onPostExecute(pojos);
-            PostActivity activity = activityRef.get();
-            if (activity == null) return;
-
-            activity.posts.addAll(pojos);
-
-            // set ui
-            activity.setNoContent(pojos.size());
-            List<PostEntity> posts = new ArrayList<>(pojos.size());
-            posts.addAll(pojos);
-            activity.adapter.setItems(posts);
-            activity.adapter.notifyDataSetChanged();
-        }
-    }
 }
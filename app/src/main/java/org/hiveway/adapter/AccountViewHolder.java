@@ -17,7 +17,6 @@
 
 package org.hiveway.adapter;
 
-import android.content.Context;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.widget.TextView;
@@ -27,11 +26,11 @@ import org.hiveway.entity.Account;
 import org.hiveway.interfaces.AccountActionListener;
 import org.hiveway.interfaces.LinkListener;
 import com.pkmmte.view.CircularImageView;
-import com.squareup.picasso.Picasso;
 
 import org.hiveway.entity.Account;
 import org.hiveway.interfaces.AccountActionListener;
 import org.hiveway.interfaces.LinkListener;
+import org.hiveway.util.ImageLoadingHelper;
 
 class AccountViewHolder extends RecyclerView.ViewHolder {
     private View container;
@@ -54,11 +53,7 @@ class AccountViewHolder extends RecyclerView.ViewHolder {
         String formattedUsername = String.format(format, account.getUsername());
         username.setText(formattedUsername);
         displayName.setText(account.getName());
-        Context context = avatar.getContext();
-        Picasso.with(context)
-                .load(account.getAvatar())
-                .placeholder(R.drawable.avatar_default)
-                .into(avatar);
+        ImageLoadingHelper.loadAvatar(account.getAvatar(), avatar, false);
     }
 
     void setupActionListener(final AccountActionListener listener) {
@@ -27,9 +27,9 @@ import android.widget.TextView;
 import org.hiveway.R;
 import org.hiveway.interfaces.AccountActionListener;
 import com.pkmmte.view.CircularImageView;
-import com.squareup.picasso.Picasso;
 
 import org.hiveway.entity.Account;
+import org.hiveway.util.ImageLoadingHelper;
 
 public class BlocksAdapter extends AccountAdapter {
     private static final int VIEW_TYPE_BLOCKED_USER = 0;
@@ -98,10 +98,7 @@ public class BlocksAdapter extends AccountAdapter {
             String format = username.getContext().getString(R.string.status_username_format);
             String formattedUsername = String.format(format, account.getUsername());
             username.setText(formattedUsername);
-            Picasso.with(avatar.getContext())
-                    .load(account.getAvatar())
-                    .placeholder(R.drawable.avatar_default)
-                    .into(avatar);
+            ImageLoadingHelper.loadAvatar(account.getAvatar(), avatar, false);
         }
 
         void setupActionListener(final AccountActionListener listener, final boolean blocked) {
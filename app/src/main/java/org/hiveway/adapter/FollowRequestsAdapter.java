@@ -28,10 +28,10 @@ import org.hiveway.interfaces.AccountActionListener;
 import org.hiveway.R;
 import org.hiveway.entity.Account;
 import com.pkmmte.view.CircularImageView;
-import com.squareup.picasso.Picasso;
 
 import org.hiveway.entity.Account;
 import org.hiveway.interfaces.AccountActionListener;
+import org.hiveway.util.ImageLoadingHelper;
 
 public class FollowRequestsAdapter extends AccountAdapter {
     private static final int VIEW_TYPE_FOLLOW_REQUEST = 0;
@@ -102,10 +102,7 @@ public class FollowRequestsAdapter extends AccountAdapter {
             String format = username.getContext().getString(R.string.status_username_format);
             String formattedUsername = String.format(format, account.getUsername());
             username.setText(formattedUsername);
-            Picasso.with(avatar.getContext())
-                    .load(account.getAvatar())
-                    .placeholder(R.drawable.avatar_default)
-                    .into(avatar);
+            ImageLoadingHelper.loadAvatar(account.getAvatar(), avatar, false);
         }
 
         void setupActionListener(final AccountActionListener listener) {
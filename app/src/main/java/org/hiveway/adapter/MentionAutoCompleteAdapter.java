@@ -32,11 +32,9 @@ import android.widget.TextView;
 
 import org.hiveway.R;
 import org.hiveway.entity.Account;
-import org.hiveway.view.RoundedTransformation;
-import com.squareup.picasso.Picasso;
 
 import org.hiveway.entity.Account;
-import org.hiveway.view.RoundedTransformation;
+import org.hiveway.util.ImageLoadingHelper;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -131,11 +129,7 @@ public class MentionAutoCompleteAdapter extends ArrayAdapter<Account>
             username.setText(formattedUsername);
             displayName.setText(account.getName());
             if (!account.getAvatar().isEmpty()) {
-                Picasso.with(context)
-                        .load(account.getAvatar())
-                        .placeholder(R.drawable.avatar_default)
-                        .transform(new RoundedTransformation(7, 0))
-                        .into(avatar);
+                ImageLoadingHelper.loadAvatar(account.getAvatar(), avatar);
             }
         }
 
@@ -27,8 +27,8 @@ import android.widget.TextView;
 import org.hiveway.R;
 import org.hiveway.entity.Account;
 import org.hiveway.interfaces.AccountActionListener;
+import org.hiveway.util.ImageLoadingHelper;
 import com.pkmmte.view.CircularImageView;
-import com.squareup.picasso.Picasso;
 
 public class MutesAdapter extends AccountAdapter {
     private static final int VIEW_TYPE_MUTED_USER = 0;
@@ -97,10 +97,7 @@ public class MutesAdapter extends AccountAdapter {
             String format = username.getContext().getString(R.string.status_username_format);
             String formattedUsername = String.format(format, account.getUsername());
             username.setText(formattedUsername);
-            Picasso.with(avatar.getContext())
-                    .load(account.getAvatar())
-                    .placeholder(R.drawable.avatar_default)
-                    .into(avatar);
+            ImageLoadingHelper.loadAvatar(account.getAvatar(), avatar, false);
         }
 
         void setupActionListener(final AccountActionListener listener, final boolean muted,
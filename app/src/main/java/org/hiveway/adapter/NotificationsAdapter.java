@@ -29,7 +29,6 @@ import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.StyleSpan;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
@@ -42,13 +41,13 @@ import org.hiveway.entity.Notification;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.LinkListener;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.util.ContentPreparer;
 import org.hiveway.util.CustomEmojiHelper;
-import org.hiveway.util.DateUtils;
+import org.hiveway.util.ImageLoadingHelper;
 import org.hiveway.util.LinkHelper;
-import org.hiveway.view.RoundedTransformation;
+import org.hiveway.util.TimestampTicker;
 import org.hiveway.viewdata.NotificationViewData;
 import org.hiveway.viewdata.StatusViewData;
-import com.squareup.picasso.Picasso;
 
 import org.hiveway.util.LinkHelper;
 import org.hiveway.viewdata.NotificationViewData;
@@ -58,17 +57,19 @@ import java.util.Date;
 import java.util.List;
 
 public class NotificationsAdapter extends RecyclerView.Adapter {
-    private static final int VIEW_TYPE_MENTION = 0;
-    private static final int VIEW_TYPE_FOOTER = 1;
-    private static final int VIEW_TYPE_STATUS_NOTIFICATION = 2;
-    private static final int VIEW_TYPE_FOLLOW = 3;
-    private static final int VIEW_TYPE_PLACEHOLDER = 4;
+    private static final int VIEW_TYPE_MENTION = StatusViewPool.VIEW_TYPE_STATUS;
+    private static final int VIEW_TYPE_FOOTER = StatusViewPool.VIEW_TYPE_FOOTER;
+    private static final int VIEW_TYPE_STATUS_NOTIFICATION =
+            StatusViewPool.VIEW_TYPE_STATUS_NOTIFICATION;
+    private static final int VIEW_TYPE_FOLLOW = StatusViewPool.VIEW_TYPE_FOLLOW;
+    private static final int VIEW_TYPE_PLACEHOLDER = StatusViewPool.VIEW_TYPE_PLACEHOLDER;
 
     private List<NotificationViewData> notifications;
     private StatusActionListener statusListener;
     private NotificationActionListener notificationActionListener;
     private FooterViewHolder.State footerState;
     private boolean mediaPreviewEnabled;
+    private final ContentPreparer.TextMetrics textMetrics = new ContentPreparer.TextMetrics();
 
     public NotificationsAdapter(StatusActionListener statusListener,
                                 NotificationActionListener notificationActionListener) {
@@ -82,34 +83,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        switch (viewType) {
-            default:
-            case VIEW_TYPE_MENTION: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_status, parent, false);
-                return new StatusViewHolder(view);
-            }
-            case VIEW_TYPE_FOOTER: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_footer, parent, false);
-                return new FooterViewHolder(view);
-            }
-            case VIEW_TYPE_STATUS_NOTIFICATION: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_status_notification, parent, false);
-                return new StatusNotificationViewHolder(view);
-            }
-            case VIEW_TYPE_FOLLOW: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_follow, parent, false);
-                return new FollowViewHolder(view);
-            }
-            case VIEW_TYPE_PLACEHOLDER: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_status_placeholder, parent, false);
-                return new PlaceholderViewHolder(view);
-            }
-        }
+        return StatusViewPool.createViewHolder(parent, viewType);
     }
 
     @Override
@@ -131,6 +105,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
                     StatusViewData.Concrete status = concreteNotificaton.getStatusViewData();
                     holder.setupWithStatus(status,
                             statusListener, mediaPreviewEnabled);
+                    textMetrics.update(holder.getContentView());
                     break;
                 }
                 case FAVOURITE:
@@ -169,6 +144,19 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
             FooterViewHolder holder = (FooterViewHolder) viewHolder;
             holder.setState(footerState);
         }
+        prepareAhead(position);
+    }
+
+    private void prepareAhead(int position) {
+        int end = Math.min(notifications.size(), position + 1 + ContentPreparer.PREPARE_AHEAD);
+        for (int i = position + 1; i < end; i++) {
+            NotificationViewData notification = notifications.get(i);
+            if (notification instanceof NotificationViewData.Concrete) {
+                ContentPreparer.prepare(
+                        ((NotificationViewData.Concrete) notification).getStatusViewData(),
+                        textMetrics);
+            }
+        }
     }
 
     @Override
@@ -247,7 +235,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
 
     }
 
-    private static class FollowViewHolder extends RecyclerView.ViewHolder {
+    static class FollowViewHolder extends RecyclerView.ViewHolder {
         private TextView message;
         private TextView usernameView;
         private TextView displayNameView;
@@ -277,16 +265,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
 
             displayNameView.setText(displayName);
 
-            if (TextUtils.isEmpty(avatarUrl)) {
-                avatar.setImageResource(R.drawable.avatar_default);
-            } else {
-                Picasso.with(context)
-                        .load(avatarUrl)
-                        .fit()
-                        .transform(new RoundedTransformation(7, 0))
-                        .placeholder(R.drawable.avatar_default)
-                        .into(avatar);
-            }
+            ImageLoadingHelper.loadAvatar(avatarUrl, avatar);
         }
 
         void setupButtons(final NotificationActionListener listener, final String accountId) {
@@ -294,7 +273,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
         }
     }
 
-    private static class StatusNotificationViewHolder extends RecyclerView.ViewHolder
+    static class StatusNotificationViewHolder extends RecyclerView.ViewHolder
             implements View.OnClickListener, ToggleButton.OnCheckedChangeListener {
         private final TextView message;
         private final View statusNameBar;
@@ -360,25 +339,7 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
         }
 
         private void setCreatedAt(@Nullable Date createdAt) {
-            // This is the visible timestampInfo.
-            String readout;
-        /* This one is for screen-readers. Frequently, they would mispronounce timestamps like "17m"
-         * as 17 meters instead of minutes. */
-            CharSequence readoutAloud;
-            if (createdAt != null) {
-                long then = createdAt.getTime();
-                long now = new Date().getTime();
-                readout = DateUtils.getRelativeTimeSpanString(timestampInfo.getContext(), then, now);
-                readoutAloud = android.text.format.DateUtils.getRelativeTimeSpanString(then, now,
-                        android.text.format.DateUtils.SECOND_IN_MILLIS,
-                        android.text.format.DateUtils.FORMAT_ABBREV_RELATIVE);
-            } else {
-                // unknown minutes~
-                readout = "?m";
-                readoutAloud = "? minutes";
-            }
-            timestampInfo.setText(readout);
-            timestampInfo.setContentDescription(readoutAloud);
+            TimestampTicker.bind(timestampInfo, createdAt);
         }
 
         void setMessage(NotificationViewData.Concrete notificationViewData, LinkListener listener) {
@@ -436,28 +397,8 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
         }
 
         void setAvatars(@Nullable String statusAvatarUrl, @Nullable String notificationAvatarUrl) {
-            Context context = statusAvatar.getContext();
-
-            if (TextUtils.isEmpty(statusAvatarUrl)) {
-                statusAvatar.setImageResource(R.drawable.avatar_default);
-            } else {
-                Picasso.with(context)
-                        .load(statusAvatarUrl)
-                        .placeholder(R.drawable.avatar_default)
-                        .transform(new RoundedTransformation(7, 0))
-                        .into(statusAvatar);
-            }
-
-            if (TextUtils.isEmpty(notificationAvatarUrl)) {
-                notificationAvatar.setImageResource(R.drawable.avatar_default);
-            } else {
-                Picasso.with(context)
-                        .load(notificationAvatarUrl)
-                        .placeholder(R.drawable.avatar_default)
-                        .fit()
-                        .transform(new RoundedTransformation(7, 0))
-                        .into(notificationAvatar);
-            }
+            ImageLoadingHelper.loadAvatar(statusAvatarUrl, statusAvatar);
+            ImageLoadingHelper.loadAvatar(notificationAvatarUrl, notificationAvatar);
         }
 
         @Override
@@ -486,9 +427,11 @@ public class NotificationsAdapter extends RecyclerView.Adapter {
             Spanned content = statusViewData.getContent();
             List<Status.Emoji> emojis = statusViewData.getEmojis();
 
-            Spanned emojifiedText = CustomEmojiHelper.emojifyText(content, emojis, statusContent);
+            Spanned clickableText = ContentPreparer.getClickableText(statusViewData.getId(), content,
+                    statusViewData.getMentions());
+            Spanned emojifiedText = CustomEmojiHelper.emojifyText(clickableText, emojis, statusContent);
 
-            LinkHelper.setClickableText(statusContent, emojifiedText, statusViewData.getMentions(), listener);
+            LinkHelper.applyClickableText(statusContent, emojifiedText, listener);
 
 
             Spanned emojifiedContentWarning =
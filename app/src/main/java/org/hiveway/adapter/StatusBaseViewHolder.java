@@ -38,12 +38,13 @@ import org.hiveway.R;
 import org.hiveway.entity.Attachment;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.util.ContentPreparer;
 import org.hiveway.util.CustomEmojiHelper;
-import org.hiveway.util.DateUtils;
 import org.hiveway.util.HtmlUtils;
+import org.hiveway.util.ImageLoadingHelper;
 import org.hiveway.util.LinkHelper;
 import org.hiveway.util.ThemeUtils;
-import org.hiveway.view.RoundedTransformation;
+import org.hiveway.util.TimestampTicker;
 import org.hiveway.viewdata.StatusViewData;
 import com.mikepenz.iconics.utils.Utils;
 import com.squareup.picasso.Picasso;
@@ -53,11 +54,9 @@ import com.varunest.sparkbutton.SparkEventListener;
 import org.hiveway.entity.Attachment;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.StatusActionListener;
-import org.hiveway.util.DateUtils;
 import org.hiveway.util.HtmlUtils;
 import org.hiveway.util.LinkHelper;
 import org.hiveway.util.ThemeUtils;
-import org.hiveway.view.RoundedTransformation;
 import org.hiveway.viewdata.StatusViewData;
 
 import java.util.Date;
@@ -135,45 +134,24 @@ abstract class StatusBaseViewHolder extends RecyclerView.ViewHolder {
         username.setText(usernameText);
     }
 
-    private void setContent(Spanned content, Status.Mention[] mentions, List<Status.Emoji> emojis,
-                            StatusActionListener listener) {
-        Spanned emojifiedText = CustomEmojiHelper.emojifyText(content, emojis, this.content);
+    private void setContent(String id, Spanned content, Status.Mention[] mentions,
+                            List<Status.Emoji> emojis, StatusActionListener listener) {
+        Spanned clickableText = ContentPreparer.getClickableText(id, content, mentions);
+        Spanned emojifiedText = CustomEmojiHelper.emojifyText(clickableText, emojis, this.content);
 
-        LinkHelper.setClickableText(this.content, emojifiedText, mentions, listener);
+        LinkHelper.applyClickableText(this.content, emojifiedText, listener);
+    }
+
+    TextView getContentView() {
+        return content;
     }
 
     void setAvatar(String url, @Nullable String rebloggedUrl) {
-        if (url.isEmpty()) {
-            avatar.setImageResource(R.drawable.avatar_default);
-        } else {
-            Picasso.with(avatar.getContext())
-                    .load(url)
-                    .placeholder(R.drawable.avatar_default)
-                    .transform(new RoundedTransformation(7, 0))
-                    .into(avatar);
-        }
+        ImageLoadingHelper.loadAvatar(url, avatar);
     }
 
     protected void setCreatedAt(@Nullable Date createdAt) {
-        // This is the visible timestampInfo.
-        String readout;
-        /* This one is for screen-readers. Frequently, they would mispronounce timestamps like "17m"
-         * as 17 meters instead of minutes. */
-        CharSequence readoutAloud;
-        if (createdAt != null) {
-            long then = createdAt.getTime();
-            long now = new Date().getTime();
-            readout = DateUtils.getRelativeTimeSpanString(timestampInfo.getContext(), then, now);
-            readoutAloud = android.text.format.DateUtils.getRelativeTimeSpanString(then, now,
-                    android.text.format.DateUtils.SECOND_IN_MILLIS,
-                    android.text.format.DateUtils.FORMAT_ABBREV_RELATIVE);
-        } else {
-            // unknown minutes~
-            readout = "?m";
-            readoutAloud = "? minutes";
-        }
-        timestampInfo.setText(readout);
-        timestampInfo.setContentDescription(readoutAloud);
+        TimestampTicker.bind(timestampInfo, createdAt);
     }
 
     protected void showContent(boolean show) {
@@ -264,10 +242,7 @@ abstract class StatusBaseViewHolder extends RecyclerView.ViewHolder {
             if (previewUrl == null || previewUrl.isEmpty()) {
                 Picasso.with(context).load(mediaPreviewUnloadedId).into(previews[i]);
             } else {
-                Picasso.with(context)
-                        .load(previewUrl)
-                        .placeholder(mediaPreviewUnloadedId)
-                        .into(previews[i]);
+                ImageLoadingHelper.loadThumbnail(previewUrl, previews[i], mediaPreviewUnloadedId);
             }
 
             final Attachment.Type type = attachments[i].getType();
@@ -530,7 +505,8 @@ abstract class StatusBaseViewHolder extends RecyclerView.ViewHolder {
         setUsername(status.getNickname());
         setCreatedAt(status.getCreatedAt());
         setIsReply(status.getInReplyToId() != null);
-        setContent(status.getContent(), status.getMentions(), status.getEmojis(), listener);
+        setContent(status.getId(), status.getContent(), status.getMentions(), status.getEmojis(),
+                listener);
         setAvatar(status.getAvatar(), status.getRebloggedAvatar());
         setReblogged(status.isReblogged());
         setFavourited(status.isFavourited());
@@ -18,6 +18,7 @@
 package org.hiveway.adapter;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.support.annotation.Nullable;
 import android.text.SpannableStringBuilder;
@@ -147,6 +148,7 @@ class StatusDetailedViewHolder extends StatusBaseViewHolder {
                         .load(card.getImage())
                         .fit()
                         .centerCrop()
+                        .config(Bitmap.Config.RGB_565)
                         .into(cardImage);
 
             } else {
@@ -27,10 +27,9 @@ import android.widget.TextView;
 
 import org.hiveway.R;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.util.ImageLoadingHelper;
 import org.hiveway.util.ThemeUtils;
-import org.hiveway.view.RoundedTransformation;
 import org.hiveway.viewdata.StatusViewData;
-import com.squareup.picasso.Picasso;
 import com.varunest.sparkbutton.helpers.Utils;
 
 import org.hiveway.util.ThemeUtils;
@@ -64,11 +63,8 @@ public class StatusViewHolder extends StatusBaseViewHolder {
 
         if (hasReblog) {
             avatarReblog.setVisibility(View.VISIBLE);
-            Picasso.with(context)
-                    .load(rebloggedUrl)
-                    .fit()
-                    .transform(new RoundedTransformation(7, 0))
-                    .into(avatarReblog);
+            // same size as the other avatars, the reblogger is often in the timeline too
+            ImageLoadingHelper.loadAvatar(rebloggedUrl, avatarReblog);
         } else {
             avatarReblog.setVisibility(View.GONE);
         }
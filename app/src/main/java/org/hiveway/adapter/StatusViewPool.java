@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.adapter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.hiveway.R;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Rows of the status lists: timelines, notifications and threads. All of these lists in an
+ * activity share one pool of unused rows, so switching between the tabs or opening a list finds
+ * rows to reuse instead of inflating the deep status layout again.
+ *
+ * The rows keep the context and theme of the activity they were inflated for, so each activity
+ * has its own pool. It is dropped with {@link #release(Context)} when the activity is destroyed.
+ *
+ * {@link #prefill(Context)} fills the pool ahead of time: once the main thread is idle the rows
+ * are inflated on a background thread and only their view holders are created on the main thread.
+ */
+public final class StatusViewPool {
+    private static final String TAG = "StatusViewPool";
+
+    /* view types, the same in all status adapters since they share the pool */
+    static final int VIEW_TYPE_STATUS = 0;
+    static final int VIEW_TYPE_FOOTER = 1;
+    static final int VIEW_TYPE_PLACEHOLDER = 2;
+    static final int VIEW_TYPE_STATUS_NOTIFICATION = 3;
+    static final int VIEW_TYPE_FOLLOW = 4;
+    static final int VIEW_TYPE_STATUS_DETAILED = 5;
+
+    /* by view type: how many unused rows the pool keeps */
+    private static final int[] CAPACITY = {15, 2, 4, 8, 4, 1};
+    /* by view type: how many rows prefill() inflates ahead of time */
+    private static final int[] PREFILL = {8, 0, 1, 2, 0, 0};
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "StatusViewPool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /* by activity; only touched on the main thread */
+    private static final Map<Context, StatusViewPool> pools = new HashMap<>();
+
+    private final Context context;
+    private final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+    /* RecyclerView empties a pool as soon as no list uses it anymore, or when the first list
+     * sets its adapter. This list is never shown and keeps it in use as long as the activity. */
+    private final RecyclerView anchor;
+    private final PrefillAdapter prefillAdapter = new PrefillAdapter();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean prefilling;
+    private boolean released;
+
+    private StatusViewPool(Context context) {
+        this.context = context;
+        for (int viewType = 0; viewType < CAPACITY.length; viewType++) {
+            pool.setMaxRecycledViews(viewType, CAPACITY[viewType]);
+        }
+        anchor = new RecyclerView(context);
+        anchor.setLayoutManager(new LinearLayoutManager(context));
+        anchor.setRecycledViewPool(pool);
+        anchor.setAdapter(prefillAdapter);
+    }
+
+    /**
+     * @param context the activity the list is shown in
+     * @return the pool shared by all status lists of the activity
+     */
+    @NonNull
+    public static RecyclerView.RecycledViewPool get(@NonNull Context context) {
+        return of(context).pool;
+    }
+
+    /**
+     * Inflates some rows of each kind for the pool of {@code context} as soon as the main thread
+     * has nothing else to do.
+     */
+    public static void prefill(@NonNull Context context) {
+        final StatusViewPool viewPool = of(context);
+        Looper.myQueue().addIdleHandler(() -> {
+            viewPool.startPrefill();
+            return false;
+        });
+    }
+
+    /**
+     * Drops the pool of {@code context}, to be called when the activity is destroyed.
+     */
+    public static void release(@NonNull Context context) {
+        StatusViewPool viewPool = pools.remove(context);
+        if (viewPool != null) {
+            viewPool.released = true;
+            viewPool.pool.clear();
+        }
+    }
+
+    static RecyclerView.ViewHolder createViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(getLayout(viewType), parent, false);
+        return newViewHolder(view, viewType);
+    }
+
+    private static StatusViewPool of(Context context) {
+        StatusViewPool viewPool = pools.get(context);
+        if (viewPool == null) {
+            viewPool = new StatusViewPool(context);
+            pools.put(context, viewPool);
+        }
+        return viewPool;
+    }
+
+    @LayoutRes
+    private static int getLayout(int viewType) {
+        switch (viewType) {
+            default:
+            case VIEW_TYPE_STATUS:
+                return R.layout.item_status;
+            case VIEW_TYPE_FOOTER:
+                return R.layout.item_footer;
+            case VIEW_TYPE_PLACEHOLDER:
+                return R.layout.item_status_placeholder;
+            case VIEW_TYPE_STATUS_NOTIFICATION:
+                return R.layout.item_status_notification;
+            case VIEW_TYPE_FOLLOW:
+                return R.layout.item_follow;
+            case VIEW_TYPE_STATUS_DETAILED:
+                return R.layout.item_status_detailed;
+        }
+    }
+
+    private static RecyclerView.ViewHolder newViewHolder(View view, int viewType) {
+        switch (viewType) {
+            default:
+            case VIEW_TYPE_STATUS:
+                return new StatusViewHolder(view);
+            case VIEW_TYPE_FOOTER:
+                return new FooterViewHolder(view);
+            case VIEW_TYPE_PLACEHOLDER:
+                return new PlaceholderViewHolder(view);
+            case VIEW_TYPE_STATUS_NOTIFICATION:
+                return new NotificationsAdapter.StatusNotificationViewHolder(view);
+            case VIEW_TYPE_FOLLOW:
+                return new NotificationsAdapter.FollowViewHolder(view);
+            case VIEW_TYPE_STATUS_DETAILED:
+                return new StatusDetailedViewHolder(view);
+        }
+    }
+
+    private void startPrefill() {
+        if (released || prefilling) {
+            return;
+        }
+        final List<Integer> missing = new ArrayList<>();
+        for (int viewType = 0; viewType < PREFILL.length; viewType++) {
+            for (int i = pool.getRecycledViewCount(viewType); i < PREFILL[viewType]; i++) {
+                missing.add(viewType);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        prefilling = true;
+        // a clone keeps the factory of the support library, which replaces widgets by their
+        // compat versions and loads vector drawables
+        final LayoutInflater inflater = LayoutInflater.from(context).cloneInContext(context);
+        executor.execute(() -> {
+            for (final int viewType : missing) {
+                final View view;
+                try {
+                    view = inflater.inflate(getLayout(viewType), anchor, false);
+                } catch (RuntimeException e) {
+                    // some view could not be created outside of the main thread, the lists will
+                    // inflate their rows themselves
+                    Log.w(TAG, "Could not inflate rows in the background", e);
+                    break;
+                }
+                mainHandler.post(() -> add(view, viewType));
+            }
+            mainHandler.post(() -> prefilling = false);
+        });
+    }
+
+    private void add(View view, int viewType) {
+        if (released || pool.getRecycledViewCount(viewType) >= CAPACITY[viewType]) {
+            return;
+        }
+        prefillAdapter.view = view;
+        // only the adapter can tell the view holder its type, which the pool needs
+        pool.putRecycledView(prefillAdapter.createViewHolder(anchor, viewType));
+        prefillAdapter.view = null;
+    }
+
+    /**
+     * Hands out the rows inflated in the background as view holders.
+     */
+    private static final class PrefillAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        View view;
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return newViewHolder(view, viewType);
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) { }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+}
@@ -19,11 +19,8 @@ package org.hiveway.adapter;
 
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
-import android.view.LayoutInflater;
-import android.view.View;
 import android.view.ViewGroup;
 
-import org.hiveway.R;
 import org.hiveway.interfaces.StatusActionListener;
 import org.hiveway.viewdata.StatusViewData;
 
@@ -31,8 +28,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ThreadAdapter extends RecyclerView.Adapter {
-    private static final int VIEW_TYPE_STATUS = 0;
-    private static final int VIEW_TYPE_STATUS_DETAILED = 1;
+    private static final int VIEW_TYPE_STATUS = StatusViewPool.VIEW_TYPE_STATUS;
+    private static final int VIEW_TYPE_STATUS_DETAILED = StatusViewPool.VIEW_TYPE_STATUS_DETAILED;
 
     private List<StatusViewData.Concrete> statuses;
     private StatusActionListener statusActionListener;
@@ -48,19 +45,7 @@ public class ThreadAdapter extends RecyclerView.Adapter {
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        switch (viewType) {
-            default:
-            case VIEW_TYPE_STATUS: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_status, parent, false);
-                return new StatusViewHolder(view);
-            }
-            case VIEW_TYPE_STATUS_DETAILED: {
-                View view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_status_detailed, parent, false);
-                return new StatusDetailedViewHolder(view);
-            }
-        }
+        return StatusViewPool.createViewHolder(parent, viewType);
     }
 
     @Override
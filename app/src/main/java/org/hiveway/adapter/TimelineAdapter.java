@@ -17,34 +17,61 @@
 
 package org.hiveway.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import org.hiveway.R;
+import org.hiveway.entity.Attachment;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.util.ChunkedList;
+import org.hiveway.util.ContentPreparer;
 import org.hiveway.viewdata.StatusViewData;
 
-import org.hiveway.interfaces.StatusActionListener;
-
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+/**
+ * Shows a timeline. New versions of the list passed to {@link #update(List)} are compared with the
+ * shown one on a background thread, so only the rows which actually changed are bound again and
+ * the scroll position survives.
+ *
+ * Until a diff is applied the rows still show the older list, while the listener works on the
+ * newest one. Positions of clicked rows are therefore looked up by the id of the bound item in the
+ * newest list before the listener gets them.
+ */
 public class TimelineAdapter extends RecyclerView.Adapter {
-    private static final int VIEW_TYPE_STATUS = 0;
-    private static final int VIEW_TYPE_FOOTER = 1;
-    private static final int VIEW_TYPE_PLACEHOLDER = 2;
+    private static final int VIEW_TYPE_STATUS = StatusViewPool.VIEW_TYPE_STATUS;
+    private static final int VIEW_TYPE_FOOTER = StatusViewPool.VIEW_TYPE_FOOTER;
+    private static final int VIEW_TYPE_PLACEHOLDER = StatusViewPool.VIEW_TYPE_PLACEHOLDER;
 
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TimelineDiff");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /* the list the RecyclerView currently shows; never modified while a diff may read it */
     private List<StatusViewData> statuses;
+    /* the newest list, if it is still being compared with the shown one */
+    @Nullable
+    private List<StatusViewData> pendingStatuses;
+    /* incremented for every new list, so results of outdated diffs are dropped */
+    private int generation;
     private StatusActionListener statusListener;
+    private final StatusActionListener rowListener = new RowListener();
     private FooterViewHolder.State footerState;
     private boolean mediaPreviewEnabled;
+    private final ContentPreparer.TextMetrics textMetrics = new ContentPreparer.TextMetrics();
 
     public TimelineAdapter(StatusActionListener statusListener) {
         super();
-        statuses = new ArrayList<>();
+        statuses = new ChunkedList<>();
         this.statusListener = statusListener;
         footerState = FooterViewHolder.State.END;
         mediaPreviewEnabled = true;
@@ -52,24 +79,7 @@ public class TimelineAdapter extends RecyclerView.Adapter {
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
-        switch (viewType) {
-            default:
-            case VIEW_TYPE_STATUS: {
-                View view = LayoutInflater.from(viewGroup.getContext())
-                        .inflate(R.layout.item_status, viewGroup, false);
-                return new StatusViewHolder(view);
-            }
-            case VIEW_TYPE_FOOTER: {
-                View view = LayoutInflater.from(viewGroup.getContext())
-                        .inflate(R.layout.item_footer, viewGroup, false);
-                return new FooterViewHolder(view);
-            }
-            case VIEW_TYPE_PLACEHOLDER: {
-                View view = LayoutInflater.from(viewGroup.getContext())
-                        .inflate(R.layout.item_status_placeholder, viewGroup, false);
-                return new PlaceholderViewHolder(view);
-            }
-        }
+        return StatusViewPool.createViewHolder(viewGroup, viewType);
     }
 
     @Override
@@ -78,18 +88,27 @@ public class TimelineAdapter extends RecyclerView.Adapter {
             StatusViewData status = statuses.get(position);
             if (status instanceof StatusViewData.Placeholder) {
                 PlaceholderViewHolder holder = (PlaceholderViewHolder) viewHolder;
-                holder.setup(!((StatusViewData.Placeholder) status).isLoading(), statusListener);
+                holder.setup(!((StatusViewData.Placeholder) status).isLoading(), rowListener);
             } else {
 
                 StatusViewHolder holder = (StatusViewHolder) viewHolder;
                 holder.setupWithStatus((StatusViewData.Concrete) status,
-                        statusListener, mediaPreviewEnabled);
+                        rowListener, mediaPreviewEnabled);
+                textMetrics.update(holder.getContentView());
             }
 
         } else {
             FooterViewHolder holder = (FooterViewHolder) viewHolder;
             holder.setState(footerState);
         }
+        prepareAhead(position);
+    }
+
+    private void prepareAhead(int position) {
+        int end = Math.min(statuses.size(), position + 1 + ContentPreparer.PREPARE_AHEAD);
+        for (int i = position + 1; i < end; i++) {
+            ContentPreparer.prepare(statuses.get(i), textMetrics);
+        }
     }
 
     @Override
@@ -114,26 +133,68 @@ public class TimelineAdapter extends RecyclerView.Adapter {
         if (newStatuses == null || newStatuses.isEmpty()) {
             return;
         }
-        statuses.clear();
-        statuses.addAll(newStatuses);
-        notifyDataSetChanged();
+        List<StatusViewData> newList = new ChunkedList<>(newStatuses);
+        if (statuses.isEmpty() && pendingStatuses == null) {
+            statuses = newList;
+            notifyItemRangeInserted(0, newList.size());
+            return;
+        }
+        submit(newList);
     }
 
     public void addItems(List<StatusViewData> newStatuses) {
+        if (pendingStatuses != null) {
+            List<StatusViewData> newList = new ChunkedList<>(pendingStatuses);
+            newList.addAll(newStatuses);
+            submit(newList);
+            return;
+        }
+        int start = statuses.size();
         statuses.addAll(newStatuses);
-        notifyItemRangeInserted(statuses.size(), newStatuses.size());
+        notifyItemRangeInserted(start, newStatuses.size());
     }
 
+    /**
+     * @param position position in the newest list passed to the adapter, which may not be shown
+     *                 yet
+     */
     public void changeItem(int position, StatusViewData newData, boolean notifyAdapter) {
+        if (pendingStatuses != null) {
+            // the shown list is being read by the diff, apply the change to the next one instead
+            List<StatusViewData> newList = new ChunkedList<>(pendingStatuses);
+            newList.set(position, newData);
+            submit(newList);
+            return;
+        }
         statuses.set(position, newData);
         if (notifyAdapter) notifyItemChanged(position);
     }
 
     public void clear() {
-        statuses.clear();
+        generation++;
+        pendingStatuses = null;
+        statuses = new ChunkedList<>();
         notifyDataSetChanged();
     }
 
+    private void submit(final List<StatusViewData> newList) {
+        final int submitted = ++generation;
+        final List<StatusViewData> oldList = statuses;
+        pendingStatuses = newList;
+        DIFF_EXECUTOR.execute(() -> {
+            final DiffUtil.DiffResult result =
+                    DiffUtil.calculateDiff(new DiffCallback(oldList, newList), false);
+            mainHandler.post(() -> {
+                if (submitted != generation) {
+                    return;
+                }
+                statuses = newList;
+                pendingStatuses = null;
+                result.dispatchUpdatesTo(TimelineAdapter.this);
+            });
+        });
+    }
+
     public void setFooterState(FooterViewHolder.State newFooterState) {
         FooterViewHolder.State oldValue = footerState;
         footerState = newFooterState;
@@ -145,4 +206,162 @@ public class TimelineAdapter extends RecyclerView.Adapter {
     public void setMediaPreviewEnabled(boolean enabled) {
         mediaPreviewEnabled = enabled;
     }
+
+    /**
+     * @param position position of a row in the shown list
+     * @return the position of the same item in the newest list passed to the adapter, or -1 if it
+     * is not in there anymore
+     */
+    private int toNewestPosition(int position) {
+        List<StatusViewData> newest = pendingStatuses;
+        if (newest == null || position < 0) {
+            return position;
+        }
+        if (position >= statuses.size()) {
+            return -1;
+        }
+        StatusViewData item = statuses.get(position);
+        if (item instanceof StatusViewData.Concrete) {
+            return indexOfId(newest, ((StatusViewData.Concrete) item).getId());
+        }
+        // placeholders have no id, they are found by the status above them
+        int next = 0;
+        if (position > 0) {
+            StatusViewData above = statuses.get(position - 1);
+            if (!(above instanceof StatusViewData.Concrete)) {
+                return -1;
+            }
+            int aboveIndex = indexOfId(newest, ((StatusViewData.Concrete) above).getId());
+            if (aboveIndex == -1) {
+                return -1;
+            }
+            next = aboveIndex + 1;
+        }
+        return next < newest.size() && newest.get(next) instanceof StatusViewData.Placeholder
+                ? next : -1;
+    }
+
+    private static int indexOfId(List<StatusViewData> list, String id) {
+        for (int i = 0; i < list.size(); i++) {
+            StatusViewData item = list.get(i);
+            if (item instanceof StatusViewData.Concrete
+                    && ((StatusViewData.Concrete) item).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hands the events of the rows to the listener, with positions in the newest list. Events of
+     * rows whose item is gone from it are dropped.
+     */
+    private final class RowListener implements StatusActionListener {
+        @Override
+        public void onReply(int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onReply(position);
+        }
+
+        @Override
+        public void onReblog(boolean reblog, int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onReblog(reblog, position);
+        }
+
+        @Override
+        public void onFavourite(boolean favourite, int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onFavourite(favourite, position);
+        }
+
+        @Override
+        public void onMore(View view, int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onMore(view, position);
+        }
+
+        @Override
+        public void onViewMedia(String[] urls, int index, Attachment.Type type, View view) {
+            statusListener.onViewMedia(urls, index, type, view);
+        }
+
+        @Override
+        public void onViewThread(int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onViewThread(position);
+        }
+
+        @Override
+        public void onOpenReblog(int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onOpenReblog(position);
+        }
+
+        @Override
+        public void onExpandedChange(boolean expanded, int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onExpandedChange(expanded, position);
+        }
+
+        @Override
+        public void onContentHiddenChange(boolean isShowing, int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onContentHiddenChange(isShowing, position);
+        }
+
+        @Override
+        public void onLoadMore(int position) {
+            position = toNewestPosition(position);
+            if (position != -1) statusListener.onLoadMore(position);
+        }
+
+        @Override
+        public void onViewTag(String tag) {
+            statusListener.onViewTag(tag);
+        }
+
+        @Override
+        public void onViewAccount(String id) {
+            statusListener.onViewAccount(id);
+        }
+    }
+
+    static final class DiffCallback extends DiffUtil.Callback {
+        private final List<StatusViewData> oldList;
+        private final List<StatusViewData> newList;
+
+        DiffCallback(List<StatusViewData> oldList, List<StatusViewData> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            StatusViewData oldItem = oldList.get(oldItemPosition);
+            StatusViewData newItem = newList.get(newItemPosition);
+            if (oldItem instanceof StatusViewData.Concrete
+                    && newItem instanceof StatusViewData.Concrete) {
+                return ((StatusViewData.Concrete) oldItem).getId()
+                        .equals(((StatusViewData.Concrete) newItem).getId());
+            }
+            return oldItem instanceof StatusViewData.Placeholder
+                    && newItem instanceof StatusViewData.Placeholder;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
+        }
+    }
 }
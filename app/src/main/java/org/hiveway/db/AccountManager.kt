@@ -20,6 +20,8 @@ package org.hiveway.db
 import android.util.Log
 import org.hiveway.HivewayApplication
 import org.hiveway.entity.Account
+import org.hiveway.network.NetworkProvider
+import org.hiveway.network.StreamingClient
 
 /**
  * This class caches the account database and handles all account related operations
@@ -27,6 +29,8 @@ import org.hiveway.entity.Account
  */
 
 private const val TAG = "AccountManager"
+/* changes made with saveAccount are collected for this long before they are written */
+private const val WRITE_DELAY_MS = 1000L
 
 class AccountManager {
 
@@ -34,6 +38,8 @@ class AccountManager {
 
     private var accounts: MutableList<AccountEntity> = mutableListOf()
     private val accountDao: AccountDao = org.hiveway.HivewayApplication.getDB().accountDao()
+    /* accounts changed with saveAccount which were not written yet, by database id */
+    private val pendingWrites = LinkedHashMap<Long, AccountEntity>()
 
     init {
         accounts = accountDao.loadAll().toMutableList()
@@ -56,7 +62,7 @@ class AccountManager {
             it.isActive = false
             Log.d(TAG, "addAccount: saving account with id "+it.id)
 
-            accountDao.insertOrReplace(it)
+            write(it)
         }
 
         activeAccount = AccountEntity(id = 0, domain = domain, accessToken = accessToken, isActive = true)
@@ -66,16 +72,46 @@ class AccountManager {
     /**
      * Saves an already known account to the database.
      * New accounts must be created with [addAccount]
+     * The account is written a moment later on the database thread, together with all changes
+     * made until then, so this can be called often and from any thread.
      * @param account the account to save
      */
     fun saveAccount(account: AccountEntity) {
         if(account.id != 0L) {
             Log.d(TAG, "saveAccount: saving account with id "+account.id)
-            accountDao.insertOrReplace(account)
+            synchronized(pendingWrites) {
+                val scheduled = pendingWrites.isNotEmpty()
+                pendingWrites[account.id] = account
+                if (!scheduled) {
+                    DbExecutor.schedule({ writePending() }, WRITE_DELAY_MS)
+                }
+            }
         }
 
     }
 
+    /**
+     * Writes the accounts saved with [saveAccount] right away and waits until that is done.
+     * For background work after which the process may be gone, not for the main thread.
+     */
+    fun flush() {
+        DbExecutor.await { writePending() }
+    }
+
+    /**
+     * Writes the accounts saved with [saveAccount] right away without waiting, then runs
+     * [onWritten] on the database thread. [onWritten] runs even if writing failed.
+     */
+    fun flush(onWritten: Runnable) {
+        DbExecutor.execute {
+            try {
+                writePending()
+            } finally {
+                onWritten.run()
+            }
+        }
+    }
+
     /**
      * Logs the current account out by deleting all data of the account.
      * @return the new active account, or null if no other account was found
@@ -85,14 +121,22 @@ class AccountManager {
         if(activeAccount == null) {
             return null
         } else {
-            accounts.remove(activeAccount!!)
-            accountDao.delete(activeAccount!!)
+            val loggedOut = activeAccount!!
+            accounts.remove(loggedOut)
+            synchronized(pendingWrites) {
+                pendingWrites.remove(loggedOut.id)
+            }
+            DbExecutor.execute { accountDao.delete(loggedOut) }
+            NetworkProvider.forgetAccount(loggedOut)
+            StreamingClient.close(loggedOut)
+            org.hiveway.HivewayApplication.getActionOutbox().removeAllForAccount(activeAccount!!.id)
+            org.hiveway.HivewayApplication.getTimelineCache().removeAllForAccount(activeAccount!!.id)
 
             if(accounts.size > 0) {
                 accounts[0].isActive = true
                 activeAccount = accounts[0]
                 Log.d(TAG, "logActiveAccountOut: saving account with id "+accounts[0].id)
-                accountDao.insertOrReplace(accounts[0])
+                write(accounts[0])
             } else {
                 activeAccount = null
             }
@@ -106,27 +150,43 @@ class AccountManager {
      * updates the current account with new information from the Hiveway api
      * and saves it in the database
      * @param account the [Account] object returned from the api
+     * @param onSaved runs on the main thread once the account is known with its database id
      */
-    fun updateActiveAccount(account: Account) {
-        activeAccount?.let{
-            it.accountId = account.id
-            it.username = account.username
-            it.displayName = account.name
-            it.profilePictureUrl = account.avatar
-
-            Log.d(TAG,  "updateActiveAccount: saving account with id "+it.id)
-            it.id = accountDao.insertOrReplace(it)
-
-            val accountIndex = accounts.indexOf(it)
-
-            if(accountIndex != -1) {
-                //in case the user was already logged in with this account, remove the old information
-                accounts.removeAt(accountIndex)
-                accounts.add(accountIndex, it)
-            } else {
-                accounts.add(it)
+    fun updateActiveAccount(account: Account, onSaved: Runnable) {
+        val active = activeAccount
+        if (active == null) {
+            onSaved.run()
+            return
+        }
+        active.accountId = account.id
+        active.username = account.username
+        active.displayName = account.name
+        active.profilePictureUrl = account.avatar
+
+        Log.d(TAG,  "updateActiveAccount: saving account with id "+active.id)
+        if (active.id == 0L) {
+            // a new account, only the insert gives it the database id everything else needs
+            DbExecutor.query({ accountDao.insertOrReplace(active) }) { id ->
+                active.id = id
+                addOrReplace(active)
+                onSaved.run()
             }
+        } else {
+            write(active)
+            addOrReplace(active)
+            onSaved.run()
+        }
+    }
 
+    private fun addOrReplace(account: AccountEntity) {
+        val accountIndex = accounts.indexOf(account)
+
+        if(accountIndex != -1) {
+            //in case the user was already logged in with this account, remove the old information
+            accounts.removeAt(accountIndex)
+            accounts.add(accountIndex, account)
+        } else {
+            accounts.add(account)
         }
     }
 
@@ -139,7 +199,7 @@ class AccountManager {
         activeAccount?.let{
             Log.d(TAG,  "setActiveAccount: saving account with id "+it.id)
             it.isActive = false
-            saveAccount(it)
+            write(it)
         }
 
         activeAccount = accounts.find { acc ->
@@ -148,7 +208,7 @@ class AccountManager {
 
         activeAccount?.let{
             it.isActive = true
-            accountDao.insertOrReplace(it)
+            write(it)
         }
     }
 
@@ -185,4 +245,25 @@ class AccountManager {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Writes [account] on the database thread right away, after what is waiting there.
+     */
+    private fun write(account: AccountEntity) {
+        synchronized(pendingWrites) {
+            pendingWrites.remove(account.id)
+        }
+        DbExecutor.execute { accountDao.insertOrReplace(account) }
+    }
+
+    private fun writePending() {
+        val waiting = synchronized(pendingWrites) {
+            val changed = pendingWrites.values.toList()
+            pendingWrites.clear()
+            changed
+        }
+        for (account in waiting) {
+            accountDao.insertOrReplace(account)
+        }
+    }
+
+}
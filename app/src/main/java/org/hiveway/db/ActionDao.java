@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Update;
+
+import java.util.List;
+
+/**
+ * DAO for the queue of actions waiting to be sent.
+ */
+
+@Dao
+public interface ActionDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long insert(ActionEntity action);
+
+    @Update
+    void update(ActionEntity action);
+
+    @Query("SELECT * FROM ActionEntity ORDER BY id ASC")
+    List<ActionEntity> loadAll();
+
+    @Query("DELETE FROM ActionEntity WHERE id = :id")
+    int delete(long id);
+
+    @Query("DELETE FROM ActionEntity WHERE accountId = :accountId")
+    int deleteAllForAccount(long accountId);
+}
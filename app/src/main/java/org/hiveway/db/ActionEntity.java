@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.arch.persistence.room.TypeConverter;
+import android.arch.persistence.room.TypeConverters;
+import android.support.annotation.Nullable;
+
+/**
+ * An action on a status or an account which has not been confirmed by the server yet.
+ */
+
+@Entity(indices = {@Index(value = {"accountId", "targetId"})})
+@TypeConverters(ActionEntity.Converters.class)
+public class ActionEntity {
+
+    public enum Type {
+        FAVOURITE,
+        UNFAVOURITE,
+        REBLOG,
+        UNREBLOG,
+        MUTE,
+        UNMUTE,
+        BLOCK,
+        UNBLOCK,
+        AUTHORIZE_FOLLOW_REQUEST,
+        REJECT_FOLLOW_REQUEST;
+
+        /**
+         * @return the action which undoes this one, or null if there is none
+         */
+        @Nullable
+        public Type opposite() {
+            switch (this) {
+                case FAVOURITE: return UNFAVOURITE;
+                case UNFAVOURITE: return FAVOURITE;
+                case REBLOG: return UNREBLOG;
+                case UNREBLOG: return REBLOG;
+                case MUTE: return UNMUTE;
+                case UNMUTE: return MUTE;
+                case BLOCK: return UNBLOCK;
+                case UNBLOCK: return BLOCK;
+                default: return null;
+            }
+        }
+    }
+
+    @PrimaryKey(autoGenerate = true)
+    private final long id;
+
+    /** id of the {@link AccountEntity} the action was made with */
+    @ColumnInfo(name = "accountId")
+    private final long accountId;
+
+    @ColumnInfo(name = "type")
+    private final Type type;
+
+    /** id of the status or account the action applies to */
+    @ColumnInfo(name = "targetId")
+    private final String targetId;
+
+    @ColumnInfo(name = "attempts")
+    private final int attempts;
+
+    @ColumnInfo(name = "nextAttemptAt")
+    private final long nextAttemptAt;
+
+    @ColumnInfo(name = "createdAt")
+    private final long createdAt;
+
+    public ActionEntity(long id, long accountId, Type type, String targetId, int attempts,
+                        long nextAttemptAt, long createdAt) {
+        this.id = id;
+        this.accountId = accountId;
+        this.type = type;
+        this.targetId = targetId;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTargetId() {
+        return targetId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public ActionEntity withId(long id) {
+        return new ActionEntity(id, accountId, type, targetId, attempts, nextAttemptAt, createdAt);
+    }
+
+    public ActionEntity withNextAttempt(long nextAttemptAt) {
+        return new ActionEntity(id, accountId, type, targetId, attempts + 1, nextAttemptAt,
+                createdAt);
+    }
+
+    public static final class Converters {
+
+        @TypeConverter
+        public Type typeFromString(String name) {
+            return Type.valueOf(name);
+        }
+
+        @TypeConverter
+        public String typeToString(Type type) {
+            return type.name();
+        }
+    }
+}
@@ -27,11 +27,14 @@ import android.support.annotation.NonNull;
  * DB version & declare DAO
  */
 
-@Database(entities = {PostEntity.class, AccountEntity.class}, version = 5, exportSchema = false)
+@Database(entities = {PostEntity.class, AccountEntity.class, ActionEntity.class,
+        TimelineStatusEntity.class}, version = 7, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     public abstract PostDao postDao();
     public abstract AccountDao accountDao();
+    public abstract ActionDao actionDao();
+    public abstract TimelineDao timelineDao();
 
     public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
         @Override
@@ -76,4 +79,29 @@ public abstract class AppDatabase extends RoomDatabase {
             database.execSQL("CREATE UNIQUE INDEX `index_AccountEntity_domain_accountId` ON `AccountEntity` (`domain`, `accountId`)");
         }
     };
-}
\ No newline at end of file
+
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE `ActionEntity` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`accountId` INTEGER NOT NULL, `type` TEXT, `targetId` TEXT, " +
+                    "`attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, " +
+                    "`createdAt` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX `index_ActionEntity_accountId_targetId` ON `ActionEntity` (`accountId`, `targetId`)");
+        }
+    };
+
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE `TimelineStatusEntity` (" +
+                    "`accountId` INTEGER NOT NULL, `timeline` TEXT NOT NULL, " +
+                    "`statusId` TEXT NOT NULL, `position` INTEGER NOT NULL, " +
+                    "`json` TEXT NOT NULL, `gapBelow` INTEGER NOT NULL, " +
+                    "`cachedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`accountId`, `timeline`, `statusId`))");
+            database.execSQL("CREATE INDEX `index_TimelineStatusEntity_accountId_timeline_position` ON `TimelineStatusEntity` (`accountId`, `timeline`, `position`)");
+        }
+    };
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thread accounts and saved posts are read and written on. There is only one, so writes
+ * happen in the order they were made and a read sees all writes made before it.
+ *
+ * A scheduled executor keeps what its tasks throw in a Future nobody reads, so every task is
+ * wrapped to log it instead.
+ */
+public final class DbExecutor {
+
+    public interface Callback<T> {
+        /**
+         * Called on the main thread with the result of the query.
+         */
+        void onResult(T result);
+    }
+
+    private static final String TAG = "DbExecutor";
+
+    private static final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Database");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private DbExecutor() { }
+
+    /**
+     * Runs {@code runnable} on the database thread. If it fails, the failure is logged.
+     */
+    public static void execute(@NonNull Runnable runnable) {
+        executor.execute(logFailure(runnable));
+    }
+
+    public static void schedule(@NonNull Runnable runnable, long delayMillis) {
+        executor.schedule(logFailure(runnable), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code query} on the database thread and hands its result to {@code callback} on the
+     * main thread. If the query fails, the failure is thrown on the main thread instead, just
+     * like it was when queries ran there.
+     */
+    public static <T> void query(@NonNull Callable<T> query, @NonNull Callback<T> callback) {
+        executor.execute(() -> {
+            final T result;
+            try {
+                result = query.call();
+            } catch (final Exception e) {
+                Log.e(TAG, "Query failed", e);
+                mainHandler.post(() -> {
+                    throw new RuntimeException(e);
+                });
+                return;
+            }
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Runs {@code query} on the database thread and waits for it. Only for the few places which
+     * can't go on without the result; never to be used for reads which could be asynchronous.
+     */
+    public static <T> T await(@NonNull Callable<T> query) {
+        Future<T> future = executor.submit(query);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the database", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Runnable logFailure(final Runnable runnable) {
+        return () -> {
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Database task failed", e);
+            }
+        };
+    }
+}
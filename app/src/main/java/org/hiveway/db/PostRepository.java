@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * The saved drafts. Everything happens on the {@link DbExecutor}, so it can be called from the
+ * main thread.
+ */
+public final class PostRepository {
+
+    private final PostDao dao;
+
+    public PostRepository(@NonNull PostDao dao) {
+        this.dao = dao;
+    }
+
+    public void save(@NonNull PostEntity post) {
+        DbExecutor.execute(() -> dao.insertOrReplace(post));
+    }
+
+    public void delete(int uid) {
+        DbExecutor.execute(() -> dao.delete(uid));
+    }
+
+    /**
+     * Loads all drafts, newest first.
+     */
+    public void loadAll(@NonNull DbExecutor.Callback<List<PostEntity>> callback) {
+        DbExecutor.query(dao::loadAll, callback);
+    }
+}
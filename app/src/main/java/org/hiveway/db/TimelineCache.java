@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.hiveway.entity.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the newest statuses of the home, local, federated and list timelines of every account on
+ * disk, so a timeline can be shown right away and only has to be brought up to date from the
+ * server. Positions of the "load more" placeholders are kept too.
+ *
+ * Disk use is bounded: every timeline keeps at most {@value #MAX_STATUSES_PER_TIMELINE} statuses,
+ * only the {@value #MAX_TIMELINES} most recently saved timelines are kept, and timelines which
+ * have not been saved for {@value #MAX_AGE_DAYS} days are dropped.
+ */
+public final class TimelineCache {
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the cached statuses, newest first, or an empty list.
+         */
+        void onLoaded(@NonNull List<Entry> entries);
+    }
+
+    public static final class Entry {
+        @NonNull
+        public final Status status;
+        /** statuses are missing between this one and the next */
+        public final boolean gapBelow;
+
+        public Entry(@NonNull Status status, boolean gapBelow) {
+            this.status = status;
+            this.gapBelow = gapBelow;
+        }
+    }
+
+    interface Transactions {
+        void runInTransaction(@NonNull Runnable body);
+    }
+
+    private static final String TAG = "TimelineCache";
+
+    public static final int MAX_STATUSES_PER_TIMELINE = 200;
+    static final int MAX_TIMELINES = 10;
+    static final int MAX_AGE_DAYS = 7;
+    /* several saves in a row, like leaving the screen and then the app, are written only once */
+    private static final long SAVE_DELAY_MS = 1000;
+
+    private final TimelineDao dao;
+    private final Transactions transactions;
+    private final Gson gson;
+    /* where callbacks are called */
+    private final Executor mainThread;
+    private final long saveDelayMs;
+    private final ScheduledExecutorService executor;
+    /* snapshots waiting to be written, by account id and timeline; only touched on the executor */
+    private final Map<String, List<Entry>> pendingSaves = new HashMap<>();
+
+    public TimelineCache(@NonNull AppDatabase db, @NonNull Gson gson) {
+        this(db.timelineDao(), db::runInTransaction, gson,
+                new Handler(Looper.getMainLooper())::post, SAVE_DELAY_MS);
+    }
+
+    TimelineCache(@NonNull TimelineDao dao, @NonNull Transactions transactions,
+                  @NonNull Gson gson, @NonNull Executor mainThread, long saveDelayMs) {
+        this.dao = dao;
+        this.transactions = transactions;
+        this.gson = gson;
+        this.mainThread = mainThread;
+        this.saveDelayMs = saveDelayMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TimelineCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads a cached timeline. Saves which are still waiting are written first, so the result is
+     * never older than the last {@link #save(long, String, List)}.
+     */
+    public void load(final long accountId, @NonNull final String timeline,
+                     @NonNull final Callback callback) {
+        executor.execute(() -> {
+            writePending(accountId, timeline);
+            List<Entry> entries = new ArrayList<>();
+            for (TimelineStatusEntity entity : dao.getTimeline(accountId, timeline)) {
+                Status status;
+                try {
+                    status = gson.fromJson(entity.getJson(), Status.class);
+                } catch (JsonParseException | IllegalStateException e) {
+                    Log.w(TAG, "could not read cached status " + entity.getStatusId(), e);
+                    status = null;
+                }
+                if (status != null) {
+                    entries.add(new Entry(status, entity.isGapBelow()));
+                } else if (!entries.isEmpty()) {
+                    /* a status that cannot be read anymore leaves a hole, which has to be loaded
+                     * from the server again */
+                    Entry previous = entries.remove(entries.size() - 1);
+                    entries.add(new Entry(previous.status, true));
+                }
+            }
+            final List<Entry> result = Collections.unmodifiableList(entries);
+            mainThread.execute(() -> callback.onLoaded(result));
+        });
+    }
+
+    /**
+     * Replaces the cached timeline with {@code entries}, newest first. Only the first
+     * {@value #MAX_STATUSES_PER_TIMELINE} are kept.
+     */
+    public void save(final long accountId, @NonNull final String timeline,
+                     @NonNull List<Entry> entries) {
+        final List<Entry> snapshot = new ArrayList<>(
+                entries.subList(0, Math.min(entries.size(), MAX_STATUSES_PER_TIMELINE)));
+        executor.execute(() -> {
+            String key = accountId + " " + timeline;
+            boolean scheduled = pendingSaves.containsKey(key);
+            pendingSaves.put(key, snapshot);
+            if (!scheduled) {
+                executor.schedule(() -> writePending(accountId, timeline), saveDelayMs,
+                        TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Drops all timelines of the account, used when it is logged out.
+     */
+    public void removeAllForAccount(final long accountId) {
+        executor.execute(() -> {
+            String prefix = accountId + " ";
+            List<String> keys = new ArrayList<>(pendingSaves.keySet());
+            for (String key : keys) {
+                if (key.startsWith(prefix)) {
+                    pendingSaves.remove(key);
+                }
+            }
+            dao.deleteAllForAccount(accountId);
+        });
+    }
+
+    private void writePending(long accountId, String timeline) {
+        final List<Entry> entries = pendingSaves.remove(accountId + " " + timeline);
+        if (entries == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        final List<TimelineStatusEntity> entities = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            entities.add(new TimelineStatusEntity(accountId, timeline, entry.status.getId(), i,
+                    gson.toJson(entry.status), entry.gapBelow, now));
+        }
+        transactions.runInTransaction(() -> {
+            dao.deleteTimeline(accountId, timeline);
+            dao.insertAll(entities);
+        });
+        evict(now);
+    }
+
+    private void evict(long now) {
+        dao.deleteOlderThan(now - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS));
+        List<TimelineStatusEntity.TimelineId> timelines = dao.getTimelinesByLastUse();
+        for (int i = MAX_TIMELINES; i < timelines.size(); i++) {
+            TimelineStatusEntity.TimelineId id = timelines.get(i);
+            dao.deleteTimeline(id.accountId, id.timeline);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO for the cached timelines.
+ */
+
+@Dao
+public interface TimelineDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<TimelineStatusEntity> statuses);
+
+    @Query("SELECT * FROM TimelineStatusEntity WHERE accountId = :accountId AND timeline = :timeline ORDER BY position ASC")
+    List<TimelineStatusEntity> getTimeline(long accountId, String timeline);
+
+    @Query("DELETE FROM TimelineStatusEntity WHERE accountId = :accountId AND timeline = :timeline")
+    int deleteTimeline(long accountId, String timeline);
+
+    @Query("DELETE FROM TimelineStatusEntity WHERE accountId = :accountId")
+    int deleteAllForAccount(long accountId);
+
+    @Query("DELETE FROM TimelineStatusEntity WHERE cachedAt < :cachedBefore")
+    int deleteOlderThan(long cachedBefore);
+
+    /**
+     * @return every cached timeline, the most recently saved first
+     */
+    @Query("SELECT accountId, timeline FROM TimelineStatusEntity GROUP BY accountId, timeline ORDER BY MAX(cachedAt) DESC")
+    List<TimelineStatusEntity.TimelineId> getTimelinesByLastUse();
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.support.annotation.NonNull;
+
+/**
+ * A status of a cached timeline, stored as the json it came in.
+ */
+
+@Entity(primaryKeys = {"accountId", "timeline", "statusId"},
+        indices = {@Index(value = {"accountId", "timeline", "position"})})
+public class TimelineStatusEntity {
+
+    /** id of the {@link AccountEntity} the timeline belongs to */
+    @ColumnInfo(name = "accountId")
+    private final long accountId;
+
+    /** which timeline of the account, see {@link TimelineCache} */
+    @NonNull
+    @ColumnInfo(name = "timeline")
+    private final String timeline;
+
+    @NonNull
+    @ColumnInfo(name = "statusId")
+    private final String statusId;
+
+    /** place in the timeline, 0 is the newest status */
+    @ColumnInfo(name = "position")
+    private final int position;
+
+    @NonNull
+    @ColumnInfo(name = "json")
+    private final String json;
+
+    /** true if statuses are missing between this one and the next, shown as a "load more" */
+    @ColumnInfo(name = "gapBelow")
+    private final boolean gapBelow;
+
+    @ColumnInfo(name = "cachedAt")
+    private final long cachedAt;
+
+    public TimelineStatusEntity(long accountId, @NonNull String timeline, @NonNull String statusId,
+                                int position, @NonNull String json, boolean gapBelow,
+                                long cachedAt) {
+        this.accountId = accountId;
+        this.timeline = timeline;
+        this.statusId = statusId;
+        this.position = position;
+        this.json = json;
+        this.gapBelow = gapBelow;
+        this.cachedAt = cachedAt;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    @NonNull
+    public String getTimeline() {
+        return timeline;
+    }
+
+    @NonNull
+    public String getStatusId() {
+        return statusId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    @NonNull
+    public String getJson() {
+        return json;
+    }
+
+    public boolean isGapBelow() {
+        return gapBelow;
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    /**
+     * Identifies one cached timeline.
+     */
+    public static class TimelineId {
+        public long accountId;
+        public String timeline;
+    }
+}
@@ -19,6 +19,7 @@ package org.hiveway.entity
 
 import android.text.Spanned
 import com.google.gson.annotations.SerializedName
+import org.hiveway.util.HtmlUtils
 import java.util.*
 
 data class Status(
@@ -28,7 +29,7 @@ data class Status(
         @SerializedName("in_reply_to_id") var inReplyToId: String?,
         @SerializedName("in_reply_to_account_id") val inReplyToAccountId: String?,
         val reblog: Status?,
-        val content: Spanned,
+        @SerializedName("content") val contentHtml: String,
         @SerializedName("created_at") val createdAt: Date,
         val emojis: List<Emoji>,
         @SerializedName("reblogs_count") val reblogsCount: Int,
@@ -43,6 +44,20 @@ data class Status(
         val application: Application?
 ) {
 
+    /* Converting html is by far the most expensive part of reading a status, so it is only done
+     * for statuses which actually get displayed. See ContentPreparer. */
+    @Transient
+    private val spannedContent = lazy { HtmlUtils.fromHtml(contentHtml) }
+
+    /**
+     * The content converted to a [Spanned]. It is computed on first access and then kept.
+     */
+    val content: Spanned
+        get() = spannedContent.value
+
+    val isContentPrepared: Boolean
+        get() = spannedContent.isInitialized()
+
     val actionableId: String?
         get() = reblog?.id ?: id
 
@@ -116,27 +131,24 @@ data class Status(
     }
 
 
-    class Mention {
-        var id: String? = null
-
-        var url: String? = null
-
-        @SerializedName("acct")
-        var username: String? = null
-
-        @SerializedName("username")
-        var localUsername: String? = null
-    }
-
-    class Application {
-        var name: String? = null
-        var website: String? = null
-    }
-
-    class Emoji {
-        val shortcode: String? = null
-        val url: String? = null
-    }
+    /* the nested types are data classes, so view data holding them can be compared by value
+     * when a timeline is diffed */
+    data class Mention(
+            var id: String? = null,
+            var url: String? = null,
+            @SerializedName("acct") var username: String? = null,
+            @SerializedName("username") var localUsername: String? = null
+    )
+
+    data class Application(
+            var name: String? = null,
+            var website: String? = null
+    )
+
+    data class Emoji(
+            val shortcode: String? = null,
+            val url: String? = null
+    )
 
     companion object {
         const val MAX_MEDIA_ATTACHMENTS = 4
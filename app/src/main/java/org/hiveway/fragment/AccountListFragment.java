@@ -24,6 +24,7 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.design.widget.Snackbar;
+import android.support.v4.util.Pair;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -31,9 +32,11 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
 
 import org.hiveway.AccountActivity;
 import org.hiveway.BaseActivity;
+import org.hiveway.HivewayApplication;
 import org.hiveway.R;
 import org.hiveway.adapter.AccountAdapter;
 import org.hiveway.adapter.BlocksAdapter;
@@ -41,21 +44,26 @@ import org.hiveway.adapter.FollowAdapter;
 import org.hiveway.adapter.FollowRequestsAdapter;
 import org.hiveway.adapter.FooterViewHolder;
 import org.hiveway.adapter.MutesAdapter;
+import org.hiveway.db.AccountEntity;
+import org.hiveway.db.ActionEntity;
 import org.hiveway.entity.Account;
-import org.hiveway.entity.Relationship;
 import org.hiveway.interfaces.AccountActionListener;
+import org.hiveway.network.ActionOutbox;
 import org.hiveway.network.HivewayApi;
 import org.hiveway.util.HttpHeaderLink;
 import org.hiveway.util.ThemeUtils;
 import org.hiveway.view.EndlessOnScrollListener;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
-public class AccountListFragment extends BaseFragment implements AccountActionListener {
+public class AccountListFragment extends BaseFragment implements AccountActionListener,
+        ActionOutbox.Listener {
     private static final String TAG = "AccountList"; // logging tag
 
     public AccountListFragment() {
@@ -80,6 +88,8 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
     private int bottomFetches;
     private boolean topLoading;
     private int topFetches;
+    /* accounts taken out of the list for an action that has not been confirmed yet */
+    private final Map<String, Pair<Account, Integer>> removedAccounts = new HashMap<>();
 
     public static AccountListFragment newInstance(Type type) {
         Bundle arguments = new Bundle();
@@ -105,6 +115,13 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
         type = (Type) arguments.getSerializable("type");
         accountId = arguments.getString("accountId");
         api = null;
+        HivewayApplication.getActionOutbox().addListener(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        HivewayApplication.getActionOutbox().removeListener(this);
+        super.onDestroy();
     }
 
     @Nullable
@@ -177,46 +194,19 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
 
     @Override
     public void onMute(final boolean mute, final String id, final int position) {
-        if (api == null) {
-            /* If somehow an unmute button is clicked after onCreateView but before
-             * onActivityCreated, then this would get called with a null api object, so this eats
-             * that input. */
-            Log.d(TAG, "HivewayApi isn't initialised so this mute can't occur.");
+        if (!enqueueAction(mute ? ActionEntity.Type.MUTE : ActionEntity.Type.UNMUTE, id)) {
             return;
         }
-
-        Callback<Relationship> callback = new Callback<Relationship>() {
-            @Override
-            public void onResponse(@NonNull Call<Relationship> call, @NonNull Response<Relationship> response) {
-                if (response.isSuccessful()) {
-                    onMuteSuccess(mute, id, position);
-                } else {
-                    onMuteFailure(mute, id);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Relationship> call, @NonNull Throwable t) {
-                onMuteFailure(mute, id);
-            }
-        };
-
-        Call<Relationship> call;
-        if (!mute) {
-            call = api.unmuteAccount(id);
-        } else {
-            call = api.muteAccount(id);
-        }
-        callList.add(call);
-        call.enqueue(callback);
-    }
-
-    private void onMuteSuccess(boolean muted, final String id, final int position) {
-        if (muted) {
+        if (mute) {
+            removedAccounts.remove(id);
             return;
         }
         final MutesAdapter mutesAdapter = (MutesAdapter) adapter;
         final Account unmutedUser = mutesAdapter.removeItem(position);
+        if (unmutedUser == null) {
+            return;
+        }
+        removedAccounts.put(id, new Pair<>(unmutedUser, position));
         View.OnClickListener listener = v -> {
             mutesAdapter.addItem(unmutedUser, position);
             onMute(true, id, position);
@@ -238,46 +228,19 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
 
     @Override
     public void onBlock(final boolean block, final String id, final int position) {
-        if (api == null) {
-            /* If somehow an unblock button is clicked after onCreateView but before
-             * onActivityCreated, then this would get called with a null api object, so this eats
-             * that input. */
-            Log.d(TAG, "HivewayApi isn't initialised so this block can't occur.");
+        if (!enqueueAction(block ? ActionEntity.Type.BLOCK : ActionEntity.Type.UNBLOCK, id)) {
             return;
         }
-
-        Callback<Relationship> cb = new Callback<Relationship>() {
-            @Override
-            public void onResponse(@NonNull Call<Relationship> call, @NonNull Response<Relationship> response) {
-                if (response.isSuccessful()) {
-                    onBlockSuccess(block, id, position);
-                } else {
-                    onBlockFailure(block, id);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Relationship> call, @NonNull Throwable t) {
-                onBlockFailure(block, id);
-            }
-        };
-
-        Call<Relationship> call;
-        if (!block) {
-            call = api.unblockAccount(id);
-        } else {
-            call = api.blockAccount(id);
-        }
-        callList.add(call);
-        call.enqueue(cb);
-    }
-
-    private void onBlockSuccess(boolean blocked, final String id, final int position) {
-        if (blocked) {
+        if (block) {
+            removedAccounts.remove(id);
             return;
         }
         final BlocksAdapter blocksAdapter = (BlocksAdapter) adapter;
         final Account unblockedUser = blocksAdapter.removeItem(position);
+        if (unblockedUser == null) {
+            return;
+        }
+        removedAccounts.put(id, new Pair<>(unblockedUser, position));
         View.OnClickListener listener = v -> {
             blocksAdapter.addItem(unblockedUser, position);
             onBlock(true, id, position);
@@ -300,43 +263,16 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
     @Override
     public void onRespondToFollowRequest(final boolean accept, final String accountId,
                                          final int position) {
-        if (api == null) {
-            /* If somehow an response button is clicked after onCreateView but before
-             * onActivityCreated, then this would get called with a null api object, so this eats
-             * that input. */
-            Log.d(TAG, "HivewayApi isn't initialised, so follow requests can't be responded to.");
+        ActionEntity.Type actionType = accept ? ActionEntity.Type.AUTHORIZE_FOLLOW_REQUEST
+                : ActionEntity.Type.REJECT_FOLLOW_REQUEST;
+        if (!enqueueAction(actionType, accountId)) {
             return;
         }
-
-        Callback<Relationship> callback = new Callback<Relationship>() {
-            @Override
-            public void onResponse(@NonNull Call<Relationship> call, @NonNull Response<Relationship> response) {
-                if (response.isSuccessful()) {
-                    onRespondToFollowRequestSuccess(position);
-                } else {
-                    onRespondToFollowRequestFailure(accept, accountId);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Relationship> call, @NonNull Throwable t) {
-                onRespondToFollowRequestFailure(accept, accountId);
-            }
-        };
-
-        Call<Relationship> call;
-        if (accept) {
-            call = api.authorizeFollowRequest(accountId);
-        } else {
-            call = api.rejectFollowRequest(accountId);
-        }
-        callList.add(call);
-        call.enqueue(callback);
-    }
-
-    private void onRespondToFollowRequestSuccess(int position) {
         FollowRequestsAdapter followRequestsAdapter = (FollowRequestsAdapter) adapter;
-        followRequestsAdapter.removeItem(position);
+        Account account = followRequestsAdapter.removeItem(position);
+        if (account != null) {
+            removedAccounts.put(accountId, new Pair<>(account, position));
+        }
     }
 
     private void onRespondToFollowRequestFailure(boolean accept, String accountId) {
@@ -350,24 +286,73 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
         Log.e(TAG, message);
     }
 
+    /**
+     * Hands the action to the outbox, the list shows its result right away and
+     * {@link #onActionRejected(ActionEntity)} puts it back if the server refuses.
+     * @return false if there is no account to make the action with
+     */
+    private boolean enqueueAction(ActionEntity.Type actionType, String id) {
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (activeAccount == null) {
+            return false;
+        }
+        HivewayApplication.getActionOutbox().enqueue(activeAccount, actionType, id);
+        return true;
+    }
+
+    @Override
+    public void onActionRejected(@NonNull ActionEntity action) {
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (activeAccount == null || activeAccount.getId() != action.getAccountId()) {
+            return;
+        }
+        String id = action.getTargetId();
+        switch (action.getType()) {
+            case MUTE:
+            case UNMUTE:
+                onMuteFailure(action.getType() == ActionEntity.Type.MUTE, id);
+                break;
+            case BLOCK:
+            case UNBLOCK:
+                onBlockFailure(action.getType() == ActionEntity.Type.BLOCK, id);
+                break;
+            case AUTHORIZE_FOLLOW_REQUEST:
+            case REJECT_FOLLOW_REQUEST:
+                onRespondToFollowRequestFailure(
+                        action.getType() == ActionEntity.Type.AUTHORIZE_FOLLOW_REQUEST, id);
+                break;
+            default:
+                return;
+        }
+        Pair<Account, Integer> removed = removedAccounts.remove(id);
+        if (removed != null && adapter != null) {
+            adapter.addItem(removed.first, removed.second);
+        }
+        if (getContext() != null) {
+            Toast.makeText(getContext(), R.string.error_action_rejected, Toast.LENGTH_SHORT)
+                    .show();
+        }
+    }
+
     private enum FetchEnd {
         TOP,
         BOTTOM
     }
 
-    private Call<List<Account>> getFetchCallByListType(Type type, String fromId, String uptoId) {
+    private Call<List<Account>> getFetchCallByListType(Type type, String fromId, String uptoId,
+                                                       @Nullable Integer limit) {
         switch (type) {
             default:
             case FOLLOWS:
-                return api.accountFollowing(accountId, fromId, uptoId, null);
+                return api.accountFollowing(accountId, fromId, uptoId, limit);
             case FOLLOWERS:
-                return api.accountFollowers(accountId, fromId, uptoId, null);
+                return api.accountFollowers(accountId, fromId, uptoId, limit);
             case BLOCKS:
-                return api.blocks(fromId, uptoId, null);
+                return api.blocks(fromId, uptoId, limit);
             case MUTES:
-                return api.mutes(fromId, uptoId, null);
+                return api.mutes(fromId, uptoId, limit);
             case FOLLOW_REQUESTS:
-                return api.followRequests(fromId, uptoId, null);
+                return api.followRequests(fromId, uptoId, limit);
         }
     }
 
@@ -406,7 +391,11 @@ public class AccountListFragment extends BaseFragment implements AccountActionLi
                 onFetchAccountsFailure((Exception) t, fetchEnd);
             }
         };
-        Call<List<Account>> listCall = getFetchCallByListType(type, fromId, uptoId);
+        // the first page keeps the server's default size, following ones follow the scroll speed
+        Integer limit = fetchEnd == FetchEnd.BOTTOM && fromId != null && scrollListener != null
+                ? Integer.valueOf(scrollListener.getPageSize())
+                : null;
+        Call<List<Account>> listCall = getFetchCallByListType(type, fromId, uptoId, limit);
         callList.add(listCall);
         listCall.enqueue(cb);
     }
@@ -18,6 +18,7 @@
 package org.hiveway.fragment
 
 import android.content.Intent
+import android.graphics.Bitmap
 import android.graphics.Color
 import android.os.Bundle
 import android.support.v4.app.ActivityOptionsCompat
@@ -35,6 +36,7 @@ import org.hiveway.R
 import org.hiveway.entity.Attachment
 import org.hiveway.entity.Status
 import org.hiveway.network.HivewayApi
+import org.hiveway.view.EndlessOnScrollListener
 import org.hiveway.view.SquareImageView
 import com.squareup.picasso.Picasso
 import retrofit2.Call
@@ -70,6 +72,7 @@ class AccountMediaFragment : org.hiveway.fragment.BaseFragment() {
     private val statuses = mutableListOf<Status>()
     private var fetchingStatus = FetchingStatus.NOT_FETCHING
     lateinit private var swipeLayout: SwipeRefreshLayout
+    lateinit private var scrollListener: EndlessOnScrollListener
 
     private val callback = object : Callback<List<Status>> {
         override fun onFailure(call: Call<List<Status>>?, t: Throwable?) {
@@ -97,6 +100,7 @@ class AccountMediaFragment : org.hiveway.fragment.BaseFragment() {
     private val bottomCallback = object : Callback<List<Status>> {
         override fun onFailure(call: Call<List<Status>>?, t: Throwable?) {
             fetchingStatus = FetchingStatus.NOT_FETCHING
+            scrollListener.onLoadFailed()
             Log.d(TAG, "Failed to fetch account media", t)
         }
 
@@ -154,23 +158,22 @@ class AccountMediaFragment : org.hiveway.fragment.BaseFragment() {
 
         }
 
-        recyclerView.addOnScrollListener(object : RecyclerView.OnScrollListener() {
-
-            override fun onScrolled(recyclerView: RecyclerView?, dx: Int, dy: Int) {
-                if (dy > 0) {
-                    val itemCount = layoutManager.itemCount
-                    val lastItem = layoutManager.findLastCompletelyVisibleItemPosition()
-                    if (itemCount <= lastItem + 3 && fetchingStatus == FetchingStatus.NOT_FETCHING) {
-                        statuses.lastOrNull()?.let { last ->
-                            Log.d(TAG, "Requesting statuses with max_id: ${last.id}, (bottom)")
-                            fetchingStatus = FetchingStatus.FETCHING_BOTTOM
-                            currentCall = api.accountStatuses(accountId, last.id, null, null, true)
-                            currentCall?.enqueue(bottomCallback)
-                        }
-                    }
+        scrollListener = object : EndlessOnScrollListener(layoutManager) {
+            override fun onLoadMore(page: Int, totalItemsCount: Int, view: RecyclerView?) {
+                if (fetchingStatus != FetchingStatus.NOT_FETCHING) {
+                    // try again with the next scroll once the running request is done
+                    onLoadFailed()
+                    return
+                }
+                statuses.lastOrNull()?.let { last ->
+                    Log.d(TAG, "Requesting statuses with max_id: ${last.id}, (bottom)")
+                    fetchingStatus = FetchingStatus.FETCHING_BOTTOM
+                    currentCall = api.accountStatuses(accountId, last.id, null, pageSize, true)
+                    currentCall?.enqueue(bottomCallback)
                 }
             }
-        })
+        }
+        recyclerView.addOnScrollListener(scrollListener)
 
         return view
     }
@@ -263,6 +266,9 @@ class AccountMediaFragment : org.hiveway.fragment.BaseFragment() {
             val item = items[position]
             Picasso.with(holder.imageView.context)
                     .load(item.previewUrl)
+                    .fit()
+                    .centerCrop()
+                    .config(Bitmap.Config.RGB_565)
                     .into(holder.imageView)
         }
 
@@ -42,6 +42,7 @@ import org.hiveway.MainActivity;
 import org.hiveway.HivewayApplication;
 import org.hiveway.adapter.FooterViewHolder;
 import org.hiveway.adapter.NotificationsAdapter;
+import org.hiveway.adapter.StatusViewPool;
 import org.hiveway.R;
 import org.hiveway.db.AccountEntity;
 import org.hiveway.db.AccountManager;
@@ -50,6 +51,7 @@ import org.hiveway.entity.Notification;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.ActionButtonActivity;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.network.StreamingClient;
 import org.hiveway.receiver.TimelineReceiver;
 import org.hiveway.util.CollectionUtil;
 import org.hiveway.util.Either;
@@ -63,6 +65,7 @@ import org.hiveway.viewdata.NotificationViewData;
 import org.hiveway.viewdata.StatusViewData;
 
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -114,6 +117,10 @@ public class NotificationsFragment extends SFragment implements
     private String bottomId;
     private String topId;
     private boolean alwaysShowSensitiveMedia;
+    @Nullable
+    private StreamingClient.Subscription streamSubscription;
+    private boolean streamStopped;
+    private boolean started;
 
     // Each element is either a Notification for loading data or a Placeholder
     private final PairedList<Either<Placeholder, Notification>, NotificationViewData> notifications
@@ -128,6 +135,30 @@ public class NotificationsFragment extends SFragment implements
             }
         }
     });
+    private final RemovedRows<Either<Placeholder, Notification>> removedRows =
+            new RemovedRows<>(item -> !item.isRight());
+
+    private final StreamingClient.Listener streamListener = new StreamingClient.Listener() {
+        @Override
+        public void onUpdate(@NonNull Status status) {
+            // statuses are shown by the home TimelineFragment
+        }
+
+        @Override
+        public void onNotification(@NonNull Notification notification) {
+            onStreamedNotification(notification);
+        }
+
+        @Override
+        public void onDelete(@NonNull String id) {
+            onStreamedDelete(id);
+        }
+
+        @Override
+        public void onReconnected() {
+            onRefresh();
+        }
+    };
 
     public static NotificationsFragment newInstance() {
         NotificationsFragment fragment = new NotificationsFragment();
@@ -151,6 +182,9 @@ public class NotificationsFragment extends SFragment implements
         recyclerView.setHasFixedSize(true);
         layoutManager = new LinearLayoutManager(context);
         recyclerView.setLayoutManager(layoutManager);
+        // rows of lists which are gone go back to the pool of the activity for the others
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setRecycledViewPool(StatusViewPool.get(getActivity()));
         DividerItemDecoration divider = new DividerItemDecoration(
                 context, layoutManager.getOrientation());
         Drawable drawable = ThemeUtils.getDrawable(context, R.attr.status_divider_drawable,
@@ -241,6 +275,52 @@ public class NotificationsFragment extends SFragment implements
         recyclerView.addOnScrollListener(scrollListener);
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        started = true;
+        updateStreamSubscription();
+    }
+
+    @Override
+    public void onStop() {
+        started = false;
+        updateStreamSubscription();
+        super.onStop();
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        updateStreamSubscription();
+    }
+
+    /**
+     * Streams only while the tab can be seen, like {@link TimelineFragment}.
+     */
+    private void updateStreamSubscription() {
+        boolean wanted = started && getUserVisibleHint();
+        if (wanted && streamSubscription == null) {
+            AccountEntity activeAccount =
+                    HivewayApplication.getAccountManager().getActiveAccount();
+            if (activeAccount != null) {
+                streamSubscription = StreamingClient.forAccount(activeAccount)
+                        .subscribe(StreamingClient.STREAM_USER, null, streamListener);
+                /* Whatever arrived while the stream was closed has to be fetched the usual way. */
+                if (streamStopped && !notifications.isEmpty()) {
+                    onRefresh();
+                }
+            }
+            streamStopped = false;
+        } else if (!wanted) {
+            if (streamSubscription != null) {
+                streamSubscription.cancel();
+                streamSubscription = null;
+            }
+            streamStopped = true;
+        }
+    }
+
     @Override
     public void onDestroyView() {
         Activity activity = getActivity();
@@ -271,74 +351,70 @@ public class NotificationsFragment extends SFragment implements
     public void onReblog(final boolean reblog, final int position) {
         final Notification notification = notifications.get(position).getAsRight();
         final Status status = notification.getStatus();
-        reblogWithCallback(status, reblog, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull retrofit2.Response<Status> response) {
-                if (response.isSuccessful()) {
-                    status.setReblogged(reblog);
-
-                    if (status.getReblog() != null) {
-                        status.getReblog().setReblogged(reblog);
-                    }
-
-                    NotificationViewData.Concrete viewdata = (NotificationViewData.Concrete)notifications.getPairedItem(position);
-
-                    StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(viewdata.getStatusViewData());
-                    viewDataBuilder.setReblogged(reblog);
-
-                    NotificationViewData.Concrete newViewData = new NotificationViewData.Concrete(
-                            viewdata.getType(), viewdata.getId(), viewdata.getAccount(),
-                            viewDataBuilder.createStatusViewData(), viewdata.isExpanded());
-
-                    notifications.setPairedItem(position, newViewData);
-
-                    adapter.updateItemWithNotify(position, newViewData, false);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(getClass().getSimpleName(), "Failed to reblog status: " + status.getId(), t);
-            }
-        });
+        reblog(status, reblog);
+        setReblogged(status.getActionableId(), reblog);
     }
 
-
     @Override
     public void onFavourite(final boolean favourite, final int position) {
         final Notification notification = notifications.get(position).getAsRight();
         final Status status = notification.getStatus();
-        favouriteWithCallback(status, favourite, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull retrofit2.Response<Status> response) {
-                if (response.isSuccessful()) {
-                    status.setFavourited(favourite);
-
-                    if (status.getReblog() != null) {
-                        status.getReblog().setFavourited(favourite);
-                    }
+        favourite(status, favourite);
+        setFavourited(status.getActionableId(), favourite);
+    }
 
-                    NotificationViewData.Concrete viewdata = (NotificationViewData.Concrete)notifications.getPairedItem(position);
+    @Override
+    protected void setReblogged(String actionableId, boolean reblogged) {
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i).getAsRightOrNull();
+            Status status = notification == null ? null : notification.getStatus();
+            if (status == null || !status.getActionableId().equals(actionableId)) {
+                continue;
+            }
+            status.setReblogged(reblogged);
+            if (status.getReblog() != null) {
+                status.getReblog().setReblogged(reblogged);
+            }
+            NotificationViewData.Concrete viewdata = (NotificationViewData.Concrete) notifications.getPairedItem(i);
 
-                    StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(viewdata.getStatusViewData());
-                    viewDataBuilder.setFavourited(favourite);
+            StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(viewdata.getStatusViewData());
+            viewDataBuilder.setReblogged(reblogged);
 
-                    NotificationViewData.Concrete newViewData = new NotificationViewData.Concrete(
-                            viewdata.getType(), viewdata.getId(), viewdata.getAccount(),
-                            viewDataBuilder.createStatusViewData(), viewdata.isExpanded());
+            NotificationViewData.Concrete newViewData = new NotificationViewData.Concrete(
+                    viewdata.getType(), viewdata.getId(), viewdata.getAccount(),
+                    viewDataBuilder.createStatusViewData(), viewdata.isExpanded());
 
-                    notifications.setPairedItem(position, newViewData);
+            notifications.setPairedItem(i, newViewData);
 
-                    adapter.updateItemWithNotify(position, newViewData, false);
+            adapter.updateItemWithNotify(i, newViewData, false);
+        }
+    }
 
-                }
+    @Override
+    protected void setFavourited(String actionableId, boolean favourited) {
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i).getAsRightOrNull();
+            Status status = notification == null ? null : notification.getStatus();
+            if (status == null || !status.getActionableId().equals(actionableId)) {
+                continue;
             }
-
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(getClass().getSimpleName(), "Failed to favourite status: " + status.getId(), t);
+            status.setFavourited(favourited);
+            if (status.getReblog() != null) {
+                status.getReblog().setFavourited(favourited);
             }
-        });
+            NotificationViewData.Concrete viewdata = (NotificationViewData.Concrete) notifications.getPairedItem(i);
+
+            StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(viewdata.getStatusViewData());
+            viewDataBuilder.setFavourited(favourited);
+
+            NotificationViewData.Concrete newViewData = new NotificationViewData.Concrete(
+                    viewdata.getType(), viewdata.getId(), viewdata.getAccount(),
+                    viewDataBuilder.createStatusViewData(), viewdata.isExpanded());
+
+            notifications.setPairedItem(i, newViewData);
+
+            adapter.updateItemWithNotify(i, newViewData, false);
+        }
     }
 
     @Override
@@ -459,6 +535,8 @@ public class NotificationsFragment extends SFragment implements
 
     @Override
     public void removeAllByAccountId(String accountId) {
+        removedRows.remember(accountId, notifications, item -> item.isRight()
+                && item.getAsRight().getAccount().getId().equals(accountId));
         // using iterator to safely remove items while iterating
         Iterator<Either<Placeholder, Notification>> iterator = notifications.iterator();
         while (iterator.hasNext()) {
@@ -471,6 +549,13 @@ public class NotificationsFragment extends SFragment implements
         adapter.update(notifications.getPairedCopy());
     }
 
+    @Override
+    public void restoreAllByAccountId(String accountId) {
+        if (removedRows.restore(accountId, notifications, notifications::add)) {
+            adapter.update(notifications.getPairedCopy());
+        }
+    }
+
     private void onLoadMore() {
         sendFetchNotificationsRequest(bottomId, null, FetchEnd.BOTTOM, -1);
     }
@@ -480,6 +565,38 @@ public class NotificationsFragment extends SFragment implements
         scrollListener.reset();
     }
 
+    private void onStreamedNotification(Notification notification) {
+        /* Until the first page arrived there is nothing to prepend to, the initial fetch will
+         * contain the notification anyway. */
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Either<Placeholder, Notification> lifted = Either.right(notification);
+        if (notifications.indexOf(lifted) != -1) {
+            return;
+        }
+        notifications.add(0, lifted);
+        topId = notification.getId();
+        adapter.update(notifications.getPairedCopy());
+        saveNewestNotificationId(Collections.singletonList(notification));
+    }
+
+    private void onStreamedDelete(String statusId) {
+        boolean removed = false;
+        Iterator<Either<Placeholder, Notification>> iterator = notifications.iterator();
+        while (iterator.hasNext()) {
+            Notification notification = iterator.next().getAsRightOrNull();
+            if (notification != null && notification.getStatus() != null
+                    && notification.getStatus().getId().equals(statusId)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            adapter.update(notifications.getPairedCopy());
+        }
+    }
+
     private void sendFetchNotificationsRequest(String fromId, String uptoId,
                                                final FetchEnd fetchEnd, final int pos) {
         /* If there is a fetch already ongoing, record however many fetches are requested and
@@ -500,7 +617,12 @@ public class NotificationsFragment extends SFragment implements
             recyclerView.post(() -> adapter.setFooterState(FooterViewHolder.State.LOADING));
         }
 
-        Call<List<Notification>> call = hivewayApi.notifications(fromId, uptoId, LOAD_AT_ONCE);
+        /* Following pages are sized to how fast the user scrolls, the first page and gaps always
+         * get the same size so filling them works the same as before. */
+        int limit = fetchEnd == FetchEnd.BOTTOM && fromId != null && scrollListener != null
+                ? scrollListener.getPageSize()
+                : LOAD_AT_ONCE;
+        Call<List<Notification>> call = hivewayApi.notifications(fromId, uptoId, limit);
 
         call.enqueue(new Callback<List<Notification>>() {
             @Override
@@ -31,6 +31,7 @@ import org.hiveway.BuildConfig;
 import org.hiveway.PreferencesActivity;
 import org.hiveway.R;
 import org.hiveway.HivewayApplication;
+import org.hiveway.NetworkDiagnosticsActivity;
 import org.hiveway.db.AccountEntity;
 
 import org.hiveway.PreferencesActivity;
@@ -121,6 +122,14 @@ public class PreferencesFragment extends PreferenceFragment implements SharedPre
             });
         }
 
+        Preference networkDiagnostics = findPreference("networkDiagnostics");
+        if (networkDiagnostics != null) {
+            networkDiagnostics.setOnPreferenceClickListener(pref -> {
+                startActivity(new Intent(getActivity(), NetworkDiagnosticsActivity.class));
+                return true;
+            });
+        }
+
         if(preference == R.xml.notification_preferences) {
 
             AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.fragment;
+
+import android.arch.core.util.Function;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows a list took out when an account was muted or blocked, so they can be put back where they
+ * were if the server refuses. Every row remembers the row below it rather than its position,
+ * so the list may change in the meantime.
+ * @param <E> type of the rows
+ */
+final class RemovedRows<E> {
+
+    interface Inserter<E> {
+        void insert(int position, E row);
+    }
+
+    private static final class Row<E> {
+        final E row;
+        /* the next row below which is not a gap, null if there was none */
+        @Nullable
+        final E below;
+        /* whether there was a gap between the row and the one below */
+        final boolean gapBelow;
+
+        Row(E row, @Nullable E below, boolean gapBelow) {
+            this.row = row;
+            this.below = below;
+            this.gapBelow = gapBelow;
+        }
+    }
+
+    private final Function<E, Boolean> isGap;
+    /* rows by the id of the account they were removed for, bottom first */
+    private final Map<String, List<Row<E>>> removed = new HashMap<>();
+
+    /**
+     * @param isGap tells the placeholders of a list apart from the rows, they are never removed
+     */
+    RemovedRows(@NonNull Function<E, Boolean> isGap) {
+        this.isGap = isGap;
+    }
+
+    /**
+     * Remembers the rows {@code matches} returns true for. Has to be called before they are
+     * removed from {@code rows}.
+     */
+    void remember(@NonNull String accountId, @NonNull List<E> rows,
+                  @NonNull Function<E, Boolean> matches) {
+        List<Row<E>> forAccount = removed.get(accountId);
+        if (forAccount == null) {
+            forAccount = new ArrayList<>();
+            removed.put(accountId, forAccount);
+        }
+        E below = null;
+        boolean gapBelow = false;
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            E row = rows.get(i);
+            if (isGap.apply(row)) {
+                gapBelow = true;
+                continue;
+            }
+            if (matches.apply(row)) {
+                forAccount.add(new Row<>(row, below, gapBelow));
+            }
+            below = row;
+            gapBelow = false;
+        }
+        if (forAccount.isEmpty()) {
+            removed.remove(accountId);
+        }
+    }
+
+    /**
+     * Puts the rows removed for {@code accountId} back above the rows they were above before.
+     * Rows whose neighbour is gone, or which are in the list again, are dropped.
+     * @return whether anything was put back
+     */
+    boolean restore(@NonNull String accountId, @NonNull List<E> rows,
+                    @NonNull Inserter<E> inserter) {
+        List<Row<E>> forAccount = removed.remove(accountId);
+        if (forAccount == null) {
+            return false;
+        }
+        boolean restored = false;
+        // bottom first, so the row below was either never removed or is back already
+        for (Row<E> row : forAccount) {
+            if (rows.indexOf(row.row) != -1) {
+                continue;
+            }
+            int position = row.below == null ? rows.size() : rows.indexOf(row.below);
+            if (position == -1) {
+                continue;
+            }
+            if (row.gapBelow && position > 0 && isGap.apply(rows.get(position - 1))) {
+                position--;
+            }
+            inserter.insert(position, row.row);
+            restored = true;
+        }
+        return restored;
+    }
+}
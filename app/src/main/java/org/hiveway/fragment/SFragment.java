@@ -31,6 +31,7 @@ import android.support.v7.widget.PopupMenu;
 import android.text.Spanned;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.Toast;
 
 import org.hiveway.AccountActivity;
 import org.hiveway.BaseActivity;
@@ -43,10 +44,11 @@ import org.hiveway.ViewTagActivity;
 import org.hiveway.ViewThreadActivity;
 import org.hiveway.ViewVideoActivity;
 import org.hiveway.db.AccountEntity;
+import org.hiveway.db.ActionEntity;
 import org.hiveway.entity.Attachment;
-import org.hiveway.entity.Relationship;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.AdapterItemRemover;
+import org.hiveway.network.ActionOutbox;
 import org.hiveway.network.HivewayApi;
 import org.hiveway.receiver.TimelineReceiver;
 import org.hiveway.util.HtmlUtils;
@@ -57,7 +59,6 @@ import java.util.List;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
-import retrofit2.Response;
 
 /* Note from Andrew on Jan. 22, 2017: This class is a design problem for me, so I left it with an
  * awkward name. TimelineFragment and NotificationFragment have significant overlap but the nature
@@ -65,7 +66,8 @@ import retrofit2.Response;
  * adapters. I feel like the profile pages and thread viewer, which I haven't made yet, will also
  * overlap functionality. So, I'm momentarily leaving it and hopefully working on those will clear
  * up what needs to be where. */
-public abstract class SFragment extends BaseFragment implements AdapterItemRemover {
+public abstract class SFragment extends BaseFragment implements AdapterItemRemover,
+        ActionOutbox.Listener {
     protected static final int COMPOSE_RESULT = 1;
 
     protected String loggedInAccountId;
@@ -81,6 +83,13 @@ public abstract class SFragment extends BaseFragment implements AdapterItemRemov
             loggedInAccountId = activeAccount.getAccountId();
             loggedInUsername = activeAccount.getUsername();
         }
+        HivewayApplication.getActionOutbox().addListener(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        HivewayApplication.getActionOutbox().removeListener(this);
+        super.onDestroy();
     }
 
     @Override
@@ -119,31 +128,66 @@ public abstract class SFragment extends BaseFragment implements AdapterItemRemov
         startActivityForResult(intent, COMPOSE_RESULT);
     }
 
-    protected void reblogWithCallback(final Status status, final boolean reblog,
-                                      Callback<Status> callback) {
-        String id = status.getActionableId();
+    /**
+     * Queues a reblog or unreblog. The caller shows the new state right away,
+     * {@link #setReblogged(String, boolean)} undoes it if the server refuses.
+     */
+    protected void reblog(final Status status, final boolean reblog) {
+        enqueueAction(reblog ? ActionEntity.Type.REBLOG : ActionEntity.Type.UNREBLOG,
+                status.getActionableId());
+    }
 
-        Call<Status> call;
-        if (reblog) {
-            call = hivewayApi.reblogStatus(id);
-        } else {
-            call = hivewayApi.unreblogStatus(id);
-        }
-        call.enqueue(callback);
+    /**
+     * Queues a favourite or unfavourite. The caller shows the new state right away,
+     * {@link #setFavourited(String, boolean)} undoes it if the server refuses.
+     */
+    protected void favourite(final Status status, final boolean favourite) {
+        enqueueAction(favourite ? ActionEntity.Type.FAVOURITE : ActionEntity.Type.UNFAVOURITE,
+                status.getActionableId());
     }
 
-    protected void favouriteWithCallback(final Status status, final boolean favourite,
-                                         final Callback<Status> callback) {
-        String id = status.getActionableId();
+    /**
+     * Updates every status in the list whose actionable status has the given id.
+     */
+    protected abstract void setReblogged(String actionableId, boolean reblogged);
 
-        Call<Status> call;
-        if (favourite) {
-            call = hivewayApi.favouriteStatus(id);
-        } else {
-            call = hivewayApi.unfavouriteStatus(id);
+    /**
+     * Updates every status in the list whose actionable status has the given id.
+     */
+    protected abstract void setFavourited(String actionableId, boolean favourited);
+
+    private void enqueueAction(ActionEntity.Type type, String targetId) {
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (activeAccount != null) {
+            HivewayApplication.getActionOutbox().enqueue(activeAccount, type, targetId);
+        }
+    }
+
+    @Override
+    public void onActionRejected(@NonNull ActionEntity action) {
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (activeAccount == null || activeAccount.getId() != action.getAccountId()) {
+            return;
+        }
+        switch (action.getType()) {
+            case REBLOG:
+            case UNREBLOG:
+                setReblogged(action.getTargetId(), action.getType() != ActionEntity.Type.REBLOG);
+                break;
+            case FAVOURITE:
+            case UNFAVOURITE:
+                setFavourited(action.getTargetId(),
+                        action.getType() != ActionEntity.Type.FAVOURITE);
+                break;
+            case MUTE:
+            case BLOCK:
+                restoreAllByAccountId(action.getTargetId());
+                if (getContext() != null) {
+                    Toast.makeText(getContext(), R.string.error_action_rejected,
+                            Toast.LENGTH_SHORT).show();
+                }
+                break;
         }
-        call.enqueue(callback);
-        callList.add(call);
     }
 
     protected void openReblog(@Nullable final Status status) {
@@ -152,15 +196,7 @@ public abstract class SFragment extends BaseFragment implements AdapterItemRemov
     }
 
     private void mute(String id) {
-        Call<Relationship> call = hivewayApi.muteAccount(id);
-        call.enqueue(new Callback<Relationship>() {
-            @Override
-            public void onResponse(@NonNull Call<Relationship> call, @NonNull Response<Relationship> response) {}
-
-            @Override
-            public void onFailure(@NonNull Call<Relationship> call, @NonNull Throwable t) {}
-        });
-        callList.add(call);
+        enqueueAction(ActionEntity.Type.MUTE, id);
         Intent intent = new Intent(TimelineReceiver.Types.MUTE_ACCOUNT);
         intent.putExtra("id", id);
         LocalBroadcastManager.getInstance(getContext())
@@ -168,15 +204,7 @@ public abstract class SFragment extends BaseFragment implements AdapterItemRemov
     }
 
     private void block(String id) {
-        Call<Relationship> call = hivewayApi.blockAccount(id);
-        call.enqueue(new Callback<Relationship>() {
-            @Override
-            public void onResponse(@NonNull Call<Relationship> call, @NonNull retrofit2.Response<Relationship> response) {}
-
-            @Override
-            public void onFailure(@NonNull Call<Relationship> call, @NonNull Throwable t) {}
-        });
-        callList.add(call);
+        enqueueAction(ActionEntity.Type.BLOCK, id);
         Intent intent = new Intent(TimelineReceiver.Types.BLOCK_ACCOUNT);
         intent.putExtra("id", id);
         LocalBroadcastManager.getInstance(getContext())
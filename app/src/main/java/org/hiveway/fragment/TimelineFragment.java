@@ -28,7 +28,6 @@ import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.TabLayout;
 import android.support.v4.content.LocalBroadcastManager;
-import android.support.v4.util.Pair;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
@@ -38,29 +37,35 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import org.hiveway.BuildConfig;
+import org.hiveway.HivewayApplication;
 import org.hiveway.R;
 import org.hiveway.adapter.FooterViewHolder;
+import org.hiveway.adapter.StatusViewPool;
 import org.hiveway.adapter.TimelineAdapter;
+import org.hiveway.db.AccountEntity;
+import org.hiveway.db.TimelineCache;
 import org.hiveway.entity.Attachment;
+import org.hiveway.entity.Notification;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.ActionButtonActivity;
 import org.hiveway.interfaces.StatusActionListener;
 import org.hiveway.network.HivewayApi;
+import org.hiveway.network.StreamingClient;
 import org.hiveway.receiver.TimelineReceiver;
-import org.hiveway.util.CollectionUtil;
 import org.hiveway.util.Either;
 import org.hiveway.util.HttpHeaderLink;
 import org.hiveway.util.ListUtils;
 import org.hiveway.util.PairedList;
 import org.hiveway.util.ThemeUtils;
+import org.hiveway.util.TimelineMemory;
+import org.hiveway.util.TimelineMerger;
 import org.hiveway.util.ViewDataUtils;
 import org.hiveway.view.EndlessOnScrollListener;
 import org.hiveway.viewdata.StatusViewData;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -69,7 +74,8 @@ import retrofit2.Response;
 public class TimelineFragment extends SFragment implements
         SwipeRefreshLayout.OnRefreshListener,
         StatusActionListener,
-        SharedPreferences.OnSharedPreferenceChangeListener {
+        SharedPreferences.OnSharedPreferenceChangeListener,
+        TimelineMemory.Source {
     private static final String TAG = "TimelineF"; // logging tag
     private static final String KIND_ARG = "kind";
     private static final String HASHTAG_OR_ID_ARG = "hashtag_or_id";
@@ -108,12 +114,24 @@ public class TimelineFragment extends SFragment implements
     private int topFetches;
     private boolean bottomLoading;
     private int bottomFetches;
+    /* timeline requests which haven't finished yet, they belong to the current view */
+    private final List<Call<List<Status>>> fetchCalls = new ArrayList<>();
     @Nullable
     private String bottomId;
     @Nullable
     private String topId;
+    /* the cached timeline is being read, the first fetch waits for it */
+    private boolean cacheLoading;
+    private boolean initialFetchPending;
+    private int cacheLoadToken;
 
     private boolean alwaysShowSensitiveMedia;
+    /* statuses far away from the visible ones are dropped beyond this */
+    private int maxStatuses;
+    @Nullable
+    private StreamingClient.Subscription streamSubscription;
+    private boolean streamStopped;
+    private boolean started;
 
     private PairedList<Either<Placeholder, Status>, StatusViewData> statuses =
             new PairedList<>(new Function<Either<Placeholder, Status>, StatusViewData>() {
@@ -128,6 +146,33 @@ public class TimelineFragment extends SFragment implements
                 }
             });
 
+    private final TimelineMerger<Placeholder, Status> merger =
+            new TimelineMerger<>(statuses, Status::getId, Placeholder.getInstance());
+    private final RemovedRows<Either<Placeholder, Status>> removedRows =
+            new RemovedRows<>(item -> !item.isRight());
+
+    private final StreamingClient.Listener streamListener = new StreamingClient.Listener() {
+        @Override
+        public void onUpdate(@NonNull Status status) {
+            onStreamedStatus(status);
+        }
+
+        @Override
+        public void onNotification(@NonNull Notification notification) {
+            // notifications are shown by the NotificationsFragment
+        }
+
+        @Override
+        public void onDelete(@NonNull String id) {
+            onStreamedDelete(id);
+        }
+
+        @Override
+        public void onReconnected() {
+            onRefresh();
+        }
+    };
+
     public static TimelineFragment newInstance(Kind kind) {
         TimelineFragment fragment = new TimelineFragment();
         Bundle arguments = new Bundle();
@@ -176,6 +221,9 @@ public class TimelineFragment extends SFragment implements
         recyclerView.setHasFixedSize(true);
         layoutManager = new LinearLayoutManager(context);
         recyclerView.setLayoutManager(layoutManager);
+        // rows of lists which are gone go back to the pool of the activity for the others
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setRecycledViewPool(StatusViewPool.get(getActivity()));
         DividerItemDecoration divider = new DividerItemDecoration(
                 context, layoutManager.getOrientation());
         Drawable drawable = ThemeUtils.getDrawable(context, R.attr.status_divider_drawable,
@@ -187,6 +235,7 @@ public class TimelineFragment extends SFragment implements
                 getActivity());
         preferences.registerOnSharedPreferenceChangeListener(this);
         alwaysShowSensitiveMedia = preferences.getBoolean("alwaysShowSensitiveMedia", false);
+        maxStatuses = TimelineMemory.getLimit(preferences);
         boolean mediaPreviewEnabled = preferences.getBoolean("mediaPreviewEnabled", true);
         adapter.setMediaPreviewEnabled(mediaPreviewEnabled);
         recyclerView.setAdapter(adapter);
@@ -201,13 +250,16 @@ public class TimelineFragment extends SFragment implements
         LocalBroadcastManager.getInstance(context.getApplicationContext())
                 .registerReceiver(timelineReceiver, TimelineReceiver.getFilter(kind));
 
-        statuses.clear();
+        merger.clear();
         topLoading = false;
         topFetches = 0;
         bottomLoading = false;
         bottomFetches = 0;
         bottomId = null;
         topId = null;
+        initialFetchPending = false;
+        loadCachedTimeline();
+        TimelineMemory.register(this);
 
         return rootView;
     }
@@ -280,6 +332,61 @@ public class TimelineFragment extends SFragment implements
             };
         }
         recyclerView.addOnScrollListener(scrollListener);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    trimToWindow();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        started = true;
+        updateStreamSubscription();
+    }
+
+    @Override
+    public void onStop() {
+        saveToCache();
+        started = false;
+        updateStreamSubscription();
+        super.onStop();
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        updateStreamSubscription();
+    }
+
+    /**
+     * Streams only while the timeline can be seen. The view pager keeps the tabs next to the
+     * current one started, they must not keep their streams open in the background.
+     */
+    private void updateStreamSubscription() {
+        boolean wanted = started && getUserVisibleHint();
+        if (wanted && streamSubscription == null) {
+            AccountEntity activeAccount =
+                    HivewayApplication.getAccountManager().getActiveAccount();
+            if (activeAccount != null) {
+                streamSubscription = subscribeToStream(StreamingClient.forAccount(activeAccount));
+            }
+            /* Whatever was posted while the stream was closed has to be fetched the usual way. */
+            if (streamSubscription != null && streamStopped && !statuses.isEmpty()) {
+                onRefresh();
+            }
+            streamStopped = false;
+        } else if (!wanted) {
+            if (streamSubscription != null) {
+                streamSubscription.cancel();
+                streamSubscription = null;
+            }
+            streamStopped = true;
+        }
     }
 
     @Override
@@ -291,12 +398,24 @@ public class TimelineFragment extends SFragment implements
             }
         }
         LocalBroadcastManager.getInstance(getContext()).unregisterReceiver(timelineReceiver);
+        saveToCache();
+        TimelineMemory.unregister(this);
+        /* The next view starts from the cache again, answers for this one would be merged into
+         * it at the wrong place. */
+        for (Call<List<Status>> call : fetchCalls) {
+            call.cancel();
+        }
+        fetchCalls.clear();
+        topLoading = false;
+        topFetches = 0;
+        bottomLoading = false;
+        bottomFetches = 0;
         super.onDestroyView();
     }
 
     @Override
     public void onRefresh() {
-        sendFetchTimelineRequest(null, topId, FetchEnd.TOP, -1);
+        sendFetchTimelineRequest(null, topId, FetchEnd.TOP, null);
     }
 
     @Override
@@ -307,70 +426,55 @@ public class TimelineFragment extends SFragment implements
     @Override
     public void onReblog(final boolean reblog, final int position) {
         final Status status = statuses.get(position).getAsRight();
-        super.reblogWithCallback(status, reblog, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull Response<Status> response) {
-
-                if (response.isSuccessful()) {
-                    status.setReblogged(reblog);
-
-                    if (status.getReblog() != null) {
-                        status.getReblog().setReblogged(reblog);
-                    }
-
-                    Pair<StatusViewData.Concrete, Integer> actual =
-                            findStatusAndPosition(position, status);
-                    if (actual == null) return;
-
-                    StatusViewData newViewData =
-                            new StatusViewData.Builder(actual.first)
-                                    .setReblogged(reblog)
-                                    .createStatusViewData();
-                    statuses.setPairedItem(actual.second, newViewData);
-                    adapter.changeItem(actual.second, newViewData, false);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(TAG, "Failed to reblog status " + status.getId(), t);
-            }
-        });
+        super.reblog(status, reblog);
+        setReblogged(status.getActionableId(), reblog);
     }
 
     @Override
     public void onFavourite(final boolean favourite, final int position) {
         final Status status = statuses.get(position).getAsRight();
+        super.favourite(status, favourite);
+        setFavourited(status.getActionableId(), favourite);
+    }
 
-        super.favouriteWithCallback(status, favourite, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull Response<Status> response) {
-
-                if (response.isSuccessful()) {
-                    status.setFavourited(favourite);
-
-                    if (status.getReblog() != null) {
-                        status.getReblog().setFavourited(favourite);
-                    }
-
-                    Pair<StatusViewData.Concrete, Integer> actual =
-                            findStatusAndPosition(position, status);
-                    if (actual == null) return;
-
-                    StatusViewData newViewData = new StatusViewData
-                            .Builder(actual.first)
-                            .setFavourited(favourite)
-                            .createStatusViewData();
-                    statuses.setPairedItem(actual.second, newViewData);
-                    adapter.changeItem(actual.second, newViewData, false);
-                }
+    @Override
+    protected void setReblogged(String actionableId, boolean reblogged) {
+        for (int i = 0; i < statuses.size(); i++) {
+            Status status = statuses.get(i).getAsRightOrNull();
+            if (status == null || !status.getActionableId().equals(actionableId)) {
+                continue;
+            }
+            status.setReblogged(reblogged);
+            if (status.getReblog() != null) {
+                status.getReblog().setReblogged(reblogged);
             }
+            StatusViewData newViewData =
+                    new StatusViewData.Builder((StatusViewData.Concrete) statuses.getPairedItem(i))
+                            .setReblogged(reblogged)
+                            .createStatusViewData();
+            statuses.setPairedItem(i, newViewData);
+            adapter.changeItem(i, newViewData, false);
+        }
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(TAG, "Failed to favourite status " + status.getId(), t);
+    @Override
+    protected void setFavourited(String actionableId, boolean favourited) {
+        for (int i = 0; i < statuses.size(); i++) {
+            Status status = statuses.get(i).getAsRightOrNull();
+            if (status == null || !status.getActionableId().equals(actionableId)) {
+                continue;
             }
-        });
+            status.setFavourited(favourited);
+            if (status.getReblog() != null) {
+                status.getReblog().setFavourited(favourited);
+            }
+            StatusViewData newViewData =
+                    new StatusViewData.Builder((StatusViewData.Concrete) statuses.getPairedItem(i))
+                            .setFavourited(favourited)
+                            .createStatusViewData();
+            statuses.setPairedItem(i, newViewData);
+            adapter.changeItem(i, newViewData, false);
+        }
     }
 
     @Override
@@ -411,11 +515,12 @@ public class TimelineFragment extends SFragment implements
                 Log.e(TAG, "Failed to load more at " + position + ", wrong placeholder position");
                 return;
             }
-            sendFetchTimelineRequest(fromStatus.getId(), toStatus.getId(), FetchEnd.MIDDLE, position);
-
-            StatusViewData newViewData = new StatusViewData.Placeholder(true);
+            StatusViewData.Placeholder newViewData = new StatusViewData.Placeholder(true);
             statuses.setPairedItem(position, newViewData);
             adapter.changeItem(position, newViewData, false);
+
+            sendFetchTimelineRequest(fromStatus.getId(), toStatus.getId(), FetchEnd.MIDDLE,
+                    newViewData);
         } else {
             Log.e(TAG, "error loading more");
         }
@@ -485,36 +590,146 @@ public class TimelineFragment extends SFragment implements
             case "alwaysShowSensitiveMedia": {
                 //it is ok if only newly loaded statuses are affected, no need to fully refresh
                 alwaysShowSensitiveMedia = sharedPreferences.getBoolean("alwaysShowSensitiveMedia", false);
+                break;
+            }
+            case TimelineMemory.LIMIT_PREFERENCE: {
+                maxStatuses = TimelineMemory.getLimit(sharedPreferences);
+                trimToWindow();
+                break;
             }
         }
     }
 
     @Override
     public void removeItem(int position) {
-        statuses.remove(position);
+        merger.remove(position);
         adapter.update(statuses.getPairedCopy());
     }
 
     @Override
     public void removeAllByAccountId(String accountId) {
-        // using iterator to safely remove items while iterating
-        Iterator<Either<Placeholder, Status>> iterator = statuses.iterator();
-        while (iterator.hasNext()) {
-            Status status = iterator.next().getAsRightOrNull();
-            if (status != null && status.getAccount().getId().equals(accountId)) {
-                iterator.remove();
+        removedRows.remember(accountId, statuses, item -> item.isRight()
+                && item.getAsRight().getAccount().getId().equals(accountId));
+        merger.removeIf(status -> status.getAccount().getId().equals(accountId));
+        adapter.update(statuses.getPairedCopy());
+    }
+
+    @Override
+    public void restoreAllByAccountId(String accountId) {
+        if (removedRows.restore(accountId, statuses,
+                (position, item) -> merger.add(position, item.getAsRight()))) {
+            adapter.update(statuses.getPairedCopy());
+        }
+    }
+
+    private void onLoadMore() {
+        if (cacheLoading) {
+            initialFetchPending = true;
+            return;
+        }
+        sendFetchTimelineRequest(bottomId, null, FetchEnd.BOTTOM, null);
+    }
+
+    /**
+     * @return the key the timeline is cached under, or null if this kind of timeline is not
+     * cached
+     */
+    @Nullable
+    private String getCacheKey() {
+        switch (kind) {
+            case HOME:
+            case PUBLIC_LOCAL:
+            case PUBLIC_FEDERATED:
+                return kind.name();
+            case LIST:
+                return kind.name() + ":" + hashtagOrId;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Shows the timeline as it was when it was last seen and then brings it up to date. Until the
+     * cache has been read the first fetch is held back, so it can't be mistaken for a following
+     * page of the cached statuses.
+     */
+    private void loadCachedTimeline() {
+        String cacheKey = getCacheKey();
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (cacheKey == null || activeAccount == null) {
+            cacheLoading = false;
+            return;
+        }
+        cacheLoading = true;
+        final int token = ++cacheLoadToken;
+        HivewayApplication.getTimelineCache().load(activeAccount.getId(), cacheKey, entries -> {
+            if (token != cacheLoadToken || !isAdded()) {
+                return;
             }
+            onCachedTimelineLoaded(entries);
+        });
+    }
+
+    private void onCachedTimelineLoaded(List<TimelineCache.Entry> entries) {
+        cacheLoading = false;
+        if (entries.isEmpty() || !statuses.isEmpty()) {
+            if (initialFetchPending) {
+                initialFetchPending = false;
+                onLoadMore();
+            }
+            return;
         }
+        initialFetchPending = false;
+
+        List<Either<Placeholder, Status>> cached = new ArrayList<>(entries.size());
+        boolean gap = false;
+        for (TimelineCache.Entry entry : entries) {
+            if (!isFiltered(entry.status)) {
+                if (gap && !cached.isEmpty()) {
+                    cached.add(Either.left(Placeholder.getInstance()));
+                }
+                cached.add(Either.right(entry.status));
+                gap = false;
+            }
+            // a gap below a filtered status moves up to the one before it
+            gap |= entry.gapBelow;
+        }
+        if (cached.isEmpty()) {
+            onLoadMore();
+            return;
+        }
+        merger.addAll(cached);
+        topId = cached.get(0).getAsRight().getId();
+        bottomId = cached.get(cached.size() - 1).getAsRight().getId();
         adapter.update(statuses.getPairedCopy());
+        adapter.setFooterState(FooterViewHolder.State.END);
+
+        /* The newest page replaces whatever part of the cache it overlaps with, if it doesn't
+         * overlap at all a placeholder is put between the two. */
+        sendFetchTimelineRequest(null, null, FetchEnd.TOP, null);
     }
 
-    private void onLoadMore() {
-        sendFetchTimelineRequest(bottomId, null, FetchEnd.BOTTOM, -1);
+    private void saveToCache() {
+        String cacheKey = getCacheKey();
+        AccountEntity activeAccount = HivewayApplication.getAccountManager().getActiveAccount();
+        if (cacheKey == null || activeAccount == null || statuses.isEmpty()) {
+            return;
+        }
+        List<TimelineCache.Entry> entries = new ArrayList<>();
+        int size = statuses.size();
+        for (int i = 0; i < size && entries.size() < TimelineCache.MAX_STATUSES_PER_TIMELINE; i++) {
+            Status status = statuses.get(i).getAsRightOrNull();
+            if (status != null) {
+                boolean gapBelow = i + 1 < size && !statuses.get(i + 1).isRight();
+                entries.add(new TimelineCache.Entry(status, gapBelow));
+            }
+        }
+        HivewayApplication.getTimelineCache().save(activeAccount.getId(), cacheKey, entries);
     }
 
     private void fullyRefresh() {
         adapter.clear();
-        sendFetchTimelineRequest(null, null, FetchEnd.TOP, -1);
+        sendFetchTimelineRequest(null, null, FetchEnd.TOP, null);
     }
 
     private boolean jumpToTopAllowed() {
@@ -531,29 +746,141 @@ public class TimelineFragment extends SFragment implements
     }
 
     private Call<List<Status>> getFetchCallByTimelineType(Kind kind, String tagOrId, String fromId,
-                                                          String uptoId) {
+                                                          String uptoId, int limit) {
         HivewayApi api = hivewayApi;
         switch (kind) {
             default:
             case HOME:
-                return api.homeTimeline(fromId, uptoId, null);
+                return api.homeTimeline(fromId, uptoId, limit);
             case PUBLIC_FEDERATED:
-                return api.publicTimeline(null, fromId, uptoId, LOAD_AT_ONCE);
+                return api.publicTimeline(null, fromId, uptoId, limit);
             case PUBLIC_LOCAL:
-                return api.publicTimeline(true, fromId, uptoId, LOAD_AT_ONCE);
+                return api.publicTimeline(true, fromId, uptoId, limit);
             case TAG:
-                return api.hashtagTimeline(tagOrId, null, fromId, uptoId, LOAD_AT_ONCE);
+                return api.hashtagTimeline(tagOrId, null, fromId, uptoId, limit);
             case USER:
-                return api.accountStatuses(tagOrId, fromId, uptoId, LOAD_AT_ONCE, null);
+                return api.accountStatuses(tagOrId, fromId, uptoId, limit, null);
             case FAVOURITES:
-                return api.favourites(fromId, uptoId, LOAD_AT_ONCE);
+                return api.favourites(fromId, uptoId, limit);
+            case LIST:
+                return api.listTimeline(tagOrId, fromId, uptoId, limit);
+        }
+    }
+
+    @Nullable
+    private StreamingClient.Subscription subscribeToStream(StreamingClient client) {
+        switch (kind) {
+            case HOME:
+                return client.subscribe(StreamingClient.STREAM_USER, null, streamListener);
+            case PUBLIC_FEDERATED:
+                return client.subscribe(StreamingClient.STREAM_PUBLIC, null, streamListener);
+            case PUBLIC_LOCAL:
+                return client.subscribe(StreamingClient.STREAM_PUBLIC_LOCAL, null, streamListener);
+            case TAG:
+                return client.subscribe(StreamingClient.STREAM_HASHTAG, hashtagOrId, streamListener);
             case LIST:
-                return api.listTimeline(tagOrId, fromId, uptoId, LOAD_AT_ONCE);
+                return client.subscribe(StreamingClient.STREAM_LIST, hashtagOrId, streamListener);
+            default:
+                // account timelines and favourites have no stream
+                return null;
+        }
+    }
+
+    private void onStreamedStatus(Status status) {
+        /* Until the first page arrived there is nothing to prepend to, the initial fetch will
+         * contain the status anyway. */
+        if (statuses.isEmpty() || isFiltered(status)) {
+            return;
+        }
+        if (!merger.prepend(status)) {
+            return;
+        }
+        topId = status.getId();
+        adapter.update(statuses.getPairedCopy());
+        trimToWindow();
+    }
+
+    private void onStreamedDelete(String id) {
+        boolean removed = merger.removeIf(status -> status.getId().equals(id)
+                || (status.getReblog() != null && status.getReblog().getId().equals(id)));
+        if (removed) {
+            adapter.update(statuses.getPairedCopy());
+        }
+    }
+
+    /**
+     * Once the timeline holds more than {@link #maxStatuses}, drops the statuses furthest away
+     * from the visible ones. Those below are loaded again when the user scrolls down, those above
+     * are replaced by a placeholder below the newest status, so they can be loaded again like any
+     * other gap.
+     */
+    private void trimToWindow() {
+        if (statuses.size() <= maxStatuses || topLoading || bottomLoading || isGapLoading()
+                || recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int keepEnd = Math.min(statuses.size(), Math.max(0, (first + last - maxStatuses) / 2)
+                + maxStatuses);
+        int keepStart = Math.max(0, keepEnd - maxStatuses);
+        merger.truncate(keepEnd);
+        if (keepStart > 1) {
+            merger.collapse(1, keepStart);
+        }
+        Status bottom = statuses.get(statuses.size() - 1).getAsRightOrNull();
+        if (bottom != null) {
+            bottomId = bottom.getId();
+        }
+        adapter.update(statuses.getPairedCopy());
+    }
+
+    /**
+     * Trimming could drop a gap which is being loaded, so it waits until they're done.
+     */
+    private boolean isGapLoading() {
+        for (int i = 0; i < statuses.size(); i++) {
+            StatusViewData viewData = statuses.getPairedItem(i);
+            if (viewData instanceof StatusViewData.Placeholder
+                    && ((StatusViewData.Placeholder) viewData).isLoading()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public String getTimelineName() {
+        return hashtagOrId == null ? kind.name() : kind.name() + " " + hashtagOrId;
+    }
+
+    @Override
+    public int getStatusCount() {
+        return statuses.size();
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < statuses.size(); i++) {
+            Status status = statuses.get(i).getAsRightOrNull();
+            if (status != null) {
+                bytes += TimelineMemory.estimate(status);
+            }
         }
+        return bytes;
     }
 
+    /**
+     * @param gap for {@link FetchEnd#MIDDLE}, the placeholder shown while the gap is loaded
+     */
     private void sendFetchTimelineRequest(@Nullable String fromId, @Nullable String uptoId,
-                                          final FetchEnd fetchEnd, final int pos) {
+                                          final FetchEnd fetchEnd,
+                                          @Nullable final StatusViewData.Placeholder gap) {
         /* If there is a fetch already ongoing, record however many fetches are requested and
          * fulfill them after it's complete. */
         if (fetchEnd == FetchEnd.TOP && topLoading) {
@@ -572,33 +899,55 @@ public class TimelineFragment extends SFragment implements
             recyclerView.post(() -> adapter.setFooterState(FooterViewHolder.State.LOADING));
         }
 
+        /* Following pages are sized to how fast the user scrolls, the first page and gaps always
+         * get the same size so filling them works the same as before. */
+        final int limit = fetchEnd == FetchEnd.BOTTOM && fromId != null && scrollListener != null
+                ? scrollListener.getPageSize()
+                : LOAD_AT_ONCE;
+
         Callback<List<Status>> callback = new Callback<List<Status>>() {
             @Override
             public void onResponse(@NonNull Call<List<Status>> call, @NonNull Response<List<Status>> response) {
+                if (!fetchCalls.remove(call)) {
+                    // canceled together with its view
+                    return;
+                }
                 if (response.isSuccessful()) {
                     String linkHeader = response.headers().get("Link");
-                    onFetchTimelineSuccess(response.body(), linkHeader, fetchEnd, pos);
+                    onFetchTimelineSuccess(response.body(), linkHeader, fetchEnd, gap, limit);
                 } else {
-                    onFetchTimelineFailure(new Exception(response.message()), fetchEnd, pos);
+                    onFetchTimelineFailure(new Exception(response.message()), fetchEnd, gap);
                 }
             }
 
             @Override
             public void onFailure(@NonNull Call<List<Status>> call, @NonNull Throwable t) {
-                onFetchTimelineFailure((Exception) t, fetchEnd, pos);
+                if (!fetchCalls.remove(call)) {
+                    return;
+                }
+                onFetchTimelineFailure((Exception) t, fetchEnd, gap);
             }
         };
 
-        Call<List<Status>> listCall = getFetchCallByTimelineType(kind, hashtagOrId, fromId, uptoId);
-        callList.add(listCall);
+        Call<List<Status>> listCall = getFetchCallByTimelineType(kind, hashtagOrId, fromId, uptoId,
+                limit);
+        /* Cleared again by fulfillAnyQueuedFetches once the request succeeded or failed, or when
+         * the view is destroyed. */
+        if (fetchEnd == FetchEnd.TOP) {
+            topLoading = true;
+        } else if (fetchEnd == FetchEnd.BOTTOM) {
+            bottomLoading = true;
+        }
+        fetchCalls.add(listCall);
         listCall.enqueue(callback);
     }
 
     private void onFetchTimelineSuccess(List<Status> statuses, String linkHeader,
-                                        FetchEnd fetchEnd, int pos) {
+                                        FetchEnd fetchEnd,
+                                        @Nullable StatusViewData.Placeholder gap, int limit) {
         // We filled the hole (or reached the end) if the server returned less statuses than we
         // we asked for.
-        boolean fullFetch = statuses.size() >= LOAD_AT_ONCE;
+        boolean fullFetch = statuses.size() >= limit;
         filterStatuses(statuses);
         List<HttpHeaderLink> links = HttpHeaderLink.parse(linkHeader);
         switch (fetchEnd) {
@@ -612,7 +961,13 @@ public class TimelineFragment extends SFragment implements
                 break;
             }
             case MIDDLE: {
-                replacePlaceholderWithStatuses(statuses, fullFetch, pos);
+                int position = indexOfGap(gap);
+                // -1 if a refresh replaced the gap in the meantime
+                if (position != -1) {
+                    replacePlaceholderWithStatuses(statuses, fullFetch, position);
+                }
+                // trimming waited for the gap
+                trimToWindow();
                 break;
             }
             case BOTTOM: {
@@ -646,10 +1001,12 @@ public class TimelineFragment extends SFragment implements
         swipeRefreshLayout.setRefreshing(false);
     }
 
-    private void onFetchTimelineFailure(Exception exception, FetchEnd fetchEnd, int position) {
+    private void onFetchTimelineFailure(Exception exception, FetchEnd fetchEnd,
+                                        @Nullable StatusViewData.Placeholder gap) {
         swipeRefreshLayout.setRefreshing(false);
 
-        if (fetchEnd == FetchEnd.MIDDLE && !statuses.get(position).isRight()) {
+        int position = fetchEnd == FetchEnd.MIDDLE ? indexOfGap(gap) : -1;
+        if (position != -1) {
             StatusViewData newViewData = new StatusViewData.Placeholder(false);
             statuses.setPairedItem(position, newViewData);
             adapter.changeItem(position, newViewData, true);
@@ -659,6 +1016,20 @@ public class TimelineFragment extends SFragment implements
         fulfillAnyQueuedFetches(fetchEnd);
     }
 
+    /**
+     * Streamed statuses, deletes and pages loaded at the top move a gap while it is loaded, so it
+     * is found again by its placeholder.
+     * @return the position of {@code gap}, or -1 if it is not in the timeline anymore
+     */
+    private int indexOfGap(@Nullable StatusViewData.Placeholder gap) {
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.getPairedItem(i) == gap) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private void fulfillAnyQueuedFetches(FetchEnd fetchEnd) {
         switch (fetchEnd) {
             case BOTTOM: {
@@ -683,14 +1054,17 @@ public class TimelineFragment extends SFragment implements
     private void filterStatuses(List<Status> statuses) {
         Iterator<Status> it = statuses.iterator();
         while (it.hasNext()) {
-            Status status = it.next();
-            if ((status.getInReplyToId() != null && filterRemoveReplies)
-                    || (status.getReblog() != null && filterRemoveReblogs)) {
+            if (isFiltered(it.next())) {
                 it.remove();
             }
         }
     }
 
+    private boolean isFiltered(Status status) {
+        return (status.getInReplyToId() != null && filterRemoveReplies)
+                || (status.getReblog() != null && filterRemoveReblogs);
+    }
+
     private void updateStatuses(List<Status> newStatuses, @Nullable String fromId,
                                 @Nullable String toId, boolean fullFetch) {
         if (ListUtils.isEmpty(newStatuses)) {
@@ -703,27 +1077,7 @@ public class TimelineFragment extends SFragment implements
             topId = toId;
         }
 
-        List<Either<Placeholder, Status>> liftedNew = listStatusList(newStatuses);
-
-        if (statuses.isEmpty()) {
-            statuses.addAll(liftedNew);
-        } else {
-            Either<Placeholder, Status> lastOfNew = liftedNew.get(newStatuses.size() - 1);
-            int index = statuses.indexOf(lastOfNew);
-
-            for (int i = 0; i < index; i++) {
-                statuses.remove(0);
-            }
-            int newIndex = liftedNew.indexOf(statuses.get(0));
-            if (newIndex == -1) {
-                if (index == -1 && fullFetch) {
-                    liftedNew.add(Either.left(Placeholder.getInstance()));
-                }
-                statuses.addAll(0, liftedNew);
-            } else {
-                statuses.addAll(0, liftedNew.subList(0, newIndex));
-            }
-        }
+        merger.mergeTop(newStatuses, fullFetch);
         adapter.update(statuses.getPairedCopy());
     }
 
@@ -731,86 +1085,19 @@ public class TimelineFragment extends SFragment implements
         if (ListUtils.isEmpty(newStatuses)) {
             return;
         }
-        int end = statuses.size();
-        Status last = statuses.get(end - 1).getAsRightOrNull();
-        // I was about to replace findStatus with indexOf but it is incorrect to compare value
-        // types by ID anyway and we should change equals() for Status, I think, so this makes sense
-        if (last != null && !findStatus(newStatuses, last.getId())) {
-            statuses.addAll(listStatusList(newStatuses));
+        if (fromId != null) {
+            bottomId = fromId;
+        }
+        int added = merger.mergeBottom(newStatuses);
+        if (added > 0) {
             List<StatusViewData> newViewDatas = statuses.getPairedCopy()
-                    .subList(statuses.size() - newStatuses.size(), statuses.size());
-            if (BuildConfig.DEBUG && newStatuses.size() != newViewDatas.size()) {
-                String error = String.format(Locale.getDefault(),
-                        "Incorrectly got statusViewData sublist." +
-                                " newStatuses.size == %d newViewDatas.size == %d, statuses.size == %d",
-                        newStatuses.size(), newViewDatas.size(), statuses.size());
-                throw new AssertionError(error);
-            }
-            if (fromId != null) {
-                bottomId = fromId;
-            }
+                    .subList(statuses.size() - added, statuses.size());
             adapter.addItems(newViewDatas);
         }
     }
 
     private void replacePlaceholderWithStatuses(List<Status> newStatuses, boolean fullFetch, int pos) {
-        Status status = statuses.get(pos).getAsRightOrNull();
-        if (status == null) {
-            statuses.remove(pos);
-        }
-
-        if (ListUtils.isEmpty(newStatuses)) {
-            adapter.update(statuses.getPairedCopy());
-            return;
-        }
-
-        List<Either<Placeholder, Status>> liftedNew = listStatusList(newStatuses);
-
-        if (fullFetch) {
-            liftedNew.add(Either.left(Placeholder.getInstance()));
-        }
-
-        statuses.addAll(pos, liftedNew);
+        merger.fillGap(pos, newStatuses, fullFetch);
         adapter.update(statuses.getPairedCopy());
-
-    }
-
-    private static boolean findStatus(List<Status> statuses, String id) {
-        for (Status status : statuses) {
-            if (status.getId().equals(id)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private final Function<Status, Either<Placeholder, Status>> statusLifter =
-            Either::right;
-
-    private @Nullable
-    Pair<StatusViewData.Concrete, Integer>
-    findStatusAndPosition(int position, Status status) {
-        StatusViewData.Concrete statusToUpdate;
-        int positionToUpdate;
-        StatusViewData someOldViewData = statuses.getPairedItem(position);
-
-        // Unlikely, but data could change between the request and response
-        if ((someOldViewData instanceof StatusViewData.Placeholder) ||
-                !((StatusViewData.Concrete) someOldViewData).getId().equals(status.getId())) {
-            // try to find the status we need to update
-            int foundPos = statuses.indexOf(Either.<Placeholder, Status>right(status));
-            if (foundPos < 0) return null; // okay, it's hopeless, give up
-            statusToUpdate = ((StatusViewData.Concrete)
-                    statuses.getPairedItem(foundPos));
-            positionToUpdate = position;
-        } else {
-            statusToUpdate = (StatusViewData.Concrete) someOldViewData;
-            positionToUpdate = position;
-        }
-        return new Pair<>(statusToUpdate, positionToUpdate);
-    }
-
-    private List<Either<Placeholder, Status>> listStatusList(List<Status> list) {
-        return CollectionUtil.map(list, statusLifter);
     }
 }
@@ -38,12 +38,14 @@ import android.view.ViewGroup;
 
 import org.hiveway.BuildConfig;
 import org.hiveway.R;
+import org.hiveway.adapter.StatusViewPool;
 import org.hiveway.adapter.ThreadAdapter;
 import org.hiveway.entity.Attachment;
 import org.hiveway.entity.Card;
 import org.hiveway.entity.Status;
 import org.hiveway.entity.StatusContext;
 import org.hiveway.interfaces.StatusActionListener;
+import org.hiveway.network.CachePolicyInterceptor;
 import org.hiveway.receiver.TimelineReceiver;
 import org.hiveway.util.PairedList;
 import org.hiveway.util.ThemeUtils;
@@ -80,6 +82,7 @@ public class ViewThreadFragment extends SFragment implements
                     return ViewDataUtils.statusToViewData(input, alwaysShowSensitiveMedia);
                 }
             });
+    private final RemovedRows<Status> removedRows = new RemovedRows<>(status -> false);
 
     public static ViewThreadFragment newInstance(String id) {
         Bundle arguments = new Bundle();
@@ -103,6 +106,9 @@ public class ViewThreadFragment extends SFragment implements
         recyclerView.setHasFixedSize(true);
         LinearLayoutManager layoutManager = new LinearLayoutManager(context);
         recyclerView.setLayoutManager(layoutManager);
+        // rows of lists which are gone go back to the pool of the activity for the others
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setRecycledViewPool(StatusViewPool.get(getActivity()));
         DividerItemDecoration divider = new DividerItemDecoration(
                 context, layoutManager.getOrientation());
         Drawable dividerDrawable = ThemeUtils.getDrawable(context, R.attr.status_divider_drawable,
@@ -143,13 +149,18 @@ public class ViewThreadFragment extends SFragment implements
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
         thisThreadsStatusId = getArguments().getString("id");
-        onRefresh();
+        load(false);
     }
 
     @Override
     public void onRefresh() {
+        // the user wants to see replies posted since, not what is still cached
+        load(true);
+    }
+
+    private void load(boolean refresh) {
         sendStatusRequest(thisThreadsStatusId);
-        sendThreadRequest(thisThreadsStatusId);
+        sendThreadRequest(thisThreadsStatusId, refresh);
         sendCardRequest(thisThreadsStatusId);
     }
 
@@ -161,67 +172,59 @@ public class ViewThreadFragment extends SFragment implements
     @Override
     public void onReblog(final boolean reblog, final int position) {
         final Status status = statuses.get(position);
-        super.reblogWithCallback(statuses.get(position), reblog, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull Response<Status> response) {
-                if (response.isSuccessful()) {
-                    status.setReblogged(reblog);
-
-                    if (status.getReblog() != null) {
-                        status.getReblog().setReblogged(reblog);
-                    }
-
-                    StatusViewData.Concrete viewdata = statuses.getPairedItem(position);
-
-                    StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder((viewdata));
-                    viewDataBuilder.setReblogged(reblog);
-
-                    StatusViewData.Concrete newViewData = viewDataBuilder.createStatusViewData();
-
-                    statuses.setPairedItem(position, newViewData);
-                    adapter.setItem(position, newViewData, true);
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(getClass().getSimpleName(), "Failed to reblog status: " + status.getId());
-                t.printStackTrace();
-            }
-        });
+        super.reblog(status, reblog);
+        setReblogged(status.getActionableId(), reblog);
     }
 
     @Override
     public void onFavourite(final boolean favourite, final int position) {
         final Status status = statuses.get(position);
-        super.favouriteWithCallback(statuses.get(position), favourite, new Callback<Status>() {
-            @Override
-            public void onResponse(@NonNull Call<Status> call, @NonNull Response<Status> response) {
-                if (response.isSuccessful()) {
-                    status.setFavourited(favourite);
+        super.favourite(status, favourite);
+        setFavourited(status.getActionableId(), favourite);
+    }
 
-                    if (status.getReblog() != null) {
-                        status.getReblog().setFavourited(favourite);
-                    }
+    @Override
+    protected void setReblogged(String actionableId, boolean reblogged) {
+        for (int i = 0; i < statuses.size(); i++) {
+            Status status = statuses.get(i);
+            if (!status.getActionableId().equals(actionableId)) {
+                continue;
+            }
+            status.setReblogged(reblogged);
+            if (status.getReblog() != null) {
+                status.getReblog().setReblogged(reblogged);
+            }
 
-                    StatusViewData.Concrete viewdata = statuses.getPairedItem(position);
+            StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(statuses.getPairedItem(i));
+            viewDataBuilder.setReblogged(reblogged);
 
-                    StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder((viewdata));
-                    viewDataBuilder.setFavourited(favourite);
+            StatusViewData.Concrete newViewData = viewDataBuilder.createStatusViewData();
 
-                    StatusViewData.Concrete newViewData = viewDataBuilder.createStatusViewData();
+            statuses.setPairedItem(i, newViewData);
+            adapter.setItem(i, newViewData, true);
+        }
+    }
 
-                    statuses.setPairedItem(position, newViewData);
-                    adapter.setItem(position, newViewData, true);
-                }
+    @Override
+    protected void setFavourited(String actionableId, boolean favourited) {
+        for (int i = 0; i < statuses.size(); i++) {
+            Status status = statuses.get(i);
+            if (!status.getActionableId().equals(actionableId)) {
+                continue;
             }
-
-            @Override
-            public void onFailure(@NonNull Call<Status> call, @NonNull Throwable t) {
-                Log.d(getClass().getSimpleName(), "Failed to favourite status: " + status.getId());
-                t.printStackTrace();
+            status.setFavourited(favourited);
+            if (status.getReblog() != null) {
+                status.getReblog().setFavourited(favourited);
             }
-        });
+
+            StatusViewData.Builder viewDataBuilder = new StatusViewData.Builder(statuses.getPairedItem(i));
+            viewDataBuilder.setFavourited(favourited);
+
+            StatusViewData.Concrete newViewData = viewDataBuilder.createStatusViewData();
+
+            statuses.setPairedItem(i, newViewData);
+            adapter.setItem(i, newViewData, true);
+        }
     }
 
     @Override
@@ -302,6 +305,8 @@ public class ViewThreadFragment extends SFragment implements
         if (!statuses.isEmpty()) {
             status = statuses.get(statusIndex);
         }
+        removedRows.remember(accountId, statuses,
+                s -> s.getAccount().getId().equals(accountId));
         // using iterator to safely remove items while iterating
         Iterator<Status> iterator = statuses.iterator();
         while (iterator.hasNext()) {
@@ -320,6 +325,19 @@ public class ViewThreadFragment extends SFragment implements
         adapter.setStatuses(statuses.getPairedCopy());
     }
 
+    @Override
+    public void restoreAllByAccountId(String accountId) {
+        if (statuses.isEmpty()) {
+            return;
+        }
+        Status status = statuses.get(statusIndex);
+        if (removedRows.restore(accountId, statuses, statuses::add)) {
+            statusIndex = statuses.indexOf(status);
+            adapter.setDetailedStatusPosition(statusIndex);
+            adapter.setStatuses(statuses.getPairedCopy());
+        }
+    }
+
     private void sendStatusRequest(final String id) {
         Call<Status> call = hivewayApi.status(id);
         call.enqueue(new Callback<Status>() {
@@ -341,8 +359,9 @@ public class ViewThreadFragment extends SFragment implements
         callList.add(call);
     }
 
-    private void sendThreadRequest(final String id) {
-        Call<StatusContext> call = hivewayApi.statusContext(id);
+    private void sendThreadRequest(final String id, boolean refresh) {
+        Call<StatusContext> call = hivewayApi.statusContext(id,
+                refresh ? CachePolicyInterceptor.NO_CACHE : null);
         call.enqueue(new Callback<StatusContext>() {
             @Override
             public void onResponse(@NonNull Call<StatusContext> call, @NonNull Response<StatusContext> response) {
@@ -391,7 +410,7 @@ public class ViewThreadFragment extends SFragment implements
                     .setAction(R.string.action_retry, new View.OnClickListener() {
                         @Override
                         public void onClick(View v) {
-                            sendThreadRequest(id);
+                            sendThreadRequest(id, false);
                             sendStatusRequest(id);
                             sendCardRequest(id);
                         }
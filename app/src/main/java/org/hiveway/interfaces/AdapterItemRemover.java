@@ -20,4 +20,10 @@ package org.hiveway.interfaces;
 public interface AdapterItemRemover {
     void removeItem(int position);
     void removeAllByAccountId(String accountId);
+
+    /**
+     * Puts back what {@link #removeAllByAccountId(String)} removed, if the server refused to mute
+     * or block the account.
+     */
+    void restoreAllByAccountId(String accountId);
 }
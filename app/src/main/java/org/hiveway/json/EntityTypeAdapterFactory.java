@@ -0,0 +1,672 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.json;
+
+import android.support.annotation.Nullable;
+import android.text.Spanned;
+import android.text.SpannedString;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.hiveway.entity.Account;
+import org.hiveway.entity.Attachment;
+import org.hiveway.entity.Card;
+import org.hiveway.entity.Notification;
+import org.hiveway.entity.Status;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streaming adapters for the entities which make up timelines and notifications. Gson would
+ * otherwise create them by reflection, which is by far the most expensive part of parsing a page
+ * of nested statuses. Fields the app never reads are skipped without being materialized.
+ *
+ * Missing or null values of non-null properties are replaced with empty values, so the Kotlin
+ * constructors never see a null where they don't expect one. Where no empty value makes sense, like
+ * a status without an account or a notification of a type the app doesn't know, the item is read
+ * as null and dropped from the lists it is part of, so one odd item doesn't fail the whole page.
+ *
+ * Only reading is hand-written. Statuses are also written, to cache timelines, which falls back to
+ * the reflective adapters; dates and html are written by {@link Iso8601DateAdapter} and
+ * {@link SpannedTypeAdapter} then, which have to be registered with the same Gson so a cached
+ * status reads back the same as a fresh one.
+ */
+public final class EntityTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == Status.class) {
+            return (TypeAdapter<T>) new StatusAdapter(gson,
+                    (TypeAdapter<Status>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Account.class) {
+            return (TypeAdapter<T>) new AccountAdapter(gson,
+                    (TypeAdapter<Account>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Notification.class) {
+            return (TypeAdapter<T>) new NotificationAdapter(gson,
+                    (TypeAdapter<Notification>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Attachment.class) {
+            return (TypeAdapter<T>) new AttachmentAdapter(
+                    (TypeAdapter<Attachment>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Card.class) {
+            return (TypeAdapter<T>) new CardAdapter(
+                    (TypeAdapter<Card>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Status.Mention.class) {
+            return (TypeAdapter<T>) new MentionAdapter(
+                    (TypeAdapter<Status.Mention>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Status.Emoji.class) {
+            return (TypeAdapter<T>) new EmojiAdapter(
+                    (TypeAdapter<Status.Emoji>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == Status.Application.class) {
+            return (TypeAdapter<T>) new ApplicationAdapter(
+                    (TypeAdapter<Status.Application>) gson.getDelegateAdapter(this, type));
+        } else if (rawType == List.class) {
+            Type elementType = getElementType(type.getType());
+            if (elementType == Status.class || elementType == Notification.class) {
+                return (TypeAdapter<T>) new DroppingListAdapter<>(
+                        gson.getAdapter(TypeToken.get(elementType)),
+                        (TypeAdapter<List<Object>>) gson.getDelegateAdapter(this, type));
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Type getElementType(Type listType) {
+        if (!(listType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type elementType = ((ParameterizedType) listType).getActualTypeArguments()[0];
+        if (elementType instanceof WildcardType) {
+            return ((WildcardType) elementType).getUpperBounds()[0];
+        }
+        return elementType;
+    }
+
+    /**
+     * Reads lists of statuses or notifications, leaving out the items which were read as null.
+     */
+    private static final class DroppingListAdapter<E> extends TypeAdapter<List<E>> {
+        private final TypeAdapter<E> elementAdapter;
+        private final TypeAdapter<List<E>> writeDelegate;
+
+        @SuppressWarnings("unchecked")
+        DroppingListAdapter(TypeAdapter<?> elementAdapter, TypeAdapter<List<Object>> writeDelegate) {
+            this.elementAdapter = (TypeAdapter<E>) elementAdapter;
+            this.writeDelegate = (TypeAdapter<List<E>>) (TypeAdapter<?>) writeDelegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, List<E> value) throws IOException {
+            writeDelegate.write(out, value);
+        }
+
+        @Override
+        public List<E> read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<E> list = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                E element = elementAdapter.read(in);
+                if (element != null) {
+                    list.add(element);
+                }
+            }
+            in.endArray();
+            return list;
+        }
+    }
+
+    private abstract static class EntityAdapter<T> extends TypeAdapter<T> {
+        private final TypeAdapter<T> writeDelegate;
+
+        EntityAdapter(TypeAdapter<T> writeDelegate) {
+            this.writeDelegate = writeDelegate;
+        }
+
+        @Override
+        public final void write(JsonWriter out, T value) throws IOException {
+            writeDelegate.write(out, value);
+        }
+
+        @Override
+        public final T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            in.beginObject();
+            T result = readObject(in);
+            in.endObject();
+            return result;
+        }
+
+        /**
+         * Reads all properties of the object, the reader is positioned after its opening brace.
+         */
+        abstract T readObject(JsonReader in) throws IOException;
+    }
+
+    private static final class StatusAdapter extends EntityAdapter<Status> {
+        private final TypeAdapter<Account> accountAdapter;
+        private final TypeAdapter<Date> dateAdapter;
+        private final TypeAdapter<Status.Visibility> visibilityAdapter;
+        private final TypeAdapter<Attachment> attachmentAdapter;
+        private final TypeAdapter<Status.Mention> mentionAdapter;
+        private final TypeAdapter<Status.Emoji> emojiAdapter;
+        private final TypeAdapter<Status.Application> applicationAdapter;
+
+        StatusAdapter(Gson gson, TypeAdapter<Status> writeDelegate) {
+            super(writeDelegate);
+            accountAdapter = gson.getAdapter(Account.class);
+            dateAdapter = gson.getAdapter(Date.class);
+            visibilityAdapter = gson.getAdapter(Status.Visibility.class);
+            attachmentAdapter = gson.getAdapter(Attachment.class);
+            mentionAdapter = gson.getAdapter(Status.Mention.class);
+            emojiAdapter = gson.getAdapter(Status.Emoji.class);
+            applicationAdapter = gson.getAdapter(Status.Application.class);
+        }
+
+        @Override
+        Status readObject(JsonReader in) throws IOException {
+            String id = "";
+            String url = "";
+            Account account = null;
+            String inReplyToId = null;
+            String inReplyToAccountId = null;
+            Status reblog = null;
+            boolean hasReblog = false;
+            String content = null;
+            Date createdAt = null;
+            List<Status.Emoji> emojis = null;
+            int reblogsCount = 0;
+            int favouritesCount = 0;
+            Boolean reblogged = null;
+            Boolean favourited = null;
+            boolean sensitive = false;
+            String spoilerText = "";
+            Status.Visibility visibility = null;
+            List<Attachment> attachments = null;
+            List<Status.Mention> mentions = null;
+            Status.Application application = null;
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = nextString(in, "");
+                        break;
+                    case "url":
+                        url = nextString(in, "");
+                        break;
+                    case "account":
+                        account = accountAdapter.read(in);
+                        break;
+                    case "in_reply_to_id":
+                        inReplyToId = nextString(in, null);
+                        break;
+                    case "in_reply_to_account_id":
+                        inReplyToAccountId = nextString(in, null);
+                        break;
+                    case "reblog":
+                        hasReblog = in.peek() != JsonToken.NULL;
+                        reblog = read(in);
+                        break;
+                    case "content":
+                        // kept as html, Status converts it lazily
+                        content = nextString(in, null);
+                        break;
+                    case "created_at":
+                        createdAt = dateAdapter.read(in);
+                        break;
+                    case "emojis":
+                        emojis = readList(in, emojiAdapter);
+                        break;
+                    case "reblogs_count":
+                        reblogsCount = nextInt(in);
+                        break;
+                    case "favourites_count":
+                        favouritesCount = nextInt(in);
+                        break;
+                    case "reblogged":
+                        reblogged = nextBoolean(in);
+                        break;
+                    case "favourited":
+                        favourited = nextBoolean(in);
+                        break;
+                    case "sensitive": {
+                        Boolean value = nextBoolean(in);
+                        sensitive = value != null && value;
+                        break;
+                    }
+                    case "spoiler_text":
+                        spoilerText = nextString(in, "");
+                        break;
+                    case "visibility":
+                        visibility = visibilityAdapter.read(in);
+                        break;
+                    case "media_attachments":
+                        attachments = readList(in, attachmentAdapter);
+                        break;
+                    case "mentions":
+                        mentions = readList(in, mentionAdapter);
+                        break;
+                    case "application":
+                        application = applicationAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            if (account == null || (hasReblog && reblog == null)) {
+                // can't be shown, neither can a reblog of something which can't be shown
+                return null;
+            }
+            return new Status(id, url, account, inReplyToId, inReplyToAccountId, reblog,
+                    content == null ? "" : content,
+                    createdAt == null ? new Date(0) : createdAt,
+                    emojis == null ? Collections.<Status.Emoji>emptyList() : emojis,
+                    reblogsCount, favouritesCount, reblogged, favourited, sensitive, spoilerText,
+                    visibility == null ? Status.Visibility.UNKNOWN : visibility,
+                    attachments == null
+                            ? new Attachment[0]
+                            : attachments.toArray(new Attachment[attachments.size()]),
+                    mentions == null
+                            ? new Status.Mention[0]
+                            : mentions.toArray(new Status.Mention[mentions.size()]),
+                    application);
+        }
+    }
+
+    private static final class AccountAdapter extends EntityAdapter<Account> {
+        private final TypeAdapter<Spanned> spannedAdapter;
+
+        AccountAdapter(Gson gson, TypeAdapter<Account> writeDelegate) {
+            super(writeDelegate);
+            spannedAdapter = gson.getAdapter(Spanned.class);
+        }
+
+        @Override
+        Account readObject(JsonReader in) throws IOException {
+            String id = "";
+            String localUsername = "";
+            String username = "";
+            String displayName = "";
+            Spanned note = null;
+            String url = "";
+            String avatar = "";
+            String header = "";
+            boolean locked = false;
+            int followersCount = 0;
+            int followingCount = 0;
+            int statusesCount = 0;
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = nextString(in, "");
+                        break;
+                    case "username":
+                        localUsername = nextString(in, "");
+                        break;
+                    case "acct":
+                        username = nextString(in, "");
+                        break;
+                    case "display_name":
+                        displayName = nextString(in, "");
+                        break;
+                    case "note":
+                        note = spannedAdapter.read(in);
+                        break;
+                    case "url":
+                        url = nextString(in, "");
+                        break;
+                    case "avatar":
+                        avatar = nextString(in, "");
+                        break;
+                    case "header":
+                        header = nextString(in, "");
+                        break;
+                    case "locked": {
+                        Boolean value = nextBoolean(in);
+                        locked = value != null && value;
+                        break;
+                    }
+                    case "followers_count":
+                        followersCount = nextInt(in);
+                        break;
+                    case "following_count":
+                        followingCount = nextInt(in);
+                        break;
+                    case "statuses_count":
+                        statusesCount = nextInt(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            return new Account(id, localUsername, username, displayName,
+                    note == null ? new SpannedString("") : note, url, avatar, header, locked,
+                    followersCount, followingCount, statusesCount);
+        }
+    }
+
+    private static final class NotificationAdapter extends EntityAdapter<Notification> {
+        private final TypeAdapter<Notification.Type> typeAdapter;
+        private final TypeAdapter<Account> accountAdapter;
+        private final TypeAdapter<Status> statusAdapter;
+
+        NotificationAdapter(Gson gson, TypeAdapter<Notification> writeDelegate) {
+            super(writeDelegate);
+            typeAdapter = gson.getAdapter(Notification.Type.class);
+            accountAdapter = gson.getAdapter(Account.class);
+            statusAdapter = gson.getAdapter(Status.class);
+        }
+
+        @Override
+        Notification readObject(JsonReader in) throws IOException {
+            Notification.Type type = null;
+            String id = "";
+            Account account = null;
+            Status status = null;
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type":
+                        type = typeAdapter.read(in);
+                        break;
+                    case "id":
+                        id = nextString(in, "");
+                        break;
+                    case "account":
+                        account = accountAdapter.read(in);
+                        break;
+                    case "status":
+                        status = statusAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            if (type == null || account == null
+                    || (type != Notification.Type.FOLLOW && status == null)) {
+                // a type this version doesn't know yet, or something it can't show
+                return null;
+            }
+            return new Notification(type, id, account, status);
+        }
+    }
+
+    private static final class AttachmentAdapter extends EntityAdapter<Attachment> {
+
+        AttachmentAdapter(TypeAdapter<Attachment> writeDelegate) {
+            super(writeDelegate);
+        }
+
+        @Override
+        Attachment readObject(JsonReader in) throws IOException {
+            String id = "";
+            String url = "";
+            String previewUrl = "";
+            String textUrl = null;
+            Attachment.Type type = Attachment.Type.UNKNOWN;
+            String description = null;
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = nextString(in, "");
+                        break;
+                    case "url":
+                        url = nextString(in, "");
+                        break;
+                    case "preview_url":
+                        previewUrl = nextString(in, "");
+                        break;
+                    case "text_url":
+                        textUrl = nextString(in, null);
+                        break;
+                    case "type":
+                        type = parseType(nextString(in, ""));
+                        break;
+                    case "description":
+                        description = nextString(in, null);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            return new Attachment(id, url, previewUrl, textUrl, type, description);
+        }
+
+        /**
+         * Same mapping as {@link Attachment.MediaTypeDeserializer}.
+         */
+        private static Attachment.Type parseType(String type) {
+            switch (type) {
+                case "image":
+                    return Attachment.Type.IMAGE;
+                case "gifv":
+                    return Attachment.Type.GIFV;
+                case "video":
+                    return Attachment.Type.VIDEO;
+                default:
+                    return Attachment.Type.UNKNOWN;
+            }
+        }
+    }
+
+    private static final class CardAdapter extends EntityAdapter<Card> {
+
+        CardAdapter(TypeAdapter<Card> writeDelegate) {
+            super(writeDelegate);
+        }
+
+        @Override
+        Card readObject(JsonReader in) throws IOException {
+            String url = "";
+            String title = "";
+            String description = "";
+            String image = "";
+            String type = "";
+            int width = 0;
+            int height = 0;
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "url":
+                        url = nextString(in, "");
+                        break;
+                    case "title":
+                        title = nextString(in, "");
+                        break;
+                    case "description":
+                        description = nextString(in, "");
+                        break;
+                    case "image":
+                        image = nextString(in, "");
+                        break;
+                    case "type":
+                        type = nextString(in, "");
+                        break;
+                    case "width":
+                        width = nextInt(in);
+                        break;
+                    case "height":
+                        height = nextInt(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+
+            return new Card(url, title, description, image, type, width, height);
+        }
+    }
+
+    private static final class MentionAdapter extends EntityAdapter<Status.Mention> {
+
+        MentionAdapter(TypeAdapter<Status.Mention> writeDelegate) {
+            super(writeDelegate);
+        }
+
+        @Override
+        Status.Mention readObject(JsonReader in) throws IOException {
+            Status.Mention mention = new Status.Mention();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        mention.setId(nextString(in, null));
+                        break;
+                    case "url":
+                        mention.setUrl(nextString(in, null));
+                        break;
+                    case "acct":
+                        mention.setUsername(nextString(in, null));
+                        break;
+                    case "username":
+                        mention.setLocalUsername(nextString(in, null));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            return mention;
+        }
+    }
+
+    private static final class EmojiAdapter extends EntityAdapter<Status.Emoji> {
+
+        EmojiAdapter(TypeAdapter<Status.Emoji> writeDelegate) {
+            super(writeDelegate);
+        }
+
+        @Override
+        Status.Emoji readObject(JsonReader in) throws IOException {
+            String shortcode = null;
+            String url = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "shortcode":
+                        shortcode = nextString(in, null);
+                        break;
+                    case "url":
+                        url = nextString(in, null);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            return new Status.Emoji(shortcode, url);
+        }
+    }
+
+    private static final class ApplicationAdapter extends EntityAdapter<Status.Application> {
+
+        ApplicationAdapter(TypeAdapter<Status.Application> writeDelegate) {
+            super(writeDelegate);
+        }
+
+        @Override
+        Status.Application readObject(JsonReader in) throws IOException {
+            Status.Application application = new Status.Application();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        application.setName(nextString(in, null));
+                        break;
+                    case "website":
+                        application.setWebsite(nextString(in, null));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            return application;
+        }
+    }
+
+    private static String nextString(JsonReader in, @Nullable String fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextString();
+    }
+
+    private static int nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextInt();
+    }
+
+    @Nullable
+    private static Boolean nextBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextBoolean();
+    }
+
+    @Nullable
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> elementAdapter)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+}
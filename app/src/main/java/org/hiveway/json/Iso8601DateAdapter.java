@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.json;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Reads and writes dates as ISO-8601 in UTC, like "2018-04-12T09:30:00.000Z", which is what the
+ * server sends. Gson's own adapter would write them in a locale format in the current time zone
+ * and without milliseconds, so a cached status could come back with a different time.
+ *
+ * Dates in that old format are still read, so timelines cached before are not lost.
+ */
+public final class Iso8601DateAdapter extends TypeAdapter<Date> {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Override
+    public void write(JsonWriter out, @Nullable Date value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(format(value));
+        }
+    }
+
+    @Nullable
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String value = in.nextString();
+        Date date = parse(value);
+        if (date != null) {
+            return date;
+        }
+        // what Gson wrote before, in the time zone of the device
+        DateFormat legacyFormat =
+                DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US);
+        try {
+            return legacyFormat.parse(value);
+        } catch (ParseException e) {
+            throw new JsonSyntaxException("Not a date: " + value, e);
+        }
+    }
+
+    @NonNull
+    static String format(@NonNull Date date) {
+        Calendar calendar = new GregorianCalendar(UTC, Locale.US);
+        calendar.setTime(date);
+        StringBuilder builder = new StringBuilder(24);
+        appendPadded(builder, calendar.get(Calendar.YEAR), 4);
+        builder.append('-');
+        appendPadded(builder, calendar.get(Calendar.MONTH) + 1, 2);
+        builder.append('-');
+        appendPadded(builder, calendar.get(Calendar.DAY_OF_MONTH), 2);
+        builder.append('T');
+        appendPadded(builder, calendar.get(Calendar.HOUR_OF_DAY), 2);
+        builder.append(':');
+        appendPadded(builder, calendar.get(Calendar.MINUTE), 2);
+        builder.append(':');
+        appendPadded(builder, calendar.get(Calendar.SECOND), 2);
+        builder.append('.');
+        appendPadded(builder, calendar.get(Calendar.MILLISECOND), 3);
+        builder.append('Z');
+        return builder.toString();
+    }
+
+    /**
+     * Parses "yyyy-MM-dd", optionally followed by "THH:mm", seconds, a fraction of a second and
+     * a time zone offset or "Z". Without an offset the time is taken to be in UTC.
+     * @return the date or null if {@code value} is not in that format
+     */
+    @Nullable
+    static Date parse(@NonNull String value) {
+        int length = value.length();
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        int year = parseNumber(value, 0, 4);
+        int month = parseNumber(value, 5, 7);
+        int day = parseNumber(value, 8, 10);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millisecond = 0;
+        int offsetMinutes = 0;
+        int i = 10;
+        if (i < length && (value.charAt(i) == 'T' || value.charAt(i) == 't')) {
+            if (length < i + 6 || value.charAt(i + 3) != ':') {
+                return null;
+            }
+            hour = parseNumber(value, i + 1, i + 3);
+            minute = parseNumber(value, i + 4, i + 6);
+            i += 6;
+            if (i < length && value.charAt(i) == ':') {
+                second = parseNumber(value, i + 1, i + 3);
+                i += 3;
+                if (i < length && value.charAt(i) == '.') {
+                    int fractionStart = ++i;
+                    while (i < length && Character.isDigit(value.charAt(i))) {
+                        i++;
+                    }
+                    if (i == fractionStart) {
+                        return null;
+                    }
+                    // only milliseconds are kept
+                    int digits = Math.min(3, i - fractionStart);
+                    millisecond = parseNumber(value, fractionStart, fractionStart + digits);
+                    for (int j = digits; j < 3; j++) {
+                        millisecond *= 10;
+                    }
+                }
+            }
+            if (i < length) {
+                char zone = value.charAt(i);
+                if (zone == 'Z' || zone == 'z') {
+                    i++;
+                } else if (zone == '+' || zone == '-') {
+                    int offsetHours = parseNumber(value, i + 1, i + 3);
+                    i += 3;
+                    int offsetMinutesPart = 0;
+                    if (i < length && value.charAt(i) == ':') {
+                        i++;
+                    }
+                    if (i < length) {
+                        offsetMinutesPart = parseNumber(value, i, i + 2);
+                        i += 2;
+                    }
+                    if (offsetHours < 0 || offsetMinutesPart < 0) {
+                        return null;
+                    }
+                    offsetMinutes = offsetHours * 60 + offsetMinutesPart;
+                    if (zone == '-') {
+                        offsetMinutes = -offsetMinutes;
+                    }
+                }
+            }
+        }
+        if (i != length || year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+                || second > 60 || millisecond < 0) {
+            return null;
+        }
+        Calendar calendar = new GregorianCalendar(UTC, Locale.US);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millisecond);
+        return new Date(calendar.getTimeInMillis() - offsetMinutes * 60000L);
+    }
+
+    /**
+     * @return the number made of the digits from {@code start} to {@code end}, or -1 if there
+     * are other characters or not enough of them
+     */
+    private static int parseNumber(String value, int start, int end) {
+        if (end > value.length()) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static void appendPadded(StringBuilder builder, int number, int digits) {
+        String string = Integer.toString(number);
+        for (int i = string.length(); i < digits; i++) {
+            builder.append('0');
+        }
+        builder.append(string);
+    }
+}
@@ -24,13 +24,16 @@ import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
 import org.hiveway.util.HtmlUtils;
 
 import org.hiveway.util.HtmlUtils;
 
 import java.lang.reflect.Type;
 
-public class SpannedTypeAdapter implements JsonDeserializer<Spanned> {
+public class SpannedTypeAdapter implements JsonDeserializer<Spanned>, JsonSerializer<Spanned> {
     @Override
     public Spanned deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
             throws JsonParseException {
@@ -41,4 +44,10 @@ public class SpannedTypeAdapter implements JsonDeserializer<Spanned> {
             return new SpannedString("");
         }
     }
+
+    /* written back as html, so cached entities read the same way as fresh ones */
+    @Override
+    public JsonElement serialize(Spanned src, Type typeOfSrc, JsonSerializationContext context) {
+        return new JsonPrimitive(HtmlUtils.toHtml(src));
+    }
 }
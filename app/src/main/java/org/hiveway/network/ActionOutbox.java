@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.hiveway.HivewayApplication;
+import org.hiveway.db.AccountEntity;
+import org.hiveway.db.ActionDao;
+import org.hiveway.db.ActionEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Queue for favourites, reblogs, mutes, blocks and follow request answers. Actions are written to
+ * the database before they are sent, so they are not lost when the process dies, and are sent
+ * again with an exponential backoff until the server either accepts or refuses them.
+ *
+ * An action waits {@value #SEND_DELAY_MS} ms before it is sent. If the opposite action for the
+ * same target arrives before the first one was ever sent (unfavourite after favourite, for
+ * example) both are dropped without any request. Actions for the same target are sent one after another in the order they
+ * were made, at most {@value #MAX_IN_FLIGHT} requests run at the same time.
+ *
+ * Screens are expected to show the result of an action right away and only undo it when a
+ * {@link Listener} is told that the server rejected it.
+ */
+public final class ActionOutbox {
+
+    public interface Listener {
+        /**
+         * Called on the main thread when the server refused the action or it could not be sent
+         * after several attempts.
+         */
+        void onActionRejected(@NonNull ActionEntity action);
+    }
+
+    interface ApiSource {
+        /**
+         * @return the api to send the actions of the account with, or null if the account is
+         * gone and its actions should be dropped
+         */
+        @Nullable
+        HivewayApi forAccount(long accountId);
+    }
+
+    private static final String TAG = "ActionOutbox";
+
+    static final int MAX_IN_FLIGHT = 3;
+    private static final long SEND_DELAY_MS = 500;
+    private static final long INITIAL_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+    static final int MAX_ATTEMPTS = 10;
+
+    private final ActionDao dao;
+    private final ApiSource apis;
+    /* where listeners are called */
+    private final Executor mainThread;
+    private final long sendDelayMs;
+    private final long initialBackoffMs;
+    /* all state below is only touched on this thread */
+    private final ScheduledExecutorService executor;
+    private final ExecutorService senders;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Random random = new Random();
+
+    /* actions waiting to be sent, ordered by id */
+    private final List<ActionEntity> pending = new ArrayList<>();
+    /* accountId:targetId of the actions being sent right now */
+    private final Set<String> busyTargets = new HashSet<>();
+    @Nullable
+    private ScheduledFuture<?> scheduledDrain;
+    /* nothing is sent before start() */
+    private boolean started;
+
+    public ActionOutbox(@NonNull ActionDao dao) {
+        this(dao, accountId -> {
+            AccountEntity account = HivewayApplication.getAccountManager()
+                    .getAccountById(accountId);
+            return account == null ? null : NetworkProvider.getAccountApi(account);
+        }, new Handler(Looper.getMainLooper())::post, SEND_DELAY_MS, INITIAL_BACKOFF_MS);
+    }
+
+    ActionOutbox(@NonNull ActionDao dao, @NonNull ApiSource apis, @NonNull Executor mainThread,
+                 long sendDelayMs, long initialBackoffMs) {
+        this.dao = dao;
+        this.apis = apis;
+        this.mainThread = mainThread;
+        this.sendDelayMs = sendDelayMs;
+        this.initialBackoffMs = initialBackoffMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ActionOutbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.senders = Executors.newFixedThreadPool(MAX_IN_FLIGHT, r -> {
+            Thread thread = new Thread(r, "ActionOutbox sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        /* the actions left over from the last time the app ran are loaded before anything else
+         * runs on the executor, so new actions are compared with them and queued after them */
+        executor.execute(() -> pending.addAll(dao.loadAll()));
+    }
+
+    /**
+     * Starts sending the queued actions, including the ones left over from the last time the app
+     * ran. Until then actions are only stored.
+     */
+    public void start() {
+        executor.execute(() -> {
+            started = true;
+            drain();
+        });
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues an action made with {@code account}. It is sent with that account's credentials even
+     * if the user switches to another account before that happens.
+     */
+    public void enqueue(@NonNull AccountEntity account, @NonNull ActionEntity.Type type,
+                        @NonNull String targetId) {
+        enqueue(account.getId(), type, targetId);
+    }
+
+    void enqueue(final long accountId, @NonNull final ActionEntity.Type type,
+                 @NonNull final String targetId) {
+        final long now = System.currentTimeMillis();
+        executor.execute(() -> {
+            ActionEntity last = null;
+            for (ActionEntity action : pending) {
+                if (action.getAccountId() == accountId
+                        && action.getTargetId().equals(targetId)) {
+                    last = action;
+                }
+            }
+            if (last != null) {
+                if (last.getType() == type) {
+                    return;
+                }
+                /* Only an action which was never sent can be taken back. One which failed may
+                 * still have reached the server, so the opposite has to be sent after it. */
+                if (last.getType().opposite() == type && last.getAttempts() == 0) {
+                    dao.delete(last.getId());
+                    pending.remove(last);
+                    return;
+                }
+            }
+            ActionEntity action = new ActionEntity(0, accountId, type, targetId, 0,
+                    now + sendDelayMs, now);
+            addPending(action.withId(dao.insert(action)));
+            drain();
+        });
+    }
+
+    /**
+     * Drops everything queued for the account, used when it is logged out.
+     */
+    public void removeAllForAccount(final long accountId) {
+        executor.execute(() -> {
+            Iterator<ActionEntity> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getAccountId() == accountId) {
+                    iterator.remove();
+                }
+            }
+            dao.deleteAllForAccount(accountId);
+        });
+    }
+
+    private void drain() {
+        if (!started) {
+            return;
+        }
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+            scheduledDrain = null;
+        }
+        long now = System.currentTimeMillis();
+        long nextAttemptAt = Long.MAX_VALUE;
+        Set<String> seenTargets = new HashSet<>();
+        Iterator<ActionEntity> iterator = pending.iterator();
+        while (iterator.hasNext() && busyTargets.size() < MAX_IN_FLIGHT) {
+            ActionEntity action = iterator.next();
+            String key = targetKey(action);
+            // only the oldest action of a target may go, and only when nothing else for it runs
+            if (!seenTargets.add(key) || busyTargets.contains(key)) {
+                continue;
+            }
+            if (action.getNextAttemptAt() > now) {
+                nextAttemptAt = Math.min(nextAttemptAt, action.getNextAttemptAt());
+                continue;
+            }
+            HivewayApi api = apis.forAccount(action.getAccountId());
+            iterator.remove();
+            if (api == null) {
+                dao.delete(action.getId());
+                continue;
+            }
+            busyTargets.add(key);
+            send(api, action);
+        }
+        if (nextAttemptAt != Long.MAX_VALUE) {
+            scheduledDrain = executor.schedule(this::drain, nextAttemptAt - now,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(HivewayApi api, final ActionEntity action) {
+        final Call<?> call = createCall(api, action);
+        senders.execute(() -> {
+            int code;
+            try {
+                Response<?> response = call.execute();
+                code = response.code();
+            } catch (IOException | RuntimeException e) {
+                Log.d(TAG, "Failed to send " + action.getType() + " " + action.getTargetId(), e);
+                code = -1;
+            }
+            final int result = code;
+            executor.execute(() -> onResult(action, result));
+        });
+    }
+
+    /**
+     * @param code the http status code or -1 if there was no response at all
+     */
+    private void onResult(final ActionEntity action, int code) {
+        busyTargets.remove(targetKey(action));
+        if (code >= 200 && code < 300) {
+            dao.delete(action.getId());
+        } else if (isPermanentFailure(code) || action.getAttempts() + 1 >= MAX_ATTEMPTS) {
+            Log.w(TAG, action.getType() + " " + action.getTargetId() + " was rejected: " + code);
+            dao.delete(action.getId());
+            mainThread.execute(() -> {
+                for (Listener listener : listeners) {
+                    listener.onActionRejected(action);
+                }
+            });
+        } else {
+            long backoff = Math.min(MAX_BACKOFF_MS, initialBackoffMs << action.getAttempts());
+            // jitter, so actions that failed together don't retry together
+            backoff += random.nextInt((int) (backoff / 4) + 1);
+            ActionEntity retry = action.withNextAttempt(System.currentTimeMillis() + backoff);
+            dao.update(retry);
+            addPending(retry);
+        }
+        drain();
+    }
+
+    /**
+     * Inserts {@code action} into {@link #pending}, keeping it ordered by id.
+     */
+    private void addPending(ActionEntity action) {
+        int index = pending.size();
+        while (index > 0 && pending.get(index - 1).getId() > action.getId()) {
+            index--;
+        }
+        pending.add(index, action);
+    }
+
+    /**
+     * Client errors won't go away by sending the same request again, except for timeouts and
+     * rate limits.
+     */
+    private static boolean isPermanentFailure(int code) {
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    private static String targetKey(ActionEntity action) {
+        return action.getAccountId() + ":" + action.getTargetId();
+    }
+
+    private static Call<?> createCall(HivewayApi api, ActionEntity action) {
+        String id = action.getTargetId();
+        switch (action.getType()) {
+            case FAVOURITE:
+                return api.favouriteStatus(id);
+            case UNFAVOURITE:
+                return api.unfavouriteStatus(id);
+            case REBLOG:
+                return api.reblogStatus(id);
+            case UNREBLOG:
+                return api.unreblogStatus(id);
+            case MUTE:
+                return api.muteAccount(id);
+            case UNMUTE:
+                return api.unmuteAccount(id);
+            case BLOCK:
+                return api.blockAccount(id);
+            case UNBLOCK:
+                return api.unblockAccount(id);
+            case AUTHORIZE_FOLLOW_REQUEST:
+                return api.authorizeFollowRequest(id);
+            case REJECT_FOLLOW_REQUEST:
+                return api.rejectFollowRequest(id);
+            default:
+                throw new IllegalArgumentException("Unknown action " + action.getType());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which decides how long responses of selected {@link HivewayApi} GET
+ * endpoints may be served from the disk cache without asking the server again.
+ *
+ * Mastodon answers with {@code max-age=0, must-revalidate} for everything, so without this every
+ * screen downloads the same account or thread again. Responses keep their ETag and Last-Modified
+ * headers, so once they become stale the cache revalidates them with a conditional request and
+ * usually only gets a 304 back.
+ *
+ * The cached responses vary on the Authorization header, so accounts on the same instance never
+ * see each other's relationships or timelines.
+ */
+public final class CachePolicyInterceptor implements Interceptor {
+
+    /**
+     * Cache-Control request header which makes the cache go to the server even if it has a fresh
+     * response, for refreshes the user asked for and reloads after a change. Passing null instead
+     * leaves the header out.
+     */
+    public static final String NO_CACHE = "no-cache";
+
+    private static final Policy[] POLICIES = {
+            new Policy("^/api/v1/accounts/relationships$", 0),
+            new Policy("^/api/v1/accounts/(verify_credentials|search)$", -1),
+            new Policy("^/api/v1/accounts/[^/]+$", 60),
+            new Policy("^/api/v1/accounts/[^/]+/statuses$", 0),
+            new Policy("^/api/v1/statuses/[^/]+/context$", 30),
+            new Policy("^/api/v1/statuses/[^/]+/card$", 24 * 60 * 60),
+            new Policy("^/api/v1/lists$", 5 * 60),
+            new Policy("^/api/v1/favourites$", 0),
+    };
+
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        if (!"GET".equals(request.method())
+                || (response.code() != 200 && response.code() != 304)) {
+            return response;
+        }
+
+        int maxAge = maxAgeFor(request.url().encodedPath());
+        if (maxAge < 0) {
+            return response;
+        }
+
+        return response.newBuilder()
+                .header("Cache-Control", "private, max-age=" + maxAge)
+                .header("Vary", "Authorization")
+                .removeHeader("Pragma")
+                .removeHeader("Expires")
+                .build();
+    }
+
+    /**
+     * @return how many seconds a response for the path stays fresh, 0 if it always has to be
+     * revalidated or -1 if the server's own caching headers should be left untouched
+     */
+    static int maxAgeFor(String path) {
+        for (Policy policy : POLICIES) {
+            if (policy.pattern.matcher(path).matches()) {
+                return policy.maxAge;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Policy {
+        final Pattern pattern;
+        final int maxAge;
+
+        Policy(String regex, int maxAge) {
+            this.pattern = Pattern.compile(regex);
+            this.maxAge = maxAge;
+        }
+    }
+}
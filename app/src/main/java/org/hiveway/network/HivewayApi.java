@@ -23,6 +23,7 @@ import org.hiveway.entity.Account;
 import org.hiveway.entity.AppCredentials;
 import org.hiveway.entity.Attachment;
 import org.hiveway.entity.Card;
+import org.hiveway.entity.Instance;
 import org.hiveway.entity.MastoList;
 import org.hiveway.entity.Notification;
 import org.hiveway.entity.Relationship;
@@ -110,7 +111,9 @@ public interface HivewayApi {
     @GET("api/v1/statuses/{id}")
     Call<Status> status(@Path("id") String statusId);
     @GET("api/v1/statuses/{id}/context")
-    Call<StatusContext> statusContext(@Path("id") String statusId);
+    Call<StatusContext> statusContext(
+            @Path("id") String statusId,
+            @Header("Cache-Control") String cacheControl);
     @GET("api/v1/statuses/{id}/reblogged_by")
     Call<List<Account>> statusRebloggedBy(
             @Path("id") String statusId,
@@ -151,7 +154,9 @@ public interface HivewayApi {
             @Query("resolve") Boolean resolve,
             @Query("limit") Integer limit);
     @GET("api/v1/accounts/{id}")
-    Call<Account> account(@Path("id") String accountId);
+    Call<Account> account(
+            @Path("id") String accountId,
+            @Header("Cache-Control") String cacheControl);
 
     /**
      * Method to fetch statuses for the specified account.
@@ -262,4 +267,7 @@ public interface HivewayApi {
 
     @GET("/api/v1/lists")
     Call<List<MastoList>> getLists();
+
+    @GET("/api/v1/instance")
+    Call<Instance> getInstance();
 }
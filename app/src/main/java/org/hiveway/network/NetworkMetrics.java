@@ -0,0 +1,506 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Collects statistics about the requests made through the api clients, grouped by the path
+ * templates of {@link HivewayApi} like {@code GET api/v1/accounts/{id}}.
+ *
+ * Two sources feed it: an application {@link Interceptor} which sees every request including the
+ * ones answered by the cache and measures the time until the response headers are there, and an
+ * {@link EventListener} which splits network calls into dns, connect, tls, time to first byte and
+ * the time spent reading (and with Retrofit, parsing) the body. A slow instance shows up in time to
+ * first byte, slow processing on our side in the body time.
+ */
+public final class NetworkMetrics {
+
+    /* Upper bounds of the latency histogram buckets, the last bucket has no upper bound. */
+    private static final long[] LATENCY_BUCKETS_MS = {50, 100, 200, 500, 1000, 2000, 5000};
+    private static final String OTHER_ENDPOINT = "other";
+
+    private final List<Template> templates;
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    NetworkMetrics(Class<?> api) {
+        templates = Template.fromApi(api);
+    }
+
+    Interceptor interceptor() {
+        return chain -> {
+            Request request = chain.request();
+            Endpoint endpoint = endpointFor(request);
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                endpoint.recordFailure();
+                throw e;
+            }
+            boolean fromCache = response.networkResponse() == null
+                    && response.cacheResponse() != null;
+            endpoint.recordResponse(response.code(), millisSince(start), fromCache);
+            return response;
+        };
+    }
+
+    EventListener.Factory eventListenerFactory() {
+        return call -> new CallListener(endpointFor(call.request()));
+    }
+
+    public synchronized void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * @return the endpoints which have been used so far, slowest median first
+     */
+    @NonNull
+    public List<Endpoint> getEndpoints() {
+        List<Endpoint> result;
+        synchronized (this) {
+            result = new ArrayList<>(endpoints.values());
+        }
+        Collections.sort(result, (a, b) -> Long.compare(b.getLatencyPercentile(0.5),
+                a.getLatencyPercentile(0.5)));
+        return result;
+    }
+
+    @NonNull
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        JsonArray bounds = new JsonArray();
+        for (long bound : LATENCY_BUCKETS_MS) {
+            bounds.add(bound);
+        }
+        json.add("latency_buckets_ms", bounds);
+        JsonArray array = new JsonArray();
+        for (Endpoint endpoint : getEndpoints()) {
+            array.add(endpoint.toJson());
+        }
+        json.add("endpoints", array);
+        return json;
+    }
+
+    private Endpoint endpointFor(Request request) {
+        String name = OTHER_ENDPOINT;
+        String path = request.url().encodedPath();
+        for (Template template : templates) {
+            if (template.matches(request.method(), path)) {
+                name = template.name;
+                break;
+            }
+        }
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(name);
+            if (endpoint == null) {
+                endpoint = new Endpoint(name);
+                endpoints.put(name, endpoint);
+            }
+            return endpoint;
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Statistics of one endpoint. All getters return a consistent view at the time of the call.
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final long[] latencyBuckets = new long[LATENCY_BUCKETS_MS.length + 1];
+        private final Map<Integer, Integer> statusCodes = new TreeMap<>();
+        private final Phase dns = new Phase();
+        private final Phase connect = new Phase();
+        private final Phase tls = new Phase();
+        private final Phase timeToFirstByte = new Phase();
+        private final Phase body = new Phase();
+        private int requests;
+        private int failures;
+        private int cacheHits;
+        private long latencySum;
+        private long latencyMax;
+        private long bytesSent;
+        private long bytesReceived;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        public synchronized int getRequests() {
+            return requests;
+        }
+
+        public synchronized int getFailures() {
+            return failures;
+        }
+
+        public synchronized int getCacheHits() {
+            return cacheHits;
+        }
+
+        public synchronized long getLatencyMax() {
+            return latencyMax;
+        }
+
+        public synchronized long getBytesSent() {
+            return bytesSent;
+        }
+
+        public synchronized long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public synchronized long getAverageDns() {
+            return dns.average();
+        }
+
+        public synchronized long getAverageConnect() {
+            return connect.average();
+        }
+
+        public synchronized long getAverageTls() {
+            return tls.average();
+        }
+
+        public synchronized long getAverageTimeToFirstByte() {
+            return timeToFirstByte.average();
+        }
+
+        public synchronized long getAverageBody() {
+            return body.average();
+        }
+
+        @NonNull
+        public synchronized Map<Integer, Integer> getStatusCodes() {
+            return new TreeMap<>(statusCodes);
+        }
+
+        /**
+         * @return the upper bound of the histogram bucket containing the percentile, for the
+         * unbounded last bucket the largest latency seen
+         */
+        public synchronized long getLatencyPercentile(double percentile) {
+            long total = 0;
+            for (long count : latencyBuckets) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                seen += latencyBuckets[i];
+                if (seen >= rank) {
+                    return LATENCY_BUCKETS_MS[i];
+                }
+            }
+            return latencyMax;
+        }
+
+        synchronized void recordResponse(int code, long latency, boolean fromCache) {
+            requests++;
+            if (fromCache) {
+                cacheHits++;
+            }
+            Integer count = statusCodes.get(code);
+            statusCodes.put(code, count == null ? 1 : count + 1);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MS.length && latency >= LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            latencyBuckets[bucket]++;
+            latencySum += latency;
+            latencyMax = Math.max(latencyMax, latency);
+        }
+
+        synchronized void recordFailure() {
+            requests++;
+            failures++;
+        }
+
+        synchronized void recordCall(CallListener call) {
+            dns.add(call.dnsMs);
+            connect.add(call.connectMs);
+            tls.add(call.tlsMs);
+            timeToFirstByte.add(call.timeToFirstByteMs);
+            body.add(call.bodyMs);
+            bytesSent += call.bytesSent;
+            bytesReceived += call.bytesReceived;
+        }
+
+        synchronized JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("endpoint", name);
+            json.addProperty("requests", requests);
+            json.addProperty("failures", failures);
+            json.addProperty("cache_hits", cacheHits);
+            int completed = requests - failures;
+            json.addProperty("latency_avg_ms", completed == 0 ? 0 : latencySum / completed);
+            json.addProperty("latency_p50_ms", getLatencyPercentile(0.5));
+            json.addProperty("latency_p95_ms", getLatencyPercentile(0.95));
+            json.addProperty("latency_max_ms", latencyMax);
+            JsonArray histogram = new JsonArray();
+            for (long count : latencyBuckets) {
+                histogram.add(count);
+            }
+            json.add("latency_histogram", histogram);
+            json.add("dns_ms", dns.toJson());
+            json.add("connect_ms", connect.toJson());
+            json.add("tls_ms", tls.toJson());
+            json.add("ttfb_ms", timeToFirstByte.toJson());
+            json.add("body_ms", body.toJson());
+            json.addProperty("bytes_sent", bytesSent);
+            json.addProperty("bytes_received", bytesReceived);
+            JsonObject codes = new JsonObject();
+            for (Map.Entry<Integer, Integer> entry : statusCodes.entrySet()) {
+                codes.addProperty(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            json.add("status_codes", codes);
+            return json;
+        }
+    }
+
+    private static final class Phase {
+        private int count;
+        private long sum;
+        private long max;
+
+        void add(long millis) {
+            if (millis < 0) {
+                return;
+            }
+            count++;
+            sum += millis;
+            max = Math.max(max, millis);
+        }
+
+        long average() {
+            return count == 0 ? -1 : sum / count;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("avg", average());
+            json.addProperty("max", max);
+            return json;
+        }
+    }
+
+    /**
+     * Follows one call through its phases. Phases which did not happen, like dns and connect when
+     * a pooled connection was reused, stay at -1.
+     */
+    private static final class CallListener extends EventListener {
+        private final Endpoint endpoint;
+        private long dnsStart;
+        private long connectStart;
+        private long tlsStart;
+        private long requestStart;
+        private long headersEnd;
+        long dnsMs = -1;
+        long connectMs = -1;
+        long tlsMs = -1;
+        long timeToFirstByteMs = -1;
+        long bodyMs = -1;
+        long bytesSent;
+        long bytesReceived;
+
+        CallListener(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsMs = millisSince(dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+            tlsMs = millisSince(tlsStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                               @Nullable Protocol protocol) {
+            connectMs = millisSince(connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            bytesSent += byteCount;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            timeToFirstByteMs = millisSince(requestStart);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            headersEnd = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bytesReceived += byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            if (headersEnd != 0) {
+                bodyMs = millisSince(headersEnd);
+            }
+            endpoint.recordCall(this);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            endpoint.recordCall(this);
+        }
+    }
+
+    private static final class Template {
+        final String method;
+        final String name;
+        final Pattern pattern;
+        final int placeholders;
+
+        Template(String method, String path) {
+            this.method = method;
+            String relative = path.startsWith("/") ? path.substring(1) : path;
+            this.name = method + " " + relative;
+            int count = 0;
+            StringBuilder regex = new StringBuilder("^/");
+            for (String segment : relative.split("/")) {
+                if (regex.length() > 2) {
+                    regex.append('/');
+                }
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    regex.append("[^/]+");
+                    count++;
+                } else {
+                    regex.append(Pattern.quote(segment));
+                }
+            }
+            this.pattern = Pattern.compile(regex.append('$').toString());
+            this.placeholders = count;
+        }
+
+        boolean matches(String method, String path) {
+            return this.method.equals(method) && pattern.matcher(path).matches();
+        }
+
+        /**
+         * Reads the templates from the annotations of the api interface. Templates with fewer
+         * placeholders come first, so {@code accounts/verify_credentials} wins over
+         * {@code accounts/{id}}.
+         */
+        static List<Template> fromApi(Class<?> api) {
+            List<Template> templates = new ArrayList<>();
+            for (Method method : api.getDeclaredMethods()) {
+                for (Annotation annotation : method.getAnnotations()) {
+                    Template template = fromAnnotation(annotation);
+                    if (template != null) {
+                        templates.add(template);
+                    }
+                }
+            }
+            Collections.sort(templates, (a, b) -> a.placeholders - b.placeholders);
+            return templates;
+        }
+
+        @Nullable
+        private static Template fromAnnotation(Annotation annotation) {
+            if (annotation instanceof GET) {
+                return new Template("GET", ((GET) annotation).value());
+            } else if (annotation instanceof POST) {
+                return new Template("POST", ((POST) annotation).value());
+            } else if (annotation instanceof PUT) {
+                return new Template("PUT", ((PUT) annotation).value());
+            } else if (annotation instanceof PATCH) {
+                return new Template("PATCH", ((PATCH) annotation).value());
+            } else if (annotation instanceof DELETE) {
+                return new Template("DELETE", ((DELETE) annotation).value());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Spanned;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.hiveway.BuildConfig;
+import org.hiveway.HivewayApplication;
+import org.hiveway.db.AccountEntity;
+import org.hiveway.json.EntityTypeAdapterFactory;
+import org.hiveway.json.Iso8601DateAdapter;
+import org.hiveway.json.SpannedTypeAdapter;
+import org.hiveway.util.OkHttpUtils;
+
+import java.io.File;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Holds the process wide network stack: a single {@link OkHttpClient} (and with it a single
+ * connection pool and dispatcher) and a single {@link Gson}. Activities, fragments, the
+ * notification job and Picasso all build on top of it, so a connection that has been opened to an
+ * instance once is reused by every following request instead of repeating the TLS handshake.
+ *
+ * Proxy settings are read only once; changing them restarts the process anyway.
+ */
+public final class NetworkProvider {
+
+    private static final String CACHE_DIRECTORY = "http";
+    private static final String DEFAULT_CACHE_SIZE_MB = "10";
+    private static final int BACKGROUND_TIMEOUT_SECONDS = 15;
+
+    private static OkHttpClient baseClient;
+    private static OkHttpClient apiClient;
+    private static OkHttpClient backgroundClient;
+    @Nullable
+    private static Cache cache;
+    private static Gson gson;
+    private static Converter.Factory converterFactory;
+    private static final Map<String, HivewayApi> unauthenticatedApis = new HashMap<>();
+    private static final Map<String, HivewayApi> accountApis = new HashMap<>();
+    /* apis which authenticate with the active account, by base url */
+    private static final Map<String, HivewayApi> sharedApis = new HashMap<>();
+    private static final RequestCoalescer coalescer = new RequestCoalescer(() -> {
+        AccountEntity account = HivewayApplication.getAccountManager().getActiveAccount();
+        return account == null ? 0 : account.getId();
+    });
+    private static NetworkMetrics metrics;
+
+    private NetworkProvider() { }
+
+    /**
+     * Builds the shared stack. Must be called once from {@link android.app.Application#onCreate()}
+     * before anything tries to talk to the network.
+     */
+    public static synchronized void init(@NonNull Context context) {
+        if (baseClient != null) {
+            return;
+        }
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        baseClient = OkHttpUtils.getCompatibleClient(preferences);
+        metrics = new NetworkMetrics(HivewayApi.class);
+
+        /* newBuilder() shares the connection pool and the dispatcher with the base client, so the
+         * authenticated client is only a thin layer on top of it. */
+        OkHttpClient.Builder apiBuilder = baseClient.newBuilder()
+                .addInterceptor(new AuthInterceptor())
+                .addInterceptor(metrics.interceptor())
+                .eventListenerFactory(metrics.eventListenerFactory());
+
+        long cacheSize = Long.parseLong(preferences.getString("httpCacheSize",
+                DEFAULT_CACHE_SIZE_MB)) * 1024 * 1024;
+        if (cacheSize > 0) {
+            cache = new Cache(new File(context.getCacheDir(), CACHE_DIRECTORY), cacheSize);
+            apiBuilder.cache(cache)
+                    .addNetworkInterceptor(new CachePolicyInterceptor());
+        }
+        if (BuildConfig.DEBUG) {
+            apiBuilder.addInterceptor(
+                    new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BASIC));
+        }
+        apiClient = apiBuilder.build();
+
+        backgroundClient = baseClient.newBuilder()
+                .connectTimeout(BACKGROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(BACKGROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(BACKGROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(metrics.interceptor())
+                .eventListenerFactory(metrics.eventListenerFactory())
+                .build();
+
+        gson = new GsonBuilder()
+                .registerTypeAdapter(Spanned.class, new SpannedTypeAdapter())
+                .registerTypeAdapter(Date.class, new Iso8601DateAdapter())
+                .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+                .create();
+        converterFactory = GsonConverterFactory.create(gson);
+    }
+
+    /**
+     * @return the shared client without any account credentials attached. Use it for requests
+     * that must not carry the token of the active account, like images or other instances.
+     */
+    @NonNull
+    public static OkHttpClient getClient() {
+        return baseClient;
+    }
+
+    /**
+     * @return the disk cache of the api client or null if the user disabled it. Its
+     * {@link Cache#hitCount()}, {@link Cache#networkCount()} and {@link Cache#requestCount()} tell
+     * how many responses were served from disk, how many needed the network and how many requests
+     * were made in total since the process started.
+     */
+    @Nullable
+    public static Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return statistics of all requests made through the api clients since the process started
+     */
+    @NonNull
+    public static NetworkMetrics getMetrics() {
+        return metrics;
+    }
+
+    @NonNull
+    public static Gson getGson() {
+        return gson;
+    }
+
+    @NonNull
+    public static Converter.Factory getConverterFactory() {
+        return converterFactory;
+    }
+
+    /**
+     * Returns an api which authenticates with the currently active account. All calls made through
+     * it belong to {@code owner} so they can be cancelled with {@link #cancelAll(Object)} without
+     * touching calls of other screens. The Retrofit instance behind it is built once per instance
+     * and shared by all owners, only a thin proxy is created for each of them.
+     *
+     * Identical GET requests which are running at the same time, no matter from which owner, are
+     * merged into one network call by a {@link RequestCoalescer}.
+     * @param baseUrl base url of the instance
+     * @param owner the object whose lifecycle the calls are bound to, usually an activity
+     */
+    @NonNull
+    public static HivewayApi createApi(@NonNull String baseUrl, @NonNull Object owner) {
+        HivewayApi api;
+        synchronized (NetworkProvider.class) {
+            api = sharedApis.get(baseUrl);
+            if (api == null) {
+                Retrofit retrofit = new Retrofit.Builder()
+                        .baseUrl(baseUrl)
+                        .client(apiClient)
+                        .addCallAdapterFactory(coalescer.callAdapterFactory())
+                        .addConverterFactory(converterFactory)
+                        .build();
+                api = retrofit.create(HivewayApi.class);
+                sharedApis.put(baseUrl, api);
+            }
+        }
+        return OwnedCalls.bind(api, owner);
+    }
+
+    /**
+     * Returns an api for the given domain which does not add any credentials by itself. Callers
+     * have to pass the authorization header explicitly. Instances are cached per domain, so
+     * accounts on the same instance share one.
+     *
+     * It is meant for background work like polling notifications: nobody waits for the result, so
+     * its requests give up after {@value #BACKGROUND_TIMEOUT_SECONDS} seconds instead of hanging
+     * on an unreachable instance.
+     * @param domain domain of the instance, without scheme
+     */
+    @NonNull
+    public static synchronized HivewayApi getUnauthenticatedApi(@NonNull String domain) {
+        HivewayApi api = unauthenticatedApis.get(domain);
+        if (api == null) {
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl("https://" + domain)
+                    .client(backgroundClient)
+                    .addConverterFactory(converterFactory)
+                    .build();
+            api = retrofit.create(HivewayApi.class);
+            unauthenticatedApis.put(domain, api);
+        }
+        return api;
+    }
+
+    /**
+     * Returns an api which authenticates with {@code account}, no matter which account is active
+     * when the calls are made. Like {@link #getUnauthenticatedApi(String)} it is meant for work
+     * that may outlive the screen which started it, so it uses the same timeouts.
+     */
+    @NonNull
+    public static synchronized HivewayApi getAccountApi(@NonNull AccountEntity account) {
+        final String authorization = "Bearer " + account.getAccessToken();
+        String key = account.getDomain() + " " + authorization;
+        HivewayApi api = accountApis.get(key);
+        if (api == null) {
+            final OkHttpClient client = backgroundClient;
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl("https://" + account.getDomain())
+                    .callFactory(request -> client.newCall(request.newBuilder()
+                            .header("Authorization", authorization)
+                            .build()))
+                    .addConverterFactory(converterFactory)
+                    .build();
+            api = retrofit.create(HivewayApi.class);
+            accountApis.put(key, api);
+        }
+        return api;
+    }
+
+    /**
+     * Drops the apis which were built for {@code account}, to be called when it is logged out.
+     */
+    public static synchronized void forgetAccount(@NonNull AccountEntity account) {
+        accountApis.remove(account.getDomain() + " Bearer " + account.getAccessToken());
+        sharedApis.remove("https://" + account.getDomain());
+    }
+
+    /**
+     * Cancels all queued and running calls which were created for {@code owner}.
+     */
+    public static void cancelAll(@Nullable Object owner) {
+        if (owner != null) {
+            OwnedCalls.cancelAll(owner);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Binds calls to the object whose lifecycle they belong to, usually an activity. The api itself,
+ * and with it the Retrofit instance and its parsed service methods, is shared by all owners; only
+ * a thin proxy is created per owner, which remembers the calls running for it until they are done.
+ */
+final class OwnedCalls {
+
+    /* only the calls which were started and are not finished yet */
+    private static final Map<Object, Set<Call<?>>> running = new HashMap<>();
+
+    private OwnedCalls() { }
+
+    /**
+     * @return {@code api} whose calls belong to {@code owner}
+     */
+    @NonNull
+    static HivewayApi bind(@NonNull final HivewayApi api, @NonNull final Object owner) {
+        return (HivewayApi) Proxy.newProxyInstance(HivewayApi.class.getClassLoader(),
+                new Class<?>[] { HivewayApi.class }, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "HivewayApi of " + owner;
+                        }
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(api, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Call) {
+                        return new OwnedCall<>((Call<?>) result, owner);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Cancels all queued and running calls of {@code owner}. Their callbacks receive a failure.
+     */
+    static void cancelAll(@NonNull Object owner) {
+        List<Call<?>> toCancel;
+        synchronized (running) {
+            Set<Call<?>> calls = running.remove(owner);
+            if (calls == null) {
+                return;
+            }
+            toCancel = new ArrayList<>(calls);
+        }
+        for (Call<?> call : toCancel) {
+            call.cancel();
+        }
+    }
+
+    private static void add(Object owner, Call<?> call) {
+        synchronized (running) {
+            Set<Call<?>> calls = running.get(owner);
+            if (calls == null) {
+                calls = new HashSet<>();
+                running.put(owner, calls);
+            }
+            calls.add(call);
+        }
+    }
+
+    private static void remove(Object owner, Call<?> call) {
+        synchronized (running) {
+            Set<Call<?>> calls = running.get(owner);
+            if (calls != null && calls.remove(call) && calls.isEmpty()) {
+                running.remove(owner);
+            }
+        }
+    }
+
+    private static final class OwnedCall<T> implements Call<T> {
+        private final Call<T> delegate;
+        private final Object owner;
+
+        OwnedCall(Call<T> delegate, Object owner) {
+            this.delegate = delegate;
+            this.owner = owner;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            add(owner, this);
+            try {
+                return delegate.execute();
+            } finally {
+                remove(owner, this);
+            }
+        }
+
+        @Override
+        public void enqueue(@NonNull final Callback<T> callback) {
+            add(owner, this);
+            delegate.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+                    remove(owner, OwnedCall.this);
+                    callback.onResponse(OwnedCall.this, response);
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+                    remove(owner, OwnedCall.this);
+                    callback.onFailure(OwnedCall.this, t);
+                }
+            });
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return delegate.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return delegate.isCanceled();
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new OwnedCall<>(delegate.clone(), owner);
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+    }
+}
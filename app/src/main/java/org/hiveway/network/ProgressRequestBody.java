@@ -17,32 +17,108 @@
 
 package org.hiveway.network;
 
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
 
+/**
+ * Uploads media and reports how far it got. Content from a Uri is streamed straight from the
+ * ContentResolver in chunks, so an upload needs the same little memory however big the file is.
+ * Every attempt opens the content again, so OkHttp can retry the request.
+ */
 public final class ProgressRequestBody extends RequestBody {
-    private final byte[] content;
-    private final UploadCallback mListener;
-    private final MediaType mediaType;
-    private boolean shouldIgnoreThisPass;
-
-    private static final int DEFAULT_BUFFER_SIZE = 2048;
 
     public interface UploadCallback {
+        /**
+         * Called on the uploading thread, at most every {@value #PROGRESS_INTERVAL_MS} ms.
+         */
         void onProgressUpdate(int percentage);
     }
 
-    public ProgressRequestBody(final byte[] content, final MediaType mediaType, boolean shouldIgnoreFirst, final UploadCallback listener) {
+    private interface Content {
+        InputStream open() throws IOException;
+
+        long length() throws IOException;
+    }
+
+    /* bytes read from the content at once */
+    private static final long CHUNK_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    private final Content content;
+    private final MediaType mediaType;
+    private final UploadCallback mListener;
+    /* -2 until it is known */
+    private long length = -2;
+
+    /**
+     * Uploads media which is in memory already, like a downsized image.
+     */
+    public ProgressRequestBody(@NonNull final byte[] content, @Nullable MediaType mediaType,
+                               @NonNull UploadCallback listener) {
+        this(new Content() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public long length() {
+                return content.length;
+            }
+        }, mediaType, listener);
+    }
+
+    /**
+     * Uploads the content of {@code uri} without loading it into memory.
+     */
+    public ProgressRequestBody(@NonNull final ContentResolver contentResolver,
+                               @NonNull final Uri uri, @Nullable MediaType mediaType,
+                               @NonNull UploadCallback listener) {
+        this(new Content() {
+            @Override
+            public InputStream open() throws IOException {
+                InputStream stream = contentResolver.openInputStream(uri);
+                if (stream == null) {
+                    throw new FileNotFoundException("Could not open " + uri);
+                }
+                return stream;
+            }
+
+            @Override
+            public long length() throws IOException {
+                AssetFileDescriptor descriptor = contentResolver.openAssetFileDescriptor(uri, "r");
+                if (descriptor == null) {
+                    return -1;
+                }
+                try {
+                    // UNKNOWN_LENGTH is -1 as well, the body is sent chunked then
+                    return descriptor.getLength();
+                } finally {
+                    descriptor.close();
+                }
+            }
+        }, mediaType, listener);
+    }
+
+    private ProgressRequestBody(Content content, MediaType mediaType, UploadCallback listener) {
         this.content = content;
         this.mediaType = mediaType;
         mListener = listener;
-        shouldIgnoreThisPass = shouldIgnoreFirst;
     }
 
     @Override
@@ -52,29 +128,40 @@ public final class ProgressRequestBody extends RequestBody {
 
     @Override
     public long contentLength() throws IOException {
-        return content.length;
+        // asked by OkHttp on its own thread, which is where the file can be looked at
+        if (length == -2) {
+            length = content.length();
+        }
+        return length;
     }
 
     @Override
     public void writeTo(@NonNull BufferedSink sink) throws IOException {
-        long length = content.length;
-
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        ByteArrayInputStream in = new ByteArrayInputStream(content);
+        long length = contentLength();
         long uploaded = 0;
+        int lastPercentage = -1;
+        long lastReport = 0;
 
+        Source source = Okio.source(content.open());
         try {
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                if (!shouldIgnoreThisPass) {
-                    mListener.onProgressUpdate((int)(100 * uploaded / length));
-                }
+            long read;
+            while ((read = source.read(sink.buffer(), CHUNK_SIZE)) != -1) {
+                // hand the chunk over to the network right away instead of collecting it
+                sink.emitCompleteSegments();
                 uploaded += read;
-                sink.write(buffer, 0, read);
+                if (length > 0) {
+                    int percentage = (int) (100 * uploaded / length);
+                    long now = SystemClock.elapsedRealtime();
+                    if (percentage != lastPercentage
+                            && (now - lastReport >= PROGRESS_INTERVAL_MS || percentage == 100)) {
+                        mListener.onProgressUpdate(percentage);
+                        lastPercentage = percentage;
+                        lastReport = now;
+                    }
+                }
             }
         } finally {
-            in.close();
+            source.close();
         }
-        shouldIgnoreThisPass = false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+/**
+ * Makes concurrent identical GET requests share a single network call. Every caller still gets
+ * its own {@link Call} and its own callback; the first one to be enqueued starts the request and
+ * everybody who asks for the same url while it is running just waits for that result.
+ *
+ * Subscribers are reference counted: cancelling one of them only detaches it, the network call is
+ * only cancelled when the last subscriber is gone.
+ *
+ * Only meant for apis which authenticate with the active account, the active account is part of
+ * the key so responses are never shared between accounts. So is a Cache-Control header, a request
+ * which has to bypass the cache doesn't wait for one which may be answered from it.
+ */
+final class RequestCoalescer {
+
+    interface ActiveAccount {
+        /**
+         * @return the database id of the account requests are made for, 0 if there is none
+         */
+        long getId();
+    }
+
+    private final ActiveAccount activeAccount;
+    private final Map<String, InFlight<?>> inFlight = new HashMap<>();
+
+    RequestCoalescer(@NonNull ActiveAccount activeAccount) {
+        this.activeAccount = activeAccount;
+    }
+
+    CallAdapter.Factory callAdapterFactory() {
+        return new Factory();
+    }
+
+    private String keyFor(Request request) {
+        String key = activeAccount.getId() + " " + request.method() + " " + request.url();
+        String cacheControl = request.header("Cache-Control");
+        return cacheControl == null ? key : key + " " + cacheControl;
+    }
+
+    private <T> void join(CoalescingCall<T> call, Callback<T> callback) {
+        InFlight<T> flight;
+        boolean start = false;
+        synchronized (this) {
+            if (call.canceled) {
+                // cancelled between enqueue() and now, there is nothing to leave yet
+                flight = null;
+            } else {
+                flight = subscribe(call, callback);
+                start = flight.subscribers.size() == 1;
+            }
+        }
+        if (flight == null) {
+            callback.onFailure(call, new IOException("Canceled"));
+        } else if (start) {
+            flight.call.enqueue(flight);
+        }
+    }
+
+    private <T> InFlight<T> subscribe(CoalescingCall<T> call, Callback<T> callback) {
+        String key = keyFor(call.delegate.request());
+        //noinspection unchecked
+        InFlight<T> flight = (InFlight<T>) inFlight.get(key);
+        if (flight == null) {
+            flight = new InFlight<>(key, call.delegate);
+            inFlight.put(key, flight);
+        }
+        Subscriber<T> subscriber = new Subscriber<>(call, callback, flight);
+        flight.subscribers.add(subscriber);
+        call.subscriber = subscriber;
+        return flight;
+    }
+
+    private <T> void leave(Subscriber<T> subscriber) {
+        InFlight<T> flight = subscriber.flight;
+        boolean last;
+        synchronized (this) {
+            if (flight.done || !flight.subscribers.remove(subscriber)) {
+                return;
+            }
+            last = flight.subscribers.isEmpty();
+            if (last) {
+                flight.done = true;
+                inFlight.remove(flight.key);
+            }
+        }
+        if (last) {
+            flight.call.cancel();
+        }
+        subscriber.callback.onFailure(subscriber.call, new IOException("Canceled"));
+    }
+
+    private synchronized <T> List<Subscriber<T>> finish(InFlight<T> flight) {
+        if (flight.done) {
+            return new ArrayList<>();
+        }
+        flight.done = true;
+        if (inFlight.get(flight.key) == flight) {
+            inFlight.remove(flight.key);
+        }
+        return new ArrayList<>(flight.subscribers);
+    }
+
+    private final class Factory extends CallAdapter.Factory {
+
+        @Nullable
+        @Override
+        public CallAdapter<?, ?> get(@NonNull Type returnType, @NonNull Annotation[] annotations,
+                                     @NonNull Retrofit retrofit) {
+            if (getRawType(returnType) != Call.class || !isGet(annotations)) {
+                return null;
+            }
+            /* Wrap the raw call and let the next adapter do the rest, so callbacks still end up on
+             * the main thread. */
+            //noinspection unchecked
+            final CallAdapter<Object, Object> next = (CallAdapter<Object, Object>)
+                    retrofit.nextCallAdapter(this, returnType, annotations);
+            return new CallAdapter<Object, Object>() {
+                @Override
+                public Type responseType() {
+                    return next.responseType();
+                }
+
+                @Override
+                public Object adapt(@NonNull Call<Object> call) {
+                    return next.adapt(new CoalescingCall<>(call));
+                }
+            };
+        }
+
+        private boolean isGet(Annotation[] annotations) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof GET) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class CoalescingCall<T> implements Call<T> {
+        final Call<T> delegate;
+        @Nullable
+        Subscriber<T> subscriber;
+        private boolean executed;
+        private volatile boolean canceled;
+
+        CoalescingCall(Call<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            synchronized (this) {
+                if (executed) throw new IllegalStateException("Already executed.");
+                executed = true;
+            }
+            // synchronous calls are not shared, they would block on somebody else's request
+            return delegate.execute();
+        }
+
+        @Override
+        public void enqueue(@NonNull Callback<T> callback) {
+            synchronized (this) {
+                if (executed) throw new IllegalStateException("Already executed.");
+                executed = true;
+            }
+            if (canceled) {
+                callback.onFailure(this, new IOException("Canceled"));
+                return;
+            }
+            join(this, callback);
+        }
+
+        @Override
+        public synchronized boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            Subscriber<T> subscriber;
+            synchronized (RequestCoalescer.this) {
+                subscriber = this.subscriber;
+            }
+            if (subscriber != null) {
+                leave(subscriber);
+            } else {
+                delegate.cancel();
+            }
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new CoalescingCall<>(delegate.clone());
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+    }
+
+    private static final class Subscriber<T> {
+        final CoalescingCall<T> call;
+        final Callback<T> callback;
+        final InFlight<T> flight;
+
+        Subscriber(CoalescingCall<T> call, Callback<T> callback, InFlight<T> flight) {
+            this.call = call;
+            this.callback = callback;
+            this.flight = flight;
+        }
+
+        void deliver(Response<T> response) {
+            T body = response.body();
+            if (response.isSuccessful() && body instanceof List) {
+                /* Callers filter the lists they get in place, so each of them gets its own. */
+                //noinspection unchecked
+                T copy = (T) new ArrayList<>((List<?>) body);
+                response = Response.success(copy, response.raw());
+            }
+            callback.onResponse(call, response);
+        }
+    }
+
+    private final class InFlight<T> implements Callback<T> {
+        final String key;
+        final Call<T> call;
+        final List<Subscriber<T>> subscribers = new ArrayList<>();
+        boolean done;
+
+        InFlight(String key, Call<T> call) {
+            this.key = key;
+            this.call = call;
+        }
+
+        @Override
+        public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+            for (Subscriber<T> subscriber : finish(this)) {
+                subscriber.deliver(response);
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+            for (Subscriber<T> subscriber : finish(this)) {
+                subscriber.callback.onFailure(subscriber.call, t);
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import org.hiveway.db.AccountEntity;
+import org.hiveway.entity.Instance;
+import org.hiveway.entity.Notification;
+import org.hiveway.entity.Status;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Client for the Mastodon streaming api ({@code /api/v1/streaming}). It keeps at most one
+ * WebSocket per stream open and shares it between everybody who subscribed to that stream, so the
+ * home timeline and the notifications tab both listen on the same "user" connection.
+ *
+ * Lost connections are reopened with exponential backoff. Subscribers are told when that happens
+ * so they can fetch what they missed in between with {@code since_id}.
+ *
+ * Instances may serve the streaming api from another host. Clients for an account ask the instance
+ * for its {@code urls.streaming_api} before opening the first connection. Connections are opened on
+ * the client's own thread, which ends with {@link #close()}.
+ */
+public final class StreamingClient {
+    private static final String TAG = "StreamingClient";
+
+    public static final String STREAM_USER = "user";
+    public static final String STREAM_PUBLIC = "public";
+    public static final String STREAM_PUBLIC_LOCAL = "public:local";
+    public static final String STREAM_HASHTAG = "hashtag";
+    public static final String STREAM_LIST = "list";
+
+    private static final long MIN_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60 * 1000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private static final Map<String, StreamingClient> clientsByAccount = new HashMap<>();
+    private static OkHttpClient streamingHttpClient;
+
+    /**
+     * Receives events of one stream. All methods are called on the callback executor of the
+     * client, for clients created with {@link #forAccount(AccountEntity)} that is the main thread.
+     */
+    public interface Listener {
+        void onUpdate(@NonNull Status status);
+
+        void onNotification(@NonNull Notification notification);
+
+        void onDelete(@NonNull String id);
+
+        /**
+         * The connection dropped and is back again, events in between might be missing.
+         */
+        void onReconnected();
+    }
+
+    public static final class Subscription {
+        private final StreamingClient client;
+        private final Connection connection;
+        private final Listener listener;
+        private volatile boolean active = true;
+
+        private Subscription(StreamingClient client, Connection connection, Listener listener) {
+            this.client = client;
+            this.connection = connection;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops delivering events to the listener. The connection is closed when nobody else
+         * listens to the stream anymore.
+         */
+        public void cancel() {
+            if (active) {
+                active = false;
+                client.unsubscribe(this);
+            }
+        }
+    }
+
+    private final OkHttpClient client;
+    private final Gson gson;
+    /* only changed on the reconnect thread, before the first connection is opened */
+    private volatile HttpUrl streamingUrl;
+    /* asked for the streaming url of the instance, null when the url is fixed already */
+    @Nullable
+    private final HivewayApi instanceApi;
+    private boolean streamingUrlResolved;
+    private final String accessToken;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService reconnectExecutor;
+    private final Map<String, Connection> connections = new HashMap<>();
+
+    /**
+     * @param client client to open the WebSockets with, it should not have a read timeout
+     * @param streamingUrl url of the streaming endpoint, e.g. {@code https://domain/api/v1/streaming}
+     * @param accessToken token to authenticate with
+     * @param callbackExecutor executor the {@link Listener} methods are called on
+     */
+    public StreamingClient(@NonNull OkHttpClient client, @NonNull Gson gson,
+                           @NonNull HttpUrl streamingUrl, @NonNull String accessToken,
+                           @NonNull Executor callbackExecutor) {
+        this(client, gson, streamingUrl, null, accessToken, callbackExecutor);
+    }
+
+    private StreamingClient(OkHttpClient client, Gson gson, HttpUrl streamingUrl,
+                            @Nullable HivewayApi instanceApi, String accessToken,
+                            Executor callbackExecutor) {
+        this.client = client;
+        this.gson = gson;
+        this.streamingUrl = streamingUrl;
+        this.instanceApi = instanceApi;
+        this.accessToken = accessToken;
+        this.callbackExecutor = callbackExecutor;
+        this.reconnectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the shared client for the given account, delivering events on the main thread
+     */
+    @NonNull
+    public static synchronized StreamingClient forAccount(@NonNull AccountEntity account) {
+        String key = keyFor(account);
+        StreamingClient streamingClient = clientsByAccount.get(key);
+        if (streamingClient == null) {
+            if (streamingHttpClient == null) {
+                streamingHttpClient = NetworkProvider.getClient().newBuilder()
+                        .readTimeout(0, TimeUnit.MILLISECONDS)
+                        .pingInterval(30, TimeUnit.SECONDS)
+                        .build();
+            }
+            HttpUrl url = HttpUrl.parse("https://" + account.getDomain() + "/api/v1/streaming");
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            streamingClient = new StreamingClient(streamingHttpClient, NetworkProvider.getGson(),
+                    url, NetworkProvider.getUnauthenticatedApi(account.getDomain()),
+                    account.getAccessToken(), mainHandler::post);
+            clientsByAccount.put(key, streamingClient);
+        }
+        return streamingClient;
+    }
+
+    /**
+     * Closes the client of {@code account}, to be called when it is logged out.
+     */
+    public static void close(@NonNull AccountEntity account) {
+        StreamingClient streamingClient;
+        synchronized (StreamingClient.class) {
+            streamingClient = clientsByAccount.remove(keyFor(account));
+        }
+        if (streamingClient != null) {
+            streamingClient.close();
+        }
+    }
+
+    private static String keyFor(AccountEntity account) {
+        return account.getDomain() + " " + account.getAccessToken();
+    }
+
+    /**
+     * Starts listening to a stream. The connection is opened if this is the first subscriber.
+     * @param stream one of the {@code STREAM_} constants
+     * @param parameter the hashtag for {@link #STREAM_HASHTAG} or the list id for
+     *                  {@link #STREAM_LIST}, null otherwise
+     */
+    @NonNull
+    public synchronized Subscription subscribe(@NonNull String stream, @Nullable String parameter,
+                                               @NonNull Listener listener) {
+        String key = parameter == null ? stream : stream + ":" + parameter;
+        Connection connection = connections.get(key);
+        if (connection == null) {
+            connection = new Connection(key, stream, parameter);
+            connections.put(key, connection);
+        }
+        Subscription subscription = new Subscription(this, connection, listener);
+        connection.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Closes all connections and stops the client's thread. Subscriptions don't receive any events
+     * anymore; cancelling them is still fine.
+     */
+    public void close() {
+        List<Connection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(connections.values());
+            connections.clear();
+        }
+        for (Connection connection : toClose) {
+            connection.close();
+        }
+        reconnectExecutor.shutdownNow();
+    }
+
+    /**
+     * Asks the instance where it serves the streaming api. Only called on the reconnect thread.
+     * If the instance can't be reached, it is asked again before the next connection attempt.
+     */
+    private void resolveStreamingUrl() {
+        if (instanceApi == null || streamingUrlResolved) {
+            return;
+        }
+        retrofit2.Response<Instance> response;
+        try {
+            response = instanceApi.getInstance().execute();
+        } catch (IOException e) {
+            Log.d(TAG, "Could not get the streaming url: " + e.getMessage());
+            return;
+        }
+        streamingUrlResolved = true;
+        Instance instance = response.body();
+        if (!response.isSuccessful() || instance == null || instance.getUrls() == null) {
+            return;
+        }
+        String streamingApi = instance.getUrls().getStreamingApi();
+        if (streamingApi == null) {
+            return;
+        }
+        // HttpUrl only knows http and https, OkHttp maps them back to ws and wss itself
+        HttpUrl url = HttpUrl.parse(streamingApi.replaceFirst("^ws", "http"));
+        if (url != null) {
+            streamingUrl = url.newBuilder().addPathSegments("api/v1/streaming").build();
+        }
+    }
+
+    private HttpUrl buildUrl(String stream, @Nullable String parameter) {
+        HttpUrl.Builder builder = streamingUrl.newBuilder()
+                .addQueryParameter("stream", stream);
+        if (STREAM_HASHTAG.equals(stream)) {
+            builder.addQueryParameter("tag", parameter);
+        } else if (STREAM_LIST.equals(stream)) {
+            builder.addQueryParameter("list", parameter);
+        }
+        return builder.build();
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Connection connection = subscription.connection;
+        if (connection.remove(subscription)) {
+            connections.remove(connection.key);
+        }
+    }
+
+    private final class Connection extends WebSocketListener {
+        private final String key;
+        private final String stream;
+        @Nullable
+        private final String parameter;
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        @Nullable
+        private WebSocket webSocket;
+        private int failedAttempts;
+        private boolean wasOpen;
+        private boolean closed;
+
+        Connection(String key, String stream, @Nullable String parameter) {
+            this.key = key;
+            this.stream = stream;
+            this.parameter = parameter;
+        }
+
+        synchronized void add(Subscription subscription) {
+            subscriptions.add(subscription);
+            if (webSocket == null && !closed) {
+                scheduleConnect(0);
+            }
+        }
+
+        /**
+         * @return true if this was the last subscription and the connection got closed
+         */
+        synchronized boolean remove(Subscription subscription) {
+            subscriptions.remove(subscription);
+            if (!subscriptions.isEmpty()) {
+                return false;
+            }
+            close();
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (webSocket != null) {
+                webSocket.close(NORMAL_CLOSURE, null);
+                webSocket = null;
+            }
+        }
+
+        private void scheduleConnect(long delay) {
+            try {
+                reconnectExecutor.schedule(() -> {
+                    resolveStreamingUrl();
+                    synchronized (Connection.this) {
+                        if (!closed && webSocket == null) {
+                            connect();
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the client was closed
+                closed = true;
+            }
+        }
+
+        private void connect() {
+            Request request = new Request.Builder()
+                    .url(buildUrl(stream, parameter))
+                    .header("Authorization", "Bearer " + accessToken)
+                    .build();
+            webSocket = client.newWebSocket(request, this);
+        }
+
+        private synchronized void scheduleReconnect(WebSocket failed) {
+            if (closed || failed != webSocket) {
+                return;
+            }
+            webSocket = null;
+            long delay = Math.min(MAX_RECONNECT_DELAY_MS,
+                    MIN_RECONNECT_DELAY_MS << Math.min(failedAttempts, 16));
+            failedAttempts++;
+            Log.d(TAG, "Reconnecting to " + key + " in " + delay + "ms");
+            scheduleConnect(delay);
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            boolean reconnected;
+            synchronized (this) {
+                if (webSocket != this.webSocket) {
+                    return;
+                }
+                failedAttempts = 0;
+                reconnected = wasOpen;
+                wasOpen = true;
+            }
+            if (reconnected) {
+                for (Subscription subscription : subscriptions) {
+                    deliver(subscription, () -> subscription.listener.onReconnected());
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                JsonObject message = new JsonParser().parse(text).getAsJsonObject();
+                JsonElement event = message.get("event");
+                JsonElement payload = message.get("payload");
+                if (event == null || payload == null) {
+                    return;
+                }
+                switch (event.getAsString()) {
+                    case "update": {
+                        Status status = gson.fromJson(payload.getAsString(), Status.class);
+                        if (status == null) {
+                            // nothing which could be shown
+                            break;
+                        }
+                        for (Subscription subscription : subscriptions) {
+                            deliver(subscription, () -> subscription.listener.onUpdate(status));
+                        }
+                        break;
+                    }
+                    case "notification": {
+                        Notification notification =
+                                gson.fromJson(payload.getAsString(), Notification.class);
+                        if (notification == null) {
+                            break;
+                        }
+                        for (Subscription subscription : subscriptions) {
+                            deliver(subscription,
+                                    () -> subscription.listener.onNotification(notification));
+                        }
+                        break;
+                    }
+                    case "delete": {
+                        String id = payload.getAsString();
+                        for (Subscription subscription : subscriptions) {
+                            deliver(subscription, () -> subscription.listener.onDelete(id));
+                        }
+                        break;
+                    }
+                }
+            } catch (JsonParseException | IllegalStateException e) {
+                Log.w(TAG, "Could not parse streaming event on " + key, e);
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            scheduleReconnect(webSocket);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, @Nullable Response response) {
+            Log.d(TAG, "Stream " + key + " failed: " + t.getMessage());
+            scheduleReconnect(webSocket);
+        }
+
+        private void deliver(Subscription subscription, Runnable event) {
+            callbackExecutor.execute(() -> {
+                if (subscription.active) {
+                    event.run();
+                }
+            });
+        }
+    }
+}
@@ -34,6 +34,9 @@ class NotificationClearBroadcastReceiver : BroadcastReceiver() {
         if (account != null) {
             account.activeNotifications = "[]"
             accountManager.saveAccount(account)
+            // the process may end with the broadcast, so it is kept until the change is written
+            val result = goAsync()
+            accountManager.flush(Runnable { result.finish() })
         }
     }
 
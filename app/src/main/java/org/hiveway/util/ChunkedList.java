@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * List stored in chunks of {@value #CHUNK_SIZE} elements, made for timelines which are copied
+ * after every change and grow at both ends.
+ *
+ * Copying is O(1): {@link #ChunkedList(Collection)} called with another ChunkedList shares all
+ * chunks with it. Whichever of the two lists is modified first copies the table of chunks
+ * (one reference per {@value #CHUNK_SIZE} elements) and then every chunk it writes to, the other
+ * list never sees the change. A copy can therefore be handed to another thread and read there
+ * while the original keeps changing.
+ *
+ * Random access is O(1), adding and removing at both ends is amortized O(1). Adding or removing
+ * in the middle moves the elements on the shorter side of the index.
+ * @param <E> type of the elements
+ */
+public final class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << SHIFT;
+    private static final int MASK = CHUNK_SIZE - 1;
+    private static final int MIN_CHUNKS = 4;
+
+    /* element i is at position head + i, which is slot (position & MASK) of chunk
+     * (position >> SHIFT); chunks outside of the used range are null, except for an empty spare
+     * one next to either end */
+    private Object[][] chunks;
+    /* which chunks only this list refers to; null while the table itself is shared */
+    @Nullable
+    private boolean[] owned;
+    private int head;
+    private int size;
+
+    public ChunkedList() {
+        reset();
+    }
+
+    /**
+     * Creates a list with the elements of {@code items}. If it is another ChunkedList this takes
+     * constant time and no memory until one of them is modified.
+     */
+    public ChunkedList(@NonNull Collection<? extends E> items) {
+        if (items instanceof ChunkedList) {
+            ChunkedList<?> other = (ChunkedList<?>) items;
+            chunks = other.chunks;
+            head = other.head;
+            size = other.size;
+            other.owned = null;
+        } else {
+            reset();
+            addAll(items);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index);
+        return (E) read(head + index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = get(index);
+        write(head + index, element);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        makeRoom(index, 1);
+        write(head + index, element);
+    }
+
+    @Override
+    public boolean addAll(@NonNull Collection<? extends E> items) {
+        return addAll(size, items);
+    }
+
+    @Override
+    public boolean addAll(int index, @NonNull Collection<? extends E> items) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Object[] array = items.toArray();
+        if (array.length == 0) {
+            return false;
+        }
+        makeRoom(index, array.length);
+        for (int i = 0; i < array.length; i++) {
+            write(head + index + i, array[i]);
+        }
+        return true;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = get(index);
+        modCount++;
+        if (index < size / 2) {
+            for (int i = index; i > 0; i--) {
+                write(head + i, read(head + i - 1));
+            }
+            clearSlot(head, (head & MASK) == MASK, -1);
+            head++;
+        } else {
+            for (int i = index; i < size - 1; i++) {
+                write(head + i, read(head + i + 1));
+            }
+            int last = head + size - 1;
+            clearSlot(last, (last & MASK) == 0, 1);
+        }
+        size--;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        reset();
+    }
+
+    private void reset() {
+        chunks = new Object[MIN_CHUNKS][];
+        owned = new boolean[MIN_CHUNKS];
+        head = MIN_CHUNKS / 2 * CHUNK_SIZE;
+        size = 0;
+    }
+
+    /**
+     * Opens a gap of {@code count} elements before {@code index}, moving the shorter side.
+     */
+    private void makeRoom(int index, int count) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        modCount++;
+        if (index < size / 2) {
+            if (head < count) {
+                grow(count);
+            }
+            head -= count;
+            size += count;
+            for (int i = 0; i < index; i++) {
+                write(head + i, read(head + i + count));
+            }
+        } else {
+            if (head + size + count > chunks.length * CHUNK_SIZE) {
+                grow(count);
+            }
+            int oldSize = size;
+            size += count;
+            for (int i = oldSize - 1; i >= index; i--) {
+                write(head + i + count, read(head + i));
+            }
+        }
+    }
+
+    /**
+     * Replaces the table of chunks with one that has free chunks on both sides, at least enough
+     * for {@code extra} more elements on either of them.
+     */
+    private void grow(int extra) {
+        int first = head >> SHIFT;
+        int used = size == 0 ? 0 : ((head + size - 1) >> SHIFT) - first + 1;
+        int spare = (extra + MASK) >> SHIFT;
+        int length = Math.max(MIN_CHUNKS, 2 * (used + spare) + 2);
+        int offset = (length - used) / 2;
+
+        Object[][] newChunks = new Object[length][];
+        boolean[] newOwned = new boolean[length];
+        System.arraycopy(chunks, first, newChunks, offset, used);
+        if (owned != null) {
+            System.arraycopy(owned, first, newOwned, offset, used);
+        }
+        chunks = newChunks;
+        owned = newOwned;
+        head = offset * CHUNK_SIZE + (head & MASK);
+    }
+
+    private Object read(int position) {
+        return chunks[position >> SHIFT][position & MASK];
+    }
+
+    private void write(int position, Object element) {
+        int chunk = position >> SHIFT;
+        ownTable();
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[CHUNK_SIZE];
+            owned[chunk] = true;
+        } else if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        chunks[chunk][position & MASK] = element;
+    }
+
+    /**
+     * Forgets the element at {@code position}. If it is the last element in use in its chunk,
+     * the chunk is kept as the spare one of that end, so adding and removing across the border
+     * of a chunk doesn't allocate a new one every time. The spare one further out is dropped.
+     * @param outwards -1 at the head, 1 at the tail
+     */
+    private void clearSlot(int position, boolean lastInChunk, int outwards) {
+        if (!lastInChunk) {
+            write(position, null);
+            return;
+        }
+        ownTable();
+        int chunk = position >> SHIFT;
+        if (owned[chunk]) {
+            chunks[chunk][position & MASK] = null;
+        } else {
+            // shared with a copy, nothing to reuse
+            chunks[chunk] = null;
+        }
+        int beyond = chunk + outwards;
+        if (beyond >= 0 && beyond < chunks.length) {
+            chunks[beyond] = null;
+            owned[beyond] = false;
+        }
+    }
+
+    private void ownTable() {
+        if (owned == null) {
+            chunks = chunks.clone();
+            owned = new boolean[chunks.length];
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
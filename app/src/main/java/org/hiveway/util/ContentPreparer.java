@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.graphics.Typeface;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.ObjectsCompat;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import org.hiveway.entity.Status;
+import org.hiveway.viewdata.StatusViewData;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Prepares the content of statuses on a background thread shortly before they are bound, so
+ * the main thread finds it ready instead of doing the work while the user scrolls: the html is
+ * converted to a {@link android.text.Spanned}, its links, mentions and hashtags are made clickable
+ * and it is laid out once with the width and text size of the views it will be shown in.
+ *
+ * A TextView can't be handed a finished layout before Android P, so that layout is thrown away.
+ * Measuring the text fills the process wide cache of measured words though, and the TextView
+ * finds them there when it lays out the same text on the main thread. The text is laid out again
+ * when the {@link TextMetrics} of the list change, like after a rotation or when the user picked
+ * another text size.
+ *
+ * If the main thread gets there first it does the work itself, nothing waits for the background.
+ *
+ * The cache is shared by all lists and outlives them, so the text in it must not reference a
+ * list's listener. Its spans find the listener on the view they are clicked in, see
+ * {@link LinkHelper#applyClickableText}.
+ */
+public final class ContentPreparer {
+
+    /**
+     * How many items below the one being bound get prepared.
+     */
+    public static final int PREPARE_AHEAD = 6;
+
+    private static final int CACHE_SIZE = 100;
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "ContentPreparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /* clickable content by status id */
+    private static final LruCache<String, Prepared> cache = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * Width and text appearance of the content views of one list, taken from the views bound
+     * last. Only touched on the main thread, the background reads immutable snapshots.
+     */
+    public static final class TextMetrics {
+        @Nullable
+        private volatile Snapshot snapshot;
+
+        /**
+         * Takes the metrics of a content view which has just been bound. Views which have not
+         * been laid out yet are ignored.
+         */
+        public void update(@NonNull TextView view) {
+            int width = view.getWidth() - view.getTotalPaddingLeft() - view.getTotalPaddingRight();
+            if (width <= 0) {
+                return;
+            }
+            Snapshot current = snapshot;
+            if (current == null || !current.matches(view, width)) {
+                snapshot = new Snapshot(view, width);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        final int width;
+        final TextPaint paint;
+        final float spacingMultiplier;
+        final float spacingExtra;
+        final boolean includePadding;
+
+        Snapshot(TextView view, int width) {
+            this.width = width;
+            this.paint = new TextPaint(view.getPaint());
+            this.spacingMultiplier = view.getLineSpacingMultiplier();
+            this.spacingExtra = view.getLineSpacingExtra();
+            this.includePadding = view.getIncludeFontPadding();
+        }
+
+        boolean matches(TextView view, int width) {
+            Typeface typeface = view.getPaint().getTypeface();
+            return this.width == width
+                    && paint.getTextSize() == view.getTextSize()
+                    && ObjectsCompat.equals(paint.getTypeface(), typeface)
+                    && spacingMultiplier == view.getLineSpacingMultiplier()
+                    && spacingExtra == view.getLineSpacingExtra()
+                    && includePadding == view.getIncludeFontPadding();
+        }
+    }
+
+    private static final class Prepared {
+        final Spanned content;
+        final Spanned clickable;
+        /* the metrics the text was laid out with last, written on the background thread */
+        @Nullable
+        volatile Snapshot laidOutWith;
+
+        Prepared(Spanned content, Spanned clickable) {
+            this.content = content;
+            this.clickable = clickable;
+        }
+    }
+
+    private ContentPreparer() { }
+
+    public static void prepare(@Nullable StatusViewData status, @Nullable TextMetrics metrics) {
+        if (!(status instanceof StatusViewData.Concrete)) {
+            return;
+        }
+        final StatusViewData.Concrete concrete = (StatusViewData.Concrete) status;
+        final Snapshot snapshot = metrics == null ? null : metrics.snapshot;
+        Prepared cached = cache.get(concrete.getId());
+        if (cached != null && concrete.isContentPrepared()
+                && cached.content == concrete.getContent()
+                && (snapshot == null || cached.laidOutWith == snapshot)) {
+            return;
+        }
+        executor.execute(() -> {
+            Spanned content = concrete.getContent();
+            Prepared prepared = cache.get(concrete.getId());
+            if (prepared == null || prepared.content != content) {
+                prepared = new Prepared(content,
+                        LinkHelper.createClickableText(content, concrete.getMentions()));
+                cache.put(concrete.getId(), prepared);
+            }
+            if (snapshot != null && prepared.laidOutWith != snapshot) {
+                new StaticLayout(prepared.clickable, snapshot.paint, snapshot.width,
+                        Layout.Alignment.ALIGN_NORMAL, snapshot.spacingMultiplier,
+                        snapshot.spacingExtra, snapshot.includePadding);
+                prepared.laidOutWith = snapshot;
+            }
+        });
+    }
+
+    /**
+     * @return the content with clickable links, mentions and hashtags, prepared in the background
+     * if it was done already
+     */
+    @NonNull
+    public static Spanned getClickableText(@NonNull String id, @NonNull Spanned content,
+                                           @Nullable Status.Mention[] mentions) {
+        Prepared prepared = cache.get(id);
+        if (prepared != null && prepared.content == content) {
+            return prepared.clickable;
+        }
+        prepared = new Prepared(content, LinkHelper.createClickableText(content, mentions));
+        cache.put(id, prepared);
+        return prepared.clickable;
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.hiveway.util;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
@@ -28,22 +29,38 @@ import android.support.annotation.Nullable;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.SpannedString;
+import android.text.TextUtils;
 import android.text.style.ReplacementSpan;
+import android.util.LruCache;
 import android.widget.TextView;
 
-import org.hiveway.entity.Status;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 
 import org.hiveway.entity.Status;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 public class CustomEmojiHelper {
 
+    private static final float EMOJI_SCALE = 1.1f;
+    private static final int CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /* decoded emojis by url and size in pixels, shared by all text views */
+    private static final LruCache<String, BitmapDrawable> drawableCache =
+            new LruCache<String, BitmapDrawable>(CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, BitmapDrawable value) {
+                    return value.getBitmap().getByteCount();
+                }
+            };
+    /* loads in progress by the same key, they also keep the Picasso targets from being collected */
+    private static final Map<String, EmojiLoader> loaders = new HashMap<>();
+
     /**
      * replaces emoji shortcodes in a text with EmojiSpans
      * @param text the text containing custom emojis
@@ -53,35 +70,118 @@ public class CustomEmojiHelper {
      */
     public static Spanned emojifyText(Spanned text, List<Status.Emoji> emojis, final TextView textView) {
 
-        if (!emojis.isEmpty()) {
-
-            SpannableStringBuilder builder = new SpannableStringBuilder(text);
-            for (Status.Emoji emoji : emojis) {
-                CharSequence pattern = new StringBuilder(":").append(emoji.getShortcode()).append(':');
-                Matcher matcher = Pattern.compile(pattern.toString()).matcher(text);
-                while (matcher.find()) {
-                    // We keep a span as a Picasso target, because Picasso keeps weak reference to
-                    // the target so an anonymous class would likely be garbage collected.
-                    EmojiSpan span = new EmojiSpan(textView);
-                    builder.setSpan(span, matcher.start(), matcher.end(), 0);
-                    Picasso.with(textView.getContext())
-                            .load(emoji.getUrl())
-                            .into(span);
-                }
-            }
+        if (emojis.isEmpty()) {
+            return text;
+        }
 
-            return builder;
+        Map<String, String> urls = new HashMap<>(emojis.size() * 2);
+        for (Status.Emoji emoji : emojis) {
+            urls.put(emoji.getShortcode(), emoji.getUrl());
+        }
+        int size = Math.max(1, (int) (textView.getTextSize() * EMOJI_SCALE));
+
+        // a single pass over the text, every :shortcode: is looked up in the map
+        SpannableStringBuilder builder = null;
+        int length = text.length();
+        int start = TextUtils.indexOf(text, ':');
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < length && isShortcodeCharacter(text.charAt(end))) {
+                end++;
+            }
+            if (end >= length) {
+                break;
+            }
+            if (text.charAt(end) != ':') {
+                start = TextUtils.indexOf(text, ':', end);
+                continue;
+            }
+            String url = end > start + 1 ? urls.get(text.subSequence(start + 1, end).toString())
+                    : null;
+            if (url == null) {
+                // the closing colon may open the next shortcode
+                start = end;
+                continue;
+            }
+            if (builder == null) {
+                builder = new SpannableStringBuilder(text);
+            }
+            builder.setSpan(createSpan(url, size, textView), start, end + 1, 0);
+            start = TextUtils.indexOf(text, ':', end + 1);
         }
 
-        return text;
+        return builder == null ? text : builder;
     }
 
     public static Spanned emojifyString(String string, List<Status.Emoji> emojis, final TextView textView) {
         return emojifyText(new SpannedString(string), emojis, textView);
     }
 
+    private static boolean isShortcodeCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
 
-    public static class EmojiSpan extends ReplacementSpan implements Target {
+    /**
+     * Creates a span showing the emoji at {@code url}. It uses the cached drawable if there is
+     * one, otherwise it waits for the load of the same emoji and size, and only starts a new one
+     * if nobody else is loading it already.
+     */
+    private static EmojiSpan createSpan(String url, int size, TextView textView) {
+        EmojiSpan span = new EmojiSpan(textView);
+        String key = url + ' ' + size;
+        BitmapDrawable drawable = drawableCache.get(key);
+        if (drawable != null) {
+            span.imageDrawable = drawable;
+            return span;
+        }
+        EmojiLoader loader = loaders.get(key);
+        if (loader == null) {
+            loader = new EmojiLoader(key, textView.getResources());
+            loaders.put(key, loader);
+            loader.spans.add(span);
+            // Picasso may deliver a bitmap from its own cache right away, so this comes last
+            Picasso.with(textView.getContext())
+                    .load(url)
+                    .resize(size, size)
+                    .centerInside()
+                    .into(loader);
+        } else {
+            loader.spans.add(span);
+        }
+        return span;
+    }
+
+    private static final class EmojiLoader implements Target {
+
+        private final String key;
+        private final Resources resources;
+        private final List<EmojiSpan> spans = new ArrayList<>();
+
+        EmojiLoader(String key, Resources resources) {
+            this.key = key;
+            this.resources = resources;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            loaders.remove(key);
+            BitmapDrawable drawable = new BitmapDrawable(resources, bitmap);
+            drawableCache.put(key, drawable);
+            for (EmojiSpan span : spans) {
+                span.setDrawable(drawable);
+            }
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            loaders.remove(key);
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {}
+    }
+
+    public static class EmojiSpan extends ReplacementSpan {
 
         private @Nullable Drawable imageDrawable;
         private WeakReference<TextView> textViewWeakReference;
@@ -113,7 +213,8 @@ public class CustomEmojiHelper {
             if (imageDrawable == null) return;
             canvas.save();
 
-            int emojiSize = (int) (paint.getTextSize() * 1.1);
+            // the drawable is shared, but every user draws it at the same size
+            int emojiSize = (int) (paint.getTextSize() * EMOJI_SCALE);
             imageDrawable.setBounds(0, 0, emojiSize, emojiSize);
 
             int transY = bottom - imageDrawable.getBounds().bottom;
@@ -123,20 +224,13 @@ public class CustomEmojiHelper {
             canvas.restore();
         }
 
-        @Override
-        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+        void setDrawable(Drawable drawable) {
+            imageDrawable = drawable;
             TextView textView = textViewWeakReference.get();
             if(textView != null) {
-                imageDrawable = new BitmapDrawable(textView.getContext().getResources(), bitmap);
                 textView.invalidate();
             }
         }
-
-        @Override
-        public void onBitmapFailed(Drawable errorDrawable) {}
-
-        @Override
-        public void onPrepareLoad(Drawable placeHolderDrawable) {}
     }
 
 }
@@ -28,6 +28,7 @@ import android.support.annotation.Nullable;
 import android.support.media.ExifInterface;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -37,10 +38,22 @@ import java.util.List;
 
 /**
  * Reduces the file size of images to fit under a given limit by resizing them, maintaining both
- * aspect ratio and orientation.
+ * aspect ratio and orientation. Each image is decoded only once; finding the size which fits
+ * compresses that bitmap at different scales.
  */
 public class DownsizeImageTask extends AsyncTask<Uri, Void, Boolean> {
     private static final String TAG = "DownsizeImageTask";
+    /* the short side images are decoded at, unless they are smaller */
+    private static final int SCALED_IMAGE_SIZE = 1024;
+    private static final int QUALITY = 75;
+    /* how many times an image may be compressed to get close to the limit once it fits */
+    static final int MAX_ATTEMPTS = 4;
+    /* an image which takes this share of the limit is not worth compressing again */
+    static final float GOOD_ENOUGH = 0.85f;
+    /* images aren't made smaller than this in either dimension */
+    static final int MIN_SIZE = 32;
+    /* how far the dimensions are read into the file at most, before the EXIF data is read */
+    private static final int HEADER_LIMIT = 256 * 1024;
     private int sizeLimit;
     private ContentResolver contentResolver;
     private Listener listener;
@@ -57,6 +70,17 @@ public class DownsizeImageTask extends AsyncTask<Uri, Void, Boolean> {
         this.listener = listener;
     }
 
+    /**
+     * Compresses one decoded image at different scales, which is all {@link #search} needs.
+     */
+    interface Compressor {
+        /**
+         * Replaces the content of {@code stream} with the image scaled by {@code scale}.
+         * @return the number of bytes it took, or -1 if there was no memory for the scaled image
+         */
+        int compress(float scale, ByteArrayOutputStream stream);
+    }
+
     @Nullable
     private static Bitmap reorientBitmap(Bitmap bitmap, int orientation) {
         Matrix matrix = new Matrix();
@@ -149,75 +173,178 @@ public class DownsizeImageTask extends AsyncTask<Uri, Void, Boolean> {
         return inSampleSize;
     }
 
-    @Override
-    protected Boolean doInBackground(Uri... uris) {
-        resultList = new ArrayList<>();
-        for (Uri uri : uris) {
-            InputStream inputStream;
+    /**
+     * Compresses {@code bitmap} scaled by {@code scale} into {@code stream}.
+     * @return the number of bytes it took, or -1 if there was no memory for the scaled bitmap
+     */
+    private static int compress(Bitmap bitmap, float scale, Bitmap.CompressFormat format,
+                                ByteArrayOutputStream stream) {
+        stream.reset();
+        Bitmap scaledBitmap = bitmap;
+        if (scale < 1f) {
+            int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+            int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
             try {
-                inputStream = contentResolver.openInputStream(uri);
-            } catch (FileNotFoundException e) {
-                return false;
+                scaledBitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            } catch (OutOfMemoryError e) {
+                return -1;
             }
-            // Initially, just get the image dimensions.
+        }
+        scaledBitmap.compress(format, QUALITY, stream);
+        if (scaledBitmap != bitmap) {
+            scaledBitmap.recycle();
+        }
+        return stream.size();
+    }
+
+    /**
+     * Reads the dimensions and the orientation of an image from one stream.
+     * @return {width, height, orientation}, or null if it is no image which can be read
+     */
+    @Nullable
+    private int[] readHeader(Uri uri) {
+        InputStream inputStream;
+        try {
+            inputStream = contentResolver.openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        if (inputStream == null) {
+            return null;
+        }
+        BufferedInputStream stream = new BufferedInputStream(inputStream);
+        try {
+            stream.mark(HEADER_LIMIT);
             BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
-            BitmapFactory.decodeStream(inputStream, null, options);
-            int beforeWidth = options.outWidth;
-            int beforeHeight = options.outHeight;
-            IOUtils.closeQuietly(inputStream);
-            // Get EXIF data, for orientation info.
-            int orientation = getOrientation(uri, contentResolver);
-            // Then use that information to determine how much to compress.
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            /* Unfortunately, there isn't a determined worst case compression ratio for image
-             * formats. So, the only way to tell if they're too big is to compress them and
-             * test, and keep trying at smaller sizes. The initial estimate should be good for
-             * many cases, so it should only iterate once, but the loop is used to be absolutely
-             * sure it gets downsized to below the limit. */
-            int iterations = 0;
-            int scaledImageSize = 1024;
-            do {
+            BitmapFactory.decodeStream(stream, null, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            int orientation;
+            try {
                 stream.reset();
-                try {
-                    inputStream = contentResolver.openInputStream(uri);
-                } catch (FileNotFoundException e) {
-                    return false;
-                }
-                options.inSampleSize = calculateInSampleSize(beforeWidth, beforeHeight,
-                        scaledImageSize);
-                options.inJustDecodeBounds = false;
-                Bitmap scaledBitmap;
-                try {
-                    scaledBitmap = BitmapFactory.decodeStream(inputStream, null, options);
-                } catch (OutOfMemoryError error) {
-                    return false;
-                } finally {
-                    IOUtils.closeQuietly(inputStream);
-                }
-                if (scaledBitmap == null) {
-                    return false;
-                }
-                Bitmap reorientedBitmap = reorientBitmap(scaledBitmap, orientation);
-                if (reorientedBitmap == null) {
-                    scaledBitmap.recycle();
-                    return false;
+                orientation = new ExifInterface(stream).getAttributeInt(
+                        ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            } catch (IOException e) {
+                // The decoder read past the mark, so the EXIF data has to be read separately.
+                orientation = getOrientation(uri, contentResolver);
+            }
+            return new int[] { options.outWidth, options.outHeight, orientation };
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    @Nullable
+    private Bitmap decode(Uri uri, int inSampleSize) {
+        InputStream inputStream;
+        try {
+            inputStream = contentResolver.openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = inSampleSize;
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (OutOfMemoryError error) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Finds the largest scale of an image of {@code width} by {@code height} which compresses to
+     * no more than {@code sizeLimit} bytes. All attempts compress the same decoded image in
+     * memory.
+     * @return the compressed image, or null if it can't be made small enough
+     */
+    @Nullable
+    static byte[] search(int width, int height, int sizeLimit, Compressor compressor) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] best = null;
+        float fitting = 0f; // the largest scale known to fit
+        float tooLarge = -1f; // the smallest scale known not to fit, -1 until there is one
+        float scale = 1f;
+        for (int attempts = 1; ; attempts++) {
+            int size = compressor.compress(scale, stream);
+            if (size < 0) {
+                return best;
+            }
+            if (size <= sizeLimit) {
+                best = stream.toByteArray();
+                fitting = scale;
+                /* Usually the image fits as it was decoded. Otherwise it only gets closer to the
+                 * limit while there are attempts left. */
+                if (tooLarge < 0 || size >= sizeLimit * GOOD_ENOUGH || attempts >= MAX_ATTEMPTS) {
+                    return best;
                 }
-                Bitmap.CompressFormat format;
-                /* It's not likely the user will give transparent images over the upload limit, but
-                 * if they do, make sure the transparency is retained. */
-                if (!reorientedBitmap.hasAlpha()) {
-                    format = Bitmap.CompressFormat.JPEG;
+                scale = (fitting + tooLarge) / 2;
+            } else {
+                tooLarge = scale;
+                if (best != null) {
+                    if (attempts >= MAX_ATTEMPTS) {
+                        return best;
+                    }
+                    scale = (fitting + tooLarge) / 2;
                 } else {
-                    format = Bitmap.CompressFormat.PNG;
+                    /* Nothing fits yet. The size grows about with the number of pixels, so that
+                     * makes a good guess, made a bit smaller to likely fit the first time. Each
+                     * guess is smaller than the last one, so this ends. */
+                    scale *= (float) Math.sqrt((double) sizeLimit / size) * 0.9f;
+                    if (width * scale < MIN_SIZE || height * scale < MIN_SIZE) {
+                        return null;
+                    }
                 }
-                reorientedBitmap.compress(format, 75, stream);
-                reorientedBitmap.recycle();
-                scaledImageSize /= 2;
-                iterations++;
-            } while (stream.size() > sizeLimit);
-            Assert.expect(iterations < 3);
-            resultList.add(stream.toByteArray());
+            }
+        }
+    }
+
+    @Nullable
+    private byte[] downsize(Uri uri) {
+        // Initially, just get the image dimensions and EXIF data, for orientation info.
+        int[] header = readHeader(uri);
+        if (header == null) {
+            return null;
+        }
+        // Then decode it once, as close to the size it will likely be uploaded at as possible.
+        Bitmap scaledBitmap = decode(uri,
+                calculateInSampleSize(header[0], header[1], SCALED_IMAGE_SIZE));
+        if (scaledBitmap == null) {
+            return null;
+        }
+        Bitmap reorientedBitmap = reorientBitmap(scaledBitmap, header[2]);
+        if (reorientedBitmap == null) {
+            scaledBitmap.recycle();
+            return null;
+        }
+        final Bitmap.CompressFormat format;
+        /* It's not likely the user will give transparent images over the upload limit, but
+         * if they do, make sure the transparency is retained. */
+        if (!reorientedBitmap.hasAlpha()) {
+            format = Bitmap.CompressFormat.JPEG;
+        } else {
+            format = Bitmap.CompressFormat.PNG;
+        }
+        try {
+            return search(reorientedBitmap.getWidth(), reorientedBitmap.getHeight(), sizeLimit,
+                    (scale, stream) -> compress(reorientedBitmap, scale, format, stream));
+        } finally {
+            reorientedBitmap.recycle();
+        }
+    }
+
+    @Override
+    protected Boolean doInBackground(Uri... uris) {
+        resultList = new ArrayList<>();
+        for (Uri uri : uris) {
+            byte[] result = downsize(uri);
+            if (result == null) {
+                return false;
+            }
+            resultList.add(result);
             if (isCancelled()) {
                 return false;
             }
@@ -33,6 +33,12 @@ public class HtmlUtils {
 
     @SuppressWarnings("deprecation")
     public static Spanned fromHtml(String html) {
+        /* Status contents and account notes almost always fit into the few tags the specialized
+         * parser understands, everything else still goes through the platform. */
+        Spanned parsed = MastodonHtmlParser.parse(html);
+        if (parsed != null) {
+            return parsed;
+        }
         Spanned result;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             result = Html.fromHtml(html, Html.FROM_HTML_MODE_LEGACY);
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.graphics.Bitmap;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import org.hiveway.R;
+import org.hiveway.view.RoundedTransformation;
+
+/**
+ * Picasso requests for the images shown in lists. Picasso keys its memory cache by url, target
+ * size and transformations, so loading every list avatar with the same size and the same
+ * transformation lets an avatar decoded for the timeline be reused by notifications, threads and
+ * account lists.
+ */
+public final class ImageLoadingHelper {
+
+    private ImageLoadingHelper() { }
+
+    /**
+     * Loads a rounded avatar sized for list rows, or shows the default avatar if there is no url.
+     */
+    public static void loadAvatar(@Nullable String url, ImageView avatar) {
+        loadAvatar(url, avatar, true);
+    }
+
+    public static void loadAvatar(@Nullable String url, ImageView avatar, boolean rounded) {
+        if (TextUtils.isEmpty(url)) {
+            Picasso.with(avatar.getContext()).cancelRequest(avatar);
+            avatar.setImageResource(R.drawable.avatar_default);
+            return;
+        }
+        RequestCreator request = Picasso.with(avatar.getContext())
+                .load(url)
+                .placeholder(R.drawable.avatar_default)
+                .resizeDimen(R.dimen.list_avatar_size, R.dimen.list_avatar_size)
+                .centerCrop();
+        if (rounded) {
+            request.transform(RoundedTransformation.AVATAR);
+        }
+        request.into(avatar);
+    }
+
+    /**
+     * Loads a media or card thumbnail decoded at the size of {@code view}. Thumbnails are never
+     * transparent, so they are decoded without alpha at half the memory.
+     */
+    public static void loadThumbnail(String url, ImageView view, @DrawableRes int placeholder) {
+        Picasso.with(view.getContext())
+                .load(url)
+                .placeholder(placeholder)
+                .fit()
+                .centerCrop()
+                .config(Bitmap.Config.RGB_565)
+                .into(view);
+    }
+}
@@ -36,6 +36,7 @@ import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
 
+import org.hiveway.R;
 import org.hiveway.entity.Status;
 import org.hiveway.interfaces.LinkListener;
 
@@ -69,7 +70,32 @@ public class LinkHelper {
      */
     public static void setClickableText(TextView view, Spanned content,
             @Nullable Status.Mention[] mentions, final LinkListener listener) {
+        applyClickableText(view, createClickableText(content, mentions), listener);
+    }
+
+    /**
+     * Shows text made by {@link #createClickableText(Spanned, Status.Mention[])} and lets its
+     * spans be clicked.
+     *
+     * @param listener to notify about clicked mentions and hashtags, it is kept by the view
+     */
+    public static void applyClickableText(TextView view, CharSequence clickableText,
+                                          LinkListener listener) {
+        view.setTag(R.id.link_listener, listener);
+        view.setText(clickableText);
+        view.setLinksClickable(true);
+        view.setMovementMethod(LinkMovementMethod.getInstance());
+    }
 
+    /**
+     * Like {@link #setClickableText(TextView, Spanned, Status.Mention[], LinkListener)}, but only
+     * returns the text. It doesn't touch any view, so it may be called on any thread.
+     *
+     * The text doesn't reference a listener, its mentions and hashtags notify the one of the view
+     * they are clicked in, so it may be kept for longer than the view.
+     */
+    public static Spanned createClickableText(Spanned content,
+            @Nullable Status.Mention[] mentions) {
         SpannableStringBuilder builder = new SpannableStringBuilder(content);
         URLSpan[] urlSpans = content.getSpans(0, content.length(), URLSpan.class);
         for (URLSpan span : urlSpans) {
@@ -78,17 +104,8 @@ public class LinkHelper {
             int flags = builder.getSpanFlags(span);
             CharSequence text = builder.subSequence(start, end);
             if (text.charAt(0) == '#') {
-                final String tag = text.subSequence(1, text.length()).toString();
-                ClickableSpan newSpan = new ClickableSpan() {
-                    @Override
-                    public void onClick(View widget) {
-                        listener.onViewTag(tag);
-                    }
-                    @Override public void updateDrawState(TextPaint ds) {
-                        super.updateDrawState(ds);
-                        ds.setUnderlineText(false);
-                    }
-                };
+                String tag = text.subSequence(1, text.length()).toString();
+                ClickableSpan newSpan = new TagSpan(tag);
                 builder.removeSpan(span);
                 builder.setSpan(newSpan, start, end, flags);
             } else if (text.charAt(0) == '@' && mentions != null && mentions.length > 0) {
@@ -106,17 +123,7 @@ public class LinkHelper {
                     }
                 }
                 if (id != null) {
-                    final String accountId = id;
-                    ClickableSpan newSpan = new ClickableSpan() {
-                        @Override
-                        public void onClick(View widget) {
-                            listener.onViewAccount(accountId);
-                        }
-                        @Override public void updateDrawState(TextPaint ds) {
-                            super.updateDrawState(ds);
-                            ds.setUnderlineText(false);
-                        }
-                    };
+                    ClickableSpan newSpan = new MentionSpan(id);
                     builder.removeSpan(span);
                     builder.setSpan(newSpan, start, end, flags);
                 } else {
@@ -130,9 +137,61 @@ public class LinkHelper {
                 builder.setSpan(newSpan, start, end, flags);
             }
         }
-        view.setText(builder);
-        view.setLinksClickable(true);
-        view.setMovementMethod(LinkMovementMethod.getInstance());
+        return builder;
+    }
+
+    /**
+     * @return the listener {@link #applyClickableText(TextView, CharSequence, LinkListener)} left
+     * on the view, if any
+     */
+    @Nullable
+    private static LinkListener getListener(View widget) {
+        Object listener = widget.getTag(R.id.link_listener);
+        return listener instanceof LinkListener ? (LinkListener) listener : null;
+    }
+
+    private static final class TagSpan extends ClickableSpan {
+        private final String tag;
+
+        TagSpan(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public void onClick(View widget) {
+            LinkListener listener = getListener(widget);
+            if (listener != null) {
+                listener.onViewTag(tag);
+            }
+        }
+
+        @Override
+        public void updateDrawState(TextPaint ds) {
+            super.updateDrawState(ds);
+            ds.setUnderlineText(false);
+        }
+    }
+
+    private static final class MentionSpan extends ClickableSpan {
+        private final String accountId;
+
+        MentionSpan(String accountId) {
+            this.accountId = accountId;
+        }
+
+        @Override
+        public void onClick(View widget) {
+            LinkListener listener = getListener(widget);
+            if (listener != null) {
+                listener.onViewAccount(accountId);
+            }
+        }
+
+        @Override
+        public void updateDrawState(TextPaint ds) {
+            super.updateDrawState(ds);
+            ds.setUnderlineText(false);
+        }
     }
 
     /**
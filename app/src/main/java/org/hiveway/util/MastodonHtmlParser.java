@@ -0,0 +1,355 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.support.annotation.Nullable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+
+import java.util.Locale;
+
+/**
+ * Single pass parser for the small html subset Mastodon puts into statuses and account notes:
+ * {@code p}, {@code br}, {@code a} and {@code span}. It produces the same text and spans as
+ * {@link android.text.Html#fromHtml(String)} in legacy mode, without going through TagSoup and
+ * SAX, so it allocates little more than the resulting {@link SpannableStringBuilder}.
+ *
+ * Span classes like {@code invisible} and {@code ellipsis} are ignored, just like the platform
+ * does. Whenever the input contains anything outside of the subset, {@link #parse(String)} gives
+ * up and returns null so the caller can fall back to the platform parser.
+ */
+final class MastodonHtmlParser {
+
+    private final String html;
+    private final SpannableStringBuilder text;
+    private int pos;
+    /* start and href of the currently open link, only one can be open at a time in Mastodon html */
+    private int linkStart = -1;
+    @Nullable
+    private String linkHref;
+
+    private MastodonHtmlParser(String html) {
+        this.html = html;
+        this.text = new SpannableStringBuilder();
+    }
+
+    /**
+     * @return the parsed text with trailing whitespace already removed, or null if the html
+     * contains tags or entities this parser does not know
+     */
+    @Nullable
+    static Spanned parse(String html) {
+        MastodonHtmlParser parser = new MastodonHtmlParser(html);
+        if (!parser.run()) {
+            return null;
+        }
+        parser.trimTrailingWhitespace();
+        return parser.text;
+    }
+
+    private boolean run() {
+        int length = html.length();
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '<') {
+                if (!readTag()) {
+                    return false;
+                }
+            } else if (c == '&') {
+                if (!readEntity()) {
+                    return false;
+                }
+            } else if (c == '\r') {
+                // line ends are normalized to a newline before anything else
+                appendCharacter('\n');
+                pos++;
+                if (pos < length && html.charAt(pos) == '\n') {
+                    pos++;
+                }
+            } else {
+                appendCharacter(c);
+                pos++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a character of text, collapsing spaces and newlines the same way the platform does.
+     */
+    private void appendCharacter(char c) {
+        if (c == ' ' || c == '\n') {
+            int length = text.length();
+            char previous = length == 0 ? '\n' : text.charAt(length - 1);
+            if (previous != ' ' && previous != '\n') {
+                text.append(' ');
+            }
+        } else {
+            text.append(c);
+        }
+    }
+
+    private boolean readTag() {
+        int length = html.length();
+        if (html.startsWith("<!--", pos)) {
+            int end = html.indexOf("-->", pos + 4);
+            pos = end < 0 ? length : end + 3;
+            return true;
+        }
+        int i = pos + 1;
+        boolean closing = i < length && html.charAt(i) == '/';
+        if (closing) {
+            i++;
+        }
+        int nameStart = i;
+        while (i < length && Character.isLetterOrDigit(html.charAt(i))) {
+            i++;
+        }
+        if (i == nameStart) {
+            // a lone '<', leave it to the platform
+            return false;
+        }
+        String name = html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+
+        String href = null;
+        while (true) {
+            while (i < length && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                return false;
+            }
+            char c = html.charAt(i);
+            if (c == '>') {
+                i++;
+                break;
+            }
+            if (c == '/') {
+                i++;
+                continue;
+            }
+            int attributeStart = i;
+            while (i < length && "= \t\n\r/>".indexOf(html.charAt(i)) < 0) {
+                i++;
+            }
+            String attribute = html.substring(attributeStart, i);
+            while (i < length && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i < length && html.charAt(i) == '=') {
+                i++;
+                while (i < length && Character.isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i >= length) {
+                    return false;
+                }
+                int valueStart;
+                int valueEnd;
+                char quote = html.charAt(i);
+                if (quote == '"' || quote == '\'') {
+                    valueStart = i + 1;
+                    valueEnd = html.indexOf(quote, valueStart);
+                    if (valueEnd < 0) {
+                        return false;
+                    }
+                    i = valueEnd + 1;
+                } else {
+                    valueStart = i;
+                    while (i < length && " \t\n\r>".indexOf(html.charAt(i)) < 0) {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+                if (attribute.equalsIgnoreCase("href")) {
+                    href = decodeEntities(html.substring(valueStart, valueEnd));
+                    if (href == null) {
+                        return false;
+                    }
+                }
+            }
+        }
+        pos = i;
+
+        switch (name) {
+            case "p":
+                appendNewlines();
+                return true;
+            case "br":
+                if (!closing) {
+                    text.append('\n');
+                }
+                return true;
+            case "a":
+                if (closing) {
+                    endLink();
+                } else {
+                    if (linkStart >= 0) {
+                        return false;
+                    }
+                    linkStart = text.length();
+                    linkHref = href;
+                }
+                return true;
+            case "span":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Paragraphs start and end with two newlines, unless the text is empty or already ends with
+     * them.
+     */
+    private void appendNewlines() {
+        int length = text.length();
+        if (length == 0) {
+            return;
+        }
+        int existing = 0;
+        for (int i = length - 1; i >= 0 && existing < 2 && text.charAt(i) == '\n'; i--) {
+            existing++;
+        }
+        for (int j = existing; j < 2; j++) {
+            text.append('\n');
+        }
+    }
+
+    private void endLink() {
+        int end = text.length();
+        if (linkStart >= 0 && linkHref != null && linkStart != end) {
+            text.setSpan(new URLSpan(linkHref), linkStart, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        linkStart = -1;
+        linkHref = null;
+    }
+
+    private boolean readEntity() {
+        if (!startsEntity(html, pos + 1)) {
+            // a lone ampersand
+            appendCharacter('&');
+            pos++;
+            return true;
+        }
+        int end = html.indexOf(';', pos);
+        if (end < 0 || end - pos > 10) {
+            // the platform decodes entities without semicolon too, like "&amp"
+            return false;
+        }
+        int codePoint = decodeEntity(html, pos + 1, end);
+        if (codePoint < 0) {
+            return false;
+        }
+        if (codePoint == ' ') {
+            appendCharacter((char) codePoint);
+        } else {
+            text.append(new String(Character.toChars(codePoint)));
+        }
+        pos = end + 1;
+        return true;
+    }
+
+    @Nullable
+    private static String decodeEntities(String value) {
+        int ampersand = value.indexOf('&');
+        if (ampersand < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        int i = 0;
+        while (ampersand >= 0) {
+            builder.append(value, i, ampersand);
+            int end = value.indexOf(';', ampersand);
+            if (!startsEntity(value, ampersand + 1)) {
+                builder.append('&');
+                i = ampersand + 1;
+            } else if (end < 0 || end - ampersand > 10) {
+                return null;
+            } else {
+                int codePoint = decodeEntity(value, ampersand + 1, end);
+                if (codePoint < 0) {
+                    return null;
+                }
+                builder.appendCodePoint(codePoint);
+                i = end + 1;
+            }
+            ampersand = value.indexOf('&', i);
+        }
+        builder.append(value, i, value.length());
+        return builder.toString();
+    }
+
+    /**
+     * @return whether the character at {@code i}, following an '&', could start an entity
+     */
+    private static boolean startsEntity(String s, int i) {
+        return i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '#');
+    }
+
+    /**
+     * @return the code point of the entity between {@code start} and {@code end} (the part between
+     * '&' and ';') or -1 if it is not one Mastodon uses
+     */
+    private static int decodeEntity(String s, int start, int end) {
+        if (start < end && s.charAt(start) == '#') {
+            try {
+                int codePoint;
+                if (start + 1 < end && (s.charAt(start + 1) == 'x' || s.charAt(start + 1) == 'X')) {
+                    codePoint = Integer.parseInt(s.substring(start + 2, end), 16);
+                } else {
+                    codePoint = Integer.parseInt(s.substring(start + 1, end));
+                }
+                // TagSoup drops or remaps control characters in its own ways
+                if (codePoint < 0x20 || (codePoint >= 0x7F && codePoint <= 0x9F)) {
+                    return -1;
+                }
+                return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        switch (s.substring(start, end)) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return '\u00A0';
+            default:
+                return -1;
+        }
+    }
+
+    private void trimTrailingWhitespace() {
+        int end = text.length();
+        int i = end;
+        while (i > 0 && Character.isWhitespace(text.charAt(i - 1))) {
+            i--;
+        }
+        if (i != end) {
+            text.delete(i, end);
+        }
+    }
+}
@@ -148,7 +148,10 @@ public class NotificationHelper {
             try {
                 accountAvatar = Picasso.with(context)
                         .load(body.getAccount().getAvatar())
-                        .transform(new RoundedTransformation(7, 0))
+                        .resizeDimen(android.R.dimen.notification_large_icon_width,
+                                android.R.dimen.notification_large_icon_height)
+                        .centerCrop()
+                        .transform(RoundedTransformation.AVATAR)
                         .get();
             } catch (IOException e) {
                 Log.d(TAG, "error loading account avatar", e);
@@ -4,7 +4,9 @@ import android.arch.core.util.Function;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
 
 
 /**
@@ -19,12 +21,15 @@ import java.util.List;
  * after the exception.
  *
  * It is most useful with immutable data because we cannot track changes inside stored objects.
+ *
+ * Both lists are {@link ChunkedList}s, so {@code getPairedCopy()} takes constant time no matter
+ * how long the list is, and adding or removing at either end does not move the other elements.
  * @param <T> type of elements in the main list
  * @param <V> type of elements in supplementary list
  */
-public final class PairedList<T, V> extends AbstractList<T> {
-    private final List<T> main = new ArrayList<>();
-    private final List<V> synced = new ArrayList<>();
+public final class PairedList<T, V> extends AbstractList<T> implements RandomAccess {
+    private final List<T> main = new ChunkedList<>();
+    private final List<V> synced = new ChunkedList<>();
     private final Function<T, ? extends V> mapper;
 
     /**
@@ -36,8 +41,12 @@ public final class PairedList<T, V> extends AbstractList<T> {
         this.mapper = mapper;
     }
 
+    /**
+     * @return a copy of the supplementary list which shares its storage with this one until
+     * either of them is modified
+     */
     public List<V> getPairedCopy() {
-        return new ArrayList<>(synced);
+        return new ChunkedList<>(synced);
     }
 
     public V getPairedItem(int index) {
@@ -71,6 +80,21 @@ public final class PairedList<T, V> extends AbstractList<T> {
         main.add(index, element);
     }
 
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        List<V> mapped = new ArrayList<>(c.size());
+        for (T element : c) {
+            mapped.add(mapper.apply(element));
+        }
+        synced.addAll(index, mapped);
+        return main.addAll(index, c);
+    }
+
     @Override
     public T remove(int index) {
         synced.remove(index);
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.v4.os.TraceCompat;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the stages of a cold start. Every stage shows up as a section in systrace and its
+ * duration is kept, so the report logged after the first frame, and the network diagnostics, show
+ * which stage got slower.
+ *
+ * Work which is not needed for the first frame can be queued with {@link #afterFirstFrame}.
+ * Stages are measured in {@link SystemClock#uptimeMillis()} from the start of the process where
+ * the platform tells it, otherwise from the start of the application.
+ */
+public final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private static final String SECTION_PREFIX = "Startup ";
+    /* if no activity draws, for example when a job started the process, deferred work runs after
+     * this time anyway */
+    private static final long DEFERRED_TIMEOUT = 5000;
+
+    public static final class Stage {
+        private final String name;
+        private final long start;
+        private final long duration;
+
+        Stage(String name, long start, long duration) {
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return when the stage started, in milliseconds since the start
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final List<Stage> stages = new ArrayList<>();
+    private static final List<Runnable> deferred = new ArrayList<>();
+    private static long origin = -1;
+    private static long firstFrame = -1;
+    private static boolean deferredDone;
+    private static boolean reported;
+
+    private static final Runnable runDeferred = StartupTrace::runDeferred;
+
+    private StartupTrace() { }
+
+    /**
+     * Sets the start, to be called first thing in the application's onCreate.
+     */
+    public static synchronized void start() {
+        if (origin != -1) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            origin = Process.getStartUptimeMillis();
+        } else {
+            origin = SystemClock.uptimeMillis();
+        }
+        mainHandler.postDelayed(runDeferred, DEFERRED_TIMEOUT);
+    }
+
+    /**
+     * Starts a stage on the current thread. It has to be ended on the same thread with
+     * {@link #end(String, long)}.
+     * @return the time the stage started, to be passed to {@link #end(String, long)}
+     */
+    public static long begin(@NonNull String name) {
+        TraceCompat.beginSection(SECTION_PREFIX + name);
+        return SystemClock.uptimeMillis();
+    }
+
+    public static void end(@NonNull String name, long begin) {
+        long now = SystemClock.uptimeMillis();
+        TraceCompat.endSection();
+        synchronized (StartupTrace.class) {
+            if (origin != -1) {
+                stages.add(new Stage(name, begin - origin, now - begin));
+            }
+        }
+    }
+
+    /**
+     * Runs {@code runnable} on the main thread once the first activity has drawn its first frame.
+     * Only to be called on the main thread.
+     */
+    public static void afterFirstFrame(@NonNull Runnable runnable) {
+        if (deferredDone) {
+            mainHandler.post(runnable);
+        } else {
+            deferred.add(runnable);
+        }
+    }
+
+    /**
+     * Waits for the first frame of {@code activity}, then runs the deferred work and logs the
+     * report. Nothing happens if the process was started for something else, like a job, and has
+     * been running for a while.
+     */
+    public static void watchFirstFrame(@NonNull Activity activity) {
+        if (reported || deferredDone) {
+            return;
+        }
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // runs once the frame which is about to be drawn is done
+                        mainHandler.post(StartupTrace::onFirstFrame);
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * @return how long after the start the first frame was drawn, or -1 if it wasn't yet
+     */
+    public static synchronized long getFirstFrame() {
+        return firstFrame;
+    }
+
+    @NonNull
+    public static synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    private static void onFirstFrame() {
+        if (reported) {
+            return;
+        }
+        reported = true;
+        synchronized (StartupTrace.class) {
+            firstFrame = SystemClock.uptimeMillis() - origin;
+        }
+        runDeferred();
+        Log.i(TAG, getReport());
+    }
+
+    private static void runDeferred() {
+        if (deferredDone) {
+            return;
+        }
+        deferredDone = true;
+        mainHandler.removeCallbacks(runDeferred);
+        for (Runnable runnable : deferred) {
+            runnable.run();
+        }
+        deferred.clear();
+    }
+
+    private static synchronized String getReport() {
+        StringBuilder sb = new StringBuilder("Cold start, first frame after ")
+                .append(firstFrame).append(" ms:");
+        for (Stage stage : stages) {
+            sb.append("\n  ").append(stage.name)
+                    .append(" at ").append(stage.start)
+                    .append(" ms took ").append(stage.duration).append(" ms");
+        }
+        return sb.toString();
+    }
+}
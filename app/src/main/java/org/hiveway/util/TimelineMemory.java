@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+
+import org.hiveway.entity.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of how much memory the open timelines hold, so it can be shown in the network
+ * diagnostics, and reads how many statuses a timeline may keep before far away ones are dropped.
+ *
+ * The sizes are estimates: a fixed amount for the objects every status comes with plus the
+ * characters of its text. They are good enough to compare timelines and to see them grow.
+ */
+public final class TimelineMemory {
+
+    public interface Source {
+        /**
+         * @return a name for the timeline, like its kind
+         */
+        @NonNull
+        String getTimelineName();
+
+        int getStatusCount();
+
+        long getEstimatedBytes();
+    }
+
+    public static final String LIMIT_PREFERENCE = "timelineMemoryLimit";
+    private static final String DEFAULT_LIMIT = "400";
+
+    /* Status, account, view data, dates and arrays around every status */
+    private static final int STATUS_OVERHEAD_BYTES = 1500;
+    private static final int ATTACHMENT_BYTES = 300;
+    /* per character of html: the string itself and, once it was converted, the Spanned with its
+     * spans */
+    private static final int HTML_BYTES_PER_CHAR = 2;
+    private static final int SPANNED_BYTES_PER_CHAR = 4;
+
+    private static final Set<Source> sources =
+            Collections.newSetFromMap(new WeakHashMap<Source, Boolean>());
+
+    private TimelineMemory() { }
+
+    public static synchronized void register(@NonNull Source source) {
+        sources.add(source);
+    }
+
+    public static synchronized void unregister(@NonNull Source source) {
+        sources.remove(source);
+    }
+
+    @NonNull
+    public static synchronized List<Source> getSources() {
+        return new ArrayList<>(sources);
+    }
+
+    /**
+     * @return how many statuses a timeline keeps around the ones on screen
+     */
+    public static int getLimit(@NonNull SharedPreferences preferences) {
+        return Integer.parseInt(preferences.getString(LIMIT_PREFERENCE, DEFAULT_LIMIT));
+    }
+
+    public static long estimate(@NonNull Status status) {
+        long bytes = STATUS_OVERHEAD_BYTES;
+        int html = status.getContentHtml().length();
+        bytes += (long) HTML_BYTES_PER_CHAR * (html + status.getSpoilerText().length());
+        if (status.isContentPrepared()) {
+            bytes += (long) SPANNED_BYTES_PER_CHAR * html;
+        }
+        bytes += (long) ATTACHMENT_BYTES * status.getAttachments().length;
+        if (status.getReblog() != null) {
+            bytes += estimate(status.getReblog());
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.arch.core.util.Function;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges pages loaded from the server into a timeline: a list of statuses, newest first, with
+ * placeholders where statuses are missing in between.
+ *
+ * It keeps an index from status id to position, so finding where a page overlaps with the
+ * timeline and dropping duplicates takes constant time per status instead of a scan over the
+ * whole timeline. Keeping the index up to date costs nothing for changes at the top or the bottom
+ * and is proportional to the shorter side for changes in the middle.
+ *
+ * All structural changes of the list have to go through the merger, otherwise the index is out of
+ * date. Replacing an item with one of the same id is fine. Nothing here depends on Android, so it
+ * can be run on a plain JVM.
+ * @param <P> type of the placeholders
+ * @param <T> type of the statuses
+ */
+public final class TimelineMerger<P, T> {
+
+    private final List<Either<P, T>> items;
+    private final Function<T, String> idOf;
+    private final P placeholder;
+    /* the position of a status is its value here plus offset, so moving all statuses above or
+     * below some point only needs one side to be updated */
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int offset;
+
+    /**
+     * @param items the timeline, it should be {@link java.util.RandomAccess}
+     * @param idOf function returning the id of a status
+     * @param placeholder the value put where statuses are missing
+     */
+    public TimelineMerger(@NonNull List<Either<P, T>> items, @NonNull Function<T, String> idOf,
+                          @NonNull P placeholder) {
+        this.items = items;
+        this.idOf = idOf;
+        this.placeholder = placeholder;
+        reindex();
+    }
+
+    /**
+     * @return the position of the status with {@code id} or -1 if it is not in the timeline
+     */
+    public int indexOf(@NonNull String id) {
+        Integer position = positions.get(id);
+        return position == null ? -1 : position + offset;
+    }
+
+    /**
+     * Merges the newest page, newest first. It replaces everything above its oldest status if that
+     * is in the timeline already, otherwise it goes on top. If it doesn't overlap with the timeline
+     * at all and {@code fullFetch} says the server may have more statuses in between, a placeholder
+     * is put below it.
+     */
+    public void mergeTop(@NonNull List<T> page, boolean fullFetch) {
+        if (page.isEmpty()) {
+            return;
+        }
+        if (items.isEmpty()) {
+            insert(0, page, false);
+            return;
+        }
+        int index = indexOf(idOf.apply(page.get(page.size() - 1)));
+        for (int i = 0; i < index; i++) {
+            remove(0);
+        }
+
+        // the part of the page which is newer than the timeline
+        int newIndex = -1;
+        T top = items.get(0).getAsRightOrNull();
+        if (top != null) {
+            String topId = idOf.apply(top);
+            for (int i = 0; i < page.size(); i++) {
+                if (idOf.apply(page.get(i)).equals(topId)) {
+                    newIndex = i;
+                    break;
+                }
+            }
+        }
+        List<T> newer = newIndex == -1 ? page : page.subList(0, newIndex);
+
+        // older copies further down are out of date
+        for (T status : newer) {
+            int position = indexOf(idOf.apply(status));
+            if (position != -1) {
+                remove(position);
+            }
+        }
+        insert(0, newer, index == -1 && newIndex == -1 && fullFetch);
+    }
+
+    /**
+     * Appends a page of older statuses, skipping the ones which are in the timeline already.
+     * @return how many statuses were appended
+     */
+    public int mergeBottom(@NonNull List<T> page) {
+        List<T> missing = withoutPresent(page);
+        insert(items.size(), missing, false);
+        return missing.size();
+    }
+
+    /**
+     * Puts a page in place of the placeholder at {@code position}. Statuses which are in the
+     * timeline already are skipped. If {@code fullFetch} says the server may have more statuses
+     * below the page, a new placeholder is put there.
+     */
+    public void fillGap(int position, @NonNull List<T> page, boolean fullFetch) {
+        if (position < items.size() && !items.get(position).isRight()) {
+            remove(position);
+        }
+        List<T> missing = withoutPresent(page);
+        if (!missing.isEmpty()) {
+            insert(position, missing, fullFetch);
+        }
+    }
+
+    /**
+     * Puts a single new status on top, like one received from the streaming api.
+     * @return false if the status is in the timeline already
+     */
+    public boolean prepend(@NonNull T status) {
+        if (indexOf(idOf.apply(status)) != -1) {
+            return false;
+        }
+        List<T> single = new ArrayList<>(1);
+        single.add(status);
+        insert(0, single, false);
+        return true;
+    }
+
+    /**
+     * Puts a single status at {@code position}, like one which was removed before.
+     * @return false if the status is in the timeline already
+     */
+    public boolean add(int position, @NonNull T status) {
+        if (indexOf(idOf.apply(status)) != -1) {
+            return false;
+        }
+        insert(position, Collections.singletonList(status), false);
+        return true;
+    }
+
+    /**
+     * Appends statuses and placeholders as they are, used to restore a saved timeline. Statuses
+     * which are in the timeline already are skipped.
+     */
+    public void addAll(@NonNull List<Either<P, T>> newItems) {
+        for (Either<P, T> item : newItems) {
+            T status = item.getAsRightOrNull();
+            if (status == null) {
+                items.add(item);
+            } else if (indexOf(idOf.apply(status)) == -1) {
+                positions.put(idOf.apply(status), items.size() - offset);
+                items.add(item);
+            }
+        }
+    }
+
+    public Either<P, T> remove(int position) {
+        T status = items.get(position).getAsRightOrNull();
+        if (status != null) {
+            positions.remove(idOf.apply(status));
+        }
+        shift(position + 1, -1);
+        return items.remove(position);
+    }
+
+    /**
+     * Removes every status {@code predicate} returns true for.
+     * @return whether anything was removed
+     */
+    public boolean removeIf(@NonNull Function<T, Boolean> predicate) {
+        boolean removed = false;
+        for (int i = items.size() - 1; i >= 0; i--) {
+            T status = items.get(i).getAsRightOrNull();
+            if (status != null && predicate.apply(status)) {
+                items.remove(i);
+                removed = true;
+            }
+        }
+        if (removed) {
+            reindex();
+        }
+        return removed;
+    }
+
+    /**
+     * Replaces the items from {@code from} up to {@code to} with a single placeholder, so they can
+     * be loaded again later. No placeholder is added if there is one next to them already.
+     */
+    public void collapse(int from, int to) {
+        for (int i = from; i < to; i++) {
+            remove(from);
+        }
+        boolean placeholderAbove = from > 0 && !items.get(from - 1).isRight();
+        boolean placeholderBelow = from < items.size() && !items.get(from).isRight();
+        if (!placeholderAbove && !placeholderBelow) {
+            insert(from, Collections.<T>emptyList(), true);
+        }
+    }
+
+    /**
+     * Drops everything from {@code size} on, and placeholders which end up at the bottom, so the
+     * older statuses can be loaded again like any other page.
+     */
+    public void truncate(int size) {
+        while (items.size() > size
+                || (!items.isEmpty() && !items.get(items.size() - 1).isRight())) {
+            remove(items.size() - 1);
+        }
+    }
+
+    public void clear() {
+        items.clear();
+        positions.clear();
+        offset = 0;
+    }
+
+    private void insert(int position, List<T> statuses, boolean placeholderBelow) {
+        List<Either<P, T>> lifted = new ArrayList<>(statuses.size() + 1);
+        for (T status : statuses) {
+            lifted.add(Either.right(status));
+        }
+        if (placeholderBelow) {
+            lifted.add(Either.left(placeholder));
+        }
+        if (lifted.isEmpty()) {
+            return;
+        }
+        shift(position, lifted.size());
+        items.addAll(position, lifted);
+        for (int i = 0; i < statuses.size(); i++) {
+            positions.put(idOf.apply(statuses.get(i)), position + i - offset);
+        }
+    }
+
+    /**
+     * Moves the indexed positions of the items from {@code from} to the end by {@code distance}.
+     * Must be called before the list itself is changed.
+     */
+    private void shift(int from, int distance) {
+        int size = items.size();
+        if (from < size - from) {
+            // move everything, then put the items above back
+            offset += distance;
+            for (int i = 0; i < from; i++) {
+                move(i, -distance);
+            }
+        } else {
+            for (int i = from; i < size; i++) {
+                move(i, distance);
+            }
+        }
+    }
+
+    private void move(int index, int distance) {
+        T status = items.get(index).getAsRightOrNull();
+        if (status == null) {
+            return;
+        }
+        String id = idOf.apply(status);
+        Integer position = positions.get(id);
+        if (position != null) {
+            positions.put(id, position + distance);
+        }
+    }
+
+    private List<T> withoutPresent(List<T> page) {
+        List<T> missing = new ArrayList<>(page.size());
+        for (T status : page) {
+            if (indexOf(idOf.apply(status)) == -1) {
+                missing.add(status);
+            }
+        }
+        return missing;
+    }
+
+    private void reindex() {
+        positions.clear();
+        offset = 0;
+        for (int i = 0; i < items.size(); i++) {
+            T status = items.get(i).getAsRightOrNull();
+            if (status != null) {
+                positions.put(idOf.apply(status), i);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shows relative timestamps like "5m" and keeps them up to date. One clock for the whole app
+ * ticks at the start of every minute and updates only the timestamp views which are attached to
+ * a window, the rows around them are not bound again.
+ *
+ * Within the last day the texts depend only on how many minutes ago something happened, so they
+ * are formatted once per minute count and shared by all views. The clock stops when no timestamp
+ * view is attached anymore and starts again with the next one that is bound. Only to be used on
+ * the main thread.
+ */
+public final class TimestampTicker {
+
+    private static final long MINUTE = android.text.format.DateUtils.MINUTE_IN_MILLIS;
+    /* beyond that the spoken readout counts calendar days, which depends on the dates */
+    private static final long MAX_CACHED_MINUTES =
+            android.text.format.DateUtils.DAY_IN_MILLIS / MINUTE;
+    private static final int CACHE_SIZE = 200;
+
+    private static final class Readout {
+        final String text;
+        /* Screen readers frequently mispronounce timestamps like "17m" as 17 meters instead of
+         * minutes, so they get a longer version. */
+        final CharSequence description;
+
+        Readout(String text, CharSequence description) {
+            this.text = text;
+            this.description = description;
+        }
+    }
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    /* bound views and the time they show */
+    private static final Map<TextView, Long> views = new WeakHashMap<>();
+    /* readouts by minutes ago */
+    private static final LruCache<Long, Readout> cache = new LruCache<>(CACHE_SIZE);
+    @Nullable
+    private static Locale cacheLocale;
+    private static boolean ticking;
+
+    private static final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            boolean anyAttached = false;
+            for (Map.Entry<TextView, Long> entry : views.entrySet()) {
+                TextView view = entry.getKey();
+                if (view == null || !ViewCompat.isAttachedToWindow(view)) {
+                    continue;
+                }
+                anyAttached = true;
+                if (view.getWindowVisibility() == View.VISIBLE) {
+                    show(view, entry.getValue(), now);
+                }
+            }
+            ticking = anyAttached;
+            if (ticking) {
+                scheduleTick(now);
+            }
+        }
+    };
+
+    private TimestampTicker() { }
+
+    /**
+     * Shows how long ago {@code createdAt} was in {@code view} and keeps it up to date until the
+     * view is bound to another time.
+     */
+    public static void bind(@NonNull TextView view, @Nullable Date createdAt) {
+        if (createdAt == null) {
+            views.remove(view);
+            // unknown minutes~
+            view.setText("?m");
+            view.setContentDescription("? minutes");
+            return;
+        }
+        long then = createdAt.getTime();
+        long now = System.currentTimeMillis();
+        views.put(view, then);
+        show(view, then, now);
+        if (!ticking) {
+            ticking = true;
+            scheduleTick(now);
+        }
+    }
+
+    private static void scheduleTick(long now) {
+        handler.postDelayed(tick, MINUTE - now % MINUTE);
+    }
+
+    private static void show(TextView view, long then, long now) {
+        Readout readout = getReadout(view.getContext(), then, now);
+        if (!TextUtils.equals(view.getText(), readout.text)) {
+            view.setText(readout.text);
+        }
+        view.setContentDescription(readout.description);
+    }
+
+    private static Readout getReadout(Context context, long then, long now) {
+        long minutes = (now - then) / MINUTE;
+        if (minutes < 1 || minutes >= MAX_CACHED_MINUTES) {
+            return format(context, then, now);
+        }
+        Locale locale = Locale.getDefault();
+        if (!locale.equals(cacheLocale)) {
+            cache.evictAll();
+            cacheLocale = locale;
+        }
+        Readout readout = cache.get(minutes);
+        if (readout == null) {
+            // whole minutes give the same texts, so any time in the same minute can be used
+            readout = format(context, 0, minutes * MINUTE);
+            cache.put(minutes, readout);
+        }
+        return readout;
+    }
+
+    private static Readout format(Context context, long then, long now) {
+        return new Readout(DateUtils.getRelativeTimeSpanString(context, then, now),
+                android.text.format.DateUtils.getRelativeTimeSpanString(then, now,
+                        android.text.format.DateUtils.SECOND_IN_MILLIS,
+                        android.text.format.DateUtils.FORMAT_ABBREV_RELATIVE));
+    }
+}
@@ -42,7 +42,7 @@ public final class ViewDataUtils {
         return new StatusViewData.Builder().setId(status.getId())
                 .setAttachments(visibleStatus.getAttachments())
                 .setAvatar(visibleStatus.getAccount().getAvatar())
-                .setContent(visibleStatus.getContent())
+                .setContentSource(visibleStatus)
                 .setCreatedAt(visibleStatus.getCreatedAt())
                 .setReblogsCount(visibleStatus.getReblogsCount())
                 .setFavouritesCount(visibleStatus.getFavouritesCount())
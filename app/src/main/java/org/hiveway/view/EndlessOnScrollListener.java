@@ -18,17 +18,42 @@
 
 package org.hiveway.view;
 
+import android.os.SystemClock;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 
+/**
+ * Asks for the next page before the user reaches the end of the list. How early that happens
+ * depends on how fast the user scrolls and how long the previous pages took to arrive, so that
+ * during normal scrolling the loading footer never comes into view. {@link #getPageSize()}
+ * suggests how many items the next request should ask for.
+ */
 public abstract class EndlessOnScrollListener extends RecyclerView.OnScrollListener {
     private static final int VISIBLE_THRESHOLD = 15;
+    /* Mastodon returns 20 items by default and at most 40 for statuses and notifications. */
+    private static final int MIN_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 40;
+    private static final long INITIAL_ROUND_TRIP_MS = 1000;
+    private static final long VELOCITY_SAMPLE_MS = 100;
+    /* Weight of the newest sample in the moving averages. */
+    private static final float SMOOTHING = 0.3f;
+    /* Start loading this many round trips before the user would reach the end. */
+    private static final float PREFETCH_ROUND_TRIPS = 1.5f;
+    /* A page should last for about this many round trips of scrolling at the current speed. */
+    private static final float PAGE_ROUND_TRIPS = 2f;
+
     private int currentPage;
     private int previousTotalItemCount;
     private boolean loading;
     private int startingPageIndex;
     private LinearLayoutManager layoutManager;
 
+    private float itemsPerSecond;
+    private long roundTripMs = INITIAL_ROUND_TRIP_MS;
+    private int samplePosition = RecyclerView.NO_POSITION;
+    private long sampleTime;
+    private long loadStartTime;
+
     public EndlessOnScrollListener(LinearLayoutManager layoutManager) {
         this.layoutManager = layoutManager;
         currentPage = 0;
@@ -39,6 +64,9 @@ public abstract class EndlessOnScrollListener extends RecyclerView.OnScrollListe
 
     @Override
     public void onScrolled(RecyclerView view, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        sampleVelocity(layoutManager.findFirstVisibleItemPosition(), now);
+
         int totalItemCount = layoutManager.getItemCount();
         int lastVisibleItemPosition = layoutManager.findLastVisibleItemPosition();
         if (totalItemCount < previousTotalItemCount) {
@@ -51,18 +79,80 @@ public abstract class EndlessOnScrollListener extends RecyclerView.OnScrollListe
         if (loading && totalItemCount > previousTotalItemCount) {
             loading = false;
             previousTotalItemCount = totalItemCount;
+            if (loadStartTime != 0) {
+                sampleRoundTrip(now - loadStartTime);
+                loadStartTime = 0;
+            }
         }
-        if (!loading && lastVisibleItemPosition + VISIBLE_THRESHOLD > totalItemCount) {
+        if (!loading && lastVisibleItemPosition + getVisibleThreshold() > totalItemCount) {
             currentPage++;
+            loadStartTime = now;
             onLoadMore(currentPage, totalItemCount, view);
             loading = true;
         }
     }
 
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            // whoever stops to read does not need anything prefetched
+            itemsPerSecond = 0;
+            samplePosition = RecyclerView.NO_POSITION;
+        }
+    }
+
     public void reset() {
         currentPage = startingPageIndex;
         previousTotalItemCount = 0;
         loading = true;
+        loadStartTime = 0;
+    }
+
+    /**
+     * Lets the next scroll trigger {@link #onLoadMore(int, int, RecyclerView)} again after a
+     * request for more items failed.
+     */
+    public void onLoadFailed() {
+        loading = false;
+        loadStartTime = 0;
+    }
+
+    /**
+     * @return how many items the request for the next page should ask for, enough to keep the user
+     * busy for a couple of round trips at the current scroll speed
+     */
+    public int getPageSize() {
+        int size = (int) Math.ceil(itemsPerSecond * roundTripMs / 1000f * PAGE_ROUND_TRIPS);
+        return Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, size));
+    }
+
+    private int getVisibleThreshold() {
+        int ahead = (int) Math.ceil(itemsPerSecond * roundTripMs / 1000f * PREFETCH_ROUND_TRIPS);
+        return Math.max(VISIBLE_THRESHOLD, ahead);
+    }
+
+    private void sampleVelocity(int position, long now) {
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (samplePosition == RecyclerView.NO_POSITION) {
+            samplePosition = position;
+            sampleTime = now;
+            return;
+        }
+        long elapsed = now - sampleTime;
+        if (elapsed < VELOCITY_SAMPLE_MS) {
+            return;
+        }
+        // only scrolling towards the end of the list brings it closer
+        float velocity = Math.max(0, position - samplePosition) * 1000f / elapsed;
+        itemsPerSecond += SMOOTHING * (velocity - itemsPerSecond);
+        samplePosition = position;
+        sampleTime = now;
+    }
+
+    private void sampleRoundTrip(long elapsed) {
+        roundTripMs += (long) (SMOOTHING * (elapsed - roundTripMs));
     }
 
     public abstract void onLoadMore(int page, int totalItemsCount, RecyclerView view);
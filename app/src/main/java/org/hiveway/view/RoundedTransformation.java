@@ -29,6 +29,12 @@ import com.squareup.picasso.Transformation;
 
 public class RoundedTransformation implements Transformation {
 
+    /**
+     * The rounding of all avatars. Reuse it instead of creating a new one per request so the
+     * requests share one cache key.
+     */
+    public static final RoundedTransformation AVATAR = new RoundedTransformation(7, 0);
+
     private final int radius;
     private final int margin;
 
@@ -58,6 +64,6 @@ public class RoundedTransformation implements Transformation {
 
     @Override
     public String key() {
-        return "rounded";
+        return "rounded(radius=" + radius + ", margin=" + margin + ")";
     }
 }
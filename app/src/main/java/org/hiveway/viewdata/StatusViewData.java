@@ -19,12 +19,14 @@
 package org.hiveway.viewdata;
 
 import android.support.annotation.Nullable;
+import android.support.v4.util.ObjectsCompat;
 import android.text.Spanned;
 
 import org.hiveway.entity.Attachment;
 import org.hiveway.entity.Card;
 import org.hiveway.entity.Status;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -43,7 +45,8 @@ public abstract class StatusViewData {
 
     public static final class Concrete extends StatusViewData {
         private final String id;
-        private final Spanned content;
+        // the status the content comes from, it converts its html only when asked for it
+        private final Status contentSource;
         private final boolean reblogged;
         private final boolean favourited;
         @Nullable
@@ -75,7 +78,7 @@ public abstract class StatusViewData {
         @Nullable
         private final Card card;
 
-        public Concrete(String id, Spanned content, boolean reblogged, boolean favourited,
+        public Concrete(String id, Status contentSource, boolean reblogged, boolean favourited,
                         @Nullable String spoilerText, Status.Visibility visibility, Attachment[] attachments,
                         @Nullable String rebloggedByUsername, @Nullable String rebloggedAvatar, boolean sensitive, boolean isExpanded,
                         boolean isShowingContent, String userFullName, String nickname, String avatar,
@@ -83,7 +86,7 @@ public abstract class StatusViewData {
                         @Nullable Status.Mention[] mentions, String senderId, boolean rebloggingEnabled,
                         Status.Application application, List<Status.Emoji> emojis, @Nullable Card card) {
             this.id = id;
-            this.content = content;
+            this.contentSource = contentSource;
             this.reblogged = reblogged;
             this.favourited = favourited;
             this.spoilerText = spoilerText;
@@ -114,7 +117,11 @@ public abstract class StatusViewData {
         }
 
         public Spanned getContent() {
-            return content;
+            return contentSource.getContent();
+        }
+
+        public boolean isContentPrepared() {
+            return contentSource.isContentPrepared();
         }
 
         public boolean isReblogged() {
@@ -215,6 +222,45 @@ public abstract class StatusViewData {
             return card;
         }
 
+        /**
+         * Compares everything that is displayed, so two equal instances render the same row.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Concrete concrete = (Concrete) o;
+            return reblogged == concrete.reblogged &&
+                    favourited == concrete.favourited &&
+                    isSensitive == concrete.isSensitive &&
+                    isExpanded == concrete.isExpanded &&
+                    isShowingContent == concrete.isShowingContent &&
+                    reblogsCount == concrete.reblogsCount &&
+                    favouritesCount == concrete.favouritesCount &&
+                    rebloggingEnabled == concrete.rebloggingEnabled &&
+                    id.equals(concrete.id) &&
+                    ObjectsCompat.equals(contentSource, concrete.contentSource) &&
+                    ObjectsCompat.equals(spoilerText, concrete.spoilerText) &&
+                    visibility == concrete.visibility &&
+                    Arrays.equals(attachments, concrete.attachments) &&
+                    ObjectsCompat.equals(rebloggedByUsername, concrete.rebloggedByUsername) &&
+                    ObjectsCompat.equals(rebloggedAvatar, concrete.rebloggedAvatar) &&
+                    ObjectsCompat.equals(userFullName, concrete.userFullName) &&
+                    ObjectsCompat.equals(nickname, concrete.nickname) &&
+                    ObjectsCompat.equals(avatar, concrete.avatar) &&
+                    ObjectsCompat.equals(createdAt, concrete.createdAt) &&
+                    ObjectsCompat.equals(inReplyToId, concrete.inReplyToId) &&
+                    Arrays.equals(mentions, concrete.mentions) &&
+                    ObjectsCompat.equals(senderId, concrete.senderId) &&
+                    ObjectsCompat.equals(application, concrete.application) &&
+                    ObjectsCompat.equals(emojis, concrete.emojis) &&
+                    ObjectsCompat.equals(card, concrete.card);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
     }
 
     public static final class Placeholder extends StatusViewData {
@@ -227,11 +273,23 @@ public abstract class StatusViewData {
         public boolean isLoading() {
             return isLoading;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return isLoading == ((Placeholder) o).isLoading;
+        }
+
+        @Override
+        public int hashCode() {
+            return isLoading ? 1 : 0;
+        }
     }
 
     public static class Builder {
         private String id;
-        private Spanned content;
+        private Status contentSource;
         private boolean reblogged;
         private boolean favourited;
         private String spoilerText;
@@ -261,7 +319,7 @@ public abstract class StatusViewData {
 
         public Builder(final StatusViewData.Concrete viewData) {
             id = viewData.id;
-            content = viewData.content;
+            contentSource = viewData.contentSource;
             reblogged = viewData.reblogged;
             favourited = viewData.favourited;
             spoilerText = viewData.spoilerText;
@@ -292,8 +350,12 @@ public abstract class StatusViewData {
             return this;
         }
 
-        public Builder setContent(Spanned content) {
-            this.content = content;
+        /**
+         * @param contentSource the status whose content is displayed, its html is converted the
+         *                      first time the content is needed
+         */
+        public Builder setContentSource(Status contentSource) {
+            this.contentSource = contentSource;
             return this;
         }
 
@@ -416,7 +478,7 @@ public abstract class StatusViewData {
             if (this.emojis == null) emojis = Collections.emptyList();
             if (this.createdAt == null) createdAt = new Date();
 
-            return new StatusViewData.Concrete(id, content, reblogged, favourited, spoilerText, visibility,
+            return new StatusViewData.Concrete(id, contentSource, reblogged, favourited, spoilerText, visibility,
                     attachments, rebloggedByUsername, rebloggedAvatar, isSensitive, isExpanded,
                     isShowingContent, userFullName, nickname, avatar, createdAt, reblogsCount,
                     favouritesCount, inReplyToId, mentions, senderId, rebloggingEnabled, application,
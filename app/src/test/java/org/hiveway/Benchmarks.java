@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small harness for the benchmarks among the unit tests. Classes whose name ends in
+ * {@code Benchmark} are left out of the normal test run, they run with
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark} and print their results.
+ *
+ * Every operation is warmed up first and then repeated for a fixed time. Allocations are counted
+ * per thread, which the HotSpot and OpenJDK virtual machines support.
+ */
+public final class Benchmarks {
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MEASURE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    public interface Operation {
+        /**
+         * @return anything computed, so the work can't be optimized away
+         */
+        Object run() throws Exception;
+    }
+
+    public static final class Result {
+        public final double nanosPerOperation;
+        /* -1 if the virtual machine doesn't count allocations */
+        public final double bytesPerOperation;
+
+        Result(double nanosPerOperation, double bytesPerOperation) {
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+    }
+
+    /* everything the operations returned ends up here */
+    private static volatile int sink;
+
+    private Benchmarks() { }
+
+    /**
+     * Measures {@code operation} and prints the result under {@code name}.
+     */
+    public static Result measure(String name, Operation operation) throws Exception {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            consume(operation.run());
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        int operations = 0;
+        do {
+            consume(operation.run());
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        long allocatedAfter = allocatedBytes();
+
+        Result result = new Result((double) elapsed / operations, allocatedBefore < 0
+                ? -1 : (double) (allocatedAfter - allocatedBefore) / operations);
+        System.out.println(String.format(Locale.ROOT, "%-48s %12.2f us/op %14.0f B/op",
+                name, result.nanosPerOperation / 1000, result.bytesPerOperation));
+        return result;
+    }
+
+    /**
+     * @return the content of a resource of the unit tests
+     */
+    public static String readResource(String name) throws IOException {
+        InputStream stream = Benchmarks.class.getClassLoader().getResourceAsStream(name);
+        if (stream == null) {
+            throw new IOException("Missing test resource " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), Charset.forName("UTF-8"));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void consume(Object result) {
+        if (result != null) {
+            sink += System.identityHashCode(result);
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
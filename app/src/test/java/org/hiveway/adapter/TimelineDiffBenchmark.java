@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.adapter;
+
+import android.support.v7.util.DiffUtil;
+
+import org.hiveway.Benchmarks;
+import org.hiveway.entity.Attachment;
+import org.hiveway.entity.Status;
+import org.hiveway.util.ChunkedList;
+import org.hiveway.viewdata.StatusViewData;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Diffs timelines of 1,000 and 10,000 statuses the way {@link TimelineAdapter} does on its
+ * background thread. The view data of the new list is created again, like after a page was
+ * merged, so every unchanged row is compared by value, including its mentions, emojis and
+ * application.
+ */
+public class TimelineDiffBenchmark {
+
+    @Test
+    public void thousand() throws Exception {
+        measure(1_000);
+    }
+
+    @Test
+    public void tenThousand() throws Exception {
+        measure(10_000);
+    }
+
+    private static void measure(int size) throws Exception {
+        List<StatusViewData> shown = timeline(size, 0, -1);
+        List<StatusViewData> same = timeline(size, 0, -1);
+        // a page of new statuses on top and a status favourited further down
+        List<StatusViewData> changed = timeline(size, 20, size / 2);
+        Benchmarks.measure(size + " statuses, unchanged", () ->
+                DiffUtil.calculateDiff(new TimelineAdapter.DiffCallback(shown, same), false));
+        Benchmarks.measure(size + " statuses, 20 new and 1 changed", () ->
+                DiffUtil.calculateDiff(new TimelineAdapter.DiffCallback(shown, changed), false));
+    }
+
+    /**
+     * @param newer how many statuses are added on top
+     * @param favourited position of the status which is favourited now, -1 for none
+     */
+    private static List<StatusViewData> timeline(int size, int newer, int favourited) {
+        List<StatusViewData> statuses = new ChunkedList<>();
+        for (int i = -newer; i < size; i++) {
+            if (i % 40 == 39) {
+                statuses.add(new StatusViewData.Placeholder(false));
+                continue;
+            }
+            String id = Integer.toString(1_000_000 - i);
+            Status.Mention mention = new Status.Mention("7", "https://social.example/@bob",
+                    "bob@social.example", "bob");
+            statuses.add(new StatusViewData.Builder()
+                    .setId(id)
+                    .setFavourited(i == favourited)
+                    .setSpoilerText("")
+                    .setVisibility(Status.Visibility.PUBLIC)
+                    .setAttachments(new Attachment[0])
+                    .setUserFullName("Alice")
+                    .setNickname("alice")
+                    .setAvatar("https://social.example/avatars/alice.png")
+                    .setCreatedAt(new Date(1519898400000L - i * 60000L))
+                    .setMentions(new Status.Mention[] { mention })
+                    .setSenderId("1")
+                    .setRebloggingEnabled(true)
+                    .setApplication(new Status.Application("Hiveway", "https://hiveway.example"))
+                    .setEmojis(Collections.singletonList(new Status.Emoji("blob",
+                            "https://social.example/emoji/blob.png")))
+                    .createStatusViewData());
+        }
+        return statuses;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.db;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.hiveway.entity.Status;
+import org.hiveway.json.Iso8601DateAdapter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a {@link TimelineCache} on an in-memory {@link TimelineDao}. The cache logs unreadable
+ * statuses, so it runs with Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class TimelineCacheTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long ACCOUNT_ID = 1;
+    private static final String HOME = "home";
+    /* long enough that saves are only written when something makes the cache write them */
+    private static final long NEVER_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new Iso8601DateAdapter())
+            .create();
+    private final FakeTimelineDao dao = new FakeTimelineDao();
+
+    @Test
+    public void loadsSavedTimeline() throws Exception {
+        TimelineCache cache = create(0);
+        cache.save(ACCOUNT_ID, HOME, Arrays.asList(entry("3", false), entry("2", true),
+                entry("1", false)));
+
+        List<TimelineCache.Entry> entries = load(cache, ACCOUNT_ID, HOME);
+        assertEquals(Arrays.asList("3", "2", "1"), ids(entries));
+        assertEquals(Arrays.asList(false, true, false), gaps(entries));
+    }
+
+    @Test
+    public void turnsUnreadableStatusIntoGapAbove() throws Exception {
+        long now = System.currentTimeMillis();
+        dao.insertAll(Arrays.asList(
+                row(ACCOUNT_ID, HOME, "5", 0, "not json", now),
+                row(ACCOUNT_ID, HOME, "4", 1, json("4"), now),
+                row(ACCOUNT_ID, HOME, "3", 2, "{\"id\":", now),
+                row(ACCOUNT_ID, HOME, "2", 3, json("2"), now),
+                row(ACCOUNT_ID, HOME, "1", 4, json("1"), now)));
+
+        List<TimelineCache.Entry> entries = load(create(NEVER_MS), ACCOUNT_ID, HOME);
+        // nothing is above the first one, so it is just left out
+        assertEquals(Arrays.asList("4", "2", "1"), ids(entries));
+        assertEquals(Arrays.asList(true, false, false), gaps(entries));
+    }
+
+    @Test
+    public void keepsOnlyNewestStatuses() throws Exception {
+        int count = TimelineCache.MAX_STATUSES_PER_TIMELINE + 50;
+        List<TimelineCache.Entry> saved = new ArrayList<>(count);
+        for (int i = count; i > 0; i--) {
+            saved.add(entry(String.valueOf(i), false));
+        }
+        TimelineCache cache = create(0);
+        cache.save(ACCOUNT_ID, HOME, saved);
+
+        List<TimelineCache.Entry> entries = load(cache, ACCOUNT_ID, HOME);
+        assertEquals(TimelineCache.MAX_STATUSES_PER_TIMELINE, entries.size());
+        assertEquals(String.valueOf(count), entries.get(0).status.getId());
+        assertEquals(String.valueOf(count - TimelineCache.MAX_STATUSES_PER_TIMELINE + 1),
+                entries.get(entries.size() - 1).status.getId());
+        assertEquals(TimelineCache.MAX_STATUSES_PER_TIMELINE, dao.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlySavedTimelines() throws Exception {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < TimelineCache.MAX_TIMELINES; i++) {
+            // timeline 0 was saved longest ago
+            dao.insertAll(Collections.singletonList(
+                    row(ACCOUNT_ID, "list" + i, "1", 0, json("1"), now - 1000 + i)));
+        }
+        TimelineCache cache = create(0);
+        cache.save(ACCOUNT_ID, HOME, Collections.singletonList(entry("1", false)));
+        load(cache, ACCOUNT_ID, HOME);
+
+        List<String> timelines = dao.timelines();
+        assertEquals(TimelineCache.MAX_TIMELINES, timelines.size());
+        assertFalse(timelines.contains(ACCOUNT_ID + " list0"));
+        assertTrue(timelines.contains(ACCOUNT_ID + " list1"));
+        assertTrue(timelines.contains(ACCOUNT_ID + " " + HOME));
+    }
+
+    @Test
+    public void evictsTimelinesNotSavedForMaxAge() throws Exception {
+        long now = System.currentTimeMillis();
+        long maxAge = TimeUnit.DAYS.toMillis(TimelineCache.MAX_AGE_DAYS);
+        long hour = TimeUnit.HOURS.toMillis(1);
+        dao.insertAll(Arrays.asList(
+                row(ACCOUNT_ID, "old", "1", 0, json("1"), now - maxAge - hour),
+                row(ACCOUNT_ID, "recent", "1", 0, json("1"), now - maxAge + hour)));
+        TimelineCache cache = create(0);
+        cache.save(ACCOUNT_ID, HOME, Collections.singletonList(entry("1", false)));
+        load(cache, ACCOUNT_ID, HOME);
+
+        List<String> timelines = dao.timelines();
+        assertFalse(timelines.contains(ACCOUNT_ID + " old"));
+        assertTrue(timelines.contains(ACCOUNT_ID + " recent"));
+    }
+
+    @Test
+    public void loadWritesPendingSaveFirst() throws Exception {
+        TimelineCache cache = create(NEVER_MS);
+        cache.save(ACCOUNT_ID, HOME, Collections.singletonList(entry("1", false)));
+        cache.save(ACCOUNT_ID, HOME, Arrays.asList(entry("3", true), entry("2", false)));
+        cache.save(ACCOUNT_ID, "local", Collections.singletonList(entry("9", false)));
+
+        List<TimelineCache.Entry> entries = load(cache, ACCOUNT_ID, HOME);
+        assertEquals(Arrays.asList("3", "2"), ids(entries));
+        assertEquals(Arrays.asList(true, false), gaps(entries));
+        // only the loaded timeline had to be written
+        assertEquals(Collections.singletonList(ACCOUNT_ID + " " + HOME), dao.timelines());
+    }
+
+    @Test
+    public void removesPendingSavesOfAccount() throws Exception {
+        TimelineCache cache = create(NEVER_MS);
+        cache.save(ACCOUNT_ID, HOME, Collections.singletonList(entry("1", false)));
+        cache.removeAllForAccount(ACCOUNT_ID);
+
+        assertTrue(load(cache, ACCOUNT_ID, HOME).isEmpty());
+        assertEquals(0, dao.size());
+    }
+
+    private TimelineCache create(long saveDelayMs) {
+        return new TimelineCache(dao, Runnable::run, gson, Runnable::run, saveDelayMs);
+    }
+
+    private static List<TimelineCache.Entry> load(TimelineCache cache, long accountId,
+                                                  String timeline) throws InterruptedException {
+        final BlockingQueue<List<TimelineCache.Entry>> loaded = new LinkedBlockingQueue<>();
+        cache.load(accountId, timeline, loaded::add);
+        List<TimelineCache.Entry> entries = loaded.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("nothing was loaded", entries);
+        return entries;
+    }
+
+    private TimelineCache.Entry entry(String id, boolean gapBelow) {
+        return new TimelineCache.Entry(gson.fromJson(json(id), Status.class), gapBelow);
+    }
+
+    private static String json(String id) {
+        return "{\"id\":\"" + id + "\",\"url\":\"https://social.example/statuses/" + id + "\","
+                + "\"content\":\"<p>status " + id + "</p>\","
+                + "\"created_at\":\"2018-03-01T10:00:00.000Z\",\"visibility\":\"public\"}";
+    }
+
+    private static TimelineStatusEntity row(long accountId, String timeline, String statusId,
+                                            int position, String json, long cachedAt) {
+        return new TimelineStatusEntity(accountId, timeline, statusId, position, json, false,
+                cachedAt);
+    }
+
+    private static List<String> ids(List<TimelineCache.Entry> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (TimelineCache.Entry entry : entries) {
+            ids.add(entry.status.getId());
+        }
+        return ids;
+    }
+
+    private static List<Boolean> gaps(List<TimelineCache.Entry> entries) {
+        List<Boolean> gaps = new ArrayList<>(entries.size());
+        for (TimelineCache.Entry entry : entries) {
+            gaps.add(entry.gapBelow);
+        }
+        return gaps;
+    }
+
+    /**
+     * Keeps the rows in a list and answers the queries the way the database would.
+     */
+    private static final class FakeTimelineDao implements TimelineDao {
+        private final List<TimelineStatusEntity> rows = new ArrayList<>();
+
+        @Override
+        public synchronized void insertAll(List<TimelineStatusEntity> statuses) {
+            for (TimelineStatusEntity status : statuses) {
+                Iterator<TimelineStatusEntity> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    TimelineStatusEntity row = iterator.next();
+                    if (row.getAccountId() == status.getAccountId()
+                            && row.getTimeline().equals(status.getTimeline())
+                            && row.getStatusId().equals(status.getStatusId())) {
+                        iterator.remove();
+                    }
+                }
+                rows.add(status);
+            }
+        }
+
+        @Override
+        public synchronized List<TimelineStatusEntity> getTimeline(long accountId,
+                                                                   String timeline) {
+            List<TimelineStatusEntity> result = new ArrayList<>();
+            for (TimelineStatusEntity row : rows) {
+                if (row.getAccountId() == accountId && row.getTimeline().equals(timeline)) {
+                    result.add(row);
+                }
+            }
+            Collections.sort(result, (l, r) -> Integer.compare(l.getPosition(), r.getPosition()));
+            return result;
+        }
+
+        @Override
+        public synchronized int deleteTimeline(long accountId, String timeline) {
+            int before = rows.size();
+            Iterator<TimelineStatusEntity> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                TimelineStatusEntity row = iterator.next();
+                if (row.getAccountId() == accountId && row.getTimeline().equals(timeline)) {
+                    iterator.remove();
+                }
+            }
+            return before - rows.size();
+        }
+
+        @Override
+        public synchronized int deleteAllForAccount(long accountId) {
+            int before = rows.size();
+            Iterator<TimelineStatusEntity> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getAccountId() == accountId) {
+                    iterator.remove();
+                }
+            }
+            return before - rows.size();
+        }
+
+        @Override
+        public synchronized int deleteOlderThan(long cachedBefore) {
+            int before = rows.size();
+            Iterator<TimelineStatusEntity> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getCachedAt() < cachedBefore) {
+                    iterator.remove();
+                }
+            }
+            return before - rows.size();
+        }
+
+        @Override
+        public synchronized List<TimelineStatusEntity.TimelineId> getTimelinesByLastUse() {
+            final Map<String, Long> lastUse = new HashMap<>();
+            final Map<String, TimelineStatusEntity.TimelineId> ids = new HashMap<>();
+            for (TimelineStatusEntity row : rows) {
+                String key = row.getAccountId() + " " + row.getTimeline();
+                Long last = lastUse.get(key);
+                if (last == null || last < row.getCachedAt()) {
+                    lastUse.put(key, row.getCachedAt());
+                }
+                if (!ids.containsKey(key)) {
+                    TimelineStatusEntity.TimelineId id = new TimelineStatusEntity.TimelineId();
+                    id.accountId = row.getAccountId();
+                    id.timeline = row.getTimeline();
+                    ids.put(key, id);
+                }
+            }
+            List<String> keys = new ArrayList<>(ids.keySet());
+            Collections.sort(keys, (l, r) -> Long.compare(lastUse.get(r), lastUse.get(l)));
+            List<TimelineStatusEntity.TimelineId> result = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                result.add(ids.get(key));
+            }
+            return result;
+        }
+
+        synchronized int size() {
+            return rows.size();
+        }
+
+        /**
+         * @return "accountId timeline" of every timeline with rows
+         */
+        synchronized List<String> timelines() {
+            List<String> timelines = new ArrayList<>();
+            for (TimelineStatusEntity row : rows) {
+                String key = row.getAccountId() + " " + row.getTimeline();
+                if (!timelines.contains(key)) {
+                    timelines.add(key);
+                }
+            }
+            return timelines;
+        }
+    }
+}
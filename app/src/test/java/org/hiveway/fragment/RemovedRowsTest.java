@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.fragment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rows are named by their account and a number, "-" is a gap.
+ */
+public class RemovedRowsTest {
+
+    private final RemovedRows<String> removedRows = new RemovedRows<>(row -> row.equals("-"));
+
+    @Test
+    public void restoresRowsWhereTheyWere() {
+        List<String> rows = rows("a1", "b1", "b2", "a2", "-", "b3", "a3", "b4");
+        List<String> original = new ArrayList<>(rows);
+        remove(rows, "b");
+        assertEquals(rows("a1", "a2", "-", "a3"), rows);
+
+        assertTrue(removedRows.restore("b", rows, rows::add));
+        assertEquals(original, rows);
+    }
+
+    @Test
+    public void keepsRowsAboveGaps() {
+        List<String> rows = rows("a1", "b1", "-", "a2", "b2", "-");
+        List<String> original = new ArrayList<>(rows);
+        remove(rows, "b");
+
+        removedRows.restore("b", rows, rows::add);
+        assertEquals(original, rows);
+    }
+
+    @Test
+    public void followsChangesOfTheList() {
+        List<String> rows = rows("a1", "b1", "a2", "b2", "a3");
+        remove(rows, "b");
+        rows.add(0, "c1");
+        rows.remove("a3");
+
+        removedRows.restore("b", rows, rows::add);
+        // b2 was above a3, which is gone
+        assertEquals(rows("c1", "a1", "b1", "a2"), rows);
+    }
+
+    @Test
+    public void skipsRowsWhichAreBackAlready() {
+        List<String> rows = rows("a1", "b1", "a2");
+        remove(rows, "b");
+        rows.add(0, "b1");
+
+        assertFalse(removedRows.restore("b", rows, rows::add));
+        assertEquals(rows("b1", "a1", "a2"), rows);
+    }
+
+    @Test
+    public void restoresOnlyOnce() {
+        List<String> rows = rows("a1", "b1");
+        remove(rows, "b");
+        removedRows.restore("b", rows, rows::add);
+        rows.remove("b1");
+
+        assertFalse(removedRows.restore("b", rows, rows::add));
+        assertFalse(removedRows.restore("c", rows, rows::add));
+    }
+
+    private void remove(List<String> rows, String account) {
+        removedRows.remember(account, rows, row -> row.startsWith(account));
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (rows.get(i).startsWith(account)) {
+                rows.remove(i);
+            }
+        }
+    }
+
+    private static List<String> rows(String... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+}
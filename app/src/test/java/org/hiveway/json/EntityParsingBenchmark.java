@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.json;
+
+import com.google.gson.Gson;
+
+import org.hiveway.Benchmarks;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Type;
+import java.util.Locale;
+
+/**
+ * Reads a page of the home timeline and of the notifications, 30 items each with reblogs,
+ * mentions, emojis and attachments, with the streaming adapters and by reflection.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class EntityParsingBenchmark {
+
+    @Test
+    public void timelinePage() throws Exception {
+        compare("timeline", Benchmarks.readResource("timeline_page.json"),
+                EntityTypeAdapterFactoryTest.STATUS_LIST);
+    }
+
+    @Test
+    public void notificationsPage() throws Exception {
+        compare("notifications", Benchmarks.readResource("notifications_page.json"),
+                EntityTypeAdapterFactoryTest.NOTIFICATION_LIST);
+    }
+
+    private static void compare(String page, String json, Type type) throws Exception {
+        Gson streaming = EntityTypeAdapterFactoryTest.streamingGson();
+        Gson reflective = EntityTypeAdapterFactoryTest.reflectiveGson();
+        Benchmarks.Result reflected = Benchmarks.measure(page + " page, reflective",
+                () -> reflective.fromJson(json, type));
+        Benchmarks.Result streamed = Benchmarks.measure(page + " page, streaming",
+                () -> streaming.fromJson(json, type));
+        System.out.println(String.format(Locale.ROOT,
+                "%s page: %.2fx the throughput, %.2fx the allocations", page,
+                reflected.nanosPerOperation / streamed.nanosPerOperation,
+                streamed.bytesPerOperation / reflected.bytesPerOperation));
+    }
+}
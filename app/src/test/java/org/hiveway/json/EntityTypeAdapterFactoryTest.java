@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.json;
+
+import android.text.Spanned;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.hiveway.Benchmarks;
+import org.hiveway.entity.Attachment;
+import org.hiveway.entity.Notification;
+import org.hiveway.entity.Status;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class EntityTypeAdapterFactoryTest {
+    static final Type STATUS_LIST = new TypeToken<List<Status>>() { }.getType();
+    static final Type NOTIFICATION_LIST = new TypeToken<List<Notification>>() { }.getType();
+
+    private static final String ACCOUNT = "{\"id\":\"1\",\"username\":\"alice\","
+            + "\"acct\":\"alice@social.example\",\"display_name\":\"Alice\",\"note\":\"<p>hi</p>\","
+            + "\"url\":\"https://social.example/@alice\",\"avatar\":\"a.png\",\"header\":\"h.png\"}";
+    private static final String STATUS = "{\"id\":\"10\",\"account\":" + ACCOUNT
+            + ",\"content\":\"<p>hello</p>\",\"created_at\":\"2018-03-01T10:00:00.000Z\","
+            + "\"visibility\":\"public\"}";
+
+    private final Gson gson = streamingGson();
+
+    /**
+     * The same setup as {@link org.hiveway.network.NetworkProvider}.
+     */
+    static Gson streamingGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Spanned.class, new SpannedTypeAdapter())
+                .registerTypeAdapter(Date.class, new Iso8601DateAdapter())
+                .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+                .create();
+    }
+
+    /**
+     * How the entities were read before, by reflection.
+     */
+    static Gson reflectiveGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Spanned.class, new SpannedTypeAdapter())
+                .create();
+    }
+
+    @Test
+    public void readsTimelineLikeReflection() throws Exception {
+        String json = Benchmarks.readResource("timeline_page.json");
+        List<Status> streamed = gson.fromJson(json, STATUS_LIST);
+        List<Status> reflected = reflectiveGson().fromJson(json, STATUS_LIST);
+
+        assertEquals(30, streamed.size());
+        assertEquals(reflected.size(), streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertSameStatus(reflected.get(i), streamed.get(i));
+        }
+    }
+
+    @Test
+    public void readsNotificationsLikeReflection() throws Exception {
+        String json = Benchmarks.readResource("notifications_page.json");
+        List<Notification> streamed = gson.fromJson(json, NOTIFICATION_LIST);
+        List<Notification> reflected = reflectiveGson().fromJson(json, NOTIFICATION_LIST);
+
+        assertEquals(30, streamed.size());
+        assertEquals(reflected.size(), streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            Notification expected = reflected.get(i);
+            Notification actual = streamed.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getAccount().getId(), actual.getAccount().getId());
+            if (expected.getStatus() == null) {
+                assertNull(actual.getStatus());
+            } else {
+                assertSameStatus(expected.getStatus(), actual.getStatus());
+            }
+        }
+    }
+
+    @Test
+    public void fillsInMissingValues() {
+        Status status = gson.fromJson("{\"id\":\"10\",\"account\":{\"id\":\"1\"}}", Status.class);
+
+        assertEquals("", status.getContentHtml());
+        assertEquals("", status.getUrl());
+        assertEquals("", status.getSpoilerText());
+        assertEquals(new Date(0), status.getCreatedAt());
+        assertEquals(Status.Visibility.UNKNOWN, status.getVisibility());
+        assertEquals(0, status.getAttachments().length);
+        assertEquals(0, status.getMentions().length);
+        assertEquals(0, status.getEmojis().size());
+        assertEquals("", status.getAccount().getUsername());
+        assertEquals("", status.getAccount().getNote().toString());
+    }
+
+    @Test
+    public void dropsStatusesWithoutAccount() {
+        List<Status> statuses = gson.fromJson("[" + STATUS + ",{\"id\":\"11\"},"
+                + "{\"id\":\"12\",\"account\":null}]", STATUS_LIST);
+
+        assertEquals(1, statuses.size());
+        assertEquals("10", statuses.get(0).getId());
+    }
+
+    @Test
+    public void dropsReblogsOfUnreadableStatuses() {
+        List<Status> statuses = gson.fromJson("[{\"id\":\"11\",\"account\":" + ACCOUNT
+                + ",\"reblog\":{\"id\":\"12\"}},{\"id\":\"13\",\"account\":" + ACCOUNT
+                + ",\"reblog\":" + STATUS + "},{\"id\":\"14\",\"account\":" + ACCOUNT
+                + ",\"reblog\":null}]", STATUS_LIST);
+
+        assertEquals(2, statuses.size());
+        assertEquals("13", statuses.get(0).getId());
+        assertEquals("10", statuses.get(0).getReblog().getId());
+        assertEquals("14", statuses.get(1).getId());
+        assertNull(statuses.get(1).getReblog());
+    }
+
+    @Test
+    public void dropsNotificationsWhichCantBeShown() {
+        List<Notification> notifications = gson.fromJson("["
+                + "{\"id\":\"1\",\"type\":\"poll\",\"account\":" + ACCOUNT + "},"
+                + "{\"id\":\"2\",\"type\":\"follow\"},"
+                + "{\"id\":\"3\",\"type\":\"mention\",\"account\":" + ACCOUNT + "},"
+                + "{\"id\":\"4\",\"type\":\"favourite\",\"account\":" + ACCOUNT
+                + ",\"status\":{\"id\":\"5\"}},"
+                + "{\"id\":\"6\",\"type\":\"follow\",\"account\":" + ACCOUNT + "},"
+                + "{\"id\":\"7\",\"type\":\"mention\",\"account\":" + ACCOUNT
+                + ",\"status\":" + STATUS + "}]", NOTIFICATION_LIST);
+
+        assertEquals(2, notifications.size());
+        assertEquals("6", notifications.get(0).getId());
+        assertEquals(Notification.Type.FOLLOW, notifications.get(0).getType());
+        assertNull(notifications.get(0).getStatus());
+        assertEquals("7", notifications.get(1).getId());
+        assertNotNull(notifications.get(1).getStatus());
+    }
+
+    @Test
+    public void readsWrittenStatusesBackTheSame() {
+        Status status = gson.fromJson(STATUS, Status.class);
+        String json = gson.toJson(status);
+        assertTrue(json, json.contains("\"2018-03-01T10:00:00.000Z\""));
+
+        // like a timeline cached before travelling
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        try {
+            assertSameStatus(status, gson.fromJson(json, Status.class));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void readsUnknownSingleNotificationAsNull() {
+        assertNull(gson.fromJson("{\"id\":\"1\",\"type\":\"poll\",\"account\":" + ACCOUNT + "}",
+                Notification.class));
+    }
+
+    private static void assertSameStatus(Status expected, Status actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getAccount().getId(), actual.getAccount().getId());
+        assertEquals(expected.getAccount().getUsername(), actual.getAccount().getUsername());
+        assertEquals(expected.getAccount().getLocalUsername(),
+                actual.getAccount().getLocalUsername());
+        assertEquals(expected.getAccount().getDisplayName(), actual.getAccount().getDisplayName());
+        assertEquals(expected.getAccount().getAvatar(), actual.getAccount().getAvatar());
+        assertEquals(expected.getAccount().getLocked(), actual.getAccount().getLocked());
+        assertEquals(expected.getAccount().getNote().toString(),
+                actual.getAccount().getNote().toString());
+        assertEquals(expected.getInReplyToId(), actual.getInReplyToId());
+        assertEquals(expected.getInReplyToAccountId(), actual.getInReplyToAccountId());
+        assertEquals(expected.getContentHtml(), actual.getContentHtml());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getReblogsCount(), actual.getReblogsCount());
+        assertEquals(expected.getFavouritesCount(), actual.getFavouritesCount());
+        assertEquals(expected.getReblogged(), actual.getReblogged());
+        assertEquals(expected.getFavourited(), actual.getFavourited());
+        assertEquals(expected.getSensitive(), actual.getSensitive());
+        assertEquals(expected.getSpoilerText(), actual.getSpoilerText());
+        assertEquals(expected.getVisibility(), actual.getVisibility());
+        assertEquals(expected.getAttachments().length, actual.getAttachments().length);
+        for (int i = 0; i < expected.getAttachments().length; i++) {
+            Attachment expectedAttachment = expected.getAttachments()[i];
+            Attachment actualAttachment = actual.getAttachments()[i];
+            assertEquals(expectedAttachment.getId(), actualAttachment.getId());
+            assertEquals(expectedAttachment.getUrl(), actualAttachment.getUrl());
+            assertEquals(expectedAttachment.getPreviewUrl(), actualAttachment.getPreviewUrl());
+            assertEquals(expectedAttachment.getTextUrl(), actualAttachment.getTextUrl());
+            assertEquals(expectedAttachment.getType(), actualAttachment.getType());
+            assertEquals(expectedAttachment.getDescription(), actualAttachment.getDescription());
+        }
+        assertEquals(expected.getMentions().length, actual.getMentions().length);
+        for (int i = 0; i < expected.getMentions().length; i++) {
+            assertEquals(expected.getMentions()[i].getId(), actual.getMentions()[i].getId());
+            assertEquals(expected.getMentions()[i].getUsername(),
+                    actual.getMentions()[i].getUsername());
+            assertEquals(expected.getMentions()[i].getUrl(), actual.getMentions()[i].getUrl());
+        }
+        assertEquals(expected.getEmojis().size(), actual.getEmojis().size());
+        for (int i = 0; i < expected.getEmojis().size(); i++) {
+            assertEquals(expected.getEmojis().get(i).getShortcode(),
+                    actual.getEmojis().get(i).getShortcode());
+            assertEquals(expected.getEmojis().get(i).getUrl(), actual.getEmojis().get(i).getUrl());
+        }
+        if (expected.getApplication() == null) {
+            assertNull(actual.getApplication());
+        } else {
+            assertEquals(expected.getApplication().getName(), actual.getApplication().getName());
+        }
+        if (expected.getReblog() == null) {
+            assertNull(actual.getReblog());
+        } else {
+            assertSameStatus(expected.getReblog(), actual.getReblog());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Iso8601DateAdapterTest {
+    /* 2018-03-01T10:00:00.123Z */
+    private static final long TIME = 1519898400123L;
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new Iso8601DateAdapter())
+            .create();
+    private TimeZone timeZone;
+    private Locale locale;
+
+    @Before
+    public void setUp() {
+        timeZone = TimeZone.getDefault();
+        locale = Locale.getDefault();
+        // far from UTC and with its own date format, so nothing depends on them by accident
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        Locale.setDefault(Locale.GERMANY);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(timeZone);
+        Locale.setDefault(locale);
+    }
+
+    @Test
+    public void writesUtc() {
+        assertEquals("\"2018-03-01T10:00:00.123Z\"", gson.toJson(new Date(TIME)));
+        assertEquals("\"1970-01-01T00:00:00.000Z\"", gson.toJson(new Date(0)));
+        assertEquals("null", gson.toJson(null, Date.class));
+    }
+
+    @Test
+    public void readsWhatItWrites() {
+        Date date = new Date(TIME);
+        assertEquals(date, gson.fromJson(gson.toJson(date), Date.class));
+    }
+
+    @Test
+    public void readsIsoVariants() {
+        assertEquals(TIME, read("2018-03-01T10:00:00.123Z"));
+        assertEquals(TIME, read("2018-03-01T10:00:00.123456Z"));
+        assertEquals(TIME, read("2018-03-01T10:00:00.123"));
+        assertEquals(TIME, read("2018-03-01t10:00:00.123z"));
+        assertEquals(TIME - 123, read("2018-03-01T10:00:00Z"));
+        assertEquals(TIME - 123, read("2018-03-01T10:00Z"));
+        assertEquals(TIME - 23, read("2018-03-01T10:00:00.1Z"));
+        assertEquals(TIME, read("2018-03-01T12:00:00.123+02:00"));
+        assertEquals(TIME, read("2018-03-01T05:30:00.123-0430"));
+        assertEquals(TIME, read("2018-03-01T11:00:00.123+01"));
+        assertEquals(TIME - 123 - 10 * 3600 * 1000, read("2018-03-01"));
+        assertNull(gson.fromJson("null", Date.class));
+    }
+
+    @Test
+    public void readsWhatGsonWroteBefore() {
+        Date date = new Date(TIME - 123);
+        String legacy = new Gson().toJson(date);
+        assertEquals(date, gson.fromJson(legacy, Date.class));
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void rejectsOtherText() {
+        read("yesterday");
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void rejectsInvalidFields() {
+        read("2018-13-01T10:00:00Z");
+    }
+
+    private long read(String value) {
+        return gson.fromJson("\"" + value + "\"", Date.class).getTime();
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+
+import org.hiveway.db.ActionDao;
+import org.hiveway.db.ActionEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs an {@link ActionOutbox} with an in-memory {@link ActionDao} against a local server.
+ * Retrofit looks for Android classes, so it runs with Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class ActionOutboxTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    /* how long the tests wait to be sure something does not happen */
+    private static final long QUIET_MS = 300;
+    private static final long ACCOUNT_ID = 1;
+    private static final long GONE_ACCOUNT_ID = 2;
+
+    private static final String FAVOURITE_1 = "/api/v1/statuses/1/favourite";
+    private static final String UNFAVOURITE_1 = "/api/v1/statuses/1/unfavourite";
+    private static final String REBLOG_1 = "/api/v1/statuses/1/reblog";
+    private static final String FAVOURITE_2 = "/api/v1/statuses/2/favourite";
+
+    private MockWebServer server;
+    private HivewayApi api;
+    private final FakeActionDao dao = new FakeActionDao();
+    private final BlockingQueue<ActionEntity> rejected = new LinkedBlockingQueue<>();
+    /* status codes the server answers with by path, 200 once they run out */
+    private final Map<String, Queue<Integer>> codes = new ConcurrentHashMap<>();
+    /* the server holds every answer back until this is counted down */
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    /* when each request reached the server, in milliseconds */
+    private final Queue<Long> requestTimes = new ConcurrentLinkedQueue<>();
+    private ActionOutbox outbox;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                requestTimes.add(System.currentTimeMillis());
+                int running = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(running, Math::max);
+                try {
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                Queue<Integer> answers = codes.get(request.getPath());
+                Integer code = answers == null ? null : answers.poll();
+                return new MockResponse().setResponseCode(code == null ? 200 : code)
+                        .setBody("{}");
+            }
+        });
+        server.start();
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .callbackExecutor(Runnable::run)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(HivewayApi.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void sendsActionAndForgetsIt() throws Exception {
+        start(0, 100);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        assertEquals(FAVOURITE_1, takePath());
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+        assertNull(rejected.poll());
+    }
+
+    @Test
+    public void dropsOppositeActionsBeforeTheyAreSent() throws Exception {
+        start(QUIET_MS, 100);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.UNFAVOURITE, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "2");
+
+        // the favourite of 1 was due before the one of 2, so it would have been sent first
+        assertEquals(FAVOURITE_2, takePath());
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+    }
+
+    @Test
+    public void dropsRepeatedAction() throws Exception {
+        start(QUIET_MS, 100);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        assertEquals(FAVOURITE_1, takePath());
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+    }
+
+    @Test
+    public void sendsOppositeAfterActionWhichFailedOnce() throws Exception {
+        codes.put(FAVOURITE_1, queueOf(500));
+        start(0, QUIET_MS);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+        assertEquals(FAVOURITE_1, takePath());
+        dao.awaitAttempts(1);
+
+        // the failed favourite may have reached the server, so it can't be taken back silently
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.UNFAVOURITE, "1");
+        assertEquals(FAVOURITE_1, takePath());
+        assertEquals(UNFAVOURITE_1, takePath());
+        dao.awaitEmpty();
+        assertNull(rejected.poll());
+    }
+
+    @Test
+    public void sendsActionsForOneTargetInOrder() throws Exception {
+        release = new CountDownLatch(1);
+        start(0, 100);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.REBLOG, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "2");
+
+        // the reblog waits until the favourite of the same status is answered
+        assertEquals(new HashSet<>(Arrays.asList(FAVOURITE_1, FAVOURITE_2)),
+                new HashSet<>(Arrays.asList(takePath(), takePath())));
+        assertNoMoreRequests();
+        release.countDown();
+
+        assertEquals(REBLOG_1, takePath());
+        dao.awaitEmpty();
+    }
+
+    @Test
+    public void limitsRequestsRunningAtTheSameTime() throws Exception {
+        release = new CountDownLatch(1);
+        start(0, 100);
+        int count = ActionOutbox.MAX_IN_FLIGHT + 2;
+        for (int i = 0; i < count; i++) {
+            outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, String.valueOf(i));
+        }
+
+        for (int i = 0; i < ActionOutbox.MAX_IN_FLIGHT; i++) {
+            takePath();
+        }
+        assertNoMoreRequests();
+        release.countDown();
+
+        for (int i = ActionOutbox.MAX_IN_FLIGHT; i < count; i++) {
+            takePath();
+        }
+        dao.awaitEmpty();
+        assertEquals(ActionOutbox.MAX_IN_FLIGHT, maxInFlight.get());
+    }
+
+    @Test
+    public void retriesServerErrorsAfterBackoff() throws Exception {
+        long backoff = 200;
+        codes.put(FAVOURITE_1, queueOf(503));
+        start(0, backoff);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        assertEquals(FAVOURITE_1, takePath());
+        assertEquals(FAVOURITE_1, takePath());
+        dao.awaitEmpty();
+        long first = requestTimes.poll();
+        long second = requestTimes.poll();
+        assertTrue("retried after " + (second - first) + " ms", second - first >= backoff);
+        assertNull(rejected.poll());
+    }
+
+    @Test
+    public void retriesRateLimitedAction() throws Exception {
+        codes.put(FAVOURITE_1, queueOf(429));
+        start(0, 10);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        assertEquals(FAVOURITE_1, takePath());
+        assertEquals(FAVOURITE_1, takePath());
+        dao.awaitEmpty();
+        assertNull(rejected.poll());
+    }
+
+    @Test
+    public void rejectsActionRefusedByServer() throws Exception {
+        codes.put(FAVOURITE_1, queueOf(404));
+        start(0, 10);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        assertEquals(FAVOURITE_1, takePath());
+        ActionEntity action = rejected.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("the listener was not told", action);
+        assertEquals(ActionEntity.Type.FAVOURITE, action.getType());
+        assertEquals("1", action.getTargetId());
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        Integer[] failures = new Integer[ActionOutbox.MAX_ATTEMPTS];
+        Arrays.fill(failures, 500);
+        codes.put(FAVOURITE_1, queueOf(failures));
+        start(0, 1);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+
+        for (int i = 0; i < ActionOutbox.MAX_ATTEMPTS; i++) {
+            assertEquals(FAVOURITE_1, takePath());
+        }
+        assertNotNull("the listener was not told", rejected.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+    }
+
+    @Test
+    public void sendsStoredActionsFirstAndOnlyAfterStart() throws Exception {
+        dao.insert(new ActionEntity(0, ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1", 0, 0, 0));
+        outbox = create(0, 100);
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.REBLOG, "1");
+        assertNoMoreRequests();
+
+        outbox.start();
+        assertEquals(FAVOURITE_1, takePath());
+        assertEquals(REBLOG_1, takePath());
+        dao.awaitEmpty();
+    }
+
+    @Test
+    public void dropsActionsOfGoneAccount() throws Exception {
+        start(0, 100);
+        outbox.enqueue(GONE_ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "1");
+        outbox.enqueue(ACCOUNT_ID, ActionEntity.Type.FAVOURITE, "2");
+
+        assertEquals(FAVOURITE_2, takePath());
+        dao.awaitEmpty();
+        assertNoMoreRequests();
+    }
+
+    private ActionOutbox create(long sendDelayMs, long initialBackoffMs) {
+        ActionOutbox created = new ActionOutbox(dao,
+                accountId -> accountId == GONE_ACCOUNT_ID ? null : api, Runnable::run,
+                sendDelayMs, initialBackoffMs);
+        created.addListener(rejected::add);
+        return created;
+    }
+
+    private void start(long sendDelayMs, long initialBackoffMs) {
+        outbox = create(sendDelayMs, initialBackoffMs);
+        outbox.start();
+    }
+
+    private String takePath() throws InterruptedException {
+        RecordedRequest request = server.takeRequest(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("no request arrived", request);
+        return request.getPath();
+    }
+
+    private void assertNoMoreRequests() throws InterruptedException {
+        RecordedRequest request = server.takeRequest(QUIET_MS, TimeUnit.MILLISECONDS);
+        assertNull(request == null ? null : "unexpected request " + request.getPath(), request);
+    }
+
+    private static Queue<Integer> queueOf(Integer... codes) {
+        return new ConcurrentLinkedQueue<>(Arrays.asList(codes));
+    }
+
+    /**
+     * Keeps the actions in a list instead of a database.
+     */
+    private static final class FakeActionDao implements ActionDao {
+        private final List<ActionEntity> actions = new ArrayList<>();
+        private long lastId;
+
+        @Override
+        public synchronized long insert(ActionEntity action) {
+            lastId++;
+            actions.add(action.withId(lastId));
+            notifyAll();
+            return lastId;
+        }
+
+        @Override
+        public synchronized void update(ActionEntity action) {
+            for (int i = 0; i < actions.size(); i++) {
+                if (actions.get(i).getId() == action.getId()) {
+                    actions.set(i, action);
+                }
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized List<ActionEntity> loadAll() {
+            return new ArrayList<>(actions);
+        }
+
+        @Override
+        public synchronized int delete(long id) {
+            int before = actions.size();
+            for (int i = actions.size() - 1; i >= 0; i--) {
+                if (actions.get(i).getId() == id) {
+                    actions.remove(i);
+                }
+            }
+            notifyAll();
+            return before - actions.size();
+        }
+
+        @Override
+        public synchronized int deleteAllForAccount(long accountId) {
+            int before = actions.size();
+            for (int i = actions.size() - 1; i >= 0; i--) {
+                if (actions.get(i).getAccountId() == accountId) {
+                    actions.remove(i);
+                }
+            }
+            notifyAll();
+            return before - actions.size();
+        }
+
+        synchronized void awaitEmpty() throws InterruptedException {
+            await(() -> actions.isEmpty(), "actions are left: " + actions.size());
+        }
+
+        /**
+         * Waits until the only stored action was tried {@code attempts} times.
+         */
+        synchronized void awaitAttempts(int attempts) throws InterruptedException {
+            await(() -> actions.size() == 1 && actions.get(0).getAttempts() == attempts,
+                    "the action was not retried");
+        }
+
+        private void await(@NonNull Condition condition, String message)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (!condition.holds()) {
+                long left = deadline - System.currentTimeMillis();
+                assertTrue(message, left > 0);
+                wait(left);
+            }
+        }
+
+        private interface Condition {
+            boolean holds();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs {@link CachePolicyInterceptor} in front of a disk cache and a local server which answers
+ * like Mastodon, with {@code max-age=0, must-revalidate}.
+ */
+public class CachePolicyInterceptorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+                .cache(new Cache(folder.newFolder("cache"), 1024 * 1024))
+                .addNetworkInterceptor(new CachePolicyInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.cache().close();
+        server.shutdown();
+    }
+
+    @Test
+    public void givesEachPathItsMaxAge() {
+        assertEquals(0, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/relationships"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/verify_credentials"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/search"));
+        assertEquals(60, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/42"));
+        assertEquals(0, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/42/statuses"));
+        assertEquals(30, CachePolicyInterceptor.maxAgeFor("/api/v1/statuses/42/context"));
+        assertEquals(24 * 60 * 60, CachePolicyInterceptor.maxAgeFor("/api/v1/statuses/42/card"));
+        assertEquals(5 * 60, CachePolicyInterceptor.maxAgeFor("/api/v1/lists"));
+        assertEquals(0, CachePolicyInterceptor.maxAgeFor("/api/v1/favourites"));
+
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/statuses/42"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/accounts/42/followers"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/timelines/home"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/api/v1/lists/1"));
+        assertEquals(-1, CachePolicyInterceptor.maxAgeFor("/prefix/api/v1/accounts/42"));
+    }
+
+    @Test
+    public void rewritesCachingHeaders() throws Exception {
+        server.enqueue(mastodonResponse("account"));
+
+        Response response = get("/api/v1/accounts/42", "Bearer a", null);
+
+        assertEquals("private, max-age=60", response.header("Cache-Control"));
+        assertEquals("Authorization", response.header("Vary"));
+        assertNull(response.header("Pragma"));
+        assertNull(response.header("Expires"));
+        assertEquals("\"1\"", response.header("ETag"));
+    }
+
+    @Test
+    public void servesFreshResponseFromCache() throws Exception {
+        server.enqueue(mastodonResponse("first"));
+        server.enqueue(mastodonResponse("second"));
+
+        assertEquals("first", body(get("/api/v1/accounts/42", "Bearer a", null)));
+        assertEquals("first", body(get("/api/v1/accounts/42", "Bearer a", null)));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void keepsAccountsApart() throws Exception {
+        server.enqueue(mastodonResponse("of a"));
+        server.enqueue(mastodonResponse("of b"));
+
+        assertEquals("of a", body(get("/api/v1/accounts/42", "Bearer a", null)));
+        assertEquals("of b", body(get("/api/v1/accounts/42", "Bearer b", null)));
+        assertEquals(2, server.getRequestCount());
+        server.takeRequest();
+        assertEquals("Bearer b", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void goesToServerWhenAskedNotToUseCache() throws Exception {
+        server.enqueue(mastodonResponse("before"));
+        server.enqueue(mastodonResponse("after"));
+
+        assertEquals("before", body(get("/api/v1/statuses/1/context", "Bearer a", null)));
+        assertEquals("after", body(get("/api/v1/statuses/1/context", "Bearer a",
+                CachePolicyInterceptor.NO_CACHE)));
+        assertEquals(2, server.getRequestCount());
+
+        // the refreshed response replaced the cached one
+        assertEquals("after", body(get("/api/v1/statuses/1/context", "Bearer a", null)));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void revalidatesPathsWithoutMaxAge() throws Exception {
+        server.enqueue(mastodonResponse("relationships"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"1\""));
+
+        assertEquals("relationships",
+                body(get("/api/v1/accounts/relationships", "Bearer a", null)));
+        assertEquals("relationships",
+                body(get("/api/v1/accounts/relationships", "Bearer a", null)));
+
+        assertEquals(2, server.getRequestCount());
+        server.takeRequest();
+        assertEquals("\"1\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void leavesOtherResponsesAlone() throws Exception {
+        server.enqueue(mastodonResponse("me"));
+        server.enqueue(mastodonResponse("status"));
+
+        Response credentials = get("/api/v1/accounts/verify_credentials", "Bearer a", null);
+        assertEquals("max-age=0, must-revalidate", credentials.header("Cache-Control"));
+        assertNull(credentials.header("Vary"));
+        credentials.close();
+
+        Response posted = client.newCall(new Request.Builder()
+                .url(server.url("/api/v1/accounts/42"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), ""))
+                .build()).execute();
+        assertEquals("max-age=0, must-revalidate", posted.header("Cache-Control"));
+        posted.close();
+    }
+
+    private static MockResponse mastodonResponse(String body) {
+        return new MockResponse()
+                .setHeader("Cache-Control", "max-age=0, must-revalidate")
+                .setHeader("Pragma", "no-cache")
+                .setHeader("Expires", "0")
+                .setHeader("ETag", "\"1\"")
+                .setBody(body);
+    }
+
+    private Response get(String path, String authorization, String cacheControl)
+            throws IOException {
+        Request.Builder request = new Request.Builder()
+                .url(server.url(path))
+                .header("Authorization", authorization);
+        if (cacheControl != null) {
+            request.header("Cache-Control", cacheControl);
+        }
+        return client.newCall(request.build()).execute();
+    }
+
+    private static String body(Response response) throws IOException {
+        try {
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs calls through a {@link RequestCoalescer} against a local server which holds every answer
+ * back until the test has made all its calls. Retrofit looks for Android classes, so it runs
+ * with Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class RequestCoalescerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    interface Api {
+        @GET("api/v1/lists/{id}")
+        Call<List<String>> list(@Path("id") String id);
+
+        @GET("api/v1/lists/{id}")
+        Call<List<String>> list(@Path("id") String id,
+                                @Header("Cache-Control") String cacheControl);
+    }
+
+    private MockWebServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private long activeAccountId = 1;
+    private Api api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return new MockResponse().setBody("[\"a\",\"b\"]");
+            }
+        });
+        server.start();
+        RequestCoalescer coalescer = new RequestCoalescer(() -> activeAccountId);
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .callbackExecutor(Runnable::run)
+                .addCallAdapterFactory(coalescer.callAdapterFactory())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(Api.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void sendsIdenticalRequestsOnce() throws Exception {
+        Result first = enqueue(api.list("1"));
+        Result second = enqueue(api.list("1"));
+        awaitRequests(1);
+        release.countDown();
+
+        assertEquals(Arrays.asList("a", "b"), first.await().body());
+        assertEquals(Arrays.asList("a", "b"), second.await().body());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void sendsDifferentRequestsSeparately() throws Exception {
+        Result first = enqueue(api.list("1"));
+        Result second = enqueue(api.list("2"));
+        awaitRequests(2);
+        release.countDown();
+
+        assertNotNull(first.await());
+        assertNotNull(second.await());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void keepsOthersRunningWhenOneIsCancelled() throws Exception {
+        Call<List<String>> cancelled = api.list("1");
+        Result cancelledResult = enqueue(cancelled);
+        Result kept = enqueue(api.list("1"));
+        awaitRequests(1);
+
+        cancelled.cancel();
+        assertTrue(cancelled.isCanceled());
+        assertTrue(cancelledResult.awaitFailure().getMessage().contains("Canceled"));
+
+        release.countDown();
+        Response<List<String>> response = kept.await();
+        assertTrue(response.isSuccessful());
+        assertEquals(Arrays.asList("a", "b"), response.body());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void givesEverySubscriberItsOwnList() throws Exception {
+        Result first = enqueue(api.list("1"));
+        Result second = enqueue(api.list("1"));
+        awaitRequests(1);
+        release.countDown();
+
+        List<String> firstList = first.await().body();
+        List<String> secondList = second.await().body();
+        assertNotSame(firstList, secondList);
+        firstList.remove(0);
+        assertEquals(Arrays.asList("a", "b"), secondList);
+    }
+
+    @Test
+    public void keepsAccountsApart() throws Exception {
+        Result first = enqueue(api.list("1"));
+        activeAccountId = 2;
+        Result second = enqueue(api.list("1"));
+        awaitRequests(2);
+        release.countDown();
+
+        assertNotNull(first.await());
+        assertNotNull(second.await());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotMakeRefreshesWaitForCachedRequests() throws Exception {
+        Result cached = enqueue(api.list("1"));
+        Result refreshed = enqueue(api.list("1", CachePolicyInterceptor.NO_CACHE));
+        awaitRequests(2);
+        release.countDown();
+
+        assertNotNull(cached.await());
+        assertNotNull(refreshed.await());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void startsAgainOnceFinished() throws Exception {
+        release.countDown();
+        assertNotNull(enqueue(api.list("1")).await());
+        assertNotNull(enqueue(api.list("1")).await());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelsBeforeEnqueue() throws Exception {
+        Call<List<String>> call = api.list("1");
+        call.cancel();
+        Result result = enqueue(call);
+
+        assertTrue(result.awaitFailure().getMessage().contains("Canceled"));
+        assertFalse(result.succeeded);
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            assertNotNull(server.takeRequest(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Result enqueue(Call<List<String>> call) {
+        Result result = new Result();
+        call.enqueue(result);
+        return result;
+    }
+
+    private static final class Result implements Callback<List<String>> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Response<List<String>> response;
+        private volatile Throwable failure;
+        volatile boolean succeeded;
+
+        @Override
+        public void onResponse(@NonNull Call<List<String>> call,
+                               @NonNull Response<List<String>> response) {
+            this.response = response;
+            succeeded = true;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull Call<List<String>> call, @NonNull Throwable t) {
+            failure = t;
+            done.countDown();
+        }
+
+        Response<List<String>> await() throws InterruptedException {
+            assertTrue("no answer", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+            return response;
+        }
+
+        Throwable awaitFailure() throws InterruptedException {
+            assertTrue("no answer", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertNotNull(failure);
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.network;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+
+import org.hiveway.entity.Notification;
+import org.hiveway.entity.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs {@link StreamingClient} against a local WebSocket server.
+ */
+public class StreamingClientTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private MockWebServer server;
+    private StreamingClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        client = new StreamingClient(httpClient, new Gson(), server.url("/api/v1/streaming"),
+                "token", Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void opensStreamWithToken() throws Exception {
+        ServerSocket socket = serve();
+        client.subscribe(StreamingClient.STREAM_HASHTAG, "hiveway", new Events());
+        socket.awaitOpen();
+
+        RecordedRequest request = server.takeRequest(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals("/api/v1/streaming?stream=hashtag&tag=hiveway", request.getPath());
+        assertEquals("Bearer token", request.getHeader("Authorization"));
+    }
+
+    @Test
+    public void sharesOneConnectionBetweenSubscribers() throws Exception {
+        ServerSocket socket = serve();
+        Events first = new Events();
+        Events second = new Events();
+        client.subscribe(StreamingClient.STREAM_USER, null, first);
+        client.subscribe(StreamingClient.STREAM_USER, null, second);
+        socket.awaitOpen().send("{\"event\":\"delete\",\"payload\":\"42\"}");
+
+        assertEquals("42", first.take());
+        assertEquals("42", second.take());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void stopsDeliveringToCancelledSubscribers() throws Exception {
+        ServerSocket socket = serve();
+        Events kept = new Events();
+        Events cancelled = new Events();
+        client.subscribe(StreamingClient.STREAM_USER, null, kept);
+        client.subscribe(StreamingClient.STREAM_USER, null, cancelled).cancel();
+        socket.awaitOpen().send("{\"event\":\"delete\",\"payload\":\"1\"}");
+
+        assertEquals("1", kept.take());
+        assertNull(cancelled.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void ignoresMalformedEvents() throws Exception {
+        ServerSocket socket = serve();
+        Events events = new Events();
+        client.subscribe(StreamingClient.STREAM_USER, null, events);
+        WebSocket webSocket = socket.awaitOpen();
+        webSocket.send("not json");
+        webSocket.send("{\"event\":\"delete\"}");
+        webSocket.send("{\"event\":\"delete\",\"payload\":\"7\"}");
+
+        assertEquals("7", events.take());
+    }
+
+    @Test
+    public void reconnectsAndTellsSubscribers() throws Exception {
+        ServerSocket first = serve();
+        ServerSocket second = serve();
+        Events events = new Events();
+        client.subscribe(StreamingClient.STREAM_PUBLIC, null, events);
+        first.awaitOpen().close(1001, "going away");
+
+        second.awaitOpen().send("{\"event\":\"delete\",\"payload\":\"3\"}");
+        assertEquals(Events.RECONNECTED, events.take());
+        assertEquals("3", events.take());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void closesConnectionWhenLastSubscriberLeaves() throws Exception {
+        ServerSocket socket = serve();
+        StreamingClient.Subscription subscription =
+                client.subscribe(StreamingClient.STREAM_USER, null, new Events());
+        socket.awaitOpen();
+        subscription.cancel();
+
+        assertEquals(Integer.valueOf(1000), socket.closed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closeEndsAllConnections() throws Exception {
+        ServerSocket user = serve();
+        ServerSocket local = serve();
+        client.subscribe(StreamingClient.STREAM_USER, null, new Events());
+        user.awaitOpen();
+        client.subscribe(StreamingClient.STREAM_PUBLIC_LOCAL, null, new Events());
+        local.awaitOpen();
+        client.close();
+
+        assertNotNull(user.closed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(local.closed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private ServerSocket serve() {
+        ServerSocket socket = new ServerSocket();
+        server.enqueue(new MockResponse().withWebSocketUpgrade(socket));
+        return socket;
+    }
+
+    /**
+     * The server side of one connection.
+     */
+    private static final class ServerSocket extends WebSocketListener {
+        final BlockingQueue<WebSocket> opened = new LinkedBlockingQueue<>();
+        final BlockingQueue<Integer> closed = new LinkedBlockingQueue<>();
+
+        WebSocket awaitOpen() throws InterruptedException {
+            WebSocket webSocket = opened.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("no connection was opened", webSocket);
+            return webSocket;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            opened.add(webSocket);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+            closed.add(code);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            closed.add(-1);
+        }
+    }
+
+    /**
+     * Collects the deleted ids and reconnections a subscriber is told about.
+     */
+    private static final class Events implements StreamingClient.Listener {
+        static final String RECONNECTED = "reconnected";
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        String take() throws InterruptedException {
+            String event = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("no event arrived", event);
+            return event;
+        }
+
+        @Override
+        public void onUpdate(@NonNull Status status) { }
+
+        @Override
+        public void onNotification(@NonNull Notification notification) { }
+
+        @Override
+        public void onDelete(@NonNull String id) {
+            events.add(id);
+        }
+
+        @Override
+        public void onReconnected() {
+            events.add(RECONNECTED);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.hiveway.Benchmarks;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inserts and removes at the head of timelines of 100 to 20,000 items, with and without taking a
+ * copy for the adapter after every change, in a {@link ChunkedList} and an {@link ArrayList}.
+ */
+public class ChunkedListBenchmark {
+
+    private static final int[] SIZES = { 100, 1_000, 5_000, 20_000 };
+
+    @Test
+    public void insertAndRemoveAtHead() throws Exception {
+        for (int size : SIZES) {
+            final List<Object> array = filled(new ArrayList<>(), size);
+            final List<Object> chunked = filled(new ChunkedList<>(), size);
+            compare("head insert and remove, " + size, () -> {
+                array.add(0, array);
+                return array.remove(0);
+            }, () -> {
+                chunked.add(0, chunked);
+                return chunked.remove(0);
+            });
+        }
+    }
+
+    @Test
+    public void insertAtHeadAndCopy() throws Exception {
+        for (int size : SIZES) {
+            final List<Object> array = filled(new ArrayList<>(), size);
+            final List<Object> chunked = filled(new ChunkedList<>(), size);
+            // like prepending a streamed status and handing the timeline to the adapter
+            compare("head insert and remove with copy, " + size, () -> {
+                array.add(0, array);
+                List<Object> copy = new ArrayList<>(array);
+                array.remove(0);
+                return copy;
+            }, () -> {
+                chunked.add(0, chunked);
+                List<Object> copy = new ChunkedList<>(chunked);
+                chunked.remove(0);
+                return copy;
+            });
+        }
+    }
+
+    private static void compare(String name, Benchmarks.Operation array,
+                                Benchmarks.Operation chunked) throws Exception {
+        Benchmarks.Result arrayResult = Benchmarks.measure(name + ", ArrayList", array);
+        Benchmarks.Result chunkedResult = Benchmarks.measure(name + ", ChunkedList", chunked);
+        System.out.println(String.format(Locale.ROOT, "%s: %.2fx the throughput of ArrayList",
+                name, arrayResult.nanosPerOperation / chunkedResult.nanosPerOperation));
+    }
+
+    private static List<Object> filled(List<Object> list, int size) {
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs random changes on a {@link ChunkedList} and an {@link ArrayList} side by side, and checks
+ * that copies are not affected by changes of the list they were made from and the other way round.
+ */
+public class ChunkedListTest {
+
+    private static final int SEEDS = 50;
+    private static final int OPERATIONS = 2_000;
+
+    @Test
+    public void behavesLikeArrayList() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            List<Integer> expected = new ArrayList<>();
+            List<Integer> actual = new ChunkedList<>();
+            for (int i = 0; i < OPERATIONS; i++) {
+                String operation = randomOperation(random, expected, actual);
+                assertEquals("seed " + seed + ", " + operation, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            List<Integer> expected = new ArrayList<>();
+            ChunkedList<Integer> actual = new ChunkedList<>();
+            List<List<Integer>> snapshots = new ArrayList<>();
+            List<ChunkedList<Integer>> copies = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (random.nextInt(20) == 0) {
+                    snapshots.add(new ArrayList<>(expected));
+                    copies.add(new ChunkedList<>(actual));
+                }
+                if (!copies.isEmpty() && random.nextInt(4) == 0) {
+                    // change a copy instead, or a copy of a copy
+                    int index = random.nextInt(copies.size());
+                    ChunkedList<Integer> copy = copies.get(index);
+                    if (random.nextBoolean()) {
+                        snapshots.add(new ArrayList<>(snapshots.get(index)));
+                        copies.add(new ChunkedList<>(copy));
+                    }
+                    randomOperation(random, snapshots.get(index), copy);
+                } else {
+                    randomOperation(random, expected, actual);
+                }
+                assertEquals("seed " + seed, expected, actual);
+            }
+            for (int i = 0; i < copies.size(); i++) {
+                assertEquals("seed " + seed + ", copy " + i, snapshots.get(i), copies.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void copyOfUnchangedListSharesNothingChangeable() {
+        ChunkedList<Integer> original = new ChunkedList<>(range(0, 200));
+        ChunkedList<Integer> copy = new ChunkedList<>(original);
+
+        original.set(10, -1);
+        original.add(0, -2);
+        original.remove(150);
+        copy.set(20, -3);
+        copy.add(-4);
+
+        List<Integer> expectedCopy = range(0, 200);
+        expectedCopy.set(20, -3);
+        expectedCopy.add(-4);
+        assertEquals(expectedCopy, copy);
+        List<Integer> expectedOriginal = range(0, 200);
+        expectedOriginal.set(10, -1);
+        expectedOriginal.add(0, -2);
+        expectedOriginal.remove(150);
+        assertEquals(expectedOriginal, original);
+    }
+
+    @Test
+    public void rejectsInvalidIndices() {
+        ChunkedList<Integer> list = new ChunkedList<>(range(0, 3));
+        for (int index : new int[] { -1, 3 }) {
+            try {
+                list.get(index);
+                fail("get " + index);
+            } catch (IndexOutOfBoundsException expected) { }
+            try {
+                list.remove(index);
+                fail("remove " + index);
+            } catch (IndexOutOfBoundsException expected) { }
+        }
+        try {
+            list.add(4, 0);
+            fail("add 4");
+        } catch (IndexOutOfBoundsException expected) { }
+        assertEquals(range(0, 3), list);
+    }
+
+    /**
+     * Applies the same random change to both lists. Changes at the ends are more likely, since
+     * that is how timelines change.
+     * @return a description of the change
+     */
+    private static String randomOperation(Random random, List<Integer> expected,
+                                          List<Integer> actual) {
+        int size = expected.size();
+        int index = randomIndex(random, size + 1);
+        int value = random.nextInt();
+        switch (random.nextInt(size == 0 ? 3 : 6)) {
+            case 0:
+                expected.add(index, value);
+                actual.add(index, value);
+                return "add at " + index;
+            case 1: {
+                List<Integer> values = range(value, value + random.nextInt(150));
+                assertEquals(expected.addAll(index, values), actual.addAll(index, values));
+                return "add " + values.size() + " at " + index;
+            }
+            case 2:
+                if (random.nextInt(50) == 0) {
+                    expected.clear();
+                    actual.clear();
+                    return "clear";
+                }
+                expected.add(value);
+                actual.add(value);
+                return "add";
+            case 3:
+                index = randomIndex(random, size);
+                assertEquals(expected.set(index, value), actual.set(index, value));
+                return "set at " + index;
+            default:
+                index = randomIndex(random, size);
+                assertEquals(expected.remove(index), actual.remove(index));
+                return "remove at " + index;
+        }
+    }
+
+    private static int randomIndex(Random random, int bound) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return 0;
+            case 1:
+                return bound - 1;
+            default:
+                return random.nextInt(bound);
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        Integer[] values = new Integer[to - from];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i;
+        }
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.hiveway.Benchmarks;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Downsizes large photos with {@link DownsizeImageTask#search} and with the loop the task used
+ * before, which decoded the image again for every attempt at half the size of the last one.
+ *
+ * The images are size curves instead of bitmaps: a compression writes as many bytes as the curve
+ * gives for the scale, and a decode writes a pixel array of the decoded size. So the times
+ * compare how much memory the two ways touch, not real codec speed; the counts of decodes and
+ * compressions are what carries over to a device.
+ */
+public class DownsizeImageTaskBenchmark {
+
+    /* what ComposeActivity allows for a status attachment */
+    private static final int SIZE_LIMIT = 8 * 1024 * 1024;
+    /* the short side the task decodes images at, unless they are smaller */
+    private static final int SCALED_IMAGE_SIZE = 1024;
+
+    /**
+     * A photo whose compressed size is its number of pixels times a number of bytes per pixel.
+     */
+    private static final class Photo {
+        final String name;
+        final int width;
+        final int height;
+        final float bytesPerPixel;
+
+        Photo(String name, int width, int height, float bytesPerPixel) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        /**
+         * @param scale relative to the full size of the photo
+         */
+        int bytesAt(float scale) {
+            return Math.round(width * scale * height * scale * bytesPerPixel);
+        }
+    }
+
+    private static final Photo[] PHOTOS = {
+            // jpeg at quality 75, from smooth skies to noisy low light
+            new Photo("12 MP jpeg, smooth", 4000, 3000, 0.25f),
+            new Photo("24 MP jpeg, noisy", 6000, 4000, 0.9f),
+            new Photo("48 MP jpeg, noisy", 8000, 6000, 0.9f),
+            new Photo("panorama jpeg", 12000, 3000, 0.9f),
+            // png is kept for images with transparency, it takes several bytes per pixel
+            new Photo("12 MP png, transparent", 4000, 3000, 3f),
+            new Photo("24 MP png, transparent", 6000, 4000, 3.5f),
+            new Photo("48 MP png, transparent", 8000, 6000, 4f),
+            new Photo("panorama png, transparent", 12000, 3000, 3.5f),
+    };
+
+    /**
+     * Counts what it takes to downsize one photo.
+     */
+    private static final class Cost {
+        int decodes;
+        int compressions;
+        int bytes;
+    }
+
+    private static int[] bitmap = new int[0];
+    private static byte[] compressed = new byte[0];
+
+    @Test
+    public void downsizeLargePhotos() throws Exception {
+        for (final Photo photo : PHOTOS) {
+            Cost searched = search(photo);
+            Cost stepped = stepped(photo);
+            System.out.println(String.format(Locale.ROOT,
+                    "%s: search %d decodes, %d compressions, %.0f%% of the limit; "
+                            + "stepped %d decodes, %d compressions, %.0f%% of the limit",
+                    photo.name, searched.decodes, searched.compressions,
+                    100f * searched.bytes / SIZE_LIMIT, stepped.decodes, stepped.compressions,
+                    100f * stepped.bytes / SIZE_LIMIT));
+            Benchmarks.Result searchTime = Benchmarks.measure("search, " + photo.name,
+                    () -> search(photo));
+            Benchmarks.Result steppedTime = Benchmarks.measure("stepped, " + photo.name,
+                    () -> stepped(photo));
+            System.out.println(String.format(Locale.ROOT, "%s: %.2fx the time of the stepped loop",
+                    photo.name, searchTime.nanosPerOperation / steppedTime.nanosPerOperation));
+        }
+    }
+
+    /**
+     * Decodes once, the way the task does now, and lets {@link DownsizeImageTask#search} compress
+     * that bitmap at different scales.
+     */
+    private static Cost search(final Photo photo) {
+        final Cost cost = new Cost();
+        final int inSampleSize = inSampleSize(photo, SCALED_IMAGE_SIZE);
+        final int width = photo.width / inSampleSize;
+        final int height = photo.height / inSampleSize;
+        decode(width, height, cost);
+        byte[] result = DownsizeImageTask.search(width, height, SIZE_LIMIT,
+                (scale, stream) -> compress(photo.bytesAt(scale / inSampleSize), stream, cost));
+        cost.bytes = result == null ? 0 : result.length;
+        return cost;
+    }
+
+    /**
+     * The loop from before {@link DownsizeImageTask#search}: decode with a sample size for a
+     * short side of 1024, then 512 and so on, and compress each until one fits.
+     */
+    private static Cost stepped(Photo photo) {
+        Cost cost = new Cost();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        int scaledImageSize = SCALED_IMAGE_SIZE;
+        int size;
+        do {
+            int inSampleSize = inSampleSize(photo, scaledImageSize);
+            decode(photo.width / inSampleSize, photo.height / inSampleSize, cost);
+            size = compress(photo.bytesAt(1f / inSampleSize), stream, cost);
+            scaledImageSize /= 2;
+        } while (size > SIZE_LIMIT);
+        cost.bytes = stream.toByteArray().length;
+        return cost;
+    }
+
+    /**
+     * The same as DownsizeImageTask.calculateInSampleSize.
+     */
+    private static int inSampleSize(Photo photo, int requiredScale) {
+        int inSampleSize = 1;
+        if (photo.height > requiredScale || photo.width > requiredScale) {
+            final int halfHeight = photo.height / 2;
+            final int halfWidth = photo.width / 2;
+            while (halfHeight / inSampleSize >= requiredScale
+                    && halfWidth / inSampleSize >= requiredScale) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Writes every pixel of a bitmap of the decoded size, which is kept between calls so the
+     * times don't depend on the garbage collector.
+     */
+    private static void decode(int width, int height, Cost cost) {
+        int pixels = width * height;
+        if (bitmap.length < pixels) {
+            bitmap = new int[pixels];
+        }
+        Arrays.fill(bitmap, 0, pixels, cost.decodes);
+        cost.decodes++;
+    }
+
+    private static int compress(int bytes, ByteArrayOutputStream stream, Cost cost) {
+        if (compressed.length < bytes) {
+            compressed = new byte[bytes];
+        }
+        stream.reset();
+        stream.write(compressed, 0, bytes);
+        cost.compressions++;
+        return bytes;
+    }
+}
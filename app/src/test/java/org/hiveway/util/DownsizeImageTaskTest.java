@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link DownsizeImageTask#search} picks the scales it compresses an image at, with a
+ * compressor whose output size is a function of the scale instead of a real bitmap.
+ */
+public class DownsizeImageTaskTest {
+
+    private static final float DELTA = 1e-5f;
+
+    /**
+     * Takes as many bytes as the function says for a scale and remembers the scales asked for.
+     */
+    private static final class FakeCompressor implements DownsizeImageTask.Compressor {
+        interface Size {
+            int at(float scale);
+        }
+
+        final List<Float> scales = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+        private final Size size;
+
+        FakeCompressor(Size size) {
+            this.size = size;
+        }
+
+        /**
+         * Like an image whose compressed size grows with its number of pixels.
+         */
+        static FakeCompressor byPixels(final int bytesAtFullScale) {
+            return new FakeCompressor(scale -> Math.round(bytesAtFullScale * scale * scale));
+        }
+
+        @Override
+        public int compress(float scale, ByteArrayOutputStream stream) {
+            stream.reset();
+            int bytes = size.at(scale);
+            scales.add(scale);
+            sizes.add(bytes);
+            if (bytes > 0) {
+                stream.write(new byte[bytes], 0, bytes);
+            }
+            return bytes;
+        }
+    }
+
+    @Test
+    public void keepsImageWhichFitsAsDecoded() {
+        FakeCompressor compressor = FakeCompressor.byPixels(500);
+
+        byte[] result = DownsizeImageTask.search(1000, 800, 1000, compressor);
+
+        assertNotNull(result);
+        assertEquals(500, result.length);
+        assertEquals(Arrays.asList(1f), compressor.scales);
+    }
+
+    @Test
+    public void estimatesScaleFromSizeThenBisects() {
+        FakeCompressor compressor = FakeCompressor.byPixels(4000);
+
+        byte[] result = DownsizeImageTask.search(1000, 800, 1000, compressor);
+
+        // sqrt(1000 / 4000) * 0.9 = 0.45 takes 810 bytes, which fits but isn't good enough, so
+        // the scales between it and 1 are bisected until the attempts are used up
+        assertScales(compressor, 1f, 0.45f, 0.725f, 0.5875f);
+        assertNotNull(result);
+        assertEquals(810, result.length);
+    }
+
+    @Test
+    public void keepsLargestScaleWhichFits() {
+        FakeCompressor compressor = FakeCompressor.byPixels(1300);
+
+        byte[] result = DownsizeImageTask.search(1000, 800, 1200, compressor);
+
+        // the estimate fits with 972 bytes, halfway to 1 fits better and is good enough
+        assertScales(compressor, 1f, 0.86469f, 0.93235f);
+        assertEquals(Arrays.asList(1300, 972, 1130), compressor.sizes);
+        assertNotNull(result);
+        assertEquals(1130, result.length);
+    }
+
+    @Test
+    public void stopsOnceGoodEnough() {
+        FakeCompressor compressor = new FakeCompressor(scale -> scale == 1f ? 5000 : 900);
+
+        byte[] result = DownsizeImageTask.search(1000, 800, 1000, compressor);
+
+        assertNotNull(result);
+        assertEquals(900, result.length);
+        assertEquals(2, compressor.scales.size());
+    }
+
+    @Test
+    public void keepsEstimatingUntilSomethingFits() {
+        // larger than the pixels suggest, until it is a fifth of its size
+        FakeCompressor compressor = new FakeCompressor(
+                scale -> scale > 0.2f ? 1_000_000 : Math.round(2_000_000 * scale * scale));
+
+        byte[] result = DownsizeImageTask.search(4000, 3000, 100_000, compressor);
+
+        // sqrt(100,000 / 1,000,000) * 0.9 = 0.2846 doesn't fit either, 0.2846 * 0.2846 does
+        assertEquals(Arrays.asList(1_000_000, 1_000_000), compressor.sizes.subList(0, 2));
+        assertEquals(0.08100f, compressor.scales.get(2), DELTA);
+        assertTrue(compressor.sizes.get(2) <= 100_000);
+        assertNotNull(result);
+        assertTrue(result.length <= 100_000);
+    }
+
+    @Test
+    public void givesUpBelowMinimumSize() {
+        FakeCompressor compressor = new FakeCompressor(scale -> 100_000);
+
+        assertNull(DownsizeImageTask.search(200, 100, 1000, compressor));
+
+        float smallest = compressor.scales.get(compressor.scales.size() - 1);
+        assertTrue(100 * smallest >= DownsizeImageTask.MIN_SIZE);
+    }
+
+    @Test
+    public void keepsBestWhenOutOfMemory() {
+        FakeCompressor nothingFits = new FakeCompressor(scale -> scale == 1f ? 5000 : -1);
+        assertNull(DownsizeImageTask.search(1000, 800, 1000, nothingFits));
+        assertEquals(2, nothingFits.scales.size());
+
+        FakeCompressor oneFits = new FakeCompressor(scale -> {
+            if (scale == 1f) {
+                return 4000;
+            }
+            return scale < 0.5f ? 810 : -1;
+        });
+        byte[] result = DownsizeImageTask.search(1000, 800, 1000, oneFits);
+        assertNotNull(result);
+        assertEquals(810, result.length);
+        assertEquals(3, oneFits.scales.size());
+    }
+
+    @Test
+    public void findsFittingScaleForRandomImages() {
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            final int full = 1 + random.nextInt(1_000_000);
+            final double exponent = 1.5 + random.nextDouble();
+            int limit = 1000 + random.nextInt(800_000);
+            int width = 1 + random.nextInt(4000);
+            int height = 1 + random.nextInt(4000);
+            FakeCompressor compressor = new FakeCompressor(
+                    scale -> (int) Math.round(full * Math.pow(scale, exponent)));
+            String message = full + " bytes, exponent " + exponent + ", limit " + limit + ", "
+                    + width + "x" + height;
+
+            byte[] result = DownsizeImageTask.search(width, height, limit, compressor);
+
+            int firstFit = -1;
+            int largestFit = -1;
+            for (int j = 0; j < compressor.sizes.size(); j++) {
+                int size = compressor.sizes.get(j);
+                if (size <= limit) {
+                    if (firstFit == -1) {
+                        firstFit = j;
+                    }
+                    largestFit = Math.max(largestFit, size);
+                } else if (firstFit == -1 && j > 0) {
+                    // until something fits, each guess is smaller than the one before
+                    assertTrue(message, compressor.scales.get(j) < compressor.scales.get(j - 1));
+                }
+            }
+            if (firstFit == -1) {
+                assertNull(message, result);
+                continue;
+            }
+            assertNotNull(message, result);
+            assertEquals(message, largestFit, result.length);
+            // once something fits, the attempts are limited
+            assertTrue(message, compressor.scales.size()
+                    <= Math.max(DownsizeImageTask.MAX_ATTEMPTS, firstFit + 1));
+        }
+    }
+
+    private static void assertScales(FakeCompressor compressor, float... expected) {
+        assertEquals(compressor.scales.toString(), expected.length, compressor.scales.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], compressor.scales.get(i), DELTA);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.hiveway.Benchmarks;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+/**
+ * Renders a typical status, with a mention, a hashtag and a shortened link, with the own parser
+ * and with the platform parser it replaced.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class MastodonHtmlParserBenchmark {
+
+    private static final String STATUS = "<p><span class=\"h-card\"><a href=\""
+            + "https://mastodon.social/@someone\" class=\"u-url mention\">@<span>someone</span>"
+            + "</a></span> thanks for the write-up, I&apos;ll try it this weekend &amp; report "
+            + "back!</p><p>More on this in <a href=\"https://example.com/blog/2018/04/a-long-"
+            + "article-title\" rel=\"nofollow noopener\" target=\"_blank\"><span class=\""
+            + "invisible\">https://</span><span class=\"ellipsis\">example.com/blog/2018/04/a-"
+            + "lon</span><span class=\"invisible\">g-article-title</span></a><br>"
+            + "<a href=\"https://mastodon.social/tags/android\" class=\"mention hashtag\" "
+            + "rel=\"tag\">#<span>android</span></a></p>";
+
+    @Test
+    public void status() throws Exception {
+        Benchmarks.Result legacy = Benchmarks.measure("status html, platform",
+                () -> MastodonHtmlParserTest.legacyFromHtml(STATUS));
+        Benchmarks.Result parsed = Benchmarks.measure("status html, own parser",
+                () -> MastodonHtmlParser.parse(STATUS));
+        System.out.println(String.format(Locale.ROOT,
+                "status html: %.2fx the throughput, %.2fx the allocations",
+                legacy.nanosPerOperation / parsed.nanosPerOperation,
+                parsed.bytesPerOperation / legacy.bytesPerOperation));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import android.text.Html;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that {@link MastodonHtmlParser} renders the same text and spans as the platform parser
+ * in legacy mode, which is what {@link HtmlUtils#fromHtml(String)} used before.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class MastodonHtmlParserTest {
+
+    /* html as Mastodon sends it, which the parser has to understand */
+    static final String[] CORPUS = {
+            "",
+            "plain text",
+            "<p>one paragraph</p>",
+            "<p>first</p><p>second</p><p>third</p>",
+            "<p>line<br>break</p>",
+            "<p>line<br />break<br/>again</p>",
+            "<p>two<br><br>breaks</p>",
+            "<br>leading break",
+            "<p></p><p>after an empty paragraph</p>",
+            "<p>  leading and   inner   spaces  </p>",
+            "<p>new\nlines\n\nin the\n source</p>",
+            "<p>tab\tseparated and\r\nwindows\rold mac lines</p>",
+            "text <p>before a paragraph</p> and after",
+            "<p>trailing break<br></p>",
+            "<p><a href=\"https://example.com/\">a link</a></p>",
+            "<p>see <a href='https://example.com/a?b=1&amp;c=2' rel='nofollow'>this</a>!</p>",
+            "<p><a href=https://example.com/unquoted>unquoted</a> href</p>",
+            "<p><a href=\"https://example.com/\"></a>empty link</p>",
+            "<p><a>no href</a></p>",
+            "<p><A HREF=\"https://example.com/\">upper case</A></p>",
+            "<p><span class=\"h-card\"><a href=\"https://mastodon.social/@user\" "
+                    + "class=\"u-url mention\">@<span>user</span></a></span> hello</p>",
+            "<p><a href=\"https://mastodon.social/tags/tag\" class=\"mention hashtag\" "
+                    + "rel=\"tag\">#<span>tag</span></a></p>",
+            "<p><a href=\"https://example.com/a/very/long/path\" rel=\"nofollow noopener\" "
+                    + "target=\"_blank\"><span class=\"invisible\">https://</span><span "
+                    + "class=\"ellipsis\">example.com/a/very</span><span class=\"invisible\">"
+                    + "/long/path</span></a></p>",
+            "<p>&amp; &lt;tag&gt; &quot;quoted&quot; &apos;single&apos;</p>",
+            "<p>&#39;decimal&#39; &#x27;hex&#x27; &#X1F600;</p>",
+            "<p>non&nbsp;breaking&nbsp;&nbsp;spaces</p>",
+            "<p>lone & ampersand, &; and & ;</p>",
+            "<p>&#32;entity &#32; spaces&#32;</p>",
+            "<p>comment<!-- hidden --> removed</p>",
+            "<p>\u00fcn\u00efc\u00f6d\u00e9 \u65e5\u672c\u8a9e \ud83d\ude00</p>",
+            "<p>first paragraph</p><p><span class=\"h-card\"><a href=\"https://a.example/@x\" "
+                    + "class=\"u-url mention\">@<span>x</span></a></span> <a href=\""
+                    + "https://b.example/tags/y\" class=\"mention hashtag\" rel=\"tag\">"
+                    + "#<span>y</span></a><br>last &amp; line</p>",
+    };
+
+    @Test
+    public void rendersLikeThePlatform() {
+        for (String html : CORPUS) {
+            Spanned parsed = MastodonHtmlParser.parse(html);
+            assertNotNull(html, parsed);
+            Spanned legacy = legacyFromHtml(html);
+            assertEquals(html, legacy.toString(), parsed.toString());
+            assertEquals(html, describeSpans(legacy), describeSpans(parsed));
+        }
+    }
+
+    @Test
+    public void leavesOtherHtmlToThePlatform() {
+        String[] unsupported = {
+                "<p><b>bold</b></p>",
+                "<ul><li>list</li></ul>",
+                "<p>a lone < bracket</p>",
+                "<p>&unknown;</p>",
+                "<p>no semicolon &amp here</p>",
+                "<p>entity&#10;newline and &#150; control character</p>",
+                "<p><a href=\"https://example.com/?a=1&amp=2\">query</a></p>",
+                "<p><a href=\"https://a.example/\"><a href=\"https://b.example/\">nested"
+                        + "</a></a></p>",
+                "<p><a href=\"unterminated>text</a></p>",
+        };
+        for (String html : unsupported) {
+            assertNull(html, MastodonHtmlParser.parse(html));
+            // whatever the platform makes of it is still what the app shows
+            assertEquals(html, legacyFromHtml(html).toString(),
+                    HtmlUtils.fromHtml(html).toString());
+        }
+    }
+
+    @Test
+    public void readsTagNamesTheSameInEveryLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        // lower case of an upper case I is a dotless i in Turkish
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            for (String html : CORPUS) {
+                String upperCase = html.replace("<p>", "<P>").replace("</p>", "</P>")
+                        .replace("<span", "<SPAN").replace("</span>", "</SPAN>");
+                assertEquals(upperCase, describeSpans(MastodonHtmlParser.parse(html)),
+                        describeSpans(MastodonHtmlParser.parse(upperCase)));
+            }
+            assertNull(MastodonHtmlParser.parse("<p><LI>list</LI></p>"));
+            assertNull(MastodonHtmlParser.parse("<DIV>block</DIV>"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /**
+     * What {@link HtmlUtils#fromHtml(String)} returned before it had its own parser.
+     */
+    @SuppressWarnings("deprecation")
+    static Spanned legacyFromHtml(String html) {
+        Spanned result = Html.fromHtml(html, Html.FROM_HTML_MODE_LEGACY);
+        int i = result.length();
+        do {
+            i--;
+        } while (i >= 0 && Character.isWhitespace(result.charAt(i)));
+        return (Spanned) result.subSequence(0, i + 1);
+    }
+
+    private static List<String> describeSpans(Spanned text) {
+        Object[] spans = text.getSpans(0, text.length(), Object.class);
+        List<String> descriptions = new ArrayList<>(spans.length);
+        for (Object span : spans) {
+            if (!Modifier.isPublic(span.getClass().getModifiers())) {
+                // markers the platform parser leaves behind, like the one of an <a> without href
+                continue;
+            }
+            String description = span.getClass().getSimpleName() + " " + text.getSpanStart(span)
+                    + "-" + text.getSpanEnd(span);
+            if (span instanceof URLSpan) {
+                description += " " + ((URLSpan) span).getURL();
+            }
+            descriptions.add(description);
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.hiveway.Benchmarks;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Merges streamed statuses and pages into timelines of 1,000 to 20,000 statuses with a
+ * {@link TimelineMerger} and the way TimelineFragment did before, by searching the list for every
+ * status. Both work on a {@link ChunkedList} like the fragment does.
+ */
+public class TimelineMergerBenchmark {
+
+    private static final int[] SIZES = { 1_000, 10_000, 20_000 };
+    private static final int PAGE_SIZE = 20;
+
+    @Test
+    public void prependStreamedStatus() throws Exception {
+        for (int size : SIZES) {
+            final List<Either<String, String>> scanned = filled(size);
+            final List<Either<String, String>> indexed = filled(size);
+            final TimelineMerger<String, String> merger = newMerger(indexed);
+            final String status = id(size);
+            compare("prepend, " + size, () -> {
+                Either<String, String> lifted = Either.right(status);
+                if (scanned.indexOf(lifted) == -1) {
+                    scanned.add(0, lifted);
+                }
+                return scanned.remove(0);
+            }, () -> {
+                merger.prepend(status);
+                return merger.remove(0);
+            });
+        }
+    }
+
+    @Test
+    public void mergeOverlappingTopPage() throws Exception {
+        for (int size : SIZES) {
+            final List<Either<String, String>> scanned = filled(size);
+            final List<Either<String, String>> indexed = filled(size);
+            final TimelineMerger<String, String> merger = newMerger(indexed);
+            // the newest status of the timeline and the ones which arrived since; the search finds
+            // the overlap at the top right away, so this is what the index costs when it can't win
+            final List<String> page = new ArrayList<>(PAGE_SIZE);
+            for (int i = size + PAGE_SIZE - 2; i >= size - 1; i--) {
+                page.add(id(i));
+            }
+            compare("overlapping top page, " + size, () -> {
+                List<Either<String, String>> liftedNew = new ArrayList<>(page.size());
+                for (String status : page) {
+                    liftedNew.add(Either.right(status));
+                }
+                Either<String, String> lastOfNew = liftedNew.get(liftedNew.size() - 1);
+                int index = scanned.indexOf(lastOfNew);
+                for (int i = 0; i < index; i++) {
+                    scanned.remove(0);
+                }
+                int newIndex = liftedNew.indexOf(scanned.get(0));
+                scanned.addAll(0, liftedNew.subList(0, newIndex));
+                for (int i = 0; i < newIndex; i++) {
+                    scanned.remove(0);
+                }
+                return scanned;
+            }, () -> {
+                merger.mergeTop(page, true);
+                for (int i = 1; i < page.size(); i++) {
+                    merger.remove(0);
+                }
+                return indexed;
+            });
+        }
+    }
+
+    @Test
+    public void mergeBottomPage() throws Exception {
+        for (int size : SIZES) {
+            final List<Either<String, String>> scanned = filled(size);
+            final List<Either<String, String>> indexed = filled(size);
+            final TimelineMerger<String, String> merger = newMerger(indexed);
+            // below the oldest status, so every status of it is new
+            final List<String> page = new ArrayList<>(PAGE_SIZE);
+            for (int i = -1; i >= -PAGE_SIZE; i--) {
+                page.add(id(i));
+            }
+            compare("bottom page, " + size, () -> {
+                int appended = 0;
+                for (String status : page) {
+                    Either<String, String> lifted = Either.right(status);
+                    if (scanned.indexOf(lifted) == -1) {
+                        scanned.add(lifted);
+                        appended++;
+                    }
+                }
+                for (int i = 0; i < appended; i++) {
+                    scanned.remove(scanned.size() - 1);
+                }
+                return scanned;
+            }, () -> {
+                merger.mergeBottom(page);
+                merger.truncate(size);
+                return indexed;
+            });
+        }
+    }
+
+    private static void compare(String name, Benchmarks.Operation scanned,
+                                Benchmarks.Operation indexed) throws Exception {
+        Benchmarks.Result scannedResult = Benchmarks.measure(name + ", scanning", scanned);
+        Benchmarks.Result indexedResult = Benchmarks.measure(name + ", TimelineMerger", indexed);
+        System.out.println(String.format(Locale.ROOT, "%s: %.2fx the throughput of scanning",
+                name, scannedResult.nanosPerOperation / indexedResult.nanosPerOperation));
+    }
+
+    private static TimelineMerger<String, String> newMerger(List<Either<String, String>> items) {
+        return new TimelineMerger<>(items, status -> status, "placeholder");
+    }
+
+    /**
+     * @return a timeline of statuses with the ids {@code size - 1} down to 0
+     */
+    private static List<Either<String, String>> filled(int size) {
+        List<Either<String, String>> items = new ChunkedList<>();
+        for (int i = size - 1; i >= 0; i--) {
+            items.add(Either.right(id(i)));
+        }
+        return items;
+    }
+
+    private static String id(int i) {
+        return Integer.toString(i);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018 Hiveway
+ *
+ * This file is a part of Tusky and Hiveway.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Tusky is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Tusky; if not,
+ * see <http://www.gnu.org/licenses>. */
+
+package org.hiveway.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs random sequences of changes through a {@link TimelineMerger} and checks after each of them
+ * that the index matches the list and that no status is in there twice. Statuses are their own
+ * ids here.
+ */
+public class TimelineMergerTest {
+
+    private static final String GAP = "gap";
+    private static final int IDS = 300;
+    private static final int SEEDS = 200;
+    private static final int OPERATIONS = 300;
+
+    @Test
+    public void keepsIndexAndUniquenessUnderRandomChanges() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            List<Either<String, String>> items = seed % 2 == 0
+                    ? new ChunkedList<>() : new ArrayList<>();
+            TimelineMerger<String, String> merger = new TimelineMerger<>(items, id -> id, GAP);
+            for (int i = 0; i < OPERATIONS; i++) {
+                String operation = randomOperation(random, merger, items);
+                checkInvariants("seed " + seed + ", operation " + i + ": " + operation, merger,
+                        items);
+            }
+        }
+    }
+
+    @Test
+    public void indexesTheListItIsCreatedWith() {
+        List<Either<String, String>> items = new ArrayList<>();
+        items.add(Either.right("3"));
+        items.add(Either.left(GAP));
+        items.add(Either.right("1"));
+        TimelineMerger<String, String> merger = new TimelineMerger<>(items, id -> id, GAP);
+
+        checkInvariants("created", merger, items);
+        assertEquals(2, merger.indexOf("1"));
+    }
+
+    @Test
+    public void mergeTopPutsGapBelowPageWithoutOverlap() {
+        List<Either<String, String>> items = new ArrayList<>();
+        TimelineMerger<String, String> merger = new TimelineMerger<>(items, id -> id, GAP);
+        merger.mergeTop(Arrays.asList("5", "4"), true);
+        merger.mergeTop(Arrays.asList("9", "8"), true);
+
+        assertEquals(Arrays.asList("9", "8", GAP, "5", "4"), flatten(items));
+
+        merger.mergeTop(Arrays.asList("10", "9", "8"), true);
+        assertEquals(Arrays.asList("10", "9", "8", GAP, "5", "4"), flatten(items));
+    }
+
+    @Test
+    public void fillGapReplacesPlaceholder() {
+        List<Either<String, String>> items = new ArrayList<>();
+        TimelineMerger<String, String> merger = new TimelineMerger<>(items, id -> id, GAP);
+        merger.mergeTop(Arrays.asList("5", "4"), true);
+        merger.mergeTop(Arrays.asList("9", "8"), true);
+
+        merger.fillGap(2, Arrays.asList("7", "6", "5"), false);
+        assertEquals(Arrays.asList("9", "8", "7", "6", "5", "4"), flatten(items));
+    }
+
+    /**
+     * Applies a random change and checks what it promises on its own.
+     * @return a description of the change
+     */
+    private static String randomOperation(Random random, TimelineMerger<String, String> merger,
+                                          List<Either<String, String>> items) {
+        int size = items.size();
+        switch (random.nextInt(size == 0 ? 4 : 11)) {
+            case 0: {
+                List<String> page = randomPage(random);
+                boolean fullFetch = random.nextBoolean();
+                merger.mergeTop(page, fullFetch);
+                if (!page.isEmpty()) {
+                    assertEquals("mergeTop " + page, 0, merger.indexOf(page.get(0)));
+                }
+                return "mergeTop " + page + " " + fullFetch;
+            }
+            case 1: {
+                List<String> page = randomPage(random);
+                int before = size;
+                int appended = merger.mergeBottom(page);
+                assertEquals("mergeBottom " + page, before + appended, items.size());
+                assertAllPresent("mergeBottom " + page, merger, page);
+                return "mergeBottom " + page;
+            }
+            case 2: {
+                String status = randomId(random);
+                boolean present = merger.indexOf(status) != -1;
+                assertEquals("prepend " + status, !present, merger.prepend(status));
+                if (!present) {
+                    assertEquals(0, merger.indexOf(status));
+                }
+                return "prepend " + status;
+            }
+            case 3: {
+                List<Either<String, String>> restored = new ArrayList<>();
+                for (String status : randomPage(random)) {
+                    restored.add(Either.right(status));
+                    if (random.nextInt(5) == 0) {
+                        restored.add(Either.left(GAP));
+                    }
+                }
+                merger.addAll(restored);
+                return "addAll " + flatten(restored);
+            }
+            case 4: {
+                int position = random.nextInt(size + 1);
+                List<String> page = randomPage(random);
+                boolean fullFetch = random.nextBoolean();
+                merger.fillGap(position, page, fullFetch);
+                assertAllPresent("fillGap " + position + " " + page, merger, page);
+                return "fillGap " + position + " " + page + " " + fullFetch;
+            }
+            case 5: {
+                int position = randomPosition(random, size);
+                merger.remove(position);
+                assertEquals(size - 1, items.size());
+                return "remove " + position;
+            }
+            case 6: {
+                final int modulus = 2 + random.nextInt(10);
+                merger.removeIf(status -> Integer.parseInt(status) % modulus == 0);
+                return "removeIf divisible by " + modulus;
+            }
+            case 7: {
+                int from = randomPosition(random, size);
+                int to = from + random.nextInt(Math.min(size - from, 40) + 1);
+                merger.collapse(from, to);
+                boolean placeholderAbove = from > 0 && !items.get(from - 1).isRight();
+                boolean placeholderAt = from < items.size() && !items.get(from).isRight();
+                assertTrue("collapse " + from + " " + to, placeholderAbove || placeholderAt);
+                assertTrue(items.size() <= size - (to - from) + 1);
+                return "collapse " + from + " " + to;
+            }
+            case 8: {
+                int newSize = random.nextInt(size + 1);
+                merger.truncate(newSize);
+                assertTrue(items.size() <= newSize);
+                assertTrue(items.isEmpty() || items.get(items.size() - 1).isRight());
+                return "truncate " + newSize;
+            }
+            case 9: {
+                int position = random.nextInt(size + 1);
+                String status = randomId(random);
+                boolean present = merger.indexOf(status) != -1;
+                assertEquals(!present, merger.add(position, status));
+                if (!present) {
+                    assertEquals(position, merger.indexOf(status));
+                }
+                return "add " + position + " " + status;
+            }
+            default: {
+                if (random.nextInt(20) == 0) {
+                    merger.clear();
+                    return "clear";
+                }
+                // replacing a status with one of the same id doesn't need the merger
+                int position = randomPosition(random, size);
+                items.set(position, items.get(position));
+                return "set " + position;
+            }
+        }
+    }
+
+    private static void checkInvariants(String message, TimelineMerger<String, String> merger,
+                                        List<Either<String, String>> items) {
+        Set<String> present = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            String status = items.get(i).getAsRightOrNull();
+            if (status == null) {
+                continue;
+            }
+            if (!present.add(status)) {
+                fail(message + ": " + status + " is in the timeline twice, " + flatten(items));
+            }
+            assertEquals(message + ": position of " + status, i, merger.indexOf(status));
+        }
+        for (int id = 0; id < IDS; id++) {
+            String status = Integer.toString(id);
+            if (!present.contains(status)) {
+                assertEquals(message + ": position of missing " + status, -1,
+                        merger.indexOf(status));
+            }
+        }
+    }
+
+    private static void assertAllPresent(String message, TimelineMerger<String, String> merger,
+                                         List<String> page) {
+        for (String status : page) {
+            assertFalse(message + ": " + status + " is missing", merger.indexOf(status) == -1);
+        }
+    }
+
+    /**
+     * @return distinct ids, newest first like a page from the server
+     */
+    private static List<String> randomPage(Random random) {
+        int size = random.nextInt(25);
+        int start = random.nextInt(IDS);
+        List<String> page = new ArrayList<>(size);
+        for (int id = start; id >= 0 && page.size() < size; id -= 1 + random.nextInt(3)) {
+            page.add(Integer.toString(id));
+        }
+        if (random.nextInt(10) == 0) {
+            // the server doesn't do this, but the index has to survive it
+            Collections.shuffle(page, random);
+        }
+        return page;
+    }
+
+    private static String randomId(Random random) {
+        return Integer.toString(random.nextInt(IDS));
+    }
+
+    /**
+     * Biased towards the ends of the list, where most changes happen.
+     */
+    private static int randomPosition(Random random, int size) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return 0;
+            case 1:
+                return size - 1;
+            default:
+                return random.nextInt(size);
+        }
+    }
+
+    private static List<String> flatten(List<Either<String, String>> items) {
+        List<String> flat = new ArrayList<>(items.size());
+        for (Either<String, String> item : items) {
+            flat.add(item.isRight() ? item.getAsRight() : GAP);
+        }
+        return flat;
+    }
+}